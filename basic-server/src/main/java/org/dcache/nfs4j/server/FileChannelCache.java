@@ -0,0 +1,285 @@
+package org.dcache.nfs4j.server;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of open {@link FileChannel}s keyed by inode number. Channels are
+ * reference counted: a channel acquired by a request is never closed under its feet,
+ * even if the entry is evicted or invalidated in the meantime. Unreferenced channels
+ * are closed when they are idle longer than the idle timeout or when the cache grows
+ * above its capacity.
+ * <p>
+ * Channels for reading are opened read-only, thus files on read-only file systems
+ * and running executables can be read. A write replaces the cached read-only channel
+ * of a file with a read-write one, which serves reads as well. The cached channel of
+ * a file must be {@link #invalidate(long) invalidated} when file's mode or owner changes.
+ */
+public class FileChannelCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileChannelCache.class);
+
+    /**
+     * A cached channel. The {@link #close()} method releases the reference acquired
+     * by {@link FileChannelCache#acquire(long, Path)}.
+     */
+    public static class Entry implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final boolean writable;
+        private int refs;
+        private long lastUsed;
+        private boolean evicted;
+        private boolean closed;
+
+        private Entry(FileChannel channel, boolean writable) {
+            this.channel = channel;
+            this.writable = writable;
+            this.lastUsed = System.nanoTime();
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        private synchronized boolean retain() {
+            if (closed) {
+                return false;
+            }
+            refs++;
+            return true;
+        }
+
+        @Override
+        public synchronized void close() {
+            refs--;
+            lastUsed = System.nanoTime();
+            if (refs == 0 && evicted) {
+                closeChannel();
+            }
+        }
+
+        /**
+         * Mark entry as evicted. The channel is closed when the last reference is
+         * released.
+         */
+        private synchronized void evict() {
+            evicted = true;
+            if (refs == 0) {
+                closeChannel();
+            }
+        }
+
+        private synchronized boolean evictIfIdle(long idleSince) {
+            if (refs == 0 && lastUsed - idleSince <= 0) {
+                evicted = true;
+                closeChannel();
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized long lastUsed() {
+            return lastUsed;
+        }
+
+        private void closeChannel() {
+            if (!closed) {
+                closed = true;
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOG.warn("Failed to close file channel: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Entry> _entries = new ConcurrentHashMap<>();
+    private final int _capacity;
+    private final long _idleTimeout;
+    private final ScheduledExecutorService _sweeper;
+
+    /**
+     * Create a new cache.
+     *
+     * @param capacity number of cached channels, above which unreferenced channels
+     *                 are closed. Zero disables caching.
+     * @param idleTimeout time after which an unused channel is closed.
+     */
+    public FileChannelCache(int capacity, Duration idleTimeout) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative capacity: " + capacity);
+        }
+        _capacity = capacity;
+        _idleTimeout = idleTimeout.toNanos();
+        _sweeper = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("file-channel-sweeper-%d")
+                        .setDaemon(true)
+                        .build());
+        long period = Math.max(idleTimeout.toMillis() / 2, 1);
+        _sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get an open channel for reading of the file with the given inode number. The
+     * returned entry must be closed by the caller when the channel is not used any more.
+     *
+     * @param inodeNumber inode number of the file.
+     * @param path the path of the file used to open the channel on cache miss.
+     * @return the entry holding the open channel.
+     * @throws IOException if the file can't be opened.
+     */
+    public Entry acquire(long inodeNumber, Path path) throws IOException {
+        return acquire(inodeNumber, path, false);
+    }
+
+    /**
+     * Get an open channel for reading and writing of the file with the given inode
+     * number. The returned entry must be closed by the caller when the channel is not
+     * used any more.
+     *
+     * @param inodeNumber inode number of the file.
+     * @param path the path of the file used to open the channel on cache miss.
+     * @return the entry holding the open channel.
+     * @throws IOException if the file can't be opened for writing.
+     */
+    public Entry acquireForWrite(long inodeNumber, Path path) throws IOException {
+        return acquire(inodeNumber, path, true);
+    }
+
+    private Entry acquire(long inodeNumber, Path path, boolean write) throws IOException {
+        if (_capacity == 0) {
+            return uncached(open(path, write), write);
+        }
+
+        while (true) {
+            Entry entry = _entries.get(inodeNumber);
+            if (entry == null || (write && !entry.writable)) {
+                Entry newEntry = new Entry(open(path, write), write);
+                boolean added = entry == null
+                        ? _entries.putIfAbsent(inodeNumber, newEntry) == null
+                        : _entries.replace(inodeNumber, entry, newEntry);
+                if (!added) {
+                    // concurrently opened or invalidated
+                    newEntry.closeChannel();
+                    continue;
+                }
+                if (entry != null) {
+                    // read-only channel is closed when released by the readers
+                    entry.evict();
+                }
+                entry = newEntry;
+            }
+
+            if (entry.retain()) {
+                if (_entries.size() > _capacity) {
+                    shrink();
+                }
+                return entry;
+            }
+            // lost race with eviction
+            _entries.remove(inodeNumber, entry);
+        }
+    }
+
+    /**
+     * Get the cached channel of the file with the given inode number.
+     *
+     * @param inodeNumber inode number of the file.
+     * @return the entry holding the open channel or null, if channel is not cached.
+     */
+    public Entry acquireIfPresent(long inodeNumber) {
+        Entry entry = _entries.get(inodeNumber);
+        return entry != null && entry.retain() ? entry : null;
+    }
+
+    /**
+     * Discard cached channel of the file with the given inode number, e.g. when the
+     * file is removed.
+     *
+     * @param inodeNumber inode number of the file.
+     */
+    public void invalidate(long inodeNumber) {
+        Entry entry = _entries.remove(inodeNumber);
+        if (entry != null) {
+            entry.evict();
+        }
+    }
+
+    /**
+     * Get number of cached channels.
+     */
+    public int size() {
+        return _entries.size();
+    }
+
+    @Override
+    public void close() {
+        _sweeper.shutdownNow();
+        _entries.keySet().forEach(this::invalidate);
+    }
+
+    /**
+     * Wrap a channel into an entry, which closes the channel when released.
+     */
+    private static Entry uncached(FileChannel channel, boolean writable) {
+        Entry entry = new Entry(channel, writable);
+        entry.retain();
+        entry.evicted = true;
+        return entry;
+    }
+
+    private static FileChannel open(Path path, boolean write) throws IOException {
+        return write
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    private void evictIdle() {
+        long idleSince = System.nanoTime() - _idleTimeout;
+        _entries.forEach((inodeNumber, entry) -> {
+            if (entry.evictIfIdle(idleSince)) {
+                _entries.remove(inodeNumber, entry);
+            }
+        });
+    }
+
+    /**
+     * Close least recently used unreferenced channels. To amortize the cost, the
+     * cache is shrunk to three quarters of its capacity.
+     */
+    private void shrink() {
+        List<Map.Entry<Long, Long>> candidates = new ArrayList<>(_entries.size());
+        _entries.forEach((inodeNumber, entry) -> candidates.add(Map.entry(inodeNumber, entry.lastUsed())));
+        candidates.sort(Map.Entry.comparingByValue((a, b) -> Long.compare(a - b, 0)));
+
+        int target = _capacity - _capacity / 4;
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Long> candidate : candidates) {
+            if (_entries.size() <= target) {
+                break;
+            }
+            Entry entry = _entries.get(candidate.getKey());
+            if (entry != null && entry.evictIfIdle(now)) {
+                _entries.remove(candidate.getKey(), entry);
+            }
+        }
+    }
+}
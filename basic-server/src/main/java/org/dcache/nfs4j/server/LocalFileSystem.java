@@ -30,8 +30,8 @@ import org.slf4j.LoggerFactory;
 import javax.security.auth.Subject;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
@@ -41,7 +41,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.DosFileAttributeView;
@@ -52,9 +51,9 @@ import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.UserPrincipal;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.security.Principal;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  *
@@ -68,6 +67,7 @@ public class LocalFileSystem implements VirtualFileSystem {
     private final NonBlockingHashMap<Path, Long> pathToInode = new NonBlockingHashMap<>();
     private final AtomicLong fileId = new AtomicLong(1); //numbering starts at 1
     private final NfsIdMapping _idMapper = new SimpleIdMap();
+    private final FileChannelCache _openFiles;
     private final UserPrincipalLookupService _lookupService =
             FileSystems.getDefault().getUserPrincipalLookupService();
 
@@ -146,7 +146,12 @@ public class LocalFileSystem implements VirtualFileSystem {
     }
 
     public LocalFileSystem(Path root, Iterable<FsExport> exportIterable) throws IOException {
+        this(root, exportIterable, new FileChannelCache(1024, Duration.ofSeconds(30)));
+    }
+
+    public LocalFileSystem(Path root, Iterable<FsExport> exportIterable, FileChannelCache openFiles) throws IOException {
         _root = root;
+        _openFiles = openFiles;
         assert (Files.exists(_root));
         for (FsExport export : exportIterable) {
             String relativeExportPath = export.getPath().substring(1); // remove the opening '/'
@@ -262,18 +267,31 @@ public class LocalFileSystem implements VirtualFileSystem {
     public DirectoryStream list(Inode inode, byte[] bytes, long l) throws IOException {
         long inodeNumber = getInodeNumber(inode);
         Path path = resolveInode(inodeNumber);
-        final List<DirectoryEntry> list = new ArrayList<>();
-        try (java.nio.file.DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
-            int cookie = 2; // first allowed cookie
-            for (Path p : ds) {
-                cookie++;
-                if (cookie > l) {
-                    long ino = resolvePath(p);
-                    list.add(new DirectoryEntry(p.getFileName().toString(), toFh(ino), statPath(p, ino), cookie));
-                }
-            }
+        return new DirectoryStream(DirectoryStream.ZERO_VERIFIER, fromCookie -> listFrom(path, fromCookie)).tail(l);
+    }
+
+    /**
+     * Lazily list directory entries. The cookie of an entry is its position in the
+     * directory, thus entries up to {@code fromCookie} are skipped without stat.
+     */
+    private Stream<DirectoryEntry> listFrom(Path path, long fromCookie) {
+        long skip = Math.max(fromCookie - 2, 0); // first allowed cookie is 3
+        AtomicLong cookie = new AtomicLong(2 + skip);
+        try {
+            return Files.list(path)
+                    .skip(skip)
+                    .map(p -> {
+                        long entryCookie = cookie.incrementAndGet();
+                        try {
+                            long ino = resolvePath(p);
+                            return new DirectoryEntry(p.getFileName().toString(), toFh(ino), statPath(p, ino), entryCookie);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return new DirectoryStream(list);
     }
 
     @Override
@@ -354,11 +372,15 @@ public class LocalFileSystem implements VirtualFileSystem {
         Path currentPath = currentParentPath.resolve(oldName);
         long targetInodeNumber = resolvePath(currentPath);
         Path newPath = destPath.resolve(newName);
+        Long replacedInodeNumber = pathToInode.get(newPath);
         try {
             Files.move(currentPath, newPath, StandardCopyOption.ATOMIC_MOVE);
         } catch (FileAlreadyExistsException e) {
             throw new ExistException("path " + newPath);
         }
+        if (replacedInodeNumber != null && replacedInodeNumber != targetInodeNumber) {
+            _openFiles.invalidate(replacedInodeNumber);
+        }
         remap(targetInodeNumber, currentPath, newPath);
         return true;
     }
@@ -377,11 +399,16 @@ public class LocalFileSystem implements VirtualFileSystem {
 
     @Override
     public int read(Inode inode, byte[] data, long offset, int count) throws IOException {
+        return read(inode, ByteBuffer.wrap(data, 0, count), offset);
+    }
+
+    @Override
+    public int read(Inode inode, ByteBuffer data, long offset) throws IOException {
         long inodeNumber = getInodeNumber(inode);
         Path path = resolveInode(inodeNumber);
-        ByteBuffer destBuffer = ByteBuffer.wrap(data, 0, count);
-        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
-            return channel.read(destBuffer, offset);
+        // read directly into the (possibly pooled direct) reply buffer
+        try (FileChannelCache.Entry file = _openFiles.acquire(inodeNumber, path)) {
+            return file.channel().read(data, offset);
         }
     }
 
@@ -403,6 +430,7 @@ public class LocalFileSystem implements VirtualFileSystem {
         } catch (DirectoryNotEmptyException e) {
             throw new NotEmptyException("dir " + targetPath + " is note empty", e);
         }
+        _openFiles.invalidate(targetInodeNumber);
         unmap(targetInodeNumber, targetPath);
     }
 
@@ -436,18 +464,30 @@ public class LocalFileSystem implements VirtualFileSystem {
 
     @Override
     public WriteResult write(Inode inode, byte[] data, long offset, int count, StabilityLevel stabilityLevel) throws IOException {
+        return write(inode, ByteBuffer.wrap(data, 0, count), offset, stabilityLevel);
+    }
+
+    @Override
+    public WriteResult write(Inode inode, ByteBuffer data, long offset, StabilityLevel stabilityLevel) throws IOException {
         long inodeNumber = getInodeNumber(inode);
         Path path = resolveInode(inodeNumber);
-        ByteBuffer srcBuffer = ByteBuffer.wrap(data, 0, count);
-        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
-            int bytesWritten = channel.write(srcBuffer, offset);
+        try (FileChannelCache.Entry file = _openFiles.acquireForWrite(inodeNumber, path)) {
+            // write the request buffer as is, positional write may be partial
+            int bytesWritten = 0;
+            while (data.hasRemaining()) {
+                bytesWritten += file.channel().write(data, offset + bytesWritten);
+            }
             return new WriteResult(StabilityLevel.FILE_SYNC, bytesWritten);
         }
     }
 
     @Override
     public void commit(Inode inode, long l, int i) throws IOException {
-        throw new UnsupportedOperationException("Not supported yet.");
+        long inodeNumber = getInodeNumber(inode);
+        Path path = resolveInode(inodeNumber);
+        try (FileChannelCache.Entry file = _openFiles.acquireForWrite(inodeNumber, path)) {
+            file.channel().force(false);
+        }
     }
 
     private Stat statPath(Path p, long inodeNumber) throws IOException {
@@ -533,6 +573,11 @@ public class LocalFileSystem implements VirtualFileSystem {
                 throw new UnsupportedOperationException("set mode unsupported: " + e.getMessage(), e);
             }
         }
+        if (stat.isDefined(Stat.StatAttribute.OWNER) || stat.isDefined(Stat.StatAttribute.GROUP)
+                || stat.isDefined(Stat.StatAttribute.MODE)) {
+            // the cached channel was opened with the old permissions
+            _openFiles.invalidate(inodeNumber);
+        }
         if (stat.isDefined(Stat.StatAttribute.SIZE)) {
             try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
                 raf.setLength(stat.getSize());
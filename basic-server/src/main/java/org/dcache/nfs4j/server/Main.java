@@ -22,6 +22,8 @@ public class Main implements Callable<Void> {
     private int rpcPort = 2049;
     @CommandLine.Option(names = "-with-portmap", description = "start embedded portmap")
     private boolean withPortmap;
+    @CommandLine.Option(names = "-virtual-threads", description = "process requests on virtual threads (requires Java 21)")
+    private boolean virtualThreads;
 
     public static void main(String[] args) throws Exception {
         new CommandLine(new Main()).execute(args);
@@ -38,7 +40,7 @@ public class Main implements Callable<Void> {
             new OncRpcEmbeddedPortmap();
         }
 
-        try (SimpleNfsServer ignored = new SimpleNfsServer(nfsVers, rpcPort, root, exportFile, null)) {
+        try (SimpleNfsServer ignored = new SimpleNfsServer(nfsVers, rpcPort, root, exportFile, null, virtualThreads)) {
             //noinspection ResultOfMethodCallIgnored
             System.in.read(); //any key to shutdown
         }
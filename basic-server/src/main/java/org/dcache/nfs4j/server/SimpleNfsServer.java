@@ -1,12 +1,16 @@
 package org.dcache.nfs4j.server;
 
 import org.dcache.nfs.ExportFile;
+import org.dcache.nfs.qos.QosManager;
+import org.dcache.nfs.util.BufferPool;
+import org.dcache.nfs.util.VirtualThreads;
 import org.dcache.nfs.v3.MountServer;
 import org.dcache.nfs.v3.NfsServerV3;
 import org.dcache.nfs.v3.xdr.mount_prot;
 import org.dcache.nfs.v3.xdr.nfs3_prot;
 import org.dcache.nfs.v4.MDSOperationExecutor;
 import org.dcache.nfs.v4.NFSServerV41;
+import org.dcache.nfs.v4.OperationMetrics;
 import org.dcache.nfs.v4.xdr.nfs4_prot;
 import org.dcache.nfs.vfs.VirtualFileSystem;
 import org.dcache.oncrpc4j.rpc.OncRpcProgram;
@@ -32,6 +36,14 @@ public class SimpleNfsServer implements Closeable {
     }
 
     public SimpleNfsServer(int nfsVers, int port, Path root, ExportFile exportFile, String name) {
+        this(nfsVers, port, root, exportFile, name, false);
+    }
+
+    /**
+     * @param virtualThreads process each RPC request on its own virtual thread instead of
+     *                       a fixed size worker pool. Requires Java 21 or newer.
+     */
+    public SimpleNfsServer(int nfsVers, int port, Path root, ExportFile exportFile, String name, boolean virtualThreads) {
         try {
             NfsServerV3 nfs3 = null;
             NFSServerV41 nfs4 = null;
@@ -55,25 +67,38 @@ public class SimpleNfsServer implements Closeable {
             this.name = name;
 
             VirtualFileSystem vfs = new LocalFileSystem(this.root, exportFile.exports().collect(Collectors.toList()));
+            // up to 64 MiB of idle read buffers are kept over all size classes
+            BufferPool readBuffers = new BufferPool("read buffers@" + this.port, 4 * 1024 * 1024, 64 * 1024 * 1024);
+            // limits are taken from iops= and bw= export options
+            QosManager qos = new QosManager("nfs@" + this.port);
 
-            nfsSvc = new OncRpcSvcBuilder()
+            OncRpcSvcBuilder svcBuilder = new OncRpcSvcBuilder()
                     .withPort(this.port)
                     .withTCP()
                     .withAutoPublish()
                     .withWorkerThreadIoStrategy()
-                    .withServiceName(this.name)
-                    .build();
+                    .withServiceName(this.name);
+
+            if (virtualThreads) {
+                // all programs, including NFSv3 and mount, are dispatched on virtual threads
+                svcBuilder.withWorkerThreadExecutionService(VirtualThreads.newVirtualThreadPerTaskExecutor());
+            }
+            nfsSvc = svcBuilder.build();
 
             if (startNfsV4) {
                 nfs4 = new NFSServerV41.Builder()
                         .withVfs(vfs)
-                        .withOperationExecutor(new MDSOperationExecutor())
+                        .withOperationExecutor(new MDSOperationExecutor(new OperationMetrics("nfs@" + this.port)))
                         .withExportTable(exportFile)
+                        .withBufferPool(readBuffers)
+                        .withQos(qos)
                         .build();
             }
 
             if (startNfsV3) {
-                nfs3 = new NfsServerV3(exportFile, vfs);
+                // NFSv3 modifications must recall delegations granted to NFSv4 clients
+                nfs3 = new NfsServerV3(exportFile, vfs, readBuffers, qos,
+                        nfs4 == null ? null : nfs4.getStateHandler().getFileTracker());
             }
 
             MountServer mountd = new MountServer(exportFile, vfs);
@@ -18,6 +18,7 @@ import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 @BenchmarkMode(Mode.Throughput)
@@ -65,6 +66,65 @@ public class CacheBenchmark {
         return cache.get("foo");
     }
 
+    /*
+     * Cache populated with many entries to measure scalability of lookups of different keys.
+     */
+    @State(Scope.Benchmark)
+    public static class PopulatedCacheHolder {
+
+        private static final int SIZE = 4096;
+
+        private Cache<String, String> cache;
+        private String[] keys;
+
+        @Setup
+        public void setUp() {
+            cache = new Cache<>("populated test cache", SIZE, Duration.ofSeconds(Long.MAX_VALUE),
+                    Duration.ofSeconds(Long.MAX_VALUE),
+                    new NopCacheEventListener<>());
+            keys = new String[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                keys[i] = "key-" + i;
+                cache.put(keys[i], "value-" + i);
+            }
+        }
+
+        public String get() {
+            return cache.get(keys[ThreadLocalRandom.current().nextInt(SIZE)]);
+        }
+    }
+
+    /*
+     * Get throughput with growing number of threads.
+     */
+    @Benchmark
+    @Threads(1)
+    @Warmup(iterations = 5, time = 100, timeUnit = TimeUnit.MILLISECONDS)
+    public String cacheGet01Thread(PopulatedCacheHolder cacheHolder) {
+        return cacheHolder.get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @Warmup(iterations = 5, time = 100, timeUnit = TimeUnit.MILLISECONDS)
+    public String cacheGet04Threads(PopulatedCacheHolder cacheHolder) {
+        return cacheHolder.get();
+    }
+
+    @Benchmark
+    @Threads(16)
+    @Warmup(iterations = 5, time = 100, timeUnit = TimeUnit.MILLISECONDS)
+    public String cacheGet16Threads(PopulatedCacheHolder cacheHolder) {
+        return cacheHolder.get();
+    }
+
+    @Benchmark
+    @Threads(64)
+    @Warmup(iterations = 5, time = 100, timeUnit = TimeUnit.MILLISECONDS)
+    public String cacheGet64Threads(PopulatedCacheHolder cacheHolder) {
+        return cacheHolder.get();
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(CacheBenchmark.class.getSimpleName())
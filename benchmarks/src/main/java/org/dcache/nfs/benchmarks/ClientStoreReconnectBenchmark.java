@@ -0,0 +1,84 @@
+package org.dcache.nfs.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.dcache.nfs.v4.BerkeleyDBClientStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Mass reconnect of clients after server restart. Each benchmark operation is a
+ * client, which re-establishes its client id and completes the reclaim of its state,
+ * i.e. a new client record is added and the recovery record is removed. With group
+ * commit the updates of concurrent clients share a single synchronous disk write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ClientStoreReconnectBenchmark {
+
+    /**
+     * Number of clients known before restart.
+     */
+    private static final int CLIENTS = 10_000;
+
+    @Param({"false", "true"})
+    private boolean groupCommit;
+
+    private Path dir;
+    private BerkeleyDBClientStore clientStore;
+    private final AtomicInteger nextClient = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("nfs-client-store");
+
+        BerkeleyDBClientStore store = new BerkeleyDBClientStore(dir.toFile());
+        for (int i = 0; i < CLIENTS; i++) {
+            store.addClient(owner(i));
+        }
+        store.close();
+
+        // restart, all clients reconnect at once
+        clientStore = new BerkeleyDBClientStore(dir.toFile(), new Properties(), groupCommit);
+        nextClient.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        clientStore.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder())
+                    .forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void reconnect() {
+        byte[] owner = owner(nextClient.getAndIncrement() % CLIENTS);
+        clientStore.addClient(owner);
+        clientStore.reclaimClient(owner);
+    }
+
+    private static byte[] owner(int i) {
+        return ("client-" + i).getBytes(UTF_8);
+    }
+}
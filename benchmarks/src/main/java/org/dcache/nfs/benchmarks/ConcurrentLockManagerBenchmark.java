@@ -5,6 +5,7 @@ import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import org.dcache.nfs.v4.StateOwner;
+import org.dcache.nfs.v4.nlm.IntervalTreeLm;
 import org.dcache.nfs.v4.nlm.LockException;
 import org.dcache.nfs.v4.nlm.LockManager;
 import org.dcache.nfs.v4.nlm.NlmLock;
@@ -25,9 +26,12 @@ public class ConcurrentLockManagerBenchmark {
 
         private LockManager lm;
 
+        @Param({"simple", "intervaltree"})
+        private String lockManager;
+
         @Setup
         public void setUp() {
-            lm = new SimpleLm();
+            lm = newLockManager(lockManager);
         }
 
         public LockManager getLockManager() {
@@ -54,6 +58,63 @@ public class ConcurrentLockManagerBenchmark {
 
     }
 
+    /*
+     * A file with many byte ranges locked by a single owner, like MPI-IO or a database.
+     * One file per thread.
+     */
+    @State(Scope.Thread)
+    public static class ManyRangesHolder {
+
+        private LockManager lm;
+        private final byte[] file = new byte[16];
+
+        @Param({"simple", "intervaltree"})
+        private String lockManager;
+
+        @Param({"1000", "10000"})
+        private int ranges;
+
+        @Setup
+        public void setUp() throws LockException {
+            ThreadLocalRandom.current().nextBytes(file);
+            lm = newLockManager(lockManager);
+
+            // lock every other 4k block
+            for (int i = 0; i < ranges; i++) {
+                NlmLock lock = new LockBuilder()
+                        .withOwner("owner1")
+                        .from(8192L * i)
+                        .length(4096)
+                        .forWrite()
+                        .build();
+                lm.lock(file, lock);
+            }
+        }
+
+        public LockManager getLockManager() {
+            return lm;
+        }
+
+        public byte[] getFile() {
+            return file;
+        }
+
+        public int getRanges() {
+            return ranges;
+        }
+    }
+
+    private static LockManager newLockManager(String type) {
+        switch (type) {
+            case "simple":
+                return new SimpleLm();
+            case "intervaltree":
+                return new IntervalTreeLm();
+            default:
+                throw new IllegalArgumentException("Unknown lock manager: " + type);
+        }
+    }
+
     @Benchmark
     @Threads(16)
     @Warmup(iterations = 5, time = 100, timeUnit = TimeUnit.MILLISECONDS)
@@ -70,6 +131,26 @@ public class ConcurrentLockManagerBenchmark {
         return lock;
     }
 
+    @Benchmark
+    @Threads(16)
+    @Warmup(iterations = 5, time = 100, timeUnit = TimeUnit.MILLISECONDS)
+    public NlmLock benchmarkManyRangesPerFile(ManyRangesHolder mrh) throws LockException {
+
+        // lock and unlock a free block between the held ones
+        long offset = 8192L * ThreadLocalRandom.current().nextInt(mrh.getRanges()) + 4096;
+        NlmLock lock = new LockBuilder()
+                .withOwner("owner2")
+                .from(offset)
+                .length(4096)
+                .forWrite()
+                .build();
+
+        LockManager lm = mrh.getLockManager();
+        lm.lock(mrh.getFile(), lock);
+        lm.unlock(mrh.getFile(), lock);
+        return lock;
+    }
+
     public static class LockBuilder {
 
         private long offset;
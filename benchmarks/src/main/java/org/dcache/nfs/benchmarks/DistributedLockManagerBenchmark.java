@@ -0,0 +1,138 @@
+package org.dcache.nfs.benchmarks;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.dcache.nfs.benchmarks.ConcurrentLockManagerBenchmark.LockBuilder;
+import org.dcache.nfs.v4.nlm.DistributedLockManager;
+import org.dcache.nfs.v4.nlm.EntryProcessorLockManager;
+import org.dcache.nfs.v4.nlm.LockException;
+import org.dcache.nfs.v4.nlm.LockManager;
+import org.dcache.nfs.v4.nlm.NlmLock;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * LOCK latency of distributed lock managers on an embedded multi-member Hazelcast
+ * cluster. The sample time mode reports latency percentiles, including p50 and p99.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class DistributedLockManagerBenchmark {
+
+    private static final String CLUSTER_NAME = "nfs-dlm-benchmark";
+
+    @State(Scope.Benchmark)
+    public static class ClusterHolder {
+
+        @Param({"3"})
+        private int members;
+
+        @Param({"multimap", "entryprocessor"})
+        private String lockManager;
+
+        private final List<HazelcastInstance> cluster = new ArrayList<>();
+        private LockManager lm;
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < members; i++) {
+                cluster.add(Hazelcast.newHazelcastInstance(memberConfig()));
+            }
+
+            // use the first member; other members own the majority of partitions
+            HazelcastInstance hz = cluster.get(0);
+            switch (lockManager) {
+                case "multimap":
+                    lm = new DistributedLockManager(hz, "benchmark-locks");
+                    break;
+                case "entryprocessor":
+                    lm = new EntryProcessorLockManager(hz, "benchmark-locks");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown lock manager: " + lockManager);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            cluster.forEach(HazelcastInstance::shutdown);
+        }
+
+        public LockManager getLockManager() {
+            return lm;
+        }
+
+        private static Config memberConfig() {
+            Config config = new Config();
+            config.setClusterName(CLUSTER_NAME);
+            config.setProperty("hazelcast.logging.type", "none");
+            config.setProperty("hazelcast.phone.home.enabled", "false");
+            config.getNetworkConfig().getInterfaces()
+                    .setEnabled(true)
+                    .addInterface("127.0.0.1");
+            JoinConfig join = config.getNetworkConfig().getJoin();
+            join.getMulticastConfig().setEnabled(false);
+            join.getTcpIpConfig()
+                    .setEnabled(true)
+                    .addMember("127.0.0.1");
+            return config;
+        }
+    }
+
+    /*
+     * File id object. One per thread, thus threads don't conflict.
+     */
+    @State(Scope.Thread)
+    public static class FileHolder {
+
+        private final byte[] file = new byte[16];
+        private final NlmLock lock;
+
+        public FileHolder() {
+            ThreadLocalRandom.current().nextBytes(file);
+            lock = new LockBuilder()
+                    .withOwner("owner1")
+                    .from(0)
+                    .length(1)
+                    .forWrite()
+                    .build();
+        }
+
+        public byte[] getFile() {
+            return file;
+        }
+
+        public NlmLock getLock() {
+            return lock;
+        }
+    }
+
+    /*
+     * Re-lock of a held range. Includes conflict check and merge with the existing lock.
+     */
+    @Benchmark
+    @Threads(8)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    public NlmLock lock(ClusterHolder cluster, FileHolder fh) throws LockException {
+        cluster.getLockManager().lock(fh.getFile(), fh.getLock());
+        return fh.getLock();
+    }
+
+    @Benchmark
+    @Threads(8)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    public NlmLock lockUnlock(ClusterHolder cluster, FileHolder fh) throws LockException {
+        LockManager lm = cluster.getLockManager();
+        lm.lock(fh.getFile(), fh.getLock());
+        lm.unlock(fh.getFile(), fh.getLock());
+        return fh.getLock();
+    }
+}
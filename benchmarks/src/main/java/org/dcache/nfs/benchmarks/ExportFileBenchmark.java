@@ -0,0 +1,62 @@
+package org.dcache.nfs.benchmarks;
+
+import com.google.common.net.InetAddresses;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import org.dcache.nfs.ExportFile;
+import org.dcache.nfs.FsExport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Export lookup with a large export table. Each exported path is exported to a
+ * single host, a subnet and an IPv6 network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class ExportFileBenchmark {
+
+    private static final int EXPORT_LINES = 3334;
+
+    private ExportFile exportFile;
+    private InetAddress address;
+    private int exportIndex;
+
+    @Param({"10.0.12.1", "10.0.12.77", "fd00::c:1", "192.168.1.1"})
+    private String client;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < EXPORT_LINES; i++) {
+            int hi = (i >> 8) & 0xff;
+            int lo = i & 0xff;
+            sb.append("/export/").append(i)
+                    .append(" 10.").append(hi).append('.').append(lo).append(".1(rw,no_root_squash)")
+                    .append(" 10.").append(hi).append('.').append(lo).append(".0/24(ro)")
+                    .append(" fd00::").append(Integer.toHexString(i)).append(":0/112(rw)")
+                    .append('\n');
+        }
+
+        exportFile = new ExportFile(new StringReader(sb.toString()));
+        address = InetAddresses.forString(client);
+        exportIndex = FsExport.getExportIndex("/export/12");
+    }
+
+    @Benchmark
+    public FsExport getExport() {
+        return exportFile.getExport(exportIndex, address);
+    }
+
+    @Benchmark
+    public long exportsForClient() {
+        return exportFile.exports(address).count();
+    }
+}
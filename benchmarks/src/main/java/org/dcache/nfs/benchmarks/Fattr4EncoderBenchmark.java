@@ -0,0 +1,101 @@
+package org.dcache.nfs.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.dcache.nfs.v4.CompoundContext;
+import org.dcache.nfs.v4.CompoundContextBuilder;
+import org.dcache.nfs.v4.Fattr4Encoder;
+import org.dcache.nfs.v4.NFSv4StateHandler;
+import org.dcache.nfs.v4.xdr.bitmap4;
+import org.dcache.nfs.v4.xdr.fattr4;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.Stat;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.nfs4j.server.LocalFileSystem;
+import org.dcache.oncrpc4j.rpc.RpcAuthTypeNone;
+import org.dcache.oncrpc4j.rpc.RpcCall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Encoding of file attributes with compiled {@link Fattr4Encoder} compared to
+ * generic per-attribute encoding for attribute masks used by Linux clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class Fattr4EncoderBenchmark {
+
+    /**
+     * GETATTR after LOOKUP, e.g. {@code stat(2)}.
+     */
+    private static final bitmap4 GETATTR = bitmap4.of(
+            nfs4_prot.FATTR4_TYPE, nfs4_prot.FATTR4_CHANGE, nfs4_prot.FATTR4_SIZE,
+            nfs4_prot.FATTR4_FSID, nfs4_prot.FATTR4_FILEID, nfs4_prot.FATTR4_MODE,
+            nfs4_prot.FATTR4_NUMLINKS, nfs4_prot.FATTR4_OWNER, nfs4_prot.FATTR4_OWNER_GROUP,
+            nfs4_prot.FATTR4_RAWDEV, nfs4_prot.FATTR4_SPACE_USED, nfs4_prot.FATTR4_TIME_ACCESS,
+            nfs4_prot.FATTR4_TIME_METADATA, nfs4_prot.FATTR4_TIME_MODIFY,
+            nfs4_prot.FATTR4_MOUNTED_ON_FILEID);
+
+    /**
+     * READDIR of {@code ls -l}.
+     */
+    private static final bitmap4 READDIR = bitmap4.of(
+            nfs4_prot.FATTR4_TYPE, nfs4_prot.FATTR4_CHANGE, nfs4_prot.FATTR4_SIZE,
+            nfs4_prot.FATTR4_FSID, nfs4_prot.FATTR4_RDATTR_ERROR, nfs4_prot.FATTR4_FILEHANDLE,
+            nfs4_prot.FATTR4_FILEID, nfs4_prot.FATTR4_MODE, nfs4_prot.FATTR4_NUMLINKS,
+            nfs4_prot.FATTR4_OWNER, nfs4_prot.FATTR4_OWNER_GROUP, nfs4_prot.FATTR4_RAWDEV,
+            nfs4_prot.FATTR4_SPACE_USED, nfs4_prot.FATTR4_TIME_ACCESS, nfs4_prot.FATTR4_TIME_METADATA,
+            nfs4_prot.FATTR4_TIME_MODIFY, nfs4_prot.FATTR4_MOUNTED_ON_FILEID);
+
+    @Param({"getattr", "readdir"})
+    private String mask;
+
+    private Path root;
+    private bitmap4 bitmap;
+    private VirtualFileSystem vfs;
+    private Inode inode;
+    private Stat stat;
+    private CompoundContext context;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("nfs4j-bench");
+        Files.write(root.resolve("file"), new byte[1024]);
+        vfs = new LocalFileSystem(root, Collections.emptyList());
+        inode = vfs.lookup(vfs.getRootInode(), "file");
+        stat = vfs.getattr(inode);
+        bitmap = mask.equals("getattr") ? GETATTR : READDIR;
+
+        context = new CompoundContextBuilder()
+                .withFs(vfs)
+                .withMinorversion(1)
+                .withStateHandler(new NFSv4StateHandler())
+                .withCall(new RpcCall(nfs4_prot.NFS4_PROGRAM, nfs4_prot.NFS_V4, new RpcAuthTypeNone(), null))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(root.resolve("file"));
+        Files.delete(root);
+    }
+
+    @Benchmark
+    public fattr4 compiled() throws IOException {
+        return Fattr4Encoder.encode(bitmap, vfs, inode, stat, context);
+    }
+
+    @Benchmark
+    public fattr4 generic() throws IOException {
+        return GenericFattr4Encoder.encode(bitmap, vfs, inode, stat, context);
+    }
+}
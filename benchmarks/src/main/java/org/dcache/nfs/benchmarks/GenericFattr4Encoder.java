@@ -0,0 +1,317 @@
+package org.dcache.nfs.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.dcache.nfs.status.AccessException;
+import org.dcache.nfs.status.InvalException;
+import org.dcache.nfs.v4.CompoundContext;
+import org.dcache.nfs.v4.NFSv41DeviceManager;
+import org.dcache.nfs.v4.NFSv4Defaults;
+import org.dcache.nfs.v4.NFSv4FileAttributes;
+import org.dcache.nfs.v4.xdr.attrlist4;
+import org.dcache.nfs.v4.xdr.bitmap4;
+import org.dcache.nfs.v4.xdr.fattr4;
+import org.dcache.nfs.v4.xdr.fattr4_acl;
+import org.dcache.nfs.v4.xdr.fattr4_aclsupport;
+import org.dcache.nfs.v4.xdr.fattr4_cansettime;
+import org.dcache.nfs.v4.xdr.fattr4_case_insensitive;
+import org.dcache.nfs.v4.xdr.fattr4_case_preserving;
+import org.dcache.nfs.v4.xdr.fattr4_change;
+import org.dcache.nfs.v4.xdr.fattr4_fh_expire_type;
+import org.dcache.nfs.v4.xdr.fattr4_filehandle;
+import org.dcache.nfs.v4.xdr.fattr4_fileid;
+import org.dcache.nfs.v4.xdr.fattr4_files_avail;
+import org.dcache.nfs.v4.xdr.fattr4_files_free;
+import org.dcache.nfs.v4.xdr.fattr4_files_total;
+import org.dcache.nfs.v4.xdr.fattr4_fs_layout_types;
+import org.dcache.nfs.v4.xdr.fattr4_fsid;
+import org.dcache.nfs.v4.xdr.fattr4_homogeneous;
+import org.dcache.nfs.v4.xdr.fattr4_lease_time;
+import org.dcache.nfs.v4.xdr.fattr4_link_support;
+import org.dcache.nfs.v4.xdr.fattr4_maxfilesize;
+import org.dcache.nfs.v4.xdr.fattr4_maxlink;
+import org.dcache.nfs.v4.xdr.fattr4_maxname;
+import org.dcache.nfs.v4.xdr.fattr4_maxread;
+import org.dcache.nfs.v4.xdr.fattr4_maxwrite;
+import org.dcache.nfs.v4.xdr.fattr4_mode;
+import org.dcache.nfs.v4.xdr.fattr4_mounted_on_fileid;
+import org.dcache.nfs.v4.xdr.fattr4_named_attr;
+import org.dcache.nfs.v4.xdr.fattr4_no_trunc;
+import org.dcache.nfs.v4.xdr.fattr4_numlinks;
+import org.dcache.nfs.v4.xdr.fattr4_owner;
+import org.dcache.nfs.v4.xdr.fattr4_rawdev;
+import org.dcache.nfs.v4.xdr.fattr4_size;
+import org.dcache.nfs.v4.xdr.fattr4_space_avail;
+import org.dcache.nfs.v4.xdr.fattr4_space_free;
+import org.dcache.nfs.v4.xdr.fattr4_space_total;
+import org.dcache.nfs.v4.xdr.fattr4_space_used;
+import org.dcache.nfs.v4.xdr.fattr4_supported_attrs;
+import org.dcache.nfs.v4.xdr.fattr4_symlink_support;
+import org.dcache.nfs.v4.xdr.fattr4_time_access;
+import org.dcache.nfs.v4.xdr.fattr4_time_create;
+import org.dcache.nfs.v4.xdr.fattr4_time_delta;
+import org.dcache.nfs.v4.xdr.fattr4_time_metadata;
+import org.dcache.nfs.v4.xdr.fattr4_time_modify;
+import org.dcache.nfs.v4.xdr.fattr4_type;
+import org.dcache.nfs.v4.xdr.fattr4_unique_handles;
+import org.dcache.nfs.v4.xdr.fattr4_xattr_support;
+import org.dcache.nfs.v4.xdr.fsid4;
+import org.dcache.nfs.v4.xdr.layouttype4;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.v4.xdr.nfs_fh4;
+import org.dcache.nfs.v4.xdr.nfs_ftype4;
+import org.dcache.nfs.v4.xdr.nfsace4;
+import org.dcache.nfs.v4.xdr.nfstime4;
+import org.dcache.nfs.v4.xdr.specdata4;
+import org.dcache.nfs.v4.xdr.uint64_t;
+import org.dcache.nfs.v4.xdr.utf8str_mixed;
+import org.dcache.nfs.vfs.FsStat;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.Stat;
+import org.dcache.nfs.vfs.Stat.StatAttribute;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.oncrpc4j.xdr.Xdr;
+import org.dcache.oncrpc4j.xdr.XdrAble;
+
+import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_0;
+import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_1;
+import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_1_NO_PNFS;
+
+/**
+ * Copy of the attribute encoding of {@code OperationGETATTR}, which was used before
+ * {@link org.dcache.nfs.v4.Fattr4Encoder}: each attribute is converted into an XDR
+ * object, which is encoded into a shared buffer. Used as the baseline of
+ * {@link Fattr4EncoderBenchmark}.
+ */
+final class GenericFattr4Encoder {
+
+    private GenericFattr4Encoder() {
+    }
+
+    static fattr4 encode(bitmap4 bitmap, VirtualFileSystem fs, Inode inode, Stat stat, CompoundContext context)
+            throws IOException {
+
+        /*
+         * bitmap we send back. can't be uninitialized.
+         */
+        bitmap4 processedAttributes = new bitmap4(new int[0]);
+
+        byte[] retBytes;
+        try (Xdr xdr = new Xdr(1024)) {
+            xdr.beginEncoding();
+
+            for (int i : bitmap) {
+                Optional<? extends XdrAble> optionalAttr = fattr2xdr(i, fs, inode, stat, context);
+                if (optionalAttr.isPresent()) {
+                    optionalAttr.get().xdrEncode(xdr);
+                    processedAttributes.set(i);
+                }
+            }
+
+            xdr.endEncoding();
+            retBytes = xdr.getBytes();
+        }
+
+        fattr4 attributes = new fattr4();
+        attributes.attrmask = processedAttributes;
+        attributes.attr_vals = new attrlist4(retBytes);
+
+        return attributes;
+    }
+
+    private static FsStat getFsStat(FsStat fsStat, VirtualFileSystem fs) throws IOException {
+        if (fsStat != null) {
+            return fsStat;
+        }
+        return fs.getFsStat();
+    }
+
+    private static Optional<? extends XdrAble> fattr2xdr(int fattr, VirtualFileSystem fs, Inode inode, Stat stat,
+            CompoundContext context) throws IOException {
+
+        FsStat fsStat = null;
+
+        switch (fattr) {
+
+            case nfs4_prot.FATTR4_SUPPORTED_ATTRS:
+                int[] bitmap;
+                if (context.getMinorversion() == 0) {
+                    bitmap = SUPPORTED_ATTRS_V4_0;
+                } else {
+                    bitmap = context.getDeviceManager().isPresent() ? SUPPORTED_ATTRS_V4_1 : SUPPORTED_ATTRS_V4_1_NO_PNFS;
+                }
+                return Optional.of(new fattr4_supported_attrs(bitmap));
+            case nfs4_prot.FATTR4_TYPE:
+                return Optional.of(new fattr4_type(unixType2NFS(stat.getMode())));
+            case nfs4_prot.FATTR4_FH_EXPIRE_TYPE:
+                return Optional.of(new fattr4_fh_expire_type(nfs4_prot.FH4_PERSISTENT));
+            case nfs4_prot.FATTR4_CHANGE:
+                return Optional.of(new fattr4_change(stat.getGeneration()));
+            case nfs4_prot.FATTR4_SIZE:
+                return Optional.of(new fattr4_size(stat.getSize()));
+            case nfs4_prot.FATTR4_LINK_SUPPORT:
+                return Optional.of(new fattr4_link_support(true));
+            case nfs4_prot.FATTR4_SYMLINK_SUPPORT:
+                return Optional.of(new fattr4_symlink_support(true));
+            case nfs4_prot.FATTR4_NAMED_ATTR:
+                return Optional.of(new fattr4_named_attr(false));
+            case nfs4_prot.FATTR4_FSID:
+                fsid4 fsid = new fsid4();
+                fsid.major = new uint64_t(17);
+                fsid.minor = new uint64_t(17);
+                return Optional.of(new fattr4_fsid(fsid));
+            case nfs4_prot.FATTR4_UNIQUE_HANDLES:
+                return Optional.of(new fattr4_unique_handles(true));
+            case nfs4_prot.FATTR4_LEASE_TIME:
+                return Optional.of(new fattr4_lease_time((int)context.getStateHandler().getLeaseTime().toSeconds()));
+            case nfs4_prot.FATTR4_RDATTR_ERROR:
+                // this attribute provided by the readdir operation
+                return Optional.empty();
+            case nfs4_prot.FATTR4_FILEHANDLE:
+                nfs_fh4 fh = new nfs_fh4();
+                fh.value = inode.toNfsHandle();
+                return Optional.of(new fattr4_filehandle(fh));
+            case nfs4_prot.FATTR4_ACL:
+                nfsace4[] aces = context.getFs().getAcl(inode);
+                return Optional.of(new fattr4_acl(aces));
+            case nfs4_prot.FATTR4_ACLSUPPORT:
+                return Optional.of(new fattr4_aclsupport(
+                        nfs4_prot.ACL4_SUPPORT_ALLOW_ACL | nfs4_prot.ACL4_SUPPORT_DENY_ACL));
+            case nfs4_prot.FATTR4_CANSETTIME:
+                return Optional.of(new fattr4_cansettime(true));
+            case nfs4_prot.FATTR4_CASE_INSENSITIVE:
+                return Optional.of(new fattr4_case_insensitive(fs.getCaseInsensitive()));
+            case nfs4_prot.FATTR4_CASE_PRESERVING:
+                return Optional.of(new fattr4_case_preserving(fs.getCasePreserving()));
+            case nfs4_prot.FATTR4_FILEID:
+                return Optional.of(new fattr4_fileid(stat.getIno()));
+            case nfs4_prot.FATTR4_FILES_AVAIL:
+                fsStat = getFsStat(fsStat, fs);
+                return Optional.of(new fattr4_files_avail(fsStat.getTotalFiles() - fsStat.getUsedFiles()));
+            case nfs4_prot.FATTR4_FILES_FREE:
+                fsStat = getFsStat(fsStat, fs);
+                return Optional.of(new fattr4_files_free(fsStat.getTotalFiles() - fsStat.getUsedFiles()));
+            case nfs4_prot.FATTR4_FILES_TOTAL:
+                fsStat = getFsStat(fsStat, fs);
+                return Optional.of(new fattr4_files_total(fsStat.getTotalFiles()));
+            case nfs4_prot.FATTR4_HOMOGENEOUS:
+                return Optional.of(new fattr4_homogeneous(true));
+            case nfs4_prot.FATTR4_MAXFILESIZE:
+                return Optional.of(new fattr4_maxfilesize(NFSv4Defaults.NFS4_MAXFILESIZE));
+            case nfs4_prot.FATTR4_MAXLINK:
+                return Optional.of(new fattr4_maxlink(NFSv4Defaults.NFS4_MAXLINK));
+            case nfs4_prot.FATTR4_MAXNAME:
+                return Optional.of(new fattr4_maxname(NFSv4Defaults.NFS4_MAXFILENAME));
+            case nfs4_prot.FATTR4_MAXREAD:
+                return Optional.of(new fattr4_maxread(NFSv4Defaults.NFS4_MAXIOBUFFERSIZE));
+            case nfs4_prot.FATTR4_MAXWRITE:
+                return Optional.of(new fattr4_maxwrite(NFSv4Defaults.NFS4_MAXIOBUFFERSIZE));
+            case nfs4_prot.FATTR4_MODE:
+                return Optional.of(new fattr4_mode(stat.getMode() & 07777));
+            case nfs4_prot.FATTR4_NO_TRUNC:
+                return Optional.of(new fattr4_no_trunc(true));
+            case nfs4_prot.FATTR4_NUMLINKS:
+                return Optional.of(new fattr4_numlinks(stat.getNlink()));
+            case nfs4_prot.FATTR4_OWNER:
+                String owner_s = context.getFs().getIdMapper().uidToPrincipal(stat.getUid());
+                return Optional.of(new fattr4_owner(new utf8str_mixed(owner_s)));
+            case nfs4_prot.FATTR4_OWNER_GROUP:
+                String group_s = context.getFs().getIdMapper().gidToPrincipal(stat.getGid());
+                return Optional.of(new fattr4_owner(new utf8str_mixed(group_s)));
+            case nfs4_prot.FATTR4_RAWDEV:
+                specdata4 dev = new specdata4();
+                dev.specdata1 = 0;
+                dev.specdata2 = 0;
+                return Optional.of(new fattr4_rawdev(dev));
+            case nfs4_prot.FATTR4_SPACE_AVAIL:
+                fsStat = getFsStat(fsStat, fs);
+                return Optional.of(new fattr4_space_avail(fsStat.getTotalSpace() - fsStat.getUsedSpace()));
+            case nfs4_prot.FATTR4_SPACE_FREE:
+                fsStat = getFsStat(fsStat, fs);
+                return Optional.of(new fattr4_space_free(fsStat.getTotalSpace() - fsStat.getUsedSpace()));
+            case nfs4_prot.FATTR4_SPACE_TOTAL:
+                fsStat = getFsStat(fsStat, fs);
+                return Optional.of(new fattr4_space_total(fsStat.getTotalSpace()));
+            case nfs4_prot.FATTR4_SPACE_USED:
+                return Optional.of(new fattr4_space_used(stat.getSize()));
+            case nfs4_prot.FATTR4_TIME_ACCESS:
+                return Optional.of(new fattr4_time_access(stat.getATime()));
+            case nfs4_prot.FATTR4_TIME_CREATE:
+                long btimeMillis = stat.isDefined(StatAttribute.BTIME) ? stat.getBTime() : stat.getCTime();
+                return Optional.of(new fattr4_time_create(btimeMillis));
+            case nfs4_prot.FATTR4_TIME_DELTA:
+                // one (1) second is a common value for time delta across nfs4 servers
+                return Optional.of(new fattr4_time_delta(new nfstime4(TimeUnit.SECONDS.toMillis(1))));
+            case nfs4_prot.FATTR4_TIME_METADATA:
+                return Optional.of(new fattr4_time_metadata(stat.getCTime()));
+            case nfs4_prot.FATTR4_TIME_MODIFY:
+                return Optional.of(new fattr4_time_modify(stat.getMTime()));
+            case nfs4_prot.FATTR4_MOUNTED_ON_FILEID:
+                long mofi = stat.getIno();
+                if (mofi == 0x00b0a23a /* it's a root*/) {
+                    mofi = 0x12345678;
+                }
+                return Optional.of(new fattr4_mounted_on_fileid(mofi));
+            case nfs4_prot.FATTR4_FS_LAYOUT_TYPES:
+                fattr4_fs_layout_types fs_layout_type = new fattr4_fs_layout_types();
+
+                final Optional<NFSv41DeviceManager> pnfsDeviceManager = context.getDeviceManager();
+                if (!pnfsDeviceManager.isPresent()) {
+                    return Optional.empty();
+                }
+
+                List<layouttype4> exportLayouts = context
+                        .getExportTable()
+                        .exports(context.getRemoteSocketAddress().getAddress())
+                        .findFirst()
+                        .orElseThrow(AccessException::new)
+                        .getLayoutTypes();
+
+                Set<layouttype4> supportedLayouts = pnfsDeviceManager.get().getLayoutTypes();
+                if (exportLayouts.isEmpty()) {
+                    fs_layout_type.value = supportedLayouts.stream()
+                            .mapToInt(layouttype4::getValue)
+                            .toArray();
+                } else {
+                    fs_layout_type.value = exportLayouts.stream()
+                            .filter(e -> supportedLayouts.contains(e))
+                            .mapToInt(layouttype4::getValue)
+                            .toArray();
+                }
+                return Optional.of(fs_layout_type);
+            case nfs4_prot.FATTR4_SUPPATTR_EXCLCREAT:
+                return Optional.of(new fattr4_supported_attrs(NFSv4FileAttributes.EXCLCREAT_ATTR));
+            case nfs4_prot.FATTR4_XATTR_SUPPORT:
+                return Optional.of(new fattr4_xattr_support(true));
+            case nfs4_prot.FATTR4_TIME_MODIFY_SET:
+            case nfs4_prot.FATTR4_TIME_ACCESS_SET:
+                throw new InvalException("getattr of write-only attributes");
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private static int unixType2NFS(int type) {
+        switch (type & 0770000) {
+            case Stat.S_IFREG:
+                return nfs_ftype4.NF4REG;
+            case Stat.S_IFDIR:
+                return nfs_ftype4.NF4DIR;
+            case Stat.S_IFLNK:
+                return nfs_ftype4.NF4LNK;
+            case Stat.S_IFSOCK:
+                return nfs_ftype4.NF4SOCK;
+            case Stat.S_IFBLK:
+                return nfs_ftype4.NF4BLK;
+            case Stat.S_IFCHR:
+                return nfs_ftype4.NF4CHR;
+            case Stat.S_IFIFO:
+                return nfs_ftype4.NF4FIFO;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.dcache.nfs.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.nfs4j.server.FileChannelCache;
+import org.dcache.nfs4j.server.LocalFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Read and write throughput of {@link LocalFileSystem} with and without cached
+ * file channels. The {@code openFiles} parameter is the capacity of the channel
+ * cache, where zero opens and closes a channel on each request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class LocalFileSystemIoBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+
+    @Param({"0", "1024"})
+    private int openFiles;
+
+    private Path root;
+    private FileChannelCache channelCache;
+    private VirtualFileSystem vfs;
+    private Inode file;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("nfs4j-bench");
+        Files.write(root.resolve("data"), new byte[FILE_SIZE]);
+        channelCache = new FileChannelCache(openFiles, Duration.ofSeconds(30));
+        vfs = new LocalFileSystem(root, Collections.emptyList(), channelCache);
+        file = vfs.lookup(vfs.getRootInode(), "data");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channelCache.close();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IoState {
+
+        final ByteBuffer largeBuffer = ByteBuffer.allocate(1024 * 1024);
+        final ByteBuffer smallBuffer = ByteBuffer.allocate(4096);
+        long offset;
+
+        @Setup(Level.Iteration)
+        public void rewind() {
+            offset = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int sequentialRead(IoState state) throws IOException {
+        int n = vfs.read(file, state.largeBuffer.clear(), state.offset);
+        state.offset = (state.offset + n) % FILE_SIZE;
+        return n;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int randomRead(IoState state) throws IOException {
+        long offset = ThreadLocalRandom.current().nextInt(FILE_SIZE / 4096) * 4096L;
+        return vfs.read(file, state.smallBuffer.clear(), offset);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int randomWrite(IoState state) throws IOException {
+        long offset = ThreadLocalRandom.current().nextInt(FILE_SIZE / 4096) * 4096L;
+        return vfs.write(file, state.smallBuffer.clear(), offset,
+                VirtualFileSystem.StabilityLevel.UNSTABLE).getBytesWritten();
+    }
+}
@@ -0,0 +1,147 @@
+package org.dcache.nfs.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.dcache.nfs.util.VirtualThreads;
+import org.dcache.nfs.vfs.ForwardingFileSystem;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.Stat;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.nfs4j.server.LocalFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Request dispatch on a fixed pool of worker threads compared to a virtual thread
+ * per request, when the file system blocks on each call, like a remote or tape
+ * backed storage. Each benchmark operation dispatches {@code concurrency} requests,
+ * a LOOKUP followed by a GETATTR, and waits for all of them to complete. With the
+ * worker pool the throughput stops growing at the pool size, while with virtual
+ * threads it grows with the number of outstanding requests.
+ * <p>
+ * The {@code virtual} mode requires Java 21 or newer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VirtualThreadDispatchBenchmark {
+
+    /**
+     * Number of threads in the worker pool.
+     */
+    private static final int WORKER_THREADS = 32;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"32", "256", "1024"})
+    private int concurrency;
+
+    @Param({"1"})
+    private long latencyMillis;
+
+    private Path root;
+    private ExecutorService executor;
+    private VirtualFileSystem vfs;
+    private Inode rootInode;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("nfs4j-bench");
+        Files.write(root.resolve("file"), new byte[1024]);
+        vfs = new SlowFileSystem(new LocalFileSystem(root, Collections.emptyList()), latencyMillis);
+        rootInode = vfs.getRootInode();
+
+        switch (threads) {
+            case "platform":
+                executor = Executors.newFixedThreadPool(WORKER_THREADS);
+                break;
+            case "virtual":
+                executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported thread type: " + threads);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void dispatch() {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            requests[i] = CompletableFuture.runAsync(this::request, executor);
+        }
+        CompletableFuture.allOf(requests).join();
+    }
+
+    private void request() {
+        try {
+            Inode inode = vfs.lookup(rootInode, "file");
+            vfs.getattr(inode);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A file system which adds a fixed latency to name space operations.
+     */
+    private static class SlowFileSystem extends ForwardingFileSystem {
+
+        private final VirtualFileSystem inner;
+        private final long latencyMillis;
+
+        SlowFileSystem(VirtualFileSystem inner, long latencyMillis) {
+            this.inner = inner;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        protected VirtualFileSystem delegate() {
+            return inner;
+        }
+
+        @Override
+        public Inode lookup(Inode parent, String name) throws IOException {
+            sleep();
+            return super.lookup(parent, name);
+        }
+
+        @Override
+        public Stat getattr(Inode inode) throws IOException {
+            sleep();
+            return super.getattr(inode);
+        }
+
+        private void sleep() throws IOException {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -57,8 +58,18 @@ public class ExportFile implements ExportTable {
     private static final Logger _log = LoggerFactory.getLogger(ExportFile.class);
 
     private volatile ImmutableMultimap<Integer, FsExport> _exports;
+
+    /**
+     * Compiled index of {@link #_exports} to lookup entries by client address.
+     */
+    private volatile ExportIndex _exportIndex;
     private final Callable<URI[]> _exportFileProvider;
 
+    /**
+     * Incremented on every successful rescan.
+     */
+    private final AtomicLong _generation = new AtomicLong();
+
     /**
      * Construct server export table from a given file.
      *
@@ -110,7 +121,7 @@ public class ExportFile implements ExportTable {
         _exportFileProvider = () -> {
             throw new IllegalStateException("exports uri not set, rescan impossible");
         };
-        _exports = parse(reader);
+        setExports(parse(reader));
     }
 
     @Override
@@ -293,6 +304,16 @@ public class ExportFile implements ExportTable {
                             continue;
                         }
 
+                        if (option.startsWith("iops=")) {
+                            exportBuilder.withIops(Long.parseLong(option.substring(5)));
+                            continue;
+                        }
+
+                        if (option.startsWith("bw=")) {
+                            exportBuilder.withBandwidth(parseBandwidth(option.substring(3)));
+                            continue;
+                        }
+
                         throw new IllegalArgumentException("Unsupported option: " + option);
                     }
                     FsExport export = exportBuilder.build(path);
@@ -311,6 +332,35 @@ public class ExportFile implements ExportTable {
               .build();
     }
 
+    /**
+     * Parse bandwidth in bytes per second. The value can have a {@code K}, {@code M}
+     * or {@code G} suffix for kibi-, mebi- or gibibytes.
+     *
+     * @param s the bandwidth value.
+     * @return bandwidth in bytes per second.
+     * @throws NumberFormatException if value is not a valid number.
+     */
+    static long parseBandwidth(String s) {
+        if (s.isEmpty()) {
+            throw new NumberFormatException("empty bandwidth value");
+        }
+        int shift;
+        switch (Character.toUpperCase(s.charAt(s.length() - 1))) {
+            case 'K':
+                shift = 10;
+                break;
+            case 'M':
+                shift = 20;
+                break;
+            case 'G':
+                shift = 30;
+                break;
+            default:
+                return Long.parseLong(s);
+        }
+        return Math.multiplyExact(Long.parseLong(s.substring(0, s.length() - 1)), 1L << shift);
+    }
+
     @Override
     public FsExport getExport(String path, InetAddress client) {
         String normalizedPath = FsExport.normalize(path);
@@ -319,24 +369,28 @@ public class ExportFile implements ExportTable {
 
     @Override
     public FsExport getExport(int index, InetAddress client) {
-        for (FsExport export : _exports.get(index)) {
-            if (export.isAllowed(client)) {
-                return export;
-            }
-        }
-        return null;
+        return _exportIndex.getExport(index, client);
     }
 
     @Override
     public Stream<FsExport> exports(InetAddress client) {
-        return _exports.values().stream()
-                .filter(e -> e.isAllowed(client))
-                .sorted(Comparator.comparing(FsExport::client,HostEntryComparator::compare));
+        return _exportIndex.exports(client);
+    }
+
+    private void setExports(ImmutableMultimap<Integer, FsExport> exports) {
+        _exportIndex = new ExportIndex(exports.values());
+        _exports = exports;
+    }
+
+    @Override
+    public long generation() {
+        return _generation.get();
     }
 
     public final void rescan() throws IOException {
         try {
-            _exports = parse(_exportFileProvider.call());
+            setExports(parse(_exportFileProvider.call()));
+            _generation.incrementAndGet();
         } catch (Exception e) {
             throwIfInstanceOf(e, IOException.class);
             throwIfUnchecked(e);
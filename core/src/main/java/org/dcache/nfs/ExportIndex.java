@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compiled index of export entries to find the entries allowed for a given client
+ * without evaluating each entry's client matcher.
+ * <p>
+ * Entries exported to IP addresses and networks are stored in a binary prefix trie, one
+ * per address family. A lookup walks the trie along the bits of client's address and
+ * collects entries of all visited nodes. Entries exported to host names are matched
+ * against a set of pre-resolved addresses, which is periodically refreshed in the
+ * background. Remaining entries, like wildcard host names, are evaluated one by one.
+ * <p>
+ * The result for a given client is memoized. As the result might depend on DNS, the
+ * memoized results are discarded each time the host names are re-resolved.
+ */
+class ExportIndex {
+
+    private static final Logger _log = LoggerFactory.getLogger(ExportIndex.class);
+
+    /**
+     * How often exported host names are re-resolved. Matches JVM's default positive DNS
+     * cache time.
+     */
+    private static final long HOST_REFRESH_PERIOD = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Max number of clients, which export entries are memoized.
+     */
+    private static final int MAX_MEMOIZED_CLIENTS = 8192;
+
+    private static final Executor RESOLVER = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("export host name resolver")
+                    .setDaemon(true)
+                    .build()
+    );
+
+    /**
+     * Export entries allowed for a single client.
+     */
+    private static class ClientExports {
+
+        private final List<FsExport> _exports;
+        private final Map<Integer, FsExport> _byIndex;
+
+        ClientExports(List<FsExport> exports) {
+            _exports = exports;
+            _byIndex = new HashMap<>();
+            // first entry is the most relevant one
+            exports.forEach(e -> _byIndex.putIfAbsent(e.getIndex(), e));
+        }
+    }
+
+    /**
+     * A node of binary prefix trie.
+     */
+    private static class TrieNode {
+
+        private final TrieNode[] _children = new TrieNode[2];
+        private int[] _entries = new int[0];
+
+        void add(int entry) {
+            _entries = Arrays.copyOf(_entries, _entries.length + 1);
+            _entries[_entries.length - 1] = entry;
+        }
+    }
+
+    /**
+     * All export entries ordered by relevance.
+     */
+    private final FsExport[] _exports;
+
+    private final TrieNode _ipv4 = new TrieNode();
+    private final TrieNode _ipv6 = new TrieNode();
+    private final boolean _hasNetworks;
+
+    /**
+     * Entries exported to any client.
+     */
+    private final BitSet _anyClient;
+
+    /**
+     * Entries, which must be evaluated by their client matcher.
+     */
+    private final int[] _unindexed;
+
+    /**
+     * Entries exported to host names.
+     */
+    private final Map<String, int[]> _hostNames;
+
+    /**
+     * Addresses of exported host names, or null if not resolved yet.
+     */
+    private volatile Map<InetAddress, BitSet> _resolvedHosts;
+    private volatile long _resolvedAt;
+    private final AtomicBoolean _refreshing = new AtomicBoolean();
+
+    private final ConcurrentMap<InetAddress, ClientExports> _memoized = new ConcurrentHashMap<>();
+
+    /**
+     * Build index for the given export entries.
+     *
+     * @param exports export entries.
+     */
+    ExportIndex(Collection<FsExport> exports) {
+
+        _exports = exports.stream()
+                .sorted(Comparator.comparing(FsExport::client, HostEntryComparator::compare))
+                .toArray(FsExport[]::new);
+
+        _anyClient = new BitSet(_exports.length);
+        Map<String, BitSet> hostNames = new LinkedHashMap<>();
+        BitSet unindexed = new BitSet(_exports.length);
+        boolean hasNetworks = false;
+
+        for (int i = 0; i < _exports.length; i++) {
+            InetAddressMatcher matcher = _exports[i].getClientMatcher();
+            if (matcher instanceof InetAddressMatcher.IpAddressMatcher) {
+                InetAddressMatcher.IpAddressMatcher ipMatcher = (InetAddressMatcher.IpAddressMatcher) matcher;
+                // zero netmask is evaluated by the matcher to keep its semantic
+                if (ipMatcher.getMask() > 0) {
+                    byte[] net = ipMatcher.getSubnetBytes();
+                    insert(net.length == 4 ? _ipv4 : _ipv6, net, ipMatcher.getMask(), i);
+                    hasNetworks = true;
+                } else {
+                    unindexed.set(i);
+                }
+            } else if (matcher instanceof InetAddressMatcher.HostNameMatcher) {
+                hostNames.computeIfAbsent(matcher.getPattern(), h -> new BitSet()).set(i);
+            } else if (matcher.getPattern().equals(".*")) {
+                // the regular expression of "*" wildcard
+                _anyClient.set(i);
+            } else {
+                unindexed.set(i);
+            }
+        }
+
+        _hasNetworks = hasNetworks;
+        _unindexed = unindexed.stream().toArray();
+        _hostNames = new LinkedHashMap<>();
+        hostNames.forEach((h, e) -> _hostNames.put(h, e.stream().toArray()));
+    }
+
+    /**
+     * Get a {@link Stream} of exports allowed for a given client. The stream is
+     * ordered with most relevant export entry first.
+     *
+     * @param client address if the client.
+     * @return all entries exported to a given client.
+     */
+    Stream<FsExport> exports(InetAddress client) {
+        return lookup(client)._exports.stream();
+    }
+
+    /**
+     * Get best matching export for a given export index and client.
+     *
+     * @param index export index that identifies export path.
+     * @param client address of the client.
+     * @return best matching export entry for a given client or null if no
+     * entries found.
+     */
+    FsExport getExport(int index, InetAddress client) {
+        return lookup(client)._byIndex.get(index);
+    }
+
+    private ClientExports lookup(InetAddress client) {
+
+        Map<InetAddress, BitSet> resolvedHosts = resolvedHosts();
+
+        ClientExports clientExports = _memoized.get(client);
+        if (clientExports != null) {
+            return clientExports;
+        }
+
+        BitSet matched = (BitSet) _anyClient.clone();
+
+        if (_hasNetworks) {
+            byte[] address = client.getAddress();
+            collect(address.length == 4 ? _ipv4 : _ipv6, address, matched);
+        }
+
+        BitSet byName = resolvedHosts.get(client);
+        if (byName != null) {
+            matched.or(byName);
+        }
+
+        for (int i : _unindexed) {
+            if (_exports[i].isAllowed(client)) {
+                matched.set(i);
+            }
+        }
+
+        List<FsExport> exports = matched.stream()
+                .mapToObj(i -> _exports[i])
+                .toList();
+
+        clientExports = new ClientExports(exports);
+        if (_memoized.size() >= MAX_MEMOIZED_CLIENTS) {
+            _memoized.clear();
+        }
+        // don't memoize results based on outdated host name resolution
+        if (resolvedHosts == _resolvedHosts) {
+            _memoized.put(client, clientExports);
+        }
+        return clientExports;
+    }
+
+    /**
+     * Returns resolved addresses of exported host names. The host names are resolved
+     * on first use and refreshed in the background afterwards.
+     */
+    private Map<InetAddress, BitSet> resolvedHosts() {
+
+        Map<InetAddress, BitSet> resolvedHosts = _resolvedHosts;
+        if (resolvedHosts == null) {
+            resolvedHosts = initialResolve();
+        } else if (System.nanoTime() - _resolvedAt > HOST_REFRESH_PERIOD
+                && (!_hostNames.isEmpty() || _unindexed.length > 0)
+                && _refreshing.compareAndSet(false, true)) {
+            RESOLVER.execute(() -> {
+                try {
+                    resolveHosts();
+                } finally {
+                    _refreshing.set(false);
+                }
+            });
+        }
+        return resolvedHosts;
+    }
+
+    private synchronized Map<InetAddress, BitSet> initialResolve() {
+        Map<InetAddress, BitSet> resolvedHosts = _resolvedHosts;
+        if (resolvedHosts == null) {
+            resolvedHosts = resolveHosts();
+        }
+        return resolvedHosts;
+    }
+
+    private Map<InetAddress, BitSet> resolveHosts() {
+
+        Map<InetAddress, BitSet> resolvedHosts = new HashMap<>();
+        _hostNames.forEach((host, entries) -> {
+            try {
+                for (InetAddress address : InetAddress.getAllByName(host)) {
+                    BitSet bits = resolvedHosts.computeIfAbsent(address, a -> new BitSet());
+                    for (int i : entries) {
+                        bits.set(i);
+                    }
+                }
+            } catch (UnknownHostException e) {
+                _log.debug("Failed to resolve exported host {}: {}", host, e.getMessage());
+            }
+        });
+
+        _resolvedAt = System.nanoTime();
+        _resolvedHosts = Collections.unmodifiableMap(resolvedHosts);
+        // results might be changed with new addresses or by reverse lookups
+        _memoized.clear();
+        return resolvedHosts;
+    }
+
+    private static boolean bitAt(byte[] address, int i) {
+        return (address[i >> 3] & (0x80 >>> (i & 7))) != 0;
+    }
+
+    private static void insert(TrieNode root, byte[] net, int mask, int entry) {
+        TrieNode node = root;
+        for (int i = 0; i < mask; i++) {
+            int bit = bitAt(net, i) ? 1 : 0;
+            TrieNode child = node._children[bit];
+            if (child == null) {
+                child = new TrieNode();
+                node._children[bit] = child;
+            }
+            node = child;
+        }
+        node.add(entry);
+    }
+
+    private static void collect(TrieNode root, byte[] address, BitSet matched) {
+        TrieNode node = root;
+        int bits = address.length * 8;
+        for (int i = 0; node != null; i++) {
+            for (int entry : node._entries) {
+                matched.set(entry);
+            }
+            if (i == bits) {
+                break;
+            }
+            node = node._children[bitAt(address, i) ? 1 : 0];
+        }
+    }
+}
@@ -29,6 +29,11 @@ import java.util.stream.Stream;
  */
 public interface ExportTable {
 
+    /**
+     * Generation of export tables which don't track their modifications.
+     */
+    long NO_GENERATION = -1L;
+
     /**
      * Get a {@link Stream} of all exports registered within this db.
      *
@@ -64,4 +69,17 @@ public interface ExportTable {
      * entries found.
      */
     FsExport getExport(int index, InetAddress client);
+
+    /**
+     * Get the generation of this export table. The generation is increased every time
+     * the export entries are updated, thus the information derived from the export
+     * table can be cached as long as the generation stays the same. Tables which
+     * don't track their modifications return {@link #NO_GENERATION}.
+     *
+     * @return the generation of export table.
+     * @since 0.27
+     */
+    default long generation() {
+        return NO_GENERATION;
+    }
 }
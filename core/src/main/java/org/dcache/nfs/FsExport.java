@@ -77,6 +77,17 @@ public class FsExport {
     private final List<layouttype4> _layoutTypes;
     private final boolean _requirePrivilegedClientPort;
 
+    /**
+     * Maximal number of operations per second of a single client, zero if unlimited.
+     */
+    private final long _iops;
+
+    /**
+     * Maximal number of bytes per second read or written by a single client, zero
+     * if unlimited.
+     */
+    private final long _bandwidth;
+
     /**
      * NFS clients may be specified in a number of ways:<br>
      * <p>
@@ -129,6 +140,8 @@ public class FsExport {
         _index = getExportIndex(_path);
         _layoutTypes = List.copyOf(builder.getLayoutTypes());
         _requirePrivilegedClientPort = builder.isPrivilegedClientPortRequired();
+        _iops = builder.getIops();
+        _bandwidth = builder.getBandwidth();
     }
 
     public static int getExportIndex(String path) {
@@ -182,6 +195,12 @@ public class FsExport {
         sb.append(',')
             .append("anongid=")
             .append(_anonGid);
+        if (_iops > 0) {
+            sb.append(",iops=").append(_iops);
+        }
+        if (_bandwidth > 0) {
+            sb.append(",bw=").append(_bandwidth);
+        }
         sb.append(')')
                 .append(':')
                 .append("idx=")
@@ -203,6 +222,10 @@ public class FsExport {
         return _clientMatcher.getPattern();
     }
 
+    InetAddressMatcher getClientMatcher() {
+        return _clientMatcher;
+    }
+
     public IO ioMode() {
         return _rw;
     }
@@ -247,6 +270,26 @@ public class FsExport {
         return _requirePrivilegedClientPort;
     }
 
+    /**
+     * Get maximal number of operations per second, which a single client may issue
+     * on this export.
+     *
+     * @return operations per second or zero, if unlimited.
+     */
+    public long getIops() {
+        return _iops;
+    }
+
+    /**
+     * Get maximal number of bytes per second, which a single client may read or write
+     * on this export.
+     *
+     * @return bytes per second or zero, if unlimited.
+     */
+    public long getBandwidth() {
+        return _bandwidth;
+    }
+
     /**
      * Get an ordered list of layout types to be used by this export entry.
      *
@@ -283,6 +326,8 @@ public class FsExport {
         hash = 83 * hash + this._index;
         hash = 83 * hash + (this._withPnfs ? 1 : 0);
         hash = 83 * hash + Objects.hashCode(this._layoutTypes);
+        hash = 83 * hash + Long.hashCode(this._iops);
+        hash = 83 * hash + Long.hashCode(this._bandwidth);
         return hash;
     }
 
@@ -340,6 +385,12 @@ public class FsExport {
         if (!Objects.equals(this._layoutTypes, other._layoutTypes)) {
             return false;
         }
+        if (this._iops != other._iops) {
+            return false;
+        }
+        if (this._bandwidth != other._bandwidth) {
+            return false;
+        }
         return true;
     }
 
@@ -359,6 +410,8 @@ public class FsExport {
         private boolean _withPnfs = true;
 	private final List<layouttype4> _layoutTypes = new ArrayList<>();
         private boolean _requirePrivilegedClientPort;
+        private long _iops;
+        private long _bandwidth;
 
         public FsExportBuilder forClient(String client) {
             checkArgument(isValidHostSpecifier(client), "bad host specifier: " + client);
@@ -461,6 +514,18 @@ public class FsExport {
 	    return this;
 	}
 
+        public FsExportBuilder withIops(long iops) {
+            checkArgument(iops >= 0, "negative iops: " + iops);
+            _iops = iops;
+            return this;
+        }
+
+        public FsExportBuilder withBandwidth(long bandwidth) {
+            checkArgument(bandwidth >= 0, "negative bandwidth: " + bandwidth);
+            _bandwidth = bandwidth;
+            return this;
+        }
+
         public String getClient() {
             return _client;
         }
@@ -509,6 +574,14 @@ public class FsExport {
 	    return _layoutTypes;
 	}
 
+        public long getIops() {
+            return _iops;
+        }
+
+        public long getBandwidth() {
+            return _bandwidth;
+        }
+
         public FsExport build(String path) throws UnknownHostException {
             return new FsExport(path, this);
         }
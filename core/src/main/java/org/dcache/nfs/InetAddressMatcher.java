@@ -138,6 +138,14 @@ public abstract class InetAddressMatcher implements Predicate<InetAddress> {
             }
         }
 
+        byte[] getSubnetBytes() {
+            return netBytes;
+        }
+
+        int getMask() {
+            return mask;
+        }
+
         @Override
         public boolean test(InetAddress ip) {
 
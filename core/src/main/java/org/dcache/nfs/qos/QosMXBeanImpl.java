@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.qos;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class QosMXBeanImpl
+ *
+ */
+public class QosMXBeanImpl implements QosMXBean {
+
+    private static final Logger _log = LoggerFactory.getLogger(QosMXBeanImpl.class);
+
+    private final QosManager _qos;
+
+    public QosMXBeanImpl(QosManager qos) {
+        _qos = qos;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            String name = String.format("%s:type=Qos,name=%s",
+                    _qos.getClass().getPackage().getName(), ObjectName.quote(_qos.getName()));
+            ObjectName mxBeanName = new ObjectName(name);
+            if (!server.isRegistered(mxBeanName)) {
+                server.registerMBean(this, mxBeanName);
+            }
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException
+                | MBeanRegistrationException | NotCompliantMBeanException ex) {
+            _log.warn("Failed to register JMX bean: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public long getAdmitted() {
+        return _qos.getAdmitted();
+    }
+
+    @Override
+    public long getThrottledByIops() {
+        return _qos.getThrottledByIops();
+    }
+
+    @Override
+    public long getThrottledByBandwidth() {
+        return _qos.getThrottledByBandwidth();
+    }
+
+    @Override
+    public long getClients() {
+        return _qos.getClients();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.qos;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import org.dcache.nfs.FsExport;
+
+/**
+ * Enforces per-client operation rate and bandwidth limits of export entries, see
+ * {@link FsExport#getIops()} and {@link FsExport#getBandwidth()}. Each client
+ * address gets its own set of {@link TokenBucket}s for every export entry it uses.
+ * As export entries match client addresses, hosts or networks, the export table
+ * defines the QoS class of each client.
+ * <p>
+ * Requests over the limit are not queued. The protocol layer rejects them with
+ * {@code NFS4ERR_DELAY} (or {@code NFS3ERR_JUKEBOX}), which makes the client to
+ * retry the request later. With NFSv3, only READ and WRITE requests are limited.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   QosManager qos = new QosManager("nfs@2049");
+ *   NFSServerV41 nfs4 = new NFSServerV41.Builder()
+ *           .withQos(qos)
+ *           ...
+ *           .build();
+ * </pre>
+ *
+ * @since 0.27
+ */
+public class QosManager {
+
+    /**
+     * Default period of time, for which a client may exceed the rate.
+     */
+    public static final Duration DEFAULT_BURST = Duration.ofSeconds(1);
+
+    /**
+     * Token buckets of idle clients are discarded after this time. As the bucket
+     * of an idle client refills, the discarded state is equal to a new one.
+     */
+    private static final Duration MIN_IDLE_TIME = Duration.ofMinutes(1);
+
+    private final String _name;
+    private final Duration _burst;
+    private final Ticker _ticker;
+    private final Cache<ClientKey, ClientBuckets> _buckets;
+
+    private final LongAdder _admitted = new LongAdder();
+    private final LongAdder _throttledByIops = new LongAdder();
+    private final LongAdder _throttledByBandwidth = new LongAdder();
+
+    private final QosMXBean _mxBean;
+
+    public QosManager(String name) {
+        this(name, DEFAULT_BURST, Ticker.systemTicker());
+    }
+
+    /**
+     * @param name the name used to publish statistics over JMX.
+     * @param burst the period of time, for which a client may exceed the rate.
+     * @param ticker the time source.
+     */
+    public QosManager(String name, Duration burst, Ticker ticker) {
+        _name = name;
+        _burst = burst;
+        _ticker = ticker;
+        Duration idleTime = burst.compareTo(MIN_IDLE_TIME) > 0 ? burst : MIN_IDLE_TIME;
+        _buckets = CacheBuilder.newBuilder()
+                .expireAfterAccess(idleTime)
+                .ticker(ticker)
+                .build();
+        _mxBean = new QosMXBeanImpl(this);
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Check whether a request of the given client to the given export entry is within
+     * the export's limits. The request is accounted if admitted.
+     *
+     * @param export the export entry used by the request.
+     * @param client the address of the client.
+     * @param bytes number of bytes read or written by the request.
+     * @return true, if request is admitted.
+     */
+    public boolean tryAcquire(FsExport export, InetAddress client, long bytes) {
+        if (export.getIops() == 0 && export.getBandwidth() == 0) {
+            return true;
+        }
+
+        ClientBuckets buckets = bucketsOf(export, client);
+        if (buckets.iops != null && !buckets.iops.tryAcquire(1)) {
+            _throttledByIops.increment();
+            return false;
+        }
+        if (buckets.bandwidth != null && bytes > 0 && !buckets.bandwidth.tryAcquire(bytes)) {
+            // the request is not executed, thus does not count against the rate
+            if (buckets.iops != null) {
+                buckets.iops.refund(1);
+            }
+            _throttledByBandwidth.increment();
+            return false;
+        }
+        _admitted.increment();
+        return true;
+    }
+
+    /**
+     * Account data transferred by an already admitted request. The data is accounted
+     * even if the client exceeds the bandwidth limit, which delays its following
+     * requests accordingly.
+     *
+     * @param export the export entry used by the request.
+     * @param client the address of the client.
+     * @param bytes number of bytes read or written.
+     */
+    public void charge(FsExport export, InetAddress client, long bytes) {
+        if (export.getBandwidth() == 0 || bytes == 0) {
+            return;
+        }
+        bucketsOf(export, client).bandwidth.acquire(bytes);
+    }
+
+    private ClientBuckets bucketsOf(FsExport export, InetAddress client) {
+        try {
+            return _buckets.get(new ClientKey(export, client), () -> new ClientBuckets(export));
+        } catch (ExecutionException e) {
+            // ClientBuckets constructor throws no checked exceptions
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    long getAdmitted() {
+        return _admitted.sum();
+    }
+
+    long getThrottledByIops() {
+        return _throttledByIops.sum();
+    }
+
+    long getThrottledByBandwidth() {
+        return _throttledByBandwidth.sum();
+    }
+
+    long getClients() {
+        return _buckets.size();
+    }
+
+    private final class ClientBuckets {
+
+        private final TokenBucket iops;
+        private final TokenBucket bandwidth;
+
+        ClientBuckets(FsExport export) {
+            iops = export.getIops() > 0 ? new TokenBucket(export.getIops(), _burst, _ticker) : null;
+            bandwidth = export.getBandwidth() > 0 ? new TokenBucket(export.getBandwidth(), _burst, _ticker) : null;
+        }
+    }
+
+    /**
+     * Export entries are part of the key, thus changed limits take effect as soon
+     * as export table is reloaded.
+     */
+    private static final class ClientKey {
+
+        private final FsExport export;
+        private final InetAddress client;
+
+        ClientKey(FsExport export, InetAddress client) {
+            this.export = export;
+            this.client = client;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) obj;
+            return export.equals(other.export) && client.equals(other.client);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(export, client);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.qos;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A lock-free token bucket, implemented as generic cell rate algorithm (GCRA).
+ * Instead of a token counter, the bucket keeps the theoretical arrival time of the
+ * next request, which is advanced by the cost of every admitted request. A request is
+ * admitted, if the theoretical arrival time is at most the burst tolerance ahead of
+ * the current time. As a result, a single request bigger than the burst is admitted
+ * as well, but delays the following ones accordingly.
+ * <p>
+ * This class is thread safe.
+ */
+public class TokenBucket {
+
+    /**
+     * The cost of a single unit in nanoseconds.
+     */
+    private final double _nanosPerUnit;
+
+    /**
+     * How much the theoretical arrival time may be ahead of the current time.
+     */
+    private final long _burstNanos;
+
+    private final Ticker _ticker;
+
+    /**
+     * Theoretical arrival time of the next request.
+     */
+    private final AtomicLong _tat;
+
+    /**
+     * Create a new token bucket.
+     *
+     * @param rate number of units per second.
+     * @param burst the period of time, for which requests are admitted above the rate.
+     * @param ticker the time source.
+     */
+    public TokenBucket(long rate, Duration burst, Ticker ticker) {
+        checkArgument(rate > 0, "rate must be positive: " + rate);
+        checkArgument(!burst.isNegative(), "negative burst: " + burst);
+        _nanosPerUnit = 1_000_000_000d / rate;
+        _burstNanos = burst.toNanos();
+        _ticker = ticker;
+        _tat = new AtomicLong(ticker.read());
+    }
+
+    /**
+     * Consume the given number of units, if the bucket is not exhausted.
+     *
+     * @param units number of units to consume.
+     * @return true, if request is admitted.
+     */
+    public boolean tryAcquire(long units) {
+        long cost = cost(units);
+        while (true) {
+            long now = _ticker.read();
+            long tat = _tat.get();
+            long base = tat - now > 0 ? tat : now;
+            if (base - now > _burstNanos) {
+                return false;
+            }
+            if (_tat.compareAndSet(tat, base + cost)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Consume the given number of units, even if the bucket is exhausted. The
+     * following requests are delayed accordingly.
+     *
+     * @param units number of units to consume.
+     */
+    public void acquire(long units) {
+        long cost = cost(units);
+        _tat.accumulateAndGet(_ticker.read(), (tat, now) -> Math.max(tat, now) + cost);
+    }
+
+    /**
+     * Return units, which were consumed by a request, which was not executed.
+     *
+     * @param units number of units to return.
+     */
+    public void refund(long units) {
+        _tat.addAndGet(-cost(units));
+    }
+
+    private long cost(long units) {
+        return (long) Math.ceil(units * _nanosPerUnit);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A pool of direct {@link ByteBuffer}s grouped into power-of-two size classes.
+ *
+ * Requests are served from the smallest size class which fits the requested size.
+ * The returned buffer has its limit set to the requested size. Requests larger than
+ * the biggest size class are served by a heap buffer, which is not pooled.
+ *
+ * Typical usage is:
+ * <pre>
+ *     try (BufferPool.Lease lease = pool.lease()) {
+ *         ByteBuffer data = lease.allocate(count);
+ *         ....
+ *         call.reply(result);
+ *     }
+ * </pre>
+ */
+public class BufferPool {
+
+    /**
+     * The smallest size class.
+     */
+    private static final int MIN_BUFFER_SIZE = 4096;
+
+    /**
+     * The name of this pool.
+     */
+    private final String _name;
+
+    /**
+     * The biggest size class.
+     */
+    private final int _maxBufferSize;
+
+    /**
+     * log2 of the smallest size class.
+     */
+    private final int _minShift;
+
+    /**
+     * Idle buffers per size class.
+     */
+    private final Queue<ByteBuffer>[] _classes;
+
+    /**
+     * Number of idle buffers per size class.
+     */
+    private final AtomicInteger[] _idle;
+
+    /**
+     * Memory kept by idle buffers of all size classes.
+     */
+    private final AtomicLong _idleBytes = new AtomicLong();
+
+    /**
+     * Maximal amount of memory kept by idle buffers of all size classes.
+     */
+    private final long _maxRetainedBytes;
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _returns = new LongAdder();
+    private final LongAdder _drops = new LongAdder();
+
+    /**
+     * The JMX interface to this pool.
+     */
+    private final BufferPoolMXBean _mxBean;
+
+    /**
+     * Create new buffer pool.
+     *
+     * @param name Unique id for this pool.
+     * @param maxBufferSize the biggest pooled buffer size, rounded up to a power of two.
+     * @param maxRetainedBytes maximal amount of memory kept by idle buffers of all size classes.
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(String name, int maxBufferSize, long maxRetainedBytes) {
+        checkArgument(maxBufferSize >= MIN_BUFFER_SIZE, "Max buffer size must be at least " + MIN_BUFFER_SIZE);
+        checkArgument(maxBufferSize <= 1 << 30, "Max buffer size too big");
+        checkArgument(maxRetainedBytes >= 0, "Negative retained bytes");
+
+        _name = name;
+        _minShift = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+        _maxBufferSize = roundUp(maxBufferSize);
+
+        int nClasses = Integer.numberOfTrailingZeros(_maxBufferSize) - _minShift + 1;
+        _classes = new Queue[nClasses];
+        _idle = new AtomicInteger[nClasses];
+        for (int i = 0; i < nClasses; i++) {
+            _classes[i] = new ConcurrentLinkedQueue<>();
+            _idle[i] = new AtomicInteger();
+        }
+        _maxRetainedBytes = maxRetainedBytes;
+        _mxBean = new BufferPoolMXBeanImpl(this);
+    }
+
+    /**
+     * Get pool's name.
+     * @return name of the pool.
+     */
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Get a buffer with at least {@code size} bytes of capacity. The buffer's position is
+     * zero and the limit is set to {@code size}.
+     *
+     * @param size the required buffer size.
+     * @return a buffer.
+     */
+    public ByteBuffer acquire(int size) {
+        checkArgument(size >= 0, "Negative buffer size");
+
+        if (size > _maxBufferSize) {
+            _misses.increment();
+            return ByteBuffer.allocate(size);
+        }
+
+        int sizeClass = sizeClassOf(size);
+        ByteBuffer buffer = _classes[sizeClass].poll();
+        if (buffer == null) {
+            _misses.increment();
+            buffer = ByteBuffer.allocateDirect(MIN_BUFFER_SIZE << sizeClass);
+        } else {
+            _idle[sizeClass].decrementAndGet();
+            _idleBytes.addAndGet(-buffer.capacity());
+            _hits.increment();
+        }
+
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Return the buffer to the pool. Buffers which have not been provided by
+     * {@link #acquire(int)} are ignored. The buffer must not be used after this
+     * method is called.
+     *
+     * @param buffer the buffer to return.
+     */
+    public void release(ByteBuffer buffer) {
+
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || Integer.bitCount(capacity) != 1
+                || capacity < MIN_BUFFER_SIZE || capacity > _maxBufferSize) {
+            return;
+        }
+
+        if (_idleBytes.addAndGet(capacity) > _maxRetainedBytes) {
+            _idleBytes.addAndGet(-capacity);
+            _drops.increment();
+            return;
+        }
+        int sizeClass = sizeClassOf(capacity);
+        _idle[sizeClass].incrementAndGet();
+        _classes[sizeClass].offer(buffer);
+        _returns.increment();
+    }
+
+    /**
+     * Create new {@link Lease} to track buffers used by a single request.
+     * @return new lease.
+     */
+    public Lease lease() {
+        return new Lease(this);
+    }
+
+    private int sizeClassOf(int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - _minShift;
+    }
+
+    private static int roundUp(int size) {
+        return Integer.bitCount(size) == 1 ? size : Integer.highestOneBit(size) << 1;
+    }
+
+    long getHits() {
+        return _hits.sum();
+    }
+
+    long getMisses() {
+        return _misses.sum();
+    }
+
+    long getReturns() {
+        return _returns.sum();
+    }
+
+    long getDrops() {
+        return _drops.sum();
+    }
+
+    long getIdleBytes() {
+        return _idleBytes.get();
+    }
+
+    int getIdleBuffers() {
+        int n = 0;
+        for (AtomicInteger idle : _idle) {
+            n += idle.get();
+        }
+        return n;
+    }
+
+    int getMaxBufferSize() {
+        return _maxBufferSize;
+    }
+
+    /**
+     * Set of buffers borrowed from a {@link BufferPool} for a single request. All
+     * buffers are returned to the pool when the lease is closed. The lease is not
+     * thread safe.
+     */
+    public static class Lease implements AutoCloseable {
+
+        private final BufferPool _pool;
+        private final List<ByteBuffer> _buffers = new ArrayList<>(1);
+
+        private Lease(BufferPool pool) {
+            _pool = pool;
+        }
+
+        /**
+         * Borrow a buffer from the pool.
+         *
+         * @param size the required buffer size.
+         * @return a buffer.
+         * @see BufferPool#acquire(int)
+         */
+        public ByteBuffer allocate(int size) {
+            ByteBuffer buffer = _pool.acquire(size);
+            _buffers.add(buffer);
+            return buffer;
+        }
+
+        /**
+         * Hand over ownership of all borrowed buffers to the caller. The buffers
+         * will not be returned to the pool.
+         */
+        public void detach() {
+            _buffers.clear();
+        }
+
+        /**
+         * Return all borrowed buffers to the pool.
+         */
+        @Override
+        public void close() {
+            _buffers.forEach(_pool::release);
+            _buffers.clear();
+        }
+    }
+}
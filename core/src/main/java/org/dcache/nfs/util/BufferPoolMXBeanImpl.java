@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.util;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class BufferPoolMXBeanImpl
+ *
+ */
+public class BufferPoolMXBeanImpl implements BufferPoolMXBean {
+
+    private static final Logger _log = LoggerFactory.getLogger(BufferPoolMXBeanImpl.class);
+
+    private final BufferPool _pool;
+
+    public BufferPoolMXBeanImpl(BufferPool pool) {
+        _pool = pool;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            String name = String.format("%s:type=BufferPool,name=%s",
+                    _pool.getClass().getPackage().getName(), _pool.getName());
+            ObjectName mxBeanName = new ObjectName(name);
+            if (!server.isRegistered(mxBeanName)) {
+                server.registerMBean(this, mxBeanName);
+            }
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException
+                | MBeanRegistrationException | NotCompliantMBeanException ex) {
+            _log.warn("Failed to register JMX bean: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return _pool.getHits();
+    }
+
+    @Override
+    public long getMisses() {
+        return _pool.getMisses();
+    }
+
+    @Override
+    public long getReturns() {
+        return _pool.getReturns();
+    }
+
+    @Override
+    public long getDrops() {
+        return _pool.getDrops();
+    }
+
+    @Override
+    public int getIdleBuffers() {
+        return _pool.getIdleBuffers();
+    }
+
+    @Override
+    public long getIdleBytes() {
+        return _pool.getIdleBytes();
+    }
+
+    @Override
+    public int getMaxBufferSize() {
+        return _pool.getMaxBufferSize();
+    }
+}
@@ -23,13 +23,12 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.MissingResourceException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.StampedLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +39,11 @@ import static com.google.common.base.Preconditions.checkArgument;
  * A Dictionary where value associated with the key may become unavailable due
  * to validity timeout.
  *
+ * The entries are kept in a {@link ConcurrentHashMap}, thus lookups do not block
+ * and updates of different keys do not contend with each other. Entries are tracked
+ * by a {@link TimerWheel} ordered by expiration time, so that {@link #cleanUp()} only
+ * visits entries which might have expired since the previous run.
+ *
  * Typical usage is:
  * <pre>
  *     Cache&lt;String, String&gt; cache  = new Cache&lt;&gt;("test cache", 10, Duration.ofHours(1),
@@ -59,6 +63,17 @@ import static com.google.common.base.Preconditions.checkArgument;
 public class Cache<K, V> {
 
     private static final Logger _log = LoggerFactory.getLogger(Cache.class);
+
+    /**
+     * Number of slots in expiry wheel.
+     */
+    private static final int WHEEL_SLOTS = 512;
+
+    /**
+     * The longest time slot of expiry wheel.
+     */
+    private static final Duration MAX_WHEEL_TICK = Duration.ofSeconds(1);
+
     private final Clock _timeSource;
 
     /**
@@ -87,12 +102,18 @@ public class Cache<K, V> {
     /**
      * The storage.
      */
-    private final Map<K, CacheElement<V>> _storage;
+    private final ConcurrentMap<K, Entry<K, V>> _storage;
 
     /**
-     * Internal storage access lock.
+     * Number of entries in the storage. Used to enforce the cache size limit.
      */
-    private final StampedLock _accessLock = new StampedLock();
+    private final AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * Entries ordered by expiration time.
+     */
+    private final TimerWheel<Entry<K, V>> _expiryWheel;
+
     /**
      * Cache event listener.
      */
@@ -108,6 +129,25 @@ public class Cache<K, V> {
      */
     private final AtomicReference<Instant> _lastClean;
 
+    /**
+     * Storage entry, which binds cached element with its key and position in the expiry wheel.
+     */
+    private static class Entry<K, V> extends TimerWheel.Node {
+
+        private final K key;
+        private final CacheElement<V> element;
+
+        Entry(K key, CacheElement<V> element) {
+            this.key = key;
+            this.element = element;
+        }
+
+        @Override
+        protected long deadline() {
+            return element.expiresAt();
+        }
+    }
+
     /**
      * Create new cache instance with default {@link CacheEventListener} and
      * default cleanup period.
@@ -156,13 +196,23 @@ public class Cache<K, V> {
         _size = size;
         _defaultEntryMaxLifeTime = entryLifeTime;
         _defaultEntryIdleTime = entryIdleTime;
-        _storage = new HashMap<>(_size);
+        _storage = new ConcurrentHashMap<>(_size);
         _eventListener = eventListener;
-        _mxBean = new CacheMXBeanImpl<>(this);
         _timeSource = clock;
+        _expiryWheel = new TimerWheel<>(wheelTick(entryIdleTime), WHEEL_SLOTS, _timeSource.millis());
+        _mxBean = new CacheMXBeanImpl<>(this);
         _lastClean = new AtomicReference<>(_timeSource.instant());
     }
 
+    /**
+     * Choose expiry wheel time slot such that a full turn of the wheel covers the
+     * default idle time.
+     */
+    private static Duration wheelTick(Duration idleTime) {
+        long tick = CacheElement.toMillis(idleTime) / WHEEL_SLOTS;
+        return Duration.ofMillis(Math.max(1, Math.min(tick, MAX_WHEEL_TICK.toMillis())));
+    }
+
     /**
      * Get cache's name.
      * @return name of the cache.
@@ -196,17 +246,19 @@ public class Cache<K, V> {
     public void put(K k, V v, Duration entryMaxLifeTime, Duration entryIdleTime) {
         _log.debug("Adding new cache entry: key = [{}], value = [{}]", k, v);
 
-        long stamp = _accessLock.writeLock();
-        try {
-            if( _storage.size() >= _size && !_storage.containsKey(k)) {
+        Entry<K, V> entry = new Entry<>(k, new CacheElement<>(v, _timeSource, entryMaxLifeTime, entryIdleTime));
+        _storage.compute(k, (key, current) -> {
+            if (current != null) {
+                _expiryWheel.cancel(current);
+            } else if (_count.incrementAndGet() > _size) {
+                _count.decrementAndGet();
                 _log.warn("Cache limit reached: {}", _size);
                 throw new MissingResourceException("Cache limit reached", Cache.class.getName(), "");
             }
-            _storage.put(k, new CacheElement<>(v, _timeSource, entryMaxLifeTime, entryIdleTime));
-        } finally {
-            _accessLock.unlock(stamp);
-        }
+            return entry;
+        });
 
+        _expiryWheel.schedule(entry);
         _eventListener.notifyPut(this, v);
     }
 
@@ -218,48 +270,28 @@ public class Cache<K, V> {
      */
     public V get(K k) {
 
-        V v;
-        boolean valid;
-        boolean removed = false;
-
-        long stamp = _accessLock.readLock();
-        try {
-            CacheElement<V> element = _storage.get(k);
-
-            if (element == null) {
-                _log.debug("No cache hits for key = [{}]", k);
-                return null;
-            }
-
-            valid = element.validAt(_timeSource.instant());
-            v = element.getObject();
-
-            if ( !valid ) {
-                _log.debug("Cache hits but entry expired for key = [{}], value = [{}]", k, v);
-                long ws = _accessLock.tryConvertToWriteLock(stamp);
-                if (ws != 0L) {
-                    stamp = ws;
-                } else {
-                    _accessLock.unlock(stamp);
-                    stamp = _accessLock.writeLock();
-                }
-                removed = _storage.remove(k) != null;
-            } else {
-                _log.debug("Cache hits for key = [{}], value = [{}]", k, v);
-            }
-        } finally {
-            _accessLock.unlock(stamp);
+        Entry<K, V> entry = _storage.get(k);
+        if (entry == null) {
+            _log.debug("No cache hits for key = [{}]", k);
+            return null;
         }
 
-        if(!valid) {
+        long now = _timeSource.millis();
+        CacheElement<V> element = entry.element;
+        V v = element.peekObject();
+
+        if (!element.validAt(now)) {
+            _log.debug("Cache hits but entry expired for key = [{}], value = [{}]", k, v);
             // notify only if this thread have removed the expired entry
-            if (removed) {
+            if (removeEntry(entry)) {
                 _eventListener.notifyExpired(this, v);
             }
-            v = null;
-        }else{
-            _eventListener.notifyGet(this, v);
+            return null;
         }
+
+        _log.debug("Cache hits for key = [{}], value = [{}]", k, v);
+        element.getObjectAt(now);
+        _eventListener.notifyGet(this, v);
         return v;
     }
 
@@ -272,19 +304,15 @@ public class Cache<K, V> {
      */
     public V remove(K k) {
 
-        V v;
-        boolean valid;
-
-        long stamp = _accessLock.writeLock();
-        try {
-            CacheElement<V> element = _storage.remove(k);
-            if( element == null ) return null;
-            valid = element.validAt(_timeSource.instant());
-            v = element.getObject();
-        } finally {
-            _accessLock.unlock(stamp);
+        Entry<K, V> entry = _storage.get(k);
+        if (entry == null || !removeEntry(entry)) {
+            return null;
         }
 
+        CacheElement<V> element = entry.element;
+        boolean valid = element.validAt(_timeSource.millis());
+        V v = element.peekObject();
+
         _log.debug("Removing entry: active = [{}] key = [{}], value = [{}]",
                 valid, k, v);
 
@@ -293,19 +321,28 @@ public class Cache<K, V> {
         return valid ? v : null;
     }
 
+    /**
+     * Remove given entry from the storage, if it still associated with its key.
+     *
+     * @param entry the entry to remove.
+     * @return true if this call has removed the entry.
+     */
+    private boolean removeEntry(Entry<K, V> entry) {
+        if (!_storage.remove(entry.key, entry)) {
+            return false;
+        }
+        _count.decrementAndGet();
+        _expiryWheel.cancel(entry);
+        return true;
+    }
+
     /**
      * Get number of elements inside the cache.
      *
      * @return number of elements.
      */
     int size() {
-
-        long stamp = _accessLock.readLock();
-        try {
-          return _storage.size();
-        } finally {
-            _accessLock.unlock(stamp);
-        }
+        return _storage.size();
     }
 
     /**
@@ -332,40 +369,38 @@ public class Cache<K, V> {
     public void clear() {
 
         _log.debug("Cleaning the cache");
-
-        long stamp = _accessLock.writeLock();
-        try {
-            _storage.clear();
-        } finally {
-            _accessLock.unlock(stamp);
-        }
+        _storage.values().forEach(this::removeEntry);
     }
 
     /**
-     * Check and remove expired entries.
+     * Check and remove expired entries. Only entries, which expiration time has passed
+     * since the previous invocation are checked.
      */
     public void cleanUp() {
         List<V> expiredEntries = new ArrayList<>();
 
-        long stamp = _accessLock.writeLock();
-        try {
-            Instant now = _timeSource.instant();
-            Iterator<Map.Entry<K, CacheElement<V>>> entries = _storage.entrySet().iterator();
-            while (entries.hasNext()) {
-                Map.Entry<K, CacheElement<V>> entry = entries.next();
-                CacheElement<V> cacheElement = entry.getValue();
-
-                if (!cacheElement.validAt(now)) {
-                    _log.debug("Cleaning expired entry key = [{}], value = [{}]",
-                            entry.getKey(), cacheElement.getObject());
-                    entries.remove();
-                    expiredEntries.add(cacheElement.getObject());
-                }
+        long now = _timeSource.millis();
+        _expiryWheel.advance(now, entry -> {
+
+            CacheElement<V> cacheElement = entry.element;
+            if (_storage.get(entry.key) != entry) {
+                // removed or replaced in the meantime
+                return;
+            }
+
+            if (cacheElement.validAt(now)) {
+                // accessed since scheduled
+                _expiryWheel.schedule(entry);
+                return;
             }
-            _lastClean.set(now);
-        } finally {
-            _accessLock.unlock(stamp);
-        }
+
+            if (removeEntry(entry)) {
+                _log.debug("Cleaning expired entry key = [{}], value = [{}]",
+                        entry.key, cacheElement.peekObject());
+                expiredEntries.add(cacheElement.peekObject());
+            }
+        });
+        _lastClean.set(Instant.ofEpochMilli(now));
 
         expiredEntries.forEach( v -> _eventListener.notifyExpired(this, v));
     }
@@ -375,15 +410,8 @@ public class Cache<K, V> {
      * @return list of entries.
      */
     public List<CacheElement<V>> entries() {
-        List<CacheElement<V>> entries;
-
-        long stamp = _accessLock.readLock();
-        try {
-            entries = new ArrayList<>(_storage.size());
-            entries.addAll(_storage.values());
-        } finally {
-            _accessLock.unlock(stamp);
-        }
+        List<CacheElement<V>> entries = new ArrayList<>(_storage.size());
+        _storage.values().forEach(e -> entries.add(e.element));
         return entries;
     }
 
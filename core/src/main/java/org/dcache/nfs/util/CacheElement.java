@@ -23,32 +23,35 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 
+import static com.google.common.math.LongMath.saturatedAdd;
+
 /**
  * CacheElement wrapper.
  *
- * Keeps track elements creation and last access time.
+ * Keeps track elements creation and last access time. All time stamps are kept as
+ * milliseconds since epoch to avoid allocations on the access path.
  * @param <V>
  */
 public class CacheElement<V> {
 
     /**
-     * Maximum amount of time that the cache entry is allowed to be cached.
+     * Maximum amount of time in milliseconds that the cache entry is allowed to be cached.
      * After expiration of this time cache entry invalidated.
      */
-    private final Duration _maxLifeTime;
+    private final long _maxLifeTime;
     /**
-     * Maximum amount of time that the cache entry is allowed to be cached since last use. After expiration of this
-     * time cache entry is invalidated.
+     * Maximum amount of time in milliseconds that the cache entry is allowed to be cached
+     * since last use. After expiration of this time cache entry is invalidated.
      */
-    private final Duration _idleTime;
+    private final long _idleTime;
     /**
      * Element creation time.
      */
-    private final Instant _creationTime;
+    private final long _creationTime;
     /**
      * Elements last access time.
      */
-    private Instant _lastAccessTime;
+    private volatile long _lastAccessTime;
     /**
      * internal object.
      */
@@ -58,11 +61,11 @@ public class CacheElement<V> {
 
     CacheElement(V inner, Clock clock, Duration maxLifeTime, Duration idleTime) {
         _clock = clock;
-        _creationTime = _clock.instant();
+        _creationTime = _clock.millis();
         _lastAccessTime = _creationTime;
         _inner = inner;
-        _maxLifeTime = maxLifeTime;
-        _idleTime = idleTime;
+        _maxLifeTime = toMillis(maxLifeTime);
+        _idleTime = toMillis(idleTime);
     }
 
     /**
@@ -72,7 +75,18 @@ public class CacheElement<V> {
      * @return internal object.
      */
     public V getObject() {
-        _lastAccessTime = _clock.instant();
+        return getObjectAt(_clock.millis());
+    }
+
+    /**
+     * Get internal object stored in this element and set element's last access time to
+     * the given point in time.
+     *
+     * @param now access time in milliseconds.
+     * @return internal object.
+     */
+    V getObjectAt(long now) {
+        _lastAccessTime = now;
         return _inner;
     }
 
@@ -93,15 +107,48 @@ public class CacheElement<V> {
      * @return true if entry still valid and false otherwise.
      */
     public boolean validAt(Instant instant) {
-        return Duration.between(_lastAccessTime, instant).compareTo(_idleTime) <= 0 &&
-              Duration.between(_creationTime, instant).compareTo(_maxLifeTime) <= 0;
+        return validAt(instant.toEpochMilli());
+    }
+
+    /**
+     * Check the entry's validity at the specified point in time.
+     *
+     * @param now point in time, in milliseconds, at which entry validity is checked.
+     * @return true if entry still valid and false otherwise.
+     */
+    boolean validAt(long now) {
+        return now - _lastAccessTime <= _idleTime &&
+              now - _creationTime <= _maxLifeTime;
+    }
+
+    /**
+     * Get the point in time, in milliseconds, after which this element becomes invalid,
+     * unless accessed before. Returns {@link Long#MAX_VALUE} if element never expires.
+     *
+     * @return expiration time in milliseconds.
+     */
+    long expiresAt() {
+        return Math.min(saturatedAdd(_lastAccessTime, _idleTime),
+              saturatedAdd(_creationTime, _maxLifeTime));
     }
 
     @Override
     public String toString() {
-        Instant now = _clock.instant();
+        long now = _clock.millis();
         return String.format("Element: [%s], created: %s, last access: %s, life time %s, idle: %s, max idle: %s",
-            _inner.toString(), _creationTime, _lastAccessTime,
-            _maxLifeTime, Duration.between(_lastAccessTime, now), _idleTime);
+            _inner.toString(), Instant.ofEpochMilli(_creationTime), Instant.ofEpochMilli(_lastAccessTime),
+            Duration.ofMillis(_maxLifeTime), Duration.ofMillis(now - _lastAccessTime), Duration.ofMillis(_idleTime));
+    }
+
+    /**
+     * Convert duration into milliseconds. Durations which are too large to be
+     * represented as milliseconds are truncated to {@link Long#MAX_VALUE}.
+     */
+    static long toMillis(Duration duration) {
+        try {
+            return duration.toMillis();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds. Like HdrHistogram, values are
+ * grouped into log-linear buckets: each power of two is split into eight sub-buckets,
+ * which keeps the relative error of reported values below 12.5%. Each bucket is a
+ * {@link LongAdder}, thus concurrent updates do not contend on a shared counter.
+ * <p>
+ * Values above {@link #MAX_TRACKABLE_VALUE} are recorded into the highest bucket.
+ * Reads are not atomic with respect to concurrent updates.
+ *
+ * @since 0.27
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits used to split a power of two into sub-buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values below this threshold have a dedicated bucket each.
+     */
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+    /**
+     * The highest value, which is recorded precisely (about 137 seconds).
+     */
+    public static final long MAX_TRACKABLE_VALUE = (1L << 37) - 1;
+
+    static final int BUCKETS = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+    private final LongAdder[] _buckets = new LongAdder[BUCKETS];
+    private final LongAdder _sum = new LongAdder();
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < _buckets.length; i++) {
+            _buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a single value.
+     *
+     * @param nanos the value to record. Negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        _buckets[bucketIndex(value)].increment();
+        _sum.add(value);
+        _max.accumulate(value);
+    }
+
+    /**
+     * Get number of recorded values.
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : _buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Get the highest recorded value.
+     */
+    public long getMax() {
+        return _max.get();
+    }
+
+    /**
+     * Get the arithmetic mean of recorded values or zero if no values are recorded.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) _sum.sum() / count;
+    }
+
+    /**
+     * Get the value at a given percentile. The returned value is the upper bound
+     * of the bucket containing the percentile, but never above the highest recorded
+     * value.
+     *
+     * @param percentile percentile in range [0, 100].
+     * @return the value at given percentile or zero if no values are recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+
+        long[] counts = new long[_buckets.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = _buckets[i].sum();
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset() {
+        for (LongAdder bucket : _buckets) {
+            bucket.reset();
+        }
+        _sum.reset();
+        _max.reset();
+    }
+
+    static int bucketIndex(long value) {
+        long v = Math.min(value, MAX_TRACKABLE_VALUE);
+        if (v < LINEAR_BUCKETS) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((v >>> shift) - SUB_BUCKETS);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.util;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A hashed timing wheel. Nodes are placed into a bucket selected by their deadline and
+ * only buckets whose time slot has passed are visited by {@link #advance(long, Consumer)}.
+ * Thus, the cost of finding expired nodes is proportional to the number of nodes in the
+ * passed slots and not to the total number of scheduled nodes.
+ * <p>
+ * The wheel does not track deadline changes. A node which deadline has been moved forward
+ * is handed to the consumer when its old slot is passed and the consumer is expected to
+ * re-{@link #schedule(Node) schedule} it.
+ * <p>
+ * Each bucket is protected by its own lock, thus concurrent schedule and cancel
+ * operations contend only if they hit the same slot.
+ *
+ * @param <T> the type of scheduled nodes.
+ */
+public class TimerWheel<T extends TimerWheel.Node> {
+
+    /**
+     * Number of slots in the wheel. Must be a power of two.
+     */
+    private static final int DEFAULT_SLOTS = 512;
+
+    /**
+     * Deadline of nodes that never expire.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * A node which can be scheduled on the {@link TimerWheel}.
+     */
+    public static abstract class Node {
+
+        /**
+         * Bucket in which this node is linked. Guarded by the bucket's lock.
+         */
+        private volatile Bucket bucket;
+        private Node prev;
+        private Node next;
+
+        /**
+         * Returns the point in time, in milliseconds, when this node expires or
+         * {@link TimerWheel#NEVER} if the node never expires.
+         * @return node's deadline in milliseconds.
+         */
+        protected abstract long deadline();
+    }
+
+    private static final class Bucket {
+
+        private final Lock lock = new ReentrantLock();
+        private Node head;
+
+        private void link(Node node) {
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+            node.bucket = this;
+        }
+
+        private void unlink(Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.bucket = null;
+        }
+
+        /**
+         * Detach all nodes from the bucket.
+         * @return the head of the detached list.
+         */
+        private Node drain() {
+            Node first = head;
+            for (Node n = first; n != null; n = n.next) {
+                n.bucket = null;
+            }
+            head = null;
+            return first;
+        }
+    }
+
+    /**
+     * Duration of a single slot in milliseconds.
+     */
+    private final long _tickMillis;
+
+    private final Bucket[] _buckets;
+    private final int _mask;
+
+    /**
+     * The next tick to process. All ticks before have been processed.
+     */
+    private volatile long _nextTick;
+
+    /**
+     * Lock to ensure that only one thread advances the wheel.
+     */
+    private final Lock _advanceLock = new ReentrantLock();
+
+    /**
+     * Create new timing wheel.
+     *
+     * @param tick duration of a single slot.
+     * @param now current time in milliseconds.
+     */
+    public TimerWheel(Duration tick, long now) {
+        this(tick, DEFAULT_SLOTS, now);
+    }
+
+    /**
+     * Create new timing wheel.
+     *
+     * @param tick duration of a single slot.
+     * @param slots number of slots in the wheel, must be a power of two.
+     * @param now current time in milliseconds.
+     */
+    public TimerWheel(Duration tick, int slots, long now) {
+        checkArgument(!tick.isNegative() && !tick.isZero(), "Tick must be positive");
+        checkArgument(Integer.bitCount(slots) == 1, "Number of slots must be a power of two");
+
+        _tickMillis = Math.max(1, tick.toMillis());
+        _buckets = new Bucket[slots];
+        for (int i = 0; i < slots; i++) {
+            _buckets[i] = new Bucket();
+        }
+        _mask = slots - 1;
+        _nextTick = now / _tickMillis;
+    }
+
+    /**
+     * Schedule node according to its current {@link Node#deadline()}. Nodes which never
+     * expire are not scheduled. The node must not be scheduled already.
+     *
+     * @param node the node to schedule.
+     */
+    public void schedule(T node) {
+        long deadline = node.deadline();
+        if (deadline == NEVER) {
+            return;
+        }
+
+        // never schedule into already processed slots
+        long tick = Math.max(deadline / _tickMillis, _nextTick);
+        Bucket bucket = _buckets[(int) (tick & _mask)];
+        bucket.lock.lock();
+        try {
+            bucket.link(node);
+        } finally {
+            bucket.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove node from the wheel. Does nothing if node is not scheduled.
+     *
+     * @param node the node to remove.
+     */
+    public void cancel(T node) {
+        Node n = node;
+        Bucket bucket = n.bucket;
+        if (bucket == null) {
+            return;
+        }
+
+        bucket.lock.lock();
+        try {
+            // the node might be drained or moved in the meantime.
+            if (n.bucket == bucket) {
+                bucket.unlink(n);
+            }
+        } finally {
+            bucket.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all nodes from the wheel.
+     */
+    public void clear() {
+        for (Bucket bucket : _buckets) {
+            bucket.lock.lock();
+            try {
+                bucket.drain();
+            } finally {
+                bucket.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Process all slots which ended before given point in time. Every node found in
+     * the processed slots is removed from the wheel and passed to the {@code consumer},
+     * which is responsible to re-schedule still valid nodes. If wheel is concurrently
+     * advanced by an other thread, then this method waits until it's done.
+     *
+     * @param now current time in milliseconds.
+     * @param consumer consumer of nodes of the passed slots.
+     */
+    @SuppressWarnings("unchecked")
+    public void advance(long now, Consumer<T> consumer) {
+
+        _advanceLock.lock();
+        try {
+            long nowTick = now / _tickMillis;
+            long tick = _nextTick;
+            if (nowTick <= tick) {
+                return;
+            }
+
+            // visit each bucket at most once
+            tick = Math.max(tick, nowTick - _buckets.length);
+            for (; tick < nowTick; tick++) {
+                Bucket bucket = _buckets[(int) (tick & _mask)];
+                Node node;
+                bucket.lock.lock();
+                try {
+                    node = bucket.drain();
+                    _nextTick = tick + 1;
+                } finally {
+                    bucket.lock.unlock();
+                }
+
+                while (node != null) {
+                    Node next = node.next;
+                    node.next = null;
+                    node.prev = null;
+                    consumer.accept((T) node);
+                    node = next;
+                }
+            }
+        } finally {
+            _advanceLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads, which are available with Java 21 or newer. As the
+ * library is built for an older release, virtual threads are created reflectively.
+ * <p>
+ * Code executed on virtual threads should not block while holding a monitor, as this
+ * pins the virtual thread to its carrier thread. Use {@link java.util.concurrent.locks.Lock}s
+ * instead of {@code synchronized} on hot paths.
+ *
+ * @since 0.27
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findExecutorFactory();
+
+    private VirtualThreads() {}
+
+    private static MethodHandle findExecutorFactory() {
+        try {
+            MethodHandle factory = MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            // fails if virtual threads are a preview feature, which is not enabled.
+            ((ExecutorService) factory.invokeExact()).shutdown();
+            return factory;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if virtual threads are supported by the runtime.
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor, which starts a new virtual thread for each task.
+     *
+     * @return a new executor.
+     * @throws UnsupportedOperationException if virtual threads are not supported by the runtime.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer, running "
+                    + Runtime.version());
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create virtual thread executor", e);
+        }
+    }
+}
@@ -20,9 +20,13 @@
 package org.dcache.nfs.v3;
 
 import org.dcache.nfs.ExportTable;
+import org.dcache.nfs.FsExport;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.ChimeraNFSException;
+import org.dcache.nfs.qos.QosManager;
+import org.dcache.nfs.util.BufferPool;
 import org.dcache.nfs.util.UnixSubjects;
+import org.dcache.nfs.v4.FileTracker;
 import org.dcache.nfs.v3.xdr.LOOKUP3res;
 import org.dcache.nfs.v3.xdr.WRITE3resfail;
 import org.dcache.nfs.v3.xdr.RMDIR3resok;
@@ -125,6 +129,10 @@ import org.dcache.nfs.v3.xdr.CREATE3resfail;
 import org.dcache.nfs.v3.xdr.FSINFO3resfail;
 import org.dcache.nfs.v3.xdr.ACCESS3res;
 import org.dcache.nfs.v3.xdr.COMMIT3resok;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 import org.dcache.nfs.v3.xdr.COMMIT3resfail;
@@ -137,6 +145,7 @@ import org.dcache.nfs.vfs.VirtualFileSystem;
 import org.dcache.nfs.vfs.Stat;
 import org.dcache.nfs.status.*;
 import org.dcache.oncrpc4j.util.Bytes;
+import org.dcache.oncrpc4j.rpc.OncRpcException;
 import org.dcache.oncrpc4j.rpc.RpcCall;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -148,6 +157,7 @@ import static org.dcache.nfs.v3.Utils.checkFilename;
 import org.dcache.nfs.vfs.FsStat;
 import org.dcache.nfs.vfs.Inode;
 import org.dcache.nfs.vfs.PseudoFs;
+import org.dcache.nfs.vfs.PseudoFsTreeCache;
 import org.dcache.nfs.vfs.DirectoryStream;
 
 import javax.security.auth.Subject;
@@ -175,11 +185,117 @@ public class NfsServerV3 extends nfs3_protServerStub {
     private final VirtualFileSystem _vfs;
     private final ExportTable _exports;
 
+    /**
+     * Pseudo file system trees shared by all requests.
+     */
+    private final PseudoFsTreeCache _pseudoFsCache = new PseudoFsTreeCache();
+
     private final writeverf3 writeVerifier = generateInstanceWriteVerifier();
 
+    /**
+     * Pool of buffers used for READ replies, or null if buffers are not pooled.
+     */
+    private final BufferPool _bufferPool;
+
+    /**
+     * Enforces limits of export entries, or null if not limited.
+     */
+    private final QosManager _qos;
+
+    /**
+     * Tracks delegations handed out by the NFSv4 server exporting the same
+     * file system, or null if there is none.
+     */
+    private final FileTracker _fileTracker;
+
     public NfsServerV3(ExportTable exports, VirtualFileSystem fs) {
+        this(exports, fs, null);
+    }
+
+    /**
+     * Create NFSv3 server, which uses pooled buffers for READ replies.
+     *
+     * @param exports export table.
+     * @param fs file system to serve.
+     * @param bufferPool the pool to borrow READ buffers from, or null to allocate a new buffer per request.
+     */
+    public NfsServerV3(ExportTable exports, VirtualFileSystem fs, BufferPool bufferPool) {
+        this(exports, fs, bufferPool, null);
+    }
+
+    /**
+     * Create NFSv3 server, which enforces operation rate and bandwidth limits of
+     * export entries on READ and WRITE requests. Requests over the limit fail
+     * with {@code NFS3ERR_JUKEBOX}.
+     *
+     * @param exports export table.
+     * @param fs file system to serve.
+     * @param bufferPool the pool to borrow READ buffers from, or null to allocate a new buffer per request.
+     * @param qos the manager, which tracks per-client limits, or null if requests are not limited.
+     * @since 0.27
+     */
+    public NfsServerV3(ExportTable exports, VirtualFileSystem fs, BufferPool bufferPool, QosManager qos) {
+        this(exports, fs, bufferPool, qos, null);
+    }
+
+    /**
+     * Create NFSv3 server, which runs next to an NFSv4 server. Delegations
+     * granted to NFSv4 clients are recalled before a file is modified with
+     * WRITE, SETATTR, REMOVE or RENAME. Such requests fail with {@code NFS3ERR_JUKEBOX}
+     * until the delegations are returned or revoked.
+     *
+     * @param exports export table.
+     * @param fs file system to serve.
+     * @param bufferPool the pool to borrow READ buffers from, or null to allocate a new buffer per request.
+     * @param qos the manager, which tracks per-client limits, or null if requests are not limited.
+     * @param fileTracker the file tracker of the NFSv4 server, or null if no delegations are granted.
+     * @since 0.27
+     */
+    public NfsServerV3(ExportTable exports, VirtualFileSystem fs, BufferPool bufferPool, QosManager qos,
+            FileTracker fileTracker) {
         _vfs = fs;
         _exports = exports;
+        _bufferPool = bufferPool;
+        _qos = qos;
+        _fileTracker = fileTracker;
+    }
+
+    /**
+     * Check whether the request is within the limits of the export entry of the
+     * given inode.
+     *
+     * @throws DelayException if request is over the limit.
+     */
+    private void checkQos(RpcCall call, Inode inode, long bytes) throws DelayException {
+        if (_qos == null || inode.isPseudoInode()) {
+            return;
+        }
+
+        InetAddress client = call.getTransport().getRemoteSocketAddress().getAddress();
+        FsExport export = _exports.getExport(inode.exportIndex(), client);
+        if (export != null && !_qos.tryAcquire(export, client, bytes)) {
+            throw new DelayException("request rate or bandwidth exceeded");
+        }
+    }
+
+    /**
+     * Returns true if NFSv4 clients hold delegations, which might conflict with
+     * a modification.
+     */
+    private boolean hasDelegations() {
+        return _fileTracker != null && _fileTracker.hasDelegations();
+    }
+
+    /**
+     * Recall delegations of the file, as it is going to be modified.
+     *
+     * @throws DelayException if conflicting delegations are being recalled.
+     */
+    private void recallDelegations(Inode inode) throws DelayException {
+        if (hasDelegations()) {
+            // NFSv3 clients never hold delegations, thus conflict with all of them
+            _fileTracker.recallDelegations(null, inode);
+        }
     }
 
     private static writeverf3 generateInstanceWriteVerifier() {
@@ -192,7 +308,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public ACCESS3res NFSPROC3_ACCESS_3(RpcCall call$, ACCESS3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         ACCESS3res res = new ACCESS3res();
         _log.debug("NFS Request ACCESS uid: {}", call$.getCredential());
 
@@ -231,7 +347,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public COMMIT3res NFSPROC3_COMMIT_3(RpcCall call$, COMMIT3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         COMMIT3res res = new COMMIT3res();
 
         try {
@@ -271,7 +387,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public CREATE3res NFSPROC3_CREATE_3(RpcCall call$, CREATE3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request CREATE3 uid: {}", call$.getCredential());
 
         CREATE3res res = new CREATE3res();
@@ -363,7 +479,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public FSINFO3res NFSPROC3_FSINFO_3(RpcCall call$, FSINFO3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request FSINFO from: {}", call$.getCredential());
 
         FSINFO3res res = new FSINFO3res();
@@ -420,7 +536,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public FSSTAT3res NFSPROC3_FSSTAT_3(RpcCall call$, FSSTAT3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         FSSTAT3res res = new FSSTAT3res();
 
         try {
@@ -461,7 +577,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public GETATTR3res NFSPROC3_GETATTR_3(RpcCall call$, GETATTR3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request GETTATTR3 uid: {}", call$.getCredential());
 
         GETATTR3res res = new GETATTR3res();
@@ -489,7 +605,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public LINK3res NFSPROC3_LINK_3(RpcCall call$, LINK3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request LINK3 uid: {}", call$.getCredential());
 
         LINK3res res = new LINK3res();
@@ -544,7 +660,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public LOOKUP3res NFSPROC3_LOOKUP_3(RpcCall call$, LOOKUP3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         LOOKUP3res res = new LOOKUP3res();
 
         try {
@@ -592,7 +708,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public MKDIR3res NFSPROC3_MKDIR_3(RpcCall call$, MKDIR3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request MKDIR3 uid: {}", call$.getCredential());
 
         MKDIR3res res = new MKDIR3res();
@@ -705,7 +821,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public READDIRPLUS3res NFSPROC3_READDIRPLUS_3(RpcCall call$, READDIRPLUS3args arg1) {
 
-        final VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        final VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request READDIRPLUS3 uid: {}", call$.getCredential());
 
         READDIRPLUS3res res = new READDIRPLUS3res();
@@ -725,76 +841,81 @@ public class NfsServerV3 extends nfs3_protServerStub {
             cookieverf3 cookieverf = arg1.cookieverf;
 
             directoryStream = fs.list(dir, cookieverf.value, startValue);
-            Iterator<DirectoryEntry> dirList = directoryStream.iterator();
+            try (directoryStream) {
+                Iterator<DirectoryEntry> dirList = directoryStream.iterator();
+
+                res.status = nfsstat.NFS_OK;
+                res.resok = new READDIRPLUS3resok();
+                res.resok.reply = new dirlistplus3();
+                res.resok.reply.eof = true;
+                res.resok.dir_attributes = new post_op_attr();
+                res.resok.dir_attributes.attributes_follow = true;
+                res.resok.dir_attributes.attributes = new fattr3();
+                res.resok.cookieverf = new cookieverf3(directoryStream.getVerifier());
+
+                Utils.fill_attributes(dirStat, res.resok.dir_attributes.attributes);
+
+
+                int currcount = READDIRPLUS3RESOK_SIZE;
+                int dircount = 0;
+                int fcount = 0;
+                entryplus3 lastEntry = null;
+
+                while (dirList.hasNext()) {
+
+                    DirectoryEntry le = dirList.next();
+                    String name = le.getName();
+                    Inode ef = le.getInode();
+
+                    entryplus3 currentEntry = new entryplus3();
+                    currentEntry.fileid = new fileid3(new uint64(le.getStat().getIno()));
+                    currentEntry.name = new filename3(name);
+                    currentEntry.cookie = new cookie3(new uint64(le.getCookie()));
+                    currentEntry.name_handle = new post_op_fh3();
+                    currentEntry.name_handle.handle_follows = true;
+                    currentEntry.name_handle.handle = new nfs_fh3();
+                    currentEntry.name_handle.handle.data = ef.toNfsHandle();
+                    currentEntry.name_attributes = new post_op_attr();
+                    currentEntry.name_attributes.attributes_follow = true;
+                    currentEntry.name_attributes.attributes = new fattr3();
+                    Utils.fill_attributes(le.getStat(), currentEntry.name_attributes.attributes);
+
+                    // check if writing this entry exceeds the count limit
+                    int newSize = ENTRYPLUS3_SIZE + name.length() + currentEntry.name_handle.handle.data.length;
+                    int newDirSize = name.length();
+                    if ((currcount + newSize > arg1.maxcount.value.value) || (dircount + newDirSize > arg1.dircount.value.value)) {
+                        if (lastEntry == null) {
+                            //corner case - means we didnt have enough space to
+                            //write even a single entry.
+                            throw new TooSmallException("can't send even a single entry");
+                        }
+                        res.resok.reply.eof = false;
+                        break;
+                    }
+
+                    fcount++;
+                    dircount += newDirSize;
+                    currcount += newSize;
 
-            res.status = nfsstat.NFS_OK;
-            res.resok = new READDIRPLUS3resok();
-            res.resok.reply = new dirlistplus3();
-            res.resok.reply.eof = true;
-            res.resok.dir_attributes = new post_op_attr();
-            res.resok.dir_attributes.attributes_follow = true;
-            res.resok.dir_attributes.attributes = new fattr3();
-            res.resok.cookieverf = new cookieverf3(directoryStream.getVerifier());
-
-            Utils.fill_attributes(dirStat, res.resok.dir_attributes.attributes);
-
-
-            int currcount = READDIRPLUS3RESOK_SIZE;
-            int dircount = 0;
-            int fcount = 0;
-            entryplus3 lastEntry = null;
-
-            while (dirList.hasNext()) {
-
-                DirectoryEntry le = dirList.next();
-                String name = le.getName();
-                Inode ef = le.getInode();
-
-                entryplus3 currentEntry = new entryplus3();
-                currentEntry.fileid = new fileid3(new uint64(le.getStat().getIno()));
-                currentEntry.name = new filename3(name);
-                currentEntry.cookie = new cookie3(new uint64(le.getCookie()));
-                currentEntry.name_handle = new post_op_fh3();
-                currentEntry.name_handle.handle_follows = true;
-                currentEntry.name_handle.handle = new nfs_fh3();
-                currentEntry.name_handle.handle.data = ef.toNfsHandle();
-                currentEntry.name_attributes = new post_op_attr();
-                currentEntry.name_attributes.attributes_follow = true;
-                currentEntry.name_attributes.attributes = new fattr3();
-                Utils.fill_attributes(le.getStat(), currentEntry.name_attributes.attributes);
-
-                // check if writing this entry exceeds the count limit
-                int newSize = ENTRYPLUS3_SIZE + name.length() + currentEntry.name_handle.handle.data.length;
-                int newDirSize = name.length();
-                if ((currcount + newSize > arg1.maxcount.value.value) || (dircount + newDirSize > arg1.dircount.value.value)) {
                     if (lastEntry == null) {
-                        //corner case - means we didnt have enough space to
-                        //write even a single entry.
-                        throw new TooSmallException("can't send even a single entry");
+                        res.resok.reply.entries = currentEntry;
+                    } else {
+                        lastEntry.nextentry = currentEntry;
                     }
-                    res.resok.reply.eof = false;
-                    break;
+                    lastEntry = currentEntry;
                 }
 
-                fcount++;
-                dircount += newDirSize;
-                currcount += newSize;
-
-                if (lastEntry == null) {
-                    res.resok.reply.entries = currentEntry;
-                } else {
-                    lastEntry.nextentry = currentEntry;
-                }
-                lastEntry = currentEntry;
+                _log.debug("Sending {} entries ( {} bytes from {}, dircount = {} from {} ) cookie = {}",
+                        fcount, currcount,
+                        arg1.maxcount.value.value, dircount,
+                        arg1.dircount.value.value,
+                        startValue
+                );
+            } catch (UncheckedIOException e) {
+                // error while listing directory lazily
+                throw e.getCause();
             }
 
-            _log.debug("Sending {} entries ( {} bytes from {}, dircount = {} from {} ) cookie = {}",
-                    fcount, currcount,
-                    arg1.maxcount.value.value, dircount,
-                    arg1.dircount.value.value,
-                    startValue
-            );
-
         } catch (ChimeraNFSException hne) {
             _log.debug("READDIRPLUS3 status: {}", hne.toString());
             res.resfail = new READDIRPLUS3resfail();
@@ -813,7 +934,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public READDIR3res NFSPROC3_READDIR_3(RpcCall call$, READDIR3args arg1) {
 
-        final VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        final VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request READDIR3 uid: {}", call$.getCredential());
 
         READDIR3res res = new READDIR3res();
@@ -833,61 +954,66 @@ public class NfsServerV3 extends nfs3_protServerStub {
             cookieverf3 cookieverf = arg1.cookieverf;
 
             directoryStream = fs.list(dir, cookieverf.value, startValue);
-            Iterator<DirectoryEntry> dirList = directoryStream.iterator();
-
-            res.status = nfsstat.NFS_OK;
-            res.resok = new READDIR3resok();
-            res.resok.reply = new dirlist3();
-            res.resok.reply.eof = true;
-            res.resok.dir_attributes = new post_op_attr();
-            res.resok.dir_attributes.attributes_follow = true;
-            res.resok.dir_attributes.attributes = new fattr3();
-            Utils.fill_attributes(dirStat, res.resok.dir_attributes.attributes);
-
-            res.resok.cookieverf = new cookieverf3(directoryStream.getVerifier());
-
-            int currcount = READDIR3RESOK_SIZE;
-            int fcount = 0;
-            entry3 lastEntry = null;
-
-            while (dirList.hasNext()) {
-
-                DirectoryEntry le = dirList.next();
-                String name = le.getName();
-
-                entry3 currentEntry = new entry3();
-                currentEntry.fileid = new fileid3(new uint64(le.getStat().getIno()));
-                currentEntry.name = new filename3(name);
-                currentEntry.cookie = new cookie3(new uint64(le.getCookie()));
+            try (directoryStream) {
+                Iterator<DirectoryEntry> dirList = directoryStream.iterator();
+
+                res.status = nfsstat.NFS_OK;
+                res.resok = new READDIR3resok();
+                res.resok.reply = new dirlist3();
+                res.resok.reply.eof = true;
+                res.resok.dir_attributes = new post_op_attr();
+                res.resok.dir_attributes.attributes_follow = true;
+                res.resok.dir_attributes.attributes = new fattr3();
+                Utils.fill_attributes(dirStat, res.resok.dir_attributes.attributes);
+
+                res.resok.cookieverf = new cookieverf3(directoryStream.getVerifier());
+
+                int currcount = READDIR3RESOK_SIZE;
+                int fcount = 0;
+                entry3 lastEntry = null;
+
+                while (dirList.hasNext()) {
+
+                    DirectoryEntry le = dirList.next();
+                    String name = le.getName();
+
+                    entry3 currentEntry = new entry3();
+                    currentEntry.fileid = new fileid3(new uint64(le.getStat().getIno()));
+                    currentEntry.name = new filename3(name);
+                    currentEntry.cookie = new cookie3(new uint64(le.getCookie()));
+
+                    // check if writing this entry exceeds the count limit
+                    int newSize = ENTRY3_SIZE + name.length();
+                    if (currcount + newSize > arg1.count.value.value) {
+                        if (lastEntry == null) {
+                            //corner case - means we didnt have enough space to
+                            //write even a single entry.
+                            throw new TooSmallException("can't send even a single entry");
+                        }
+                        res.resok.reply.eof = false;
+                        break;
+                    }
+                    fcount++;
+                    currcount += newSize;
 
-                // check if writing this entry exceeds the count limit
-                int newSize = ENTRY3_SIZE + name.length();
-                if (currcount + newSize > arg1.count.value.value) {
                     if (lastEntry == null) {
-                        //corner case - means we didnt have enough space to
-                        //write even a single entry.
-                        throw new TooSmallException("can't send even a single entry");
+                        res.resok.reply.entries = currentEntry;
+                    } else {
+                        lastEntry.nextentry = currentEntry;
                     }
-                    res.resok.reply.eof = false;
-                    break;
+                    lastEntry = currentEntry;
                 }
-                fcount++;
-                currcount += newSize;
 
-                if (lastEntry == null) {
-                    res.resok.reply.entries = currentEntry;
-                } else {
-                    lastEntry.nextentry = currentEntry;
-                }
-                lastEntry = currentEntry;
+                _log.debug("Sending {} entries ( {} bytes from {}) cookie = {}",
+                        fcount, currcount,
+                        arg1.count.value.value,
+                        startValue
+                );
+            } catch (UncheckedIOException e) {
+                // error while listing directory lazily
+                throw e.getCause();
             }
 
-            _log.debug("Sending {} entries ( {} bytes from {}) cookie = {}",
-                    fcount, currcount,
-                    arg1.count.value.value,
-                    startValue
-            );
-
         } catch (ChimeraNFSException hne) {
             _log.error("READDIR: {}", hne.toString());
             res.resfail = new READDIR3resfail();
@@ -906,7 +1032,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public READLINK3res NFSPROC3_READLINK_3(RpcCall call$, READLINK3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         READLINK3res res = new READLINK3res();
 
 
@@ -939,10 +1065,34 @@ public class NfsServerV3 extends nfs3_protServerStub {
 
     }
 
+    @Override
+    public void dispatchOncRpcCall(RpcCall call) throws OncRpcException, IOException {
+
+        if (_bufferPool == null || call.getProcedure() != nfs3_prot.NFSPROC3_READ_3) {
+            super.dispatchOncRpcCall(call);
+            return;
+        }
+
+        /*
+         * The reply is encoded by RpcCall#reply, thus the data buffer
+         * can be returned into the pool as soon as reply is sent.
+         */
+        READ3args args$ = new READ3args();
+        call.retrieveCall(args$);
+        try (BufferPool.Lease lease = _bufferPool.lease()) {
+            READ3res result$ = read(call, args$, lease);
+            call.reply(result$);
+        }
+    }
+
     @Override
     public READ3res NFSPROC3_READ_3(RpcCall call$, READ3args arg1) {
+        return read(call$, arg1, null);
+    }
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+    private READ3res read(RpcCall call$, READ3args arg1, BufferPool.Lease bufferLease) {
+
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         READ3res res = new READ3res();
 
         try {
@@ -950,25 +1100,21 @@ public class NfsServerV3 extends nfs3_protServerStub {
             long offset = arg1.offset.value.value;
             int count = arg1.count.value.value;
 
+            checkQos(call$, inode, Integer.toUnsignedLong(count));
             Stat inodeStat = fs.getattr(inode);
 
             res.resok = new READ3resok();
-            res.resok.data = new byte[count];
 
             res.resok.count = new count3();
             res.resok.count.value = new uint32();
 
-            byte[] b = new byte[count];
-            res.resok.count.value.value = fs.read(inode, b, offset, count);
+            ByteBuffer b = bufferLease == null ? ByteBuffer.allocate(count) : bufferLease.allocate(count);
+            res.resok.count.value.value = fs.read(inode, b, offset);
             if (res.resok.count.value.value < 0) {
                 throw new NfsIoException("IO not allowed");
             }
-            if (res.resok.count.value.value == count) {
-                res.resok.data = b;
-            } else {
-                res.resok.data = new byte[res.resok.count.value.value];
-                System.arraycopy(b, 0, res.resok.data, 0, res.resok.count.value.value);
-            }
+            b.flip();
+            res.resok.data = b;
 
             if (res.resok.count.value.value + offset == inodeStat.getSize()) {
                 res.resok.eof = true;
@@ -996,7 +1142,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public REMOVE3res NFSPROC3_REMOVE_3(RpcCall call$, REMOVE3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request REMOVE3 uid: {}", call$.getCredential());
 
         REMOVE3res res = new REMOVE3res();
@@ -1009,6 +1155,9 @@ public class NfsServerV3 extends nfs3_protServerStub {
 
             Stat parentStat = fs.getattr(parent);
 
+            if (hasDelegations()) {
+                recallDelegations(fs.lookup(parent, name));
+            }
             fs.remove(parent, name);
 
             res.resok = new REMOVE3resok();
@@ -1050,7 +1199,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public RENAME3res NFSPROC3_RENAME_3(RpcCall call$, RENAME3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request RENAME3 uid: {}", call$.getCredential());
 
         RENAME3res res = new RENAME3res();
@@ -1064,6 +1213,14 @@ public class NfsServerV3 extends nfs3_protServerStub {
             String file2 = arg1.to.name.value;
             checkFilename(file2);
 
+            if (hasDelegations()) {
+                recallDelegations(fs.lookup(from, file1));
+                try {
+                    recallDelegations(fs.lookup(to, file2));
+                } catch (NoEntException e) {
+                    // nothing to replace
+                }
+            }
             fs.move(from, file1, to, file2);
 
             res.resok = new RENAME3resok();
@@ -1107,7 +1264,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public RMDIR3res NFSPROC3_RMDIR_3(RpcCall call$, RMDIR3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request RMDIR3 uid: {}", call$.getCredential());
 
         RMDIR3res res = new RMDIR3res();
@@ -1158,7 +1315,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public SETATTR3res NFSPROC3_SETATTR_3(RpcCall call$, SETATTR3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request SETATTR3 uid: {}", call$.getCredential());
 
         SETATTR3res res = new SETATTR3res();
@@ -1167,6 +1324,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
             Inode inode = new Inode(arg1.object.data);
             sattr3 newAttr = arg1.new_attributes;
 
+            recallDelegations(inode);
             Utils.set_sattr(inode, fs, newAttr);
             res.resok = new SETATTR3resok();
             res.resok.obj_wcc = new wcc_data();
@@ -1197,7 +1355,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public SYMLINK3res NFSPROC3_SYMLINK_3(RpcCall call$, SYMLINK3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         _log.debug("NFS Request SYMLINK3 uid: {}", call$.getCredential());
 
         SYMLINK3res res = new SYMLINK3res();
@@ -1262,7 +1420,7 @@ public class NfsServerV3 extends nfs3_protServerStub {
     @Override
     public WRITE3res NFSPROC3_WRITE_3(RpcCall call$, WRITE3args arg1) {
 
-        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports);
+        VirtualFileSystem fs = new PseudoFs(_vfs, call$, _exports, _pseudoFsCache);
         WRITE3res res = new WRITE3res();
 
         try {
@@ -1274,7 +1432,13 @@ public class NfsServerV3 extends nfs3_protServerStub {
             res.status = nfsstat.NFS_OK;
 
             VirtualFileSystem.StabilityLevel requiredStabilityLevel = VirtualFileSystem.StabilityLevel.fromStableHow(arg1.stable);
-            VirtualFileSystem.WriteResult ret = fs.write(inode, arg1.data, offset, count, requiredStabilityLevel);
+            ByteBuffer data = arg1.data;
+            if (count < data.remaining()) {
+                data.limit(data.position() + count);
+            }
+            recallDelegations(inode);
+            checkQos(call$, inode, data.remaining());
+            VirtualFileSystem.WriteResult ret = fs.write(inode, data, offset, requiredStabilityLevel);
             if (ret.getBytesWritten() < 0) {
                 throw new NfsIoException("IO not allowed");
             }
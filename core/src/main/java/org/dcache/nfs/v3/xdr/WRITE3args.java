@@ -23,13 +23,14 @@ import org.dcache.oncrpc4j.xdr.XdrAble;
 import org.dcache.oncrpc4j.xdr.XdrDecodingStream;
 import org.dcache.oncrpc4j.xdr.XdrEncodingStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class WRITE3args implements XdrAble {
     public nfs_fh3 file;
     public offset3 offset;
     public count3 count;
     public int stable;
-    public byte [] data;
+    public ByteBuffer data;
 
     public WRITE3args() {
     }
@@ -45,7 +46,7 @@ public class WRITE3args implements XdrAble {
         offset.xdrEncode(xdr);
         count.xdrEncode(xdr);
         xdr.xdrEncodeInt(stable);
-        xdr.xdrEncodeDynamicOpaque(data);
+        xdr.xdrEncodeByteBuffer(data);
     }
 
     public void xdrDecode(XdrDecodingStream xdr)
@@ -54,7 +55,7 @@ public class WRITE3args implements XdrAble {
         offset = new offset3(xdr);
         count = new count3(xdr);
         stable = xdr.xdrDecodeInt();
-        data = xdr.xdrDecodeDynamicOpaque();
+        data = xdr.xdrDecodeByteBuffer();
     }
 
 }
@@ -20,6 +20,7 @@
 package org.dcache.nfs.v4;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
@@ -49,4 +50,25 @@ public abstract class AbstractNFSv4Operation {
      */
     public abstract void  process(CompoundContext context, nfs_resop4 result)
             throws ChimeraNFSException, IOException, OncRpcException;
+
+    /**
+     * Process current operation without blocking on file system I/O. The returned
+     * future completes when the {@code result} object is filled. Errors are reported
+     * either by throwing an exception or by completing the future exceptionally.
+     * <p>
+     * The default implementation processes operation synchronously.
+     *
+     * @param context the context of compound request of this operation.
+     * @param result the operation result object to use.
+     * @return a {@link CompletableFuture} representing pending completion of the operation.
+     * @throws ChimeraNFSException when a specific NFS error is returned
+     * @throws IOException when NFS non specific errors occur
+     * @throws OncRpcException if requests arguments can't be decoded.
+     * @since 0.27
+     */
+    public CompletableFuture<Void> processAsync(CompoundContext context, nfs_resop4 result)
+            throws ChimeraNFSException, IOException, OncRpcException {
+        process(context, result);
+        return CompletableFuture.completedFuture(null);
+    }
 }
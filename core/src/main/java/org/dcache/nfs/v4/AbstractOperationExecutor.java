@@ -20,6 +20,9 @@
 package org.dcache.nfs.v4;
 
 import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.status.BadSessionException;
@@ -48,14 +51,89 @@ public abstract class AbstractOperationExecutor implements OperationExecutor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractOperationExecutor.class);
 
+    /**
+     * Sink for per-operation metrics.
+     */
+    private final OperationMetricsSink _metrics;
+
+    protected AbstractOperationExecutor() {
+        this(OperationMetricsSink.NOP);
+    }
+
+    /**
+     * @param metrics sink to record execution time and status of each operation.
+     * @since 0.27
+     */
+    protected AbstractOperationExecutor(OperationMetricsSink metrics) {
+        _metrics = Objects.requireNonNull(metrics);
+    }
+
     @Override
     public nfs_resop4 execute(CompoundContext context, nfs_argop4 args) throws IOException, OncRpcException {
 
         AbstractNFSv4Operation op = getOperation(args);
         nfs_resop4 opResult = nfs_resop4.resopFor(args.argop);
 
+        boolean isTimed = _metrics != OperationMetricsSink.NOP;
+        long start = isTimed ? System.nanoTime() : 0L;
+
         try {
             op.process(context, opResult);
+        } catch (IOException e) {
+            setErrorStatus(args, opResult, e);
+        }
+
+        if (isTimed) {
+            _metrics.record(args.argop, opResult.getStatus(), System.nanoTime() - start);
+        }
+        return opResult;
+    }
+
+    @Override
+    public CompletableFuture<nfs_resop4> executeAsync(CompoundContext context, nfs_argop4 args) {
+
+        AbstractNFSv4Operation op = getOperation(args);
+        nfs_resop4 opResult = nfs_resop4.resopFor(args.argop);
+
+        boolean isTimed = _metrics != OperationMetricsSink.NOP;
+        long start = isTimed ? System.nanoTime() : 0L;
+
+        CompletableFuture<Void> opFuture;
+        try {
+            opFuture = op.processAsync(context, opResult);
+        } catch (IOException | RuntimeException e) {
+            opFuture = CompletableFuture.failedFuture(e);
+        }
+
+        return opFuture.handle((v, t) -> {
+            if (t != null) {
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                if (!(cause instanceof IOException)) {
+                    throw new CompletionException(cause);
+                }
+                try {
+                    setErrorStatus(args, opResult, (IOException) cause);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }
+
+            if (isTimed) {
+                _metrics.record(args.argop, opResult.getStatus(), System.nanoTime() - start);
+            }
+            return opResult;
+        });
+    }
+
+    /**
+     * Set status of operation result to the NFS error, which corresponds to the given
+     * exception.
+     *
+     * @throws IOException if exception has no corresponding NFS error.
+     */
+    private static void setErrorStatus(nfs_argop4 args, nfs_resop4 opResult, IOException ioe) throws IOException {
+        try {
+            throw ioe;
         } catch (NfsIoException | ResourceException | ServerFaultException e) {
             LOGGER.error("NFS server fault: op: {} : {}", nfs_opnum4.toString(args.argop), e.getMessage());
             opResult.setStatus(e.getStatus());
@@ -72,7 +150,6 @@ public abstract class AbstractOperationExecutor implements OperationExecutor {
             opResult.setStatus(nfsstat.NFSERR_BADXDR);
             LOGGER.warn("Bad xdr: {}: ", e.getMessage());
         }
-        return opResult;
     }
 
     /**
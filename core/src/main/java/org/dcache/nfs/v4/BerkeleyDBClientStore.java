@@ -35,7 +35,17 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.dcache.nfs.status.NoGraceException;
 import org.dcache.nfs.status.ReclaimBadException;
@@ -51,6 +61,13 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  * to grace period expiry or when all known clients have complete the recovery, the
  * old db will be removed and new one will take it's place.
  *
+ * <p> In group commit mode, the updates of concurrent callers are written in a
+ * single transaction. A background thread commits all pending updates at once,
+ * while the callers wait for the commit to complete. Thus, when many clients
+ * reconnect at once, e.g. after server restart, the number of transactions and
+ * synchronous log writes is much smaller than the number of clients, while each
+ * update is still durable when the call returns.
+ *
  * @since 0.18
  */
 public class BerkeleyDBClientStore implements ClientRecoveryStore {
@@ -83,7 +100,44 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
 
     private final CursorConfig config = new CursorConfig();
 
-    private final Instant bootTime = Instant.now();
+    /**
+     * Guards database handles, which are replaced when recovery is complete. Updates
+     * and lookups take the read lock, as database handles are thread safe. A {@link Lock}
+     * is used instead of a monitor, as virtual threads blocked on a monitor pin their
+     * carrier thread.
+     */
+    private final ReadWriteLock dbLock = new ReentrantReadWriteLock();
+
+    /**
+     * Number of records in the recovery database.
+     */
+    private final AtomicLong recoveryRecords = new AtomicLong();
+
+    /**
+     * Whether updates of concurrent callers are written in a single transaction.
+     */
+    private final boolean groupCommit;
+
+    /**
+     * Updates waiting for the next group commit.
+     */
+    private final BlockingQueue<Update> pendingUpdates = new LinkedBlockingQueue<>();
+
+    /**
+     * Thread, which commits pending updates, or null, if group commit is disabled.
+     */
+    private final Thread committer;
+
+    /**
+     * Marker, which stops the committer. It is the last update in the queue, as no
+     * updates are accepted after close.
+     */
+    private static final Update CLOSE = new Update(tx -> false);
+
+    /**
+     * Whether the store is closed. Guarded by {@link #dbLock}.
+     */
+    private boolean closed;
 
     /**
      * Create a BerkeleyDBClientStore with db file located in the given directory.
@@ -100,6 +154,20 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
      * @param properties database configuration properties.
      */
     public BerkeleyDBClientStore(File dir, Properties properties) {
+        this(dir, properties, false);
+    }
+
+    /**
+     * Create a BerkeleyDBClientStore with db file located in the given directory and configuration is specified by the
+     * specified properties.
+     * @param dir the directory where berkeley DB files are stored.
+     * @param properties database configuration properties.
+     * @param groupCommit whether updates of concurrent callers are written in a single transaction.
+     * @since 0.27
+     */
+    public BerkeleyDBClientStore(File dir, Properties properties, boolean groupCommit) {
+
+        this.groupCommit = groupCommit;
 
         EnvironmentConfig envConfig = new EnvironmentConfig(properties);
 
@@ -143,7 +211,16 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
             tx.commit();
         }
 
+        recoveryRecords.set(clientRecoveryDatabase.count());
         dump();
+
+        if (groupCommit) {
+            committer = new Thread(this::commitPending, "nfs-client-store-committer");
+            committer.setDaemon(true);
+            committer.start();
+        } else {
+            committer = null;
+        }
     }
 
     /**
@@ -153,7 +230,7 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
      * @param client client's unique identifier.
      */
     @Override
-    public synchronized void addClient(byte[] client) {
+    public void addClient(byte[] client) {
         Instant now = Instant.now();
 
         DatabaseEntry key = new DatabaseEntry(client);
@@ -162,7 +239,10 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
         LongBinding.longToEntry(now.toEpochMilli(), data);
 
         LOGGER.debug("New client record [{}] at {}", new String(client, UTF_8), now);
-        clientDatabase.put(null, key, data);
+        write(tx -> {
+            clientDatabase.put(tx, key, data);
+            return false;
+        });
     }
 
     /**
@@ -172,12 +252,12 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
      * @param client client's unique identifier.
      */
     @Override
-    public synchronized void removeClient(byte[] client) {
+    public void removeClient(byte[] client) {
         DatabaseEntry key = new DatabaseEntry(client);
-        clientDatabase.delete(null, key);
-        if (clientRecoveryDatabase != null) {
-            clientRecoveryDatabase.delete(null, key);
-        }
+        write(tx -> {
+            clientDatabase.delete(tx, key);
+            return deleteRecoveryRecord(tx, key);
+        });
     }
 
     /**
@@ -187,19 +267,19 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
      * @param client client's unique identifier.
      */
     @Override
-    public synchronized void reclaimClient(byte[] client) {
+    public void reclaimClient(byte[] client) {
 
-        if (clientRecoveryDatabase == null) {
+        if (!hasRecoveryDatabase()) {
             return;
         }
 
         DatabaseEntry key = new DatabaseEntry(client);
 
         LOGGER.debug("Removing recovery record for client [{}]", new String(client, UTF_8));
-        clientRecoveryDatabase.delete(null, key);
+        write(tx -> deleteRecoveryRecord(tx, key));
 
         // do lazy cleanup
-        if (clientRecoveryDatabase.count() == 0) {
+        if (recoveryRecords.get() == 0) {
             LOGGER.debug("No more client to recover - ending grace period.");
             reclaimComplete();
         }
@@ -214,22 +294,25 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
      * @throws ReclaimBadException client's prevision state can't be detected.
      */
     @Override
-    public synchronized void wantReclaim(byte[] client) throws NoGraceException, ReclaimBadException {
+    public void wantReclaim(byte[] client) throws NoGraceException, ReclaimBadException {
 
-        if (clientRecoveryDatabase == null) {
-            throw new NoGraceException("Grace period expired");
-        }
+        dbLock.readLock().lock();
+        try {
+            if (clientRecoveryDatabase == null) {
+                throw new NoGraceException("Grace period expired");
+            }
 
-        DatabaseEntry key = new DatabaseEntry(client);
-        DatabaseEntry data = new DatabaseEntry();
+            DatabaseEntry key = new DatabaseEntry(client);
+            DatabaseEntry data = new DatabaseEntry();
 
-        LOGGER.debug("Removing recovery record for client [{}]", new String(client, UTF_8));
-        OperationStatus status = clientRecoveryDatabase.get(null, key, data, LockMode.READ_COMMITTED);
-        if (status != OperationStatus.SUCCESS) {
-            LOGGER.debug("No record for client [{}]", new String(client, UTF_8));
-            throw new ReclaimBadException("No pre-reboot record found");
+            OperationStatus status = clientRecoveryDatabase.get(null, key, data, LockMode.READ_COMMITTED);
+            if (status != OperationStatus.SUCCESS) {
+                LOGGER.debug("No record for client [{}]", new String(client, UTF_8));
+                throw new ReclaimBadException("No pre-reboot record found");
+            }
+        } finally {
+            dbLock.readLock().unlock();
         }
-
     }
 
     /**
@@ -240,35 +323,9 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
      * @return true if store expects reclaims from previously existing clients.
      */
     @Override
-    public synchronized boolean waitingForReclaim() {
-
-        if (clientRecoveryDatabase == null) {
-            return false;
-        }
-
-        Transaction tx = env.beginTransaction(null, null);
-        try (Cursor cursor = clientRecoveryDatabase.openCursor(tx, config)) {
-
-            DatabaseEntry key = new DatabaseEntry();
-            DatabaseEntry data = new DatabaseEntry();
-
-            /*
-             * Are there entries from previous instance. If not, the we are ready
-             */
-            while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
-                Instant clientCreationTime = Instant.ofEpochMilli(LongBinding.entryToLong(data));
-                if (clientCreationTime.isBefore(bootTime)) {
-                    LOGGER.debug("Recovery: wating for client [{}] at {}", new String(key.getData(), UTF_8), clientCreationTime);
-                    return true;
-                }
-            }
-
-            return false;
-
-        } finally {
-            tx.commit();
-        }
-
+    public boolean waitingForReclaim() {
+        // the recovery database contains only records from before reboot
+        return hasRecoveryDatabase() && recoveryRecords.get() > 0;
     }
 
     /**
@@ -300,46 +357,212 @@ public class BerkeleyDBClientStore implements ClientRecoveryStore {
      * period. Drop recovery database.
      */
     @Override
-    public synchronized void reclaimComplete() {
+    public void reclaimComplete() {
 
-        if (clientRecoveryDatabase == null) {
-            return;
-        }
+        dbLock.writeLock().lock();
+        try {
+            if (clientRecoveryDatabase == null) {
+                return;
+            }
 
-        Transaction tx = env.beginTransaction(null, null);
+            Transaction tx = env.beginTransaction(null, null);
 
-        try {
+            try {
+
+                try (Cursor cursor = clientRecoveryDatabase.openCursor(tx, config)) {
+
+                    DatabaseEntry key = new DatabaseEntry();
+                    DatabaseEntry data = new DatabaseEntry();
+
+                    while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
+                        Instant clientCreationTime = Instant.ofEpochMilli(LongBinding.entryToLong(data));
+                        LOGGER.info("Dropping expired recovery record: [{}], {}", new String(key.getData(), UTF_8), clientCreationTime);
+                    }
+                }
 
-            try (Cursor cursor = clientRecoveryDatabase.openCursor(tx, config)) {
+                clientDatabase.close();
+                clientRecoveryDatabase.close();
+                clientRecoveryDatabase = null;
+                recoveryRecords.set(0);
+
+                env.removeDatabase(tx, CLIENT_DB);
+                env.renameDatabase(tx, CLIENT_DB_RECOVER, CLIENT_DB);
+
+                clientDatabase = env.openDatabase(tx, CLIENT_DB, dbConfig);
+            } finally {
+                tx.commit();
+            }
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
 
-                DatabaseEntry key = new DatabaseEntry();
-                DatabaseEntry data = new DatabaseEntry();
+    @Override
+    public void close() {
+        dbLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (committer != null) {
+                pendingUpdates.add(CLOSE);
+            }
+        } finally {
+            dbLock.writeLock().unlock();
+        }
 
-                while (cursor.getNext(key, data, null) == OperationStatus.SUCCESS) {
-                    Instant clientCreationTime = Instant.ofEpochMilli(LongBinding.entryToLong(data));
-                    LOGGER.info("Dropping expired recovery record: [{}], {}", new String(key.getData(), UTF_8), clientCreationTime);
+        // the committer is not interrupted, as an interrupt invalidates the environment
+        if (committer != null) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    committer.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
             }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
+        dbLock.writeLock().lock();
+        try {
             clientDatabase.close();
-            clientRecoveryDatabase.close();
-            clientRecoveryDatabase = null;
+            if (clientRecoveryDatabase != null) {
+                clientRecoveryDatabase.close();
+                clientRecoveryDatabase = null;
+            }
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
+
+    private boolean hasRecoveryDatabase() {
+        dbLock.readLock().lock();
+        try {
+            return clientRecoveryDatabase != null;
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Delete record from recovery database, if recovery is not complete yet.
+     *
+     * @return true, if record was deleted.
+     */
+    private boolean deleteRecoveryRecord(Transaction tx, DatabaseEntry key) {
+        return clientRecoveryDatabase != null
+                && clientRecoveryDatabase.delete(tx, key) == OperationStatus.SUCCESS;
+    }
+
+    /**
+     * Write the given modification durably. In group commit mode, the modification
+     * is committed together with modifications of concurrent callers.
+     *
+     * @throws IllegalStateException if the store is closed.
+     */
+    private void write(Modification modification) {
+
+        Update update = new Update(modification);
+        dbLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Client store is closed");
+            }
+            if (groupCommit) {
+                // enqueued under the lock, thus never after the close marker
+                pendingUpdates.add(update);
+            }
+        } finally {
+            dbLock.readLock().unlock();
+        }
+
+        if (!groupCommit) {
+            commit(List.of(update));
+        }
+
+        try {
+            update.result.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
 
-            env.removeDatabase(tx, CLIENT_DB);
-            env.renameDatabase(tx, CLIENT_DB_RECOVER, CLIENT_DB);
+    /**
+     * Commit pending updates until the store is closed.
+     */
+    private void commitPending() {
+        List<Update> batch = new ArrayList<>();
+        boolean done = false;
+        while (!done) {
+            try {
+                batch.add(pendingUpdates.take());
+            } catch (InterruptedException e) {
+                // not expected, as the committer is stopped by the close marker
+                continue;
+            }
+            pendingUpdates.drainTo(batch);
+            done = batch.remove(CLOSE);
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+            batch.clear();
+        }
+    }
 
-            clientDatabase = env.openDatabase(tx, CLIENT_DB, dbConfig);
+    /**
+     * Apply updates in a single transaction. If the transaction fails, all updates
+     * fail with the same exception.
+     */
+    private void commit(List<Update> batch) {
+        dbLock.readLock().lock();
+        try {
+            Transaction tx = env.beginTransaction(null, null);
+            try {
+                long deletedRecoveryRecords = 0;
+                for (Update update : batch) {
+                    if (update.modification.apply(tx)) {
+                        deletedRecoveryRecords++;
+                    }
+                }
+                tx.commit();
+                recoveryRecords.addAndGet(-deletedRecoveryRecords);
+            } catch (RuntimeException e) {
+                tx.abort();
+                batch.forEach(update -> update.result.completeExceptionally(e));
+                return;
+            }
         } finally {
-            tx.commit();
+            dbLock.readLock().unlock();
         }
+        batch.forEach(update -> update.result.complete(null));
     }
 
-    @Override
-    public synchronized void close() {
-        clientDatabase.close();
-        if (clientRecoveryDatabase != null) {
-            clientRecoveryDatabase.close();
-            clientRecoveryDatabase = null;
+    @FunctionalInterface
+    private interface Modification {
+
+        /**
+         * Apply modification as a part of the given transaction.
+         *
+         * @return true, if a record of recovery database was deleted.
+         */
+        boolean apply(Transaction tx);
+    }
+
+    /**
+     * A modification waiting to be committed.
+     */
+    private static class Update {
+
+        private final Modification modification;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Update(Modification modification) {
+            this.modification = modification;
         }
     }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.io.IOException;
+import java.util.List;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.oncrpc4j.xdr.Xdr;
+import org.dcache.oncrpc4j.xdr.XdrEncodingStream;
+
+/**
+ * A reply kept in a session slot to answer retransmitted requests. The results of
+ * the operations following SEQUENCE are stored in their XDR encoded form, which is
+ * more compact than the decoded objects, doesn't reference request buffers and can
+ * be sent to the client without re-encoding.
+ *
+ * @since 0.27
+ */
+public final class CachedReply {
+
+    /**
+     * Returned on retransmit, if the slot has no cached reply.
+     */
+    public static final CachedReply NOT_CACHED = new CachedReply(null, new byte[0], 0, nfsstat.NFS_OK);
+
+    /**
+     * The slot, which holds this reply.
+     */
+    final SessionSlot slot;
+
+    private final byte[] _data;
+    private final int _count;
+    private final int _status;
+
+    /*
+     * Eviction list links and state, guarded by ReplyCacheBudget.
+     */
+    CachedReply prev;
+    CachedReply next;
+    boolean linked;
+    boolean removed;
+
+    private CachedReply(SessionSlot slot, byte[] data, int count, int status) {
+        this.slot = slot;
+        _data = data;
+        _count = count;
+        _status = status;
+    }
+
+    /**
+     * Encode results of a compound request. The first result, of the SEQUENCE
+     * operation, is not included, as it is always re-evaluated.
+     *
+     * @param slot the slot which will hold the reply.
+     * @param ops the results of all executed operations.
+     * @return the encoded reply.
+     * @throws IOException if results can't be encoded.
+     */
+    static CachedReply encode(SessionSlot slot, List<nfs_resop4> ops) throws IOException {
+        int status = ops.get(ops.size() - 1).getStatus();
+        try (Xdr xdr = new Xdr(1024)) {
+            xdr.beginEncoding();
+            for (int i = 1; i < ops.size(); i++) {
+                ops.get(i).xdrEncode(xdr);
+            }
+            xdr.endEncoding();
+            return new CachedReply(slot, xdr.getBytes(), ops.size() - 1, status);
+        }
+    }
+
+    /**
+     * Get number of cached operation results.
+     */
+    public int getOperationCount() {
+        return _count;
+    }
+
+    /**
+     * Get status of the compound request.
+     */
+    public int getStatus() {
+        return _status;
+    }
+
+    /**
+     * Get size of the encoded results in bytes.
+     */
+    public int size() {
+        return _data.length;
+    }
+
+    /**
+     * Write encoded results into the given stream.
+     */
+    void writeTo(XdrEncodingStream xdr) {
+        // XDR encoded data is always 4 bytes aligned, thus no padding is added
+        xdr.xdrEncodeOpaque(_data, _data.length);
+    }
+}
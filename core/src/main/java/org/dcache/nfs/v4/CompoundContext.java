@@ -20,13 +20,14 @@
 package org.dcache.nfs.v4;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.security.Principal;
 
 import com.sun.security.auth.UnixNumericUserPrincipal;
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.ExportTable;
+import org.dcache.nfs.util.BufferPool;
 import org.dcache.nfs.v4.xdr.nfs_impl_id4;
-import org.dcache.nfs.v4.xdr.nfs_resop4;
 import org.dcache.nfs.v4.xdr.server_owner4;
 import org.dcache.nfs.v4.xdr.stateid4;
 import org.dcache.nfs.v4.xdr.uint64_t;
@@ -35,7 +36,6 @@ import org.dcache.oncrpc4j.rpc.RpcCall;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
 import java.util.Optional;
 import javax.security.auth.Subject;
 import javax.security.auth.kerberos.KerberosPrincipal;
@@ -99,6 +99,11 @@ public class CompoundContext {
 
     private final nfs_impl_id4 _implId;
 
+    /**
+     * Buffers borrowed for reply data, or null if buffers are not pooled.
+     */
+    private final BufferPool.Lease _bufferLease;
+
     /**
      * Create context of COUMPOUND request.
      *
@@ -118,6 +123,7 @@ public class CompoundContext {
         _exchangeIdFlags = builder.getExchangeIdFlags();
         _rebootVerifier = builder.getRebootVerifier();
         _implId = builder.getImplementationId();
+        _bufferLease = builder.getBufferLease();
     }
 
     public RpcCall getRpcCall() {
@@ -163,6 +169,16 @@ public class CompoundContext {
         return _currentInode;
     }
 
+    /**
+     * Check whether the current file handle is set.
+     *
+     * @return true, if current file handle is set.
+     * @since 0.27
+     */
+    public boolean hasCurrentInode() {
+        return _currentInode != null;
+    }
+
     /**
      * Set current file handle.
      *
@@ -264,13 +280,26 @@ public class CompoundContext {
         _cacheThis = cacheThis;
     }
 
-    private List<nfs_resop4> _cache;
+    /**
+     * Whether the compound has been admitted by {@link QosOperationExecutor}.
+     */
+    private boolean _qosAdmitted;
+
+    boolean isQosAdmitted() {
+        return _qosAdmitted;
+    }
+
+    void setQosAdmitted() {
+        _qosAdmitted = true;
+    }
+
+    private CachedReply _cache;
 
-    public List<nfs_resop4> getCache() {
+    public CachedReply getCache() {
         return _cache;
     }
 
-    public void setCache(List<nfs_resop4> cache) {
+    public void setCache(CachedReply cache) {
         _cache = cache;
     }
 
@@ -365,4 +394,16 @@ public class CompoundContext {
     public nfs_impl_id4 getImplementationId() {
         return _implId;
     }
+
+    /**
+     * Get a buffer to hold data of the reply, like READ. The buffer's position is
+     * zero and the limit is set to {@code size}. If buffers are pooled, then the
+     * returned buffer is only valid until the reply is sent.
+     *
+     * @param size the required buffer size.
+     * @return a buffer.
+     */
+    public ByteBuffer allocateReplyBuffer(int size) {
+        return _bufferLease == null ? ByteBuffer.allocate(size) : _bufferLease.allocate(size);
+    }
 }
@@ -20,6 +20,7 @@
 package org.dcache.nfs.v4;
 
 import org.dcache.nfs.ExportTable;
+import org.dcache.nfs.util.BufferPool;
 import org.dcache.nfs.v4.nlm.LockManager;
 import org.dcache.nfs.v4.xdr.nfs4_prot;
 import org.dcache.nfs.v4.xdr.nfs_impl_id4;
@@ -40,6 +41,7 @@ public class CompoundContextBuilder {
     private ExportTable exportTable = null;
     private int exchangeIdFlags = nfs4_prot.EXCHGID4_FLAG_USE_NON_PNFS;
     private verifier4 rebootVerifier;
+    private BufferPool.Lease bufferLease;
 
     private nfs_impl_id4 implId;
 
@@ -78,6 +80,11 @@ public class CompoundContextBuilder {
         return this;
     }
 
+    public CompoundContextBuilder withBufferLease(BufferPool.Lease lease) {
+        this.bufferLease = lease;
+        return this;
+    }
+
     public CompoundContextBuilder withImplementationId(nfs_impl_id4 impId) {
         this.implId = impId;
         return this;
@@ -115,6 +122,10 @@ public class CompoundContextBuilder {
         return implId;
     }
 
+    public BufferPool.Lease getBufferLease() {
+        return bufferLease;
+    }
+
     public CompoundContext build() {
 
         requireNonNull(call);
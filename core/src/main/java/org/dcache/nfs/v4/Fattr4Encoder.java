@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.dcache.nfs.status.InvalException;
+import org.dcache.nfs.v4.xdr.attrlist4;
+import org.dcache.nfs.v4.xdr.bitmap4;
+import org.dcache.nfs.v4.xdr.fattr4;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.vfs.FsStat;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.Stat;
+import org.dcache.nfs.vfs.Stat.StatAttribute;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.oncrpc4j.xdr.Xdr;
+import org.dcache.oncrpc4j.xdr.XdrAble;
+import org.dcache.oncrpc4j.xdr.XdrDecodingStream;
+import org.dcache.oncrpc4j.xdr.XdrEncodingStream;
+
+import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_0;
+import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_1;
+import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_1_NO_PNFS;
+
+/**
+ * An encoder of file attributes for a given attribute request bitmap. Each distinct
+ * bitmap is compiled once into a sequence of attribute writers, which encode values
+ * straight from {@link Stat} into a buffer sized by the previous encoding. Thus,
+ * encoding of attributes for GETATTR or each READDIR entry allocates only the
+ * resulting {@link fattr4} and its value.
+ * <p>
+ * The attribute writers are the only implementation of attribute encoding;
+ * {@link OperationGETATTR#fattr2xdr} uses them as well. Attributes which require
+ * additional lookups, like ACLs or layout types, are encoded by
+ * {@link OperationGETATTR#fattr2xdr}.
+ *
+ * @since 0.27
+ */
+public class Fattr4Encoder {
+
+    /**
+     * Writes a single attribute value.
+     */
+    @FunctionalInterface
+    private interface AttributeWriter {
+
+        /**
+         * @return true, if attribute was written.
+         */
+        boolean write(EncodingState state) throws IOException;
+    }
+
+    /**
+     * Number of compiled encoders to keep. The cache is direct-mapped, as clients
+     * typically use only a handful of distinct bitmaps.
+     */
+    private static final int CACHE_SIZE = 256;
+    private static final Fattr4Encoder[] ENCODERS = new Fattr4Encoder[CACHE_SIZE];
+
+    /**
+     * Encoded size of a single attribute, which is enough for all but variable
+     * length attributes.
+     */
+    private static final int ATTRIBUTE_SIZE_HINT = 16;
+
+    /**
+     * Requested bitmap.
+     */
+    private final int[] _request;
+    private final int _hash;
+
+    /**
+     * Requested attributes and corresponding writers.
+     */
+    private final int[] _attributes;
+    private final AttributeWriter[] _writers;
+
+    /**
+     * The bitmap of returned attributes, if known at compile time, or null, if
+     * some attributes may be absent.
+     */
+    private final int[] _returnedMask;
+
+    /**
+     * Size of the last encoded attributes, used as initial buffer size of the next
+     * encoding.
+     */
+    private volatile int _sizeHint;
+
+    private Fattr4Encoder(int[] request, int hash) {
+        _request = request;
+        _hash = hash;
+
+        List<Integer> attributes = new ArrayList<>();
+        List<AttributeWriter> writers = new ArrayList<>();
+        bitmap4 returned = new bitmap4(new int[0]);
+        boolean isConditional = false;
+
+        for (int attribute : new bitmap4(request)) {
+            AttributeWriter writer = compile(attribute);
+            if (writer == null) {
+                // unsupported attribute
+                continue;
+            }
+            if (writer == GENERIC) {
+                isConditional = true;
+            }
+            attributes.add(attribute);
+            writers.add(writer);
+            returned.set(attribute);
+        }
+
+        _attributes = attributes.stream().mapToInt(Integer::intValue).toArray();
+        _writers = writers.toArray(AttributeWriter[]::new);
+        _returnedMask = isConditional ? null : returned.value;
+        _sizeHint = _writers.length * ATTRIBUTE_SIZE_HINT;
+    }
+
+    /**
+     * Get encoder for a given attribute request.
+     *
+     * @param bitmap requested attributes.
+     * @return encoder for requested attributes.
+     */
+    public static Fattr4Encoder forBitmap(bitmap4 bitmap) {
+        int[] request = bitmap.value == null ? new int[0] : bitmap.value;
+        int hash = Arrays.hashCode(request);
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+
+        Fattr4Encoder encoder = ENCODERS[slot];
+        if (encoder == null || encoder._hash != hash || !Arrays.equals(encoder._request, request)) {
+            encoder = new Fattr4Encoder(request.clone(), hash);
+            ENCODERS[slot] = encoder;
+        }
+        return encoder;
+    }
+
+    /**
+     * Encode requested attributes of the given inode.
+     */
+    public static fattr4 encode(bitmap4 bitmap, VirtualFileSystem fs, Inode inode, Stat stat, CompoundContext context)
+            throws IOException {
+        return forBitmap(bitmap).encode(fs, inode, stat, context);
+    }
+
+    /**
+     * Encode attributes of the given inode.
+     *
+     * @param fs file system to query for non-stat attributes.
+     * @param inode the inode.
+     * @param stat the inode's stat.
+     * @param context the compound context of the request.
+     * @return encoded attributes.
+     * @throws IOException
+     */
+    public fattr4 encode(VirtualFileSystem fs, Inode inode, Stat stat, CompoundContext context) throws IOException {
+
+        EncodingState state = new EncodingState(_sizeHint, fs, inode, stat, context);
+        bitmap4 returned;
+        if (_returnedMask != null) {
+            returned = new bitmap4(_returnedMask.clone());
+            for (AttributeWriter writer : _writers) {
+                writer.write(state);
+            }
+        } else {
+            returned = new bitmap4(new int[0]);
+            for (int i = 0; i < _writers.length; i++) {
+                boolean isWritten = _writers[i] == GENERIC
+                        ? state.writeGeneric(_attributes[i])
+                        : _writers[i].write(state);
+                if (isWritten) {
+                    returned.set(_attributes[i]);
+                }
+            }
+        }
+        _sizeHint = state.size();
+
+        fattr4 attributes = new fattr4();
+        attributes.attrmask = returned;
+        attributes.attr_vals = new attrlist4(state.toByteArray());
+        return attributes;
+    }
+
+    /**
+     * Encode a single attribute.
+     *
+     * @param attribute the attribute to encode.
+     * @return encoded attribute or empty, if attribute is not supported or
+     * encoded by {@link OperationGETATTR#fattr2xdr}.
+     * @throws IOException
+     */
+    static Optional<XdrAble> encodeAttribute(int attribute, VirtualFileSystem fs, Inode inode, Stat stat,
+            CompoundContext context) throws IOException {
+
+        AttributeWriter writer = compile(attribute);
+        if (writer == null || writer == GENERIC) {
+            return Optional.empty();
+        }
+
+        EncodingState state = new EncodingState(ATTRIBUTE_SIZE_HINT, fs, inode, stat, context);
+        writer.write(state);
+        return Optional.of(new EncodedAttribute(state.toByteArray()));
+    }
+
+    /**
+     * Marker writer for attributes encoded by {@link OperationGETATTR#fattr2xdr}.
+     */
+    private static final AttributeWriter GENERIC = s -> {
+        throw new IllegalStateException("generic attribute");
+    };
+
+    private static final long TIME_DELTA = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Get writer for a given attribute.
+     *
+     * @return the writer or null, if attribute is not supported.
+     */
+    private static AttributeWriter compile(int attribute) {
+        switch (attribute) {
+            case nfs4_prot.FATTR4_SUPPORTED_ATTRS:
+                return s -> {
+                    int[] bitmap;
+                    if (s.context.getMinorversion() == 0) {
+                        bitmap = SUPPORTED_ATTRS_V4_0;
+                    } else {
+                        bitmap = s.context.getDeviceManager().isPresent() ? SUPPORTED_ATTRS_V4_1 : SUPPORTED_ATTRS_V4_1_NO_PNFS;
+                    }
+                    return s.putBitmap(bitmap);
+                };
+            case nfs4_prot.FATTR4_TYPE:
+                return s -> s.putInt(OperationGETATTR.unixType2NFS(s.stat.getMode()));
+            case nfs4_prot.FATTR4_FH_EXPIRE_TYPE:
+                return s -> s.putInt(nfs4_prot.FH4_PERSISTENT);
+            case nfs4_prot.FATTR4_CHANGE:
+                return s -> s.putLong(s.stat.getGeneration());
+            case nfs4_prot.FATTR4_SIZE:
+            case nfs4_prot.FATTR4_SPACE_USED:
+                return s -> s.putLong(s.stat.getSize());
+            case nfs4_prot.FATTR4_LINK_SUPPORT:
+            case nfs4_prot.FATTR4_SYMLINK_SUPPORT:
+            case nfs4_prot.FATTR4_UNIQUE_HANDLES:
+            case nfs4_prot.FATTR4_CANSETTIME:
+            case nfs4_prot.FATTR4_HOMOGENEOUS:
+            case nfs4_prot.FATTR4_NO_TRUNC:
+            case nfs4_prot.FATTR4_XATTR_SUPPORT:
+                return s -> s.putBoolean(true);
+            case nfs4_prot.FATTR4_NAMED_ATTR:
+                return s -> s.putBoolean(false);
+            case nfs4_prot.FATTR4_FSID:
+                return s -> s.putLong(17) && s.putLong(17);
+            case nfs4_prot.FATTR4_LEASE_TIME:
+                return s -> s.putInt((int) s.context.getStateHandler().getLeaseTime().toSeconds());
+            case nfs4_prot.FATTR4_FILEHANDLE:
+                return s -> s.putOpaque(s.inode.toNfsHandle());
+            case nfs4_prot.FATTR4_ACLSUPPORT:
+                return s -> s.putInt(nfs4_prot.ACL4_SUPPORT_ALLOW_ACL | nfs4_prot.ACL4_SUPPORT_DENY_ACL);
+            case nfs4_prot.FATTR4_CASE_INSENSITIVE:
+                return s -> s.putBoolean(s.fs.getCaseInsensitive());
+            case nfs4_prot.FATTR4_CASE_PRESERVING:
+                return s -> s.putBoolean(s.fs.getCasePreserving());
+            case nfs4_prot.FATTR4_FILEID:
+                return s -> s.putLong(s.stat.getIno());
+            case nfs4_prot.FATTR4_FILES_AVAIL:
+            case nfs4_prot.FATTR4_FILES_FREE:
+                return s -> s.putLong(s.fsStat().getTotalFiles() - s.fsStat().getUsedFiles());
+            case nfs4_prot.FATTR4_FILES_TOTAL:
+                return s -> s.putLong(s.fsStat().getTotalFiles());
+            case nfs4_prot.FATTR4_MAXFILESIZE:
+                return s -> s.putLong(NFSv4Defaults.NFS4_MAXFILESIZE);
+            case nfs4_prot.FATTR4_MAXLINK:
+                return s -> s.putInt(NFSv4Defaults.NFS4_MAXLINK);
+            case nfs4_prot.FATTR4_MAXNAME:
+                return s -> s.putInt(NFSv4Defaults.NFS4_MAXFILENAME);
+            case nfs4_prot.FATTR4_MAXREAD:
+            case nfs4_prot.FATTR4_MAXWRITE:
+                return s -> s.putLong(NFSv4Defaults.NFS4_MAXIOBUFFERSIZE);
+            case nfs4_prot.FATTR4_MODE:
+                return s -> s.putInt(s.stat.getMode() & 07777);
+            case nfs4_prot.FATTR4_NUMLINKS:
+                return s -> s.putInt(s.stat.getNlink());
+            case nfs4_prot.FATTR4_OWNER:
+                return s -> s.putString(s.context.getFs().getIdMapper().uidToPrincipal(s.stat.getUid()));
+            case nfs4_prot.FATTR4_OWNER_GROUP:
+                return s -> s.putString(s.context.getFs().getIdMapper().gidToPrincipal(s.stat.getGid()));
+            case nfs4_prot.FATTR4_RAWDEV:
+                return s -> s.putInt(0) && s.putInt(0);
+            case nfs4_prot.FATTR4_SPACE_AVAIL:
+            case nfs4_prot.FATTR4_SPACE_FREE:
+                return s -> s.putLong(s.fsStat().getTotalSpace() - s.fsStat().getUsedSpace());
+            case nfs4_prot.FATTR4_SPACE_TOTAL:
+                return s -> s.putLong(s.fsStat().getTotalSpace());
+            case nfs4_prot.FATTR4_TIME_ACCESS:
+                return s -> s.putTime(s.stat.getATime());
+            case nfs4_prot.FATTR4_TIME_CREATE:
+                return s -> s.putTime(s.stat.isDefined(StatAttribute.BTIME) ? s.stat.getBTime() : s.stat.getCTime());
+            case nfs4_prot.FATTR4_TIME_DELTA:
+                return s -> s.putTime(TIME_DELTA);
+            case nfs4_prot.FATTR4_TIME_METADATA:
+                return s -> s.putTime(s.stat.getCTime());
+            case nfs4_prot.FATTR4_TIME_MODIFY:
+                return s -> s.putTime(s.stat.getMTime());
+            case nfs4_prot.FATTR4_MOUNTED_ON_FILEID:
+                return s -> {
+                    long mofi = s.stat.getIno();
+                    if (mofi == 0x00b0a23a /* it's a root*/) {
+                        mofi = 0x12345678;
+                    }
+                    return s.putLong(mofi);
+                };
+            case nfs4_prot.FATTR4_SUPPATTR_EXCLCREAT:
+                return s -> s.putBitmap(NFSv4FileAttributes.EXCLCREAT_ATTR);
+            case nfs4_prot.FATTR4_TIME_MODIFY_SET:
+            case nfs4_prot.FATTR4_TIME_ACCESS_SET:
+                return s -> {
+                    throw new InvalException("getattr of write-only attributes");
+                };
+            case nfs4_prot.FATTR4_ACL:
+            case nfs4_prot.FATTR4_FS_LAYOUT_TYPES:
+                return GENERIC;
+            default:
+                // not supported
+                return null;
+        }
+    }
+
+    /**
+     * An attribute value encoded by an {@link AttributeWriter}.
+     */
+    private static class EncodedAttribute implements XdrAble {
+
+        private final byte[] _bytes;
+
+        EncodedAttribute(byte[] bytes) {
+            _bytes = bytes;
+        }
+
+        @Override
+        public void xdrEncode(XdrEncodingStream xdr) {
+            // already XDR encoded and aligned
+            xdr.xdrEncodeOpaque(_bytes, _bytes.length);
+        }
+
+        @Override
+        public void xdrDecode(XdrDecodingStream xdr) {
+            throw new UnsupportedOperationException("encode only");
+        }
+    }
+
+    /**
+     * Encoding buffer and arguments of a single encode call.
+     */
+    private static class EncodingState {
+
+        private byte[] buf;
+        private int pos;
+
+        private final VirtualFileSystem fs;
+        private final Inode inode;
+        private final Stat stat;
+        private final CompoundContext context;
+        private FsStat fsStat;
+
+        EncodingState(int size, VirtualFileSystem fs, Inode inode, Stat stat, CompoundContext context) {
+            this.buf = new byte[size];
+            this.fs = fs;
+            this.inode = inode;
+            this.stat = stat;
+            this.context = context;
+        }
+
+        int size() {
+            return pos;
+        }
+
+        FsStat fsStat() throws IOException {
+            if (fsStat == null) {
+                fsStat = fs.getFsStat();
+            }
+            return fsStat;
+        }
+
+        byte[] toByteArray() {
+            return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+        }
+
+        private void ensureCapacity(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        boolean putInt(int v) {
+            ensureCapacity(Integer.BYTES);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+            return true;
+        }
+
+        boolean putLong(long v) {
+            putInt((int) (v >>> 32));
+            return putInt((int) v);
+        }
+
+        boolean putBoolean(boolean v) {
+            return putInt(v ? 1 : 0);
+        }
+
+        boolean putBitmap(int[] bitmap) {
+            putInt(bitmap.length);
+            for (int mask : bitmap) {
+                putInt(mask);
+            }
+            return true;
+        }
+
+        boolean putOpaque(byte[] bytes) {
+            putInt(bytes.length);
+            int padding = (4 - (bytes.length & 3)) & 3;
+            ensureCapacity(bytes.length + padding);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+            for (int i = 0; i < padding; i++) {
+                buf[pos++] = 0;
+            }
+            return true;
+        }
+
+        boolean putString(String s) {
+            return putOpaque(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Encode time in milliseconds as nfstime4.
+         */
+        boolean putTime(long millis) {
+            putLong(millis / 1000);
+            return putInt((int) ((millis % 1000) * 1000000));
+        }
+
+        boolean writeGeneric(int attribute) throws IOException {
+            Optional<? extends XdrAble> attr = OperationGETATTR.fattr2xdr(attribute, fs, inode, stat, context);
+            if (!attr.isPresent()) {
+                return false;
+            }
+
+            try (Xdr xdr = new Xdr(256)) {
+                xdr.beginEncoding();
+                attr.get().xdrEncode(xdr);
+                xdr.endEncoding();
+                byte[] bytes = xdr.getBytes();
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buf, pos, bytes.length);
+                pos += bytes.length;
+            }
+            return true;
+        }
+    }
+}
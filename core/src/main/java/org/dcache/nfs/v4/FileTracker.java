@@ -20,27 +20,68 @@
 package org.dcache.nfs.v4;
 
 import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.status.BadStateidException;
+import org.dcache.nfs.status.DelayException;
 import org.dcache.nfs.status.InvalException;
 import org.dcache.nfs.status.ShareDeniedException;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.v4.xdr.nfs_fh4;
 import org.dcache.nfs.v4.xdr.stateid4;
+import org.dcache.nfs.v4.xdr.why_no_delegation4;
 import org.dcache.nfs.vfs.Inode;
 import org.dcache.nfs.util.Opaque;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * A class which tracks open files.
+ * A class which tracks open files and read delegations.
+ * <p>
+ * A read delegation is granted to a client, which has a callback channel and opens a
+ * file for reading only, as long as no other client has the file open for writing.
+ * A conflicting OPEN, WRITE, SETATTR, REMOVE or RENAME recalls the delegations of
+ * the file with CB_RECALL and fails with NFS4ERR_DELAY until the delegations are
+ * returned. Delegations, which are not returned within the recall timeout or which
+ * can't be recalled, are revoked. The holder of a revoked delegation is notified with
+ * SEQ4_STATUS_RECALLABLE_STATE_REVOKED, see {@link NFS4Client#revokeDelegation}.
  */
 public class FileTracker {
 
+    private static final Logger LOG = LoggerFactory.getLogger(FileTracker.class);
+
+    /**
+     * Maximal number of concurrently sent CB_RECALLs.
+     */
+    private static final int RECALL_THREADS = 8;
+
+    /**
+     * Maximal number of CB_RECALLs waiting to be sent.
+     */
+    private static final int RECALL_QUEUE_SIZE = 1024;
+
+    /**
+     * Executor used to send CB_RECALL, as callbacks must not block the conflicting
+     * request.
+     */
+    private final ThreadPoolExecutor recallExecutor;
+
     /*
      * we use {@link Striped} locks here to split synchronized block on open files
      * into multiple partitions to increase concurrency, while guaranteeing atomicity
@@ -54,6 +95,48 @@ public class FileTracker {
     private final Striped<Lock> filesLock = Striped.lock(Runtime.getRuntime().availableProcessors()*4);
     private final Map<Opaque, List<OpenState>> files = new ConcurrentHashMap<>();
 
+    /**
+     * Read delegations of each file. Guarded by the file's lock.
+     */
+    private final Map<Opaque, List<DelegationState>> delegations = new ConcurrentHashMap<>();
+
+    /**
+     * Time given to a client to return a recalled delegation.
+     */
+    private final Duration recallTimeout;
+
+    private final Clock clock;
+
+    public FileTracker() {
+        this(Duration.ofSeconds(NFSv4Defaults.NFS4_LEASE_TIME), Clock.systemDefaultZone());
+    }
+
+    /**
+     * Create a new file tracker.
+     *
+     * @param recallTimeout time after which a recalled and not returned delegation is revoked.
+     * @param clock the clock used to track recall timeouts.
+     */
+    public FileTracker(Duration recallTimeout, Clock clock) {
+        this.recallTimeout = recallTimeout;
+        this.clock = clock;
+        recallExecutor = new ThreadPoolExecutor(RECALL_THREADS, RECALL_THREADS,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(RECALL_QUEUE_SIZE),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("delegation-recall-%d")
+                        .setDaemon(true)
+                        .build());
+        recallExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stop sending delegation recalls.
+     */
+    public void shutdown() {
+        recallExecutor.shutdownNow();
+    }
+
     private static class OpenState {
 
         private final NFS4Client client;
@@ -91,6 +174,64 @@ public class FileTracker {
         }
     }
 
+    private static class DelegationState {
+
+        private final NFS4Client client;
+        private final stateid4 stateid;
+        private final Inode inode;
+        private boolean recalled;
+        private long recallTime;
+
+        DelegationState(NFS4Client client, stateid4 stateid, Inode inode) {
+            this.client = client;
+            this.stateid = stateid;
+            this.inode = inode;
+        }
+    }
+
+    /**
+     * The result of {@link #openFile}.
+     */
+    public static class OpenRecord {
+
+        private final stateid4 openStateId;
+        private final stateid4 delegationStateId;
+        private final int whyNoDelegation;
+
+        private OpenRecord(stateid4 openStateId, stateid4 delegationStateId, int whyNoDelegation) {
+            this.openStateId = openStateId;
+            this.delegationStateId = delegationStateId;
+            this.whyNoDelegation = whyNoDelegation;
+        }
+
+        /**
+         * Returns a snapshot of the stateid associated with open.
+         */
+        public stateid4 openStateId() {
+            return openStateId;
+        }
+
+        /**
+         * Returns a snapshot of the stateid of the granted read delegation or null,
+         * if no delegation is granted.
+         */
+        public stateid4 delegationStateId() {
+            return delegationStateId;
+        }
+
+        public boolean hasDelegation() {
+            return delegationStateId != null;
+        }
+
+        /**
+         * Returns the reason, as defined by {@link why_no_delegation4}, why no delegation
+         * is granted.
+         */
+        public int whyNoDelegation() {
+            return whyNoDelegation;
+        }
+    }
+
     /**
      * Add a new open to the list of open files. If provided {@code shareAccess}
      * and {@code shareDeny} conflicts with existing opens, @{link ShareDeniedException}
@@ -105,48 +246,386 @@ public class FileTracker {
      * @throws ChimeraNFSException
      */
     public stateid4 addOpen(NFS4Client client, StateOwner owner, Inode inode, int shareAccess, int shareDeny) throws  ChimeraNFSException {
+        return open(client, owner, inode, shareAccess, shareDeny, false).openStateId();
+    }
+
+    /**
+     * Add a new open to the list of open files and grant a read delegation, if
+     * the client asks for it, has a callback channel and no other client has the
+     * file open for writing. Delegations, which conflict with the open, are recalled.
+     *
+     * @param client nfs client performing the open operation.
+     * @param owner open state owner
+     * @param inode of opened file.
+     * @param shareAccess type of access required, including delegation wants.
+     * @param shareDeny type of access to deny others.
+     * @return the open stateid and optional delegation stateid.
+     * @throws ShareDeniedException if share reservation conflicts with an existing open.
+     * @throws DelayException if conflicting delegations are being recalled.
+     * @throws ChimeraNFSException
+     */
+    public OpenRecord openFile(NFS4Client client, StateOwner owner, Inode inode, int shareAccess, int shareDeny) throws ChimeraNFSException {
+        return open(client, owner, inode, shareAccess, shareDeny, true);
+    }
+
+    private OpenRecord open(NFS4Client client, StateOwner owner, Inode inode, int shareAccess, int shareDeny,
+            boolean mayDelegate) throws ChimeraNFSException {
+
+        int want = shareAccess & nfs4_prot.OPEN4_SHARE_ACCESS_WANT_DELEG_MASK;
+        int access = shareAccess & nfs4_prot.OPEN4_SHARE_ACCESS_BOTH;
+
+        List<DelegationState> toRecall = new ArrayList<>();
+        List<DelegationState> toRevoke = new ArrayList<>();
+
+        Opaque fileId = new Opaque(inode.getFileId());
+        Lock lock = filesLock.get(fileId);
+        lock.lock();
+        try {
+
+            // writers and readers denial conflict with read delegations of all clients.
+            boolean conflictsWithDelegations = (access & nfs4_prot.OPEN4_SHARE_ACCESS_WRITE) != 0
+                    || (shareDeny & nfs4_prot.OPEN4_SHARE_ACCESS_READ) != 0;
+            if (!conflictsWithDelegations
+                    || !checkDelegations(fileId, c -> true, toRecall, toRevoke)) {
+
+                /*
+                 * check for existing opens on that file
+                 * initialize new array with size of one, as this is what the majority of cases will be
+                 */
+                final List<OpenState> opens = files.computeIfAbsent(fileId, x -> new ArrayList<>(1));
+
+                stateid4 stateid;
+                // check for a conflicting open from not expired client (we need to check
+                // client as session GC may not been active yet
+                if (opens.stream()
+                        .filter(o -> o.client.isLeaseValid())
+                        .anyMatch(o -> (access & o.getShareDeny()) != 0|| (shareDeny & o.getShareAccess()) != 0)) {
+                        throw new ShareDeniedException("Conflicting share");
+                }
+
+                stateid = addOpenState(opens, client, owner, inode, access, shareDeny);
+
+                if (!mayDelegate) {
+                    return new OpenRecord(stateid, null, why_no_delegation4.WND4_NOT_WANTED);
+                }
+
+                int whyNoDelegation = checkCanDelegate(fileId, client, want, access, shareDeny);
+                if (whyNoDelegation != -1) {
+                    return new OpenRecord(stateid, null, whyNoDelegation);
+                }
+
+                NFS4State delegation = client.createState(owner);
+                stateid4 delegationStateid = delegation.stateid();
+                delegations.computeIfAbsent(fileId, x -> new ArrayList<>(1))
+                        .add(new DelegationState(client, delegationStateid, inode));
+                delegation.addDisposeListener(s -> removeDelegation(inode, delegationStateid));
+                delegationStateid.seqid++;
+                return new OpenRecord(stateid,
+                        new stateid4(delegationStateid.other, delegationStateid.seqid), -1);
+            }
+        } finally {
+            lock.unlock();
+            // revoke delegations even if no conflicts left to recall
+            recallAndRevoke(toRecall, toRevoke);
+        }
+
+        throw new DelayException("Recalling conflicting delegations");
+    }
+
+    /**
+     * Add an open, which the client has performed locally under a read delegation, as
+     * result of OPEN with CLAIM_DELEGATE_CUR or CLAIM_DELEG_CUR_FH. Share reservations
+     * are not checked, as the delegation guarantees that there are no conflicting opens.
+     *
+     * @param client nfs client performing the open operation.
+     * @param owner open state owner
+     * @param inode of opened file.
+     * @param delegationStateid the stateid of the delegation held by the client.
+     * @param shareAccess type of access required.
+     * @param shareDeny type of access to deny others.
+     * @return the open stateid.
+     * @throws BadStateidException if client has no such delegation on the file.
+     * @throws InvalException if write access is requested.
+     * @throws ChimeraNFSException
+     */
+    public OpenRecord openDelegatedFile(NFS4Client client, StateOwner owner, Inode inode, stateid4 delegationStateid,
+            int shareAccess, int shareDeny) throws ChimeraNFSException {
+
+        int access = shareAccess & nfs4_prot.OPEN4_SHARE_ACCESS_BOTH;
+        if ((access & nfs4_prot.OPEN4_SHARE_ACCESS_WRITE) != 0) {
+            throw new InvalException("read delegation does not cover write access");
+        }
 
         Opaque fileId = new Opaque(inode.getFileId());
         Lock lock = filesLock.get(fileId);
         lock.lock();
         try {
-            /*
-             * check for existing opens on that file
-             * initialize new array with size of one, as this is what the majority of cases will be
-             */
+            // recalled delegations are claimed as well, as they are not returned yet
+            List<DelegationState> fileDelegations = delegations.get(fileId);
+            if (fileDelegations == null || fileDelegations.stream()
+                    .noneMatch(d -> d.client.getId() == client.getId() && d.stateid.equals(delegationStateid))) {
+                throw new BadStateidException("no matching delegation");
+            }
+
             final List<OpenState> opens = files.computeIfAbsent(fileId, x -> new ArrayList<>(1));
+            stateid4 stateid = addOpenState(opens, client, owner, inode, access, shareDeny);
+            return new OpenRecord(stateid, null, why_no_delegation4.WND4_NOT_WANTED);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            stateid4 stateid;
-            // check for a conflicting open from not expired client (we need to check
-            // client as session GC may not been active yet
-            if (opens.stream()
-                    .filter(o -> o.client.isLeaseValid())
-                    .anyMatch(o -> (shareAccess & o.getShareDeny()) != 0|| (shareDeny & o.getShareAccess()) != 0)) {
-                    throw new ShareDeniedException("Conflicting share");
+    /**
+     * Add an open state or merge with an existing open of the same owner. Must be
+     * called with file lock held.
+     *
+     * @return a snapshot of the stateid associated with open.
+     */
+    private stateid4 addOpenState(List<OpenState> opens, NFS4Client client, StateOwner owner, Inode inode,
+            int access, int shareDeny) throws ChimeraNFSException {
+
+        // if there is another open from the same client we must merge
+        // access mode and return the same stateid as required by rfc5661#18.16.3
+        for (OpenState os : opens) {
+            if (os.client.getId() == client.getId() &&
+                    os.getOwner().equals(owner)) {
+                    os.shareAccess |= access;
+                    os.shareDeny |= shareDeny;
+                    os.stateid.seqid++;
+                    //we need to return copy to avoid modification by concurrent opens
+                    return new stateid4(os.stateid.other, os.stateid.seqid);
             }
+        }
+
+        NFS4State state = client.createState(owner);
+        stateid4 openStateid = state.stateid();
+        OpenState openState = new OpenState(client, owner, openStateid, access, shareDeny);
+        opens.add(openState);
+        state.addDisposeListener(s -> removeOpen(inode, openStateid));
+        openStateid.seqid++;
+        //we need to return copy to avoid modification by concurrent opens
+        return new stateid4(openStateid.other, openStateid.seqid);
+    }
+
+    /**
+     * Check whether a read delegation can be granted. Must be called with file lock held.
+     *
+     * @return -1 if delegation can be granted, otherwise the reason why not.
+     */
+    private int checkCanDelegate(Opaque fileId, NFS4Client client, int want, int access, int shareDeny) {
+
+        switch (want) {
+            case nfs4_prot.OPEN4_SHARE_ACCESS_WANT_NO_PREFERENCE:
+            case nfs4_prot.OPEN4_SHARE_ACCESS_WANT_READ_DELEG:
+            case nfs4_prot.OPEN4_SHARE_ACCESS_WANT_ANY_DELEG:
+                break;
+            case nfs4_prot.OPEN4_SHARE_ACCESS_WANT_CANCEL:
+                return why_no_delegation4.WND4_CANCELED;
+            case nfs4_prot.OPEN4_SHARE_ACCESS_WANT_NO_DELEG:
+                return why_no_delegation4.WND4_NOT_WANTED;
+            default:
+                // write delegations are not supported
+                return why_no_delegation4.WND4_RESOURCE;
+        }
+
+        if (client.getCB() == null || access != nfs4_prot.OPEN4_SHARE_ACCESS_READ || shareDeny != 0) {
+            return why_no_delegation4.WND4_RESOURCE;
+        }
+
+        List<OpenState> opens = files.get(fileId);
+        if (opens != null && opens.stream()
+                .filter(o -> o.client.isLeaseValid())
+                .anyMatch(o -> (o.getShareAccess() & nfs4_prot.OPEN4_SHARE_ACCESS_WRITE) != 0)) {
+            return why_no_delegation4.WND4_CONTENTION;
+        }
 
-            // if there is another open from the same client we must merge
-            // access mode and return the same stateid as required by rfc5661#18.16.3
-
-            for (OpenState os : opens) {
-                if (os.client.getId() == client.getId() &&
-                        os.getOwner().equals(owner)) {
-                        os.shareAccess |= shareAccess;
-                        os.shareDeny |= shareDeny;
-                        os.stateid.seqid++;
-                        //we need to return copy to avoid modification by concurrent opens
-                        return new stateid4(os.stateid.other, os.stateid.seqid);
+        List<DelegationState> fileDelegations = delegations.get(fileId);
+        if (fileDelegations != null) {
+            for (DelegationState d : fileDelegations) {
+                if (d.recalled) {
+                    return why_no_delegation4.WND4_CONTENTION;
+                }
+                if (d.client.getId() == client.getId()) {
+                    // one delegation per client and file
+                    return why_no_delegation4.WND4_RESOURCE;
                 }
             }
+        }
+        return -1;
+    }
 
-            NFS4State state = client.createState(owner);
-            stateid = state.stateid();
-            OpenState openState = new OpenState(client, owner, stateid, shareAccess, shareDeny);
-            opens.add(openState);
-            state.addDisposeListener(s -> removeOpen(inode, stateid));
-            stateid.seqid++;
-            //we need to return copy to avoid modification by concurrent opens
-            return new stateid4(stateid.other, stateid.seqid);
+    /**
+     * Find delegations, which conflict with a request. Delegations, which are not returned
+     * within recall timeout or held by expired clients, are removed and added to
+     * {@code toRevoke}. Not yet recalled delegations are marked as recalled and added to
+     * {@code toRecall}. Must be called with file lock held.
+     *
+     * @return true, if there are outstanding conflicting delegations.
+     */
+    private boolean checkDelegations(Opaque fileId, Predicate<NFS4Client> isConflicting,
+            List<DelegationState> toRecall, List<DelegationState> toRevoke) {
+
+        List<DelegationState> fileDelegations = delegations.get(fileId);
+        if (fileDelegations == null) {
+            return false;
+        }
+
+        boolean hasConflicts = false;
+        long now = clock.millis();
+        Iterator<DelegationState> i = fileDelegations.iterator();
+        while (i.hasNext()) {
+            DelegationState d = i.next();
+            if (!isConflicting.test(d.client)) {
+                continue;
+            }
+
+            if (!d.client.isLeaseValid()
+                    || (d.recalled && now - d.recallTime > recallTimeout.toMillis())) {
+                i.remove();
+                toRevoke.add(d);
+                continue;
+            }
+
+            hasConflicts = true;
+            if (!d.recalled) {
+                d.recalled = true;
+                d.recallTime = now;
+                toRecall.add(d);
+            }
+        }
+
+        if (fileDelegations.isEmpty()) {
+            delegations.remove(fileId);
+        }
+        return hasConflicts;
+    }
+
+    private void recallAndRevoke(List<DelegationState> toRecall, List<DelegationState> toRevoke) {
+        toRevoke.forEach(FileTracker::revoke);
+        for (DelegationState d : toRecall) {
+            try {
+                recallExecutor.execute(() -> recall(d));
+            } catch (RejectedExecutionException e) {
+                // too many outstanding recalls, retry on next conflicting request
+                LOG.warn("Failed to schedule delegation recall of {}: {}", d.client, e.getMessage());
+                cancelRecall(d);
+            }
+        }
+    }
+
+    private void cancelRecall(DelegationState d) {
+        Opaque fileId = new Opaque(d.inode.getFileId());
+        Lock lock = filesLock.get(fileId);
+        lock.lock();
+        try {
+            d.recalled = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void recall(DelegationState d) {
+        ClientCB cb = d.client.getCB();
+        try {
+            LOG.debug("Recalling delegation {} of {}", d.stateid, d.client);
+            cb.cbDelegationRecall(new nfs_fh4(d.inode.toNfsHandle()), d.stateid, false);
+        } catch (IOException e) {
+            LOG.warn("Failed to recall delegation from {}: {}", d.client, e.getMessage());
+            revoke(d);
+        }
+    }
+
+    private static void revoke(DelegationState d) {
+        LOG.info("Revoking delegation {} of {}", d.stateid, d.client);
+        d.client.revokeDelegation(d.stateid);
+    }
+
+    /**
+     * Returns true if any delegation is granted.
+     */
+    public boolean hasDelegations() {
+        return !delegations.isEmpty();
+    }
+
+    /**
+     * Recall read delegations of the file held by other clients, as the file is
+     * going to be modified.
+     *
+     * @param client nfs client performing the modification or null, if not known.
+     * @param inode of the file.
+     * @throws DelayException if conflicting delegations are being recalled.
+     */
+    public void recallDelegations(NFS4Client client, Inode inode) throws DelayException {
+
+        if (delegations.isEmpty()) {
+            return;
+        }
+
+        List<DelegationState> toRecall = new ArrayList<>();
+        List<DelegationState> toRevoke = new ArrayList<>();
+        Predicate<NFS4Client> isOther = c -> client == null || c.getId() != client.getId();
+
+        Opaque fileId = new Opaque(inode.getFileId());
+        boolean hasConflicts;
+        Lock lock = filesLock.get(fileId);
+        lock.lock();
+        try {
+            hasConflicts = checkDelegations(fileId, isOther, toRecall, toRevoke);
+        } finally {
+            lock.unlock();
+        }
+
+        recallAndRevoke(toRecall, toRevoke);
+        if (hasConflicts) {
+            throw new DelayException("Recalling conflicting delegations");
+        }
+    }
+
+    /**
+     * Return delegation, as result of DELEGRETURN.
+     *
+     * @param client nfs client which returns the delegation.
+     * @param inode of the file.
+     * @param stateid delegation stateid.
+     * @throws BadStateidException if client has no such delegation on the file.
+     * @throws ChimeraNFSException
+     */
+    public void returnDelegation(NFS4Client client, Inode inode, stateid4 stateid) throws ChimeraNFSException {
+
+        Opaque fileId = new Opaque(inode.getFileId());
+        Lock lock = filesLock.get(fileId);
+        lock.lock();
+        try {
+            List<DelegationState> fileDelegations = delegations.get(fileId);
+            if (fileDelegations == null || fileDelegations.stream()
+                    .noneMatch(d -> d.client.getId() == client.getId() && d.stateid.equals(stateid))) {
+                throw new BadStateidException("no matching delegation");
+            }
+        } finally {
+            lock.unlock();
+        }
+        // the dispose listener removes the delegation
+        client.releaseState(stateid);
+    }
+
+    /**
+     * Remove a delegation from the list.
+     * @param inode of the delegated file
+     * @param stateid associated with the delegation.
+     */
+    void removeDelegation(Inode inode, stateid4 stateid) {
+
+        Opaque fileId = new Opaque(inode.getFileId());
+        Lock lock = filesLock.get(fileId);
+        lock.lock();
+        try {
+            List<DelegationState> fileDelegations = delegations.get(fileId);
+            if (fileDelegations != null) {
+                fileDelegations.removeIf(d -> d.stateid.equals(stateid));
+                if (fileDelegations.isEmpty()) {
+                    delegations.remove(fileId);
+                }
+            }
         } finally {
             lock.unlock();
         }
@@ -235,7 +714,7 @@ public class FileTracker {
      * Get open access type used by opened file.
      * @param client nfs client which performs the request.
      * @param inode of the opened file
-     * @param stateid associated with the open.
+     * @param stateid associated with the open or read delegation.
      * @return share access typed used.
      * @throws BadStateidException if no open file associated with provided state id.
      */
@@ -247,16 +726,22 @@ public class FileTracker {
         try {
             final List<OpenState> opens = files.get(fileId);
 
-            if (opens == null) {
-                throw new BadStateidException("no matching open");
+            if (opens != null) {
+                for (OpenState os : opens) {
+                    if (client.getId() == os.client.getId() && os.stateid.equals(stateid)) {
+                        return os.getShareAccess();
+                    }
+                }
             }
 
-            return opens.stream()
-                    .filter(s -> client.getId() == s.client.getId())
-                    .filter(s -> s.stateid.equals(stateid))
-                    .map(OpenState::getShareAccess)
-                    .findFirst()
-                    .orElseThrow(BadStateidException::new);
+            // a read delegation stateid can be used as open stateid
+            List<DelegationState> fileDelegations = delegations.get(fileId);
+            if (fileDelegations != null && fileDelegations.stream()
+                    .anyMatch(d -> client.getId() == d.client.getId() && d.stateid.equals(stateid))) {
+                return nfs4_prot.OPEN4_SHARE_ACCESS_READ;
+            }
+
+            throw new BadStateidException("no matching open");
         } finally {
             lock.unlock();
         }
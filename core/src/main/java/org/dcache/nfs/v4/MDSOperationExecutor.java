@@ -28,6 +28,16 @@ import java.io.IOException;
 
 public class MDSOperationExecutor extends AbstractOperationExecutor {
 
+    public MDSOperationExecutor() {
+    }
+
+    /**
+     * @param metrics sink to record execution time and status of each operation.
+     * @since 0.27
+     */
+    public MDSOperationExecutor(OperationMetricsSink metrics) {
+        super(metrics);
+    }
 
     @Override
     protected AbstractNFSv4Operation getOperation(nfs_argop4 op) {
@@ -25,7 +25,6 @@ package org.dcache.nfs.v4;
 import com.google.common.io.BaseEncoding;
 import java.time.Clock;
 import java.time.Duration;
-import java.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,17 +32,20 @@ import java.net.InetSocketAddress;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.status.BadSeqidException;
 import org.dcache.nfs.status.BadSessionException;
 import org.dcache.nfs.status.BadStateidException;
 import org.dcache.nfs.status.CompleteAlreadyException;
+import org.dcache.nfs.status.DelegRevokedException;
 import org.dcache.nfs.status.ExpiredException;
 import org.dcache.nfs.status.NoGraceException;
 import org.dcache.nfs.status.SeqMisorderedException;
@@ -108,6 +110,13 @@ public class NFS4Client {
      */
     private final clientid4 _clientId;
 
+    /**
+     * Guards client's confirmation, session sequence and reclaim state. A {@link Lock}
+     * is used instead of a monitor, as virtual threads blocked on a monitor pin their
+     * carrier thread.
+     */
+    private final Lock _lock = new ReentrantLock();
+
     /**
      * A flag to indicate whether or not a client record has been confirmed.
      */
@@ -120,20 +129,26 @@ public class NFS4Client {
 
     private final Map<stateid4, NFS4State> _clientStates = new ConcurrentHashMap<>();
 
+    /**
+     * Delegations revoked by the server, which are not freed by the client yet.
+     */
+    private final Set<stateid4> _revokedDelegations = ConcurrentHashMap.newKeySet();
+
     /**
      * sessions associated with the client
      */
-    private final Map<sessionid4, NFSv41Session> _sessions = new HashMap<>();
+    private final Map<sessionid4, NFSv41Session> _sessions = new ConcurrentHashMap<>();
 
     /**
-     * The point in time of the last lease renewal.
+     * The point in time of the last lease renewal in milliseconds. Kept as a primitive
+     * to renew the lease on each SEQUENCE or RENEW without allocation.
      */
-    private volatile Instant _lastLeaseUpdate;
+    private volatile long _lastLeaseUpdate;
 
     /**
      * Open Owners associated with client.
      */
-    private final Map<Opaque, StateOwner> _owners = new HashMap<>();
+    private final Map<Opaque, StateOwner> _owners = new ConcurrentHashMap<>();
     /*
 
     Client identification is encapsulated in the following structure:
@@ -165,9 +180,9 @@ public class NFS4Client {
     private ClientCB _cl_cb = null; /* callback info */
 
     /**
-     * Time duration of a valid lease.
+     * Time duration of a valid lease in milliseconds.
      */
-    private final Duration _leaseTime;
+    private final long _leaseTime;
 
     /**
      * A flag to indicate that the client already have
@@ -207,8 +222,8 @@ public class NFS4Client {
 
         _clientAddress = clientAddress;
         _localAddress = localAddress;
-        _lastLeaseUpdate = _clock.instant();
-        _leaseTime = leaseTime;
+        _lastLeaseUpdate = _clock.millis();
+        _leaseTime = leaseTime.toMillis();
         _callbackNeeded = calbackNeeded;
         _minorVersion = minorVersion;
 	_reclaim_completed = _minorVersion == 0; // no reclaim for NFSv4.0 clients
@@ -230,6 +245,13 @@ public class NFS4Client {
         return _minorVersion;
     }
 
+    /**
+     * Get the budget, which replies cached by client's sessions are charged against.
+     */
+    ReplyCacheBudget getReplyCacheBudget() {
+        return _stateHandler.getReplyCacheBudget();
+    }
+
     /**
      * Get client's long-hand unique identifier.
      * @return client's unique identifier.
@@ -258,16 +280,26 @@ public class NFS4Client {
         return _verifier.equals(verifier);
     }
 
-    public synchronized boolean isConfirmed() {
-        return _isConfirmed;
+    public boolean isConfirmed() {
+        _lock.lock();
+        try {
+            return _isConfirmed;
+        } finally {
+            _lock.unlock();
+        }
     }
 
-    public synchronized void setConfirmed() {
-        _isConfirmed = true;
+    public void setConfirmed() {
+        _lock.lock();
+        try {
+            _isConfirmed = true;
+        } finally {
+            _lock.unlock();
+        }
     }
 
     public boolean isLeaseValid() {
-        return _lastLeaseUpdate.plus(_leaseTime).isAfter(_clock.instant());
+        return _clock.millis() - _lastLeaseUpdate < _leaseTime;
     }
 
     /**
@@ -278,10 +310,10 @@ public class NFS4Client {
      */
     public void updateLeaseTime() throws ChimeraNFSException {
 
-        Instant curentTime = _clock.instant();
-        var delta = Duration.between(_lastLeaseUpdate, curentTime);
-        if (delta.compareTo(_leaseTime) > 0) {
-            throw new ExpiredException("lease time expired: (" + delta +"): " + BaseEncoding.base16().lowerCase().encode(_ownerId) +
+        long curentTime = _clock.millis();
+        long delta = curentTime - _lastLeaseUpdate;
+        if (delta > _leaseTime) {
+            throw new ExpiredException("lease time expired: (" + Duration.ofMillis(delta) +"): " + BaseEncoding.base16().lowerCase().encode(_ownerId) +
                     " (" + _clientId + ").");
         }
         _lastLeaseUpdate = curentTime;
@@ -291,15 +323,20 @@ public class NFS4Client {
      * sets client lease time with current time
      */
     public void refreshLeaseTime() {
-        _lastLeaseUpdate = _clock.instant();
+        _lastLeaseUpdate = _clock.millis();
     }
 
     /**
      * re-initialize client
      */
-    public synchronized void reset() {
-        refreshLeaseTime();
-        _isConfirmed = false;
+    public void reset() {
+        _lock.lock();
+        try {
+            refreshLeaseTime();
+            _isConfirmed = false;
+        } finally {
+            _lock.unlock();
+        }
     }
 
     /**
@@ -367,11 +404,53 @@ public class NFS4Client {
     public NFS4State state(stateid4 stateid) throws ChimeraNFSException {
         NFS4State state = _clientStates.get(stateid);
         if(state == null) {
+            if (_revokedDelegations.contains(stateid)) {
+                throw new DelegRevokedException("Delegation revoked: " + stateid);
+            }
             throw new BadStateidException("State not known to the client: " + stateid);
         }
         return state;
     }
 
+    /**
+     * Revoke a delegation held by this client. The delegation's state is released.
+     * NFSv4.1 clients are notified with SEQ4_STATUS_RECALLABLE_STATE_REVOKED and
+     * NFS4ERR_DELEG_REVOKED on the next use of the stateid until the revoked
+     * stateid is freed with FREE_STATEID.
+     *
+     * @param stateid the delegation stateid.
+     */
+    public void revokeDelegation(stateid4 stateid) {
+        NFS4State state = _clientStates.get(stateid);
+        if (state == null) {
+            // already returned
+            return;
+        }
+        if (_minorVersion > 0) {
+            // NFSv4.0 has no means to free revoked state
+            _revokedDelegations.add(stateid);
+        }
+        state.disposeIgnoreFailures();
+        _clientStates.remove(stateid);
+    }
+
+    /**
+     * Returns true if this client has revoked delegations, which are not freed yet.
+     */
+    public boolean hasRevokedDelegations() {
+        return !_revokedDelegations.isEmpty();
+    }
+
+    /**
+     * Free a revoked delegation, as result of FREE_STATEID.
+     *
+     * @param stateid the delegation stateid.
+     * @return true, if stateid was a revoked delegation.
+     */
+    public boolean freeRevokedDelegation(stateid4 stateid) {
+        return _revokedDelegations.remove(stateid);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -391,53 +470,77 @@ public class NFS4Client {
         return _sessions.values();
     }
 
-    public synchronized NFSv41Session createSession(int sequence, int cacheSize, int cbCacheSize, int maxOps, int maxCbOps) throws ChimeraNFSException {
+    public NFSv41Session createSession(int sequence, int cacheSize, int cbCacheSize, int maxOps, int maxCbOps) throws ChimeraNFSException {
+        return createSession(sequence, cacheSize, cbCacheSize, maxOps, maxCbOps, 0);
+    }
 
-        /*
-         * For unconfirmed cleints server expects sequence number to be equal to
-         * value of eir_sequenceid that was returned in results of the EXCHANGE_ID.
-         */
-        _log.debug("session for sequience: {}", sequence);
-        if (sequence > _sessionSequence && _isConfirmed) {
-            throw new SeqMisorderedException("bad sequence id: " + _sessionSequence + " / " + sequence);
-        }
+    /**
+     * Create a new session.
+     *
+     * @param sequence the create session sequence id.
+     * @param cacheSize the number of fore channel slots.
+     * @param cbCacheSize the number of back channel slots.
+     * @param maxOps the maximum number of operations per compound.
+     * @param maxCbOps the maximum number of operations per callback compound.
+     * @param maxResponseSizeCached the maximum size of a cached reply.
+     * @return new session or existing session, if CREATE_SESSION is retransmitted.
+     * @throws ChimeraNFSException
+     */
+    public NFSv41Session createSession(int sequence, int cacheSize, int cbCacheSize, int maxOps, int maxCbOps,
+            int maxResponseSizeCached) throws ChimeraNFSException {
+
+        _lock.lock();
+        try {
+            /*
+             * For unconfirmed cleints server expects sequence number to be equal to
+             * value of eir_sequenceid that was returned in results of the EXCHANGE_ID.
+             */
+            _log.debug("session for sequience: {}", sequence);
+            if (sequence > _sessionSequence && _isConfirmed) {
+                throw new SeqMisorderedException("bad sequence id: " + _sessionSequence + " / " + sequence);
+            }
 
-        if (sequence == _sessionSequence - 1 && !_isConfirmed) {
-            throw new SeqMisorderedException("bad sequence id: " + _sessionSequence + " / " + sequence);
-        }
+            if (sequence == _sessionSequence - 1 && !_isConfirmed) {
+                throw new SeqMisorderedException("bad sequence id: " + _sessionSequence + " / " + sequence);
+            }
 
-        if (sequence == _sessionSequence - 1) {
-            _log.debug("Retransmit on create session detected");
-            sessionid4 sessionid = _stateHandler.createSessionId(this, sequence);
-            return _sessions.get(sessionid);
-        }
+            if (sequence == _sessionSequence - 1) {
+                _log.debug("Retransmit on create session detected");
+                sessionid4 sessionid = _stateHandler.createSessionId(this, sequence);
+                return _sessions.get(sessionid);
+            }
 
-        if (sequence != _sessionSequence ) {
-            throw new SeqMisorderedException("bad sequence id: " + _sessionSequence + " / " + sequence);
-        }
+            if (sequence != _sessionSequence ) {
+                throw new SeqMisorderedException("bad sequence id: " + _sessionSequence + " / " + sequence);
+            }
 
-        sessionid4 sessionid = _stateHandler.createSessionId(this, _sessionSequence);
-        NFSv41Session session = new NFSv41Session(this, sessionid, cacheSize, cbCacheSize, maxOps, maxCbOps);
+            sessionid4 sessionid = _stateHandler.createSessionId(this, _sessionSequence);
+            NFSv41Session session = new NFSv41Session(this, sessionid, cacheSize, cbCacheSize, maxOps, maxCbOps,
+                    maxResponseSizeCached, getReplyCacheBudget());
 
-        _sessions.put(sessionid, session);
-        _sessionSequence++;
+            _sessions.put(sessionid, session);
+            _sessionSequence++;
 
-        if(!_isConfirmed){
-            _isConfirmed = true;
-            _log.debug("set client confirmed");
-        }
+            if(!_isConfirmed){
+                _isConfirmed = true;
+                _log.debug("set client confirmed");
+            }
 
-        return session;
+            return session;
+        } finally {
+            _lock.unlock();
+        }
     }
 
-    public synchronized void removeSession(sessionid4 id) throws BadSessionException {
+    public void removeSession(sessionid4 id) throws BadSessionException {
         NFSv41Session session = _sessions.remove(id);
         if (session == null) {
             throw new BadSessionException("session not found");
         }
+        session.releaseCachedReplies();
     }
 
-    public synchronized NFSv41Session getSession(sessionid4 id) throws BadSessionException {
+    public NFSv41Session getSession(sessionid4 id) throws BadSessionException {
         NFSv41Session session = _sessions.get(id);
         if (session == null) {
             throw new BadSessionException("session not found");
@@ -480,12 +583,18 @@ public class NFS4Client {
         _clientStates.remove(state.stateid());
     }
 
-    private synchronized void drainStates() {
-        Iterator<NFS4State> i = _clientStates.values().iterator();
-        while (i.hasNext()) {
-            NFS4State state = i.next();
-            state.disposeIgnoreFailures();
-            i.remove();
+    private void drainStates() {
+        _lock.lock();
+        try {
+            Iterator<NFS4State> i = _clientStates.values().iterator();
+            while (i.hasNext()) {
+                NFS4State state = i.next();
+                state.disposeIgnoreFailures();
+                i.remove();
+            }
+            _revokedDelegations.clear();
+        } finally {
+            _lock.unlock();
         }
     }
 
@@ -495,33 +604,53 @@ public class NFS4Client {
      */
     public final void tryDispose() {
         drainStates();
+        releaseSessions();
+    }
+
+    private void releaseSessions() {
+        _sessions.values().forEach(NFSv41Session::releaseCachedReplies);
     }
 
     /**
      * Indicates that client have reclaimed all states held before server reboot.
      * @throws ChimeraNFSException
      */
-    public synchronized void reclaimComplete() throws ChimeraNFSException {
-	if (_reclaim_completed) {
-	    throw new CompleteAlreadyException("Duplicating reclaim");
-	}
-        _stateHandler.reclaimComplete(getOwnerId());
-	_reclaim_completed = true;
+    public void reclaimComplete() throws ChimeraNFSException {
+        _lock.lock();
+        try {
+            if (_reclaim_completed) {
+                throw new CompleteAlreadyException("Duplicating reclaim");
+            }
+            _stateHandler.reclaimComplete(getOwnerId());
+            _reclaim_completed = true;
+        } finally {
+            _lock.unlock();
+        }
     }
 
     /**
      * Indicates that client wants to perfor state reclaim operation.
      * @throws ChimeraNFSException
      */
-    public synchronized void wantReclaim() throws ChimeraNFSException {
-        if (_reclaim_completed) {
-            throw new NoGraceException("Already complete");
+    public void wantReclaim() throws ChimeraNFSException {
+        _lock.lock();
+        try {
+            if (_reclaim_completed) {
+                throw new NoGraceException("Already complete");
+            }
+            _stateHandler.wantReclaim(getOwnerId());
+        } finally {
+            _lock.unlock();
         }
-        _stateHandler.wantReclaim(getOwnerId());
     }
 
-    public synchronized boolean needReclaim() {
-	return !_reclaim_completed;
+    public boolean needReclaim() {
+        _lock.lock();
+        try {
+            return !_reclaim_completed;
+        } finally {
+            _lock.unlock();
+        }
     }
 
     public boolean isCallbackNeede() {
@@ -536,28 +665,23 @@ public class NFS4Client {
      * @return state owner
      * @throws BadSeqidException if sequence out of order.
      */
-    public synchronized StateOwner getOrCreateOwner(byte[] owner, seqid4 seq) throws BadSeqidException {
-        StateOwner stateOwner;
+    public StateOwner getOrCreateOwner(byte[] owner, seqid4 seq) throws BadSeqidException {
+        state_owner4 so = new state_owner4();
+        so.clientid = _clientId;
+        so.owner = owner;
+
         if (_minorVersion == 0) {
-            Opaque k = new Opaque(owner);
-            stateOwner = _owners.get(k);
+            StateOwner newOwner = new StateOwner(so, seq.value);
+            StateOwner stateOwner = _owners.putIfAbsent(new Opaque(owner), newOwner);
             if (stateOwner == null) {
-                state_owner4 so = new state_owner4();
-                so.clientid = _clientId;
-                so.owner = owner;
-                stateOwner = new StateOwner(so, seq.value);
-                _owners.put(k, stateOwner);
-            } else {
-                stateOwner.acceptAsNextSequence(seq);
+                return newOwner;
             }
-        } else {
-            // for minor version client id derived from session
-            state_owner4 so = new state_owner4();
-            so.clientid = _clientId;
-            so.owner = owner;
-            stateOwner = new StateOwner(so, 0);
+            stateOwner.acceptAsNextSequence(seq);
+            return stateOwner;
         }
-        return stateOwner;
+
+        // for minor version client id derived from session
+        return new StateOwner(so, 0);
     }
 
    /**
@@ -565,7 +689,7 @@ public class NFS4Client {
      *
      * @param owner client unique state owner
      */
-    public synchronized void releaseOwner(byte[] owner) throws StaleClientidException  {
+    public void releaseOwner(byte[] owner) throws StaleClientidException  {
         Opaque k = new Opaque(owner);
         StateOwner stateOwner = _owners.remove(k);
         if (stateOwner == null) {
@@ -26,6 +26,8 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.v4.xdr.stateid4;
@@ -63,6 +65,13 @@ public class NFS4State {
 
     private final List<StateDisposeListener> _disposeListeners;
 
+    /**
+     * Guards dispose listeners and disposed flag. A {@link Lock} is used instead of
+     * synchronized methods, as dispose listeners may block and a virtual thread
+     * blocked inside a monitor pins its carrier thread.
+     */
+    private final Lock _lock = new ReentrantLock();
+
     public NFS4State(StateOwner owner, stateid4 stateid) {
         this(null, owner, stateid);
     }
@@ -93,16 +102,21 @@ public class NFS4State {
      * Any subsequent call will have no effect.
      * @throws ChimeraNFSException on errors.
      */
-    synchronized public final void tryDispose() throws ChimeraNFSException {
-        if (!_disposed) {
-            Iterator<StateDisposeListener> i = _disposeListeners.iterator();
-            while(i.hasNext()) {
-                StateDisposeListener listener = i.next();
-                listener.notifyDisposed(this);
-                i.remove();
+    public final void tryDispose() throws ChimeraNFSException {
+        _lock.lock();
+        try {
+            if (!_disposed) {
+                Iterator<StateDisposeListener> i = _disposeListeners.iterator();
+                while(i.hasNext()) {
+                    StateDisposeListener listener = i.next();
+                    listener.notifyDisposed(this);
+                    i.remove();
+                }
+                dispose();
+                _disposed = true;
             }
-            dispose();
-            _disposed = true;
+        } finally {
+            _lock.unlock();
         }
     }
 
@@ -110,20 +124,25 @@ public class NFS4State {
      * Release resources used by this State if not released yet. Any subsequent
      * call will have no effect.
      */
-    synchronized public final void disposeIgnoreFailures() {
-        if (!_disposed) {
-            Iterator<StateDisposeListener> i = _disposeListeners.iterator();
-            while (i.hasNext()) {
-                StateDisposeListener listener = i.next();
-                try {
-                    listener.notifyDisposed(this);
-                } catch (ChimeraNFSException e) {
-                    LOG.info("failed to notify: {}", e.getMessage());
+    public final void disposeIgnoreFailures() {
+        _lock.lock();
+        try {
+            if (!_disposed) {
+                Iterator<StateDisposeListener> i = _disposeListeners.iterator();
+                while (i.hasNext()) {
+                    StateDisposeListener listener = i.next();
+                    try {
+                        listener.notifyDisposed(this);
+                    } catch (ChimeraNFSException e) {
+                        LOG.info("failed to notify: {}", e.getMessage());
+                    }
+                    i.remove();
                 }
-                i.remove();
+                dispose();
+                _disposed = true;
             }
-            dispose();
-            _disposed = true;
+        } finally {
+            _lock.unlock();
         }
     }
 
@@ -142,8 +161,13 @@ public class NFS4State {
         return _owner;
     }
 
-    synchronized public void addDisposeListener(StateDisposeListener disposeListener) {
-        _disposeListeners.add(disposeListener);
+    public void addDisposeListener(StateDisposeListener disposeListener) {
+        _lock.lock();
+        try {
+            _disposeListeners.add(disposeListener);
+        } finally {
+            _lock.unlock();
+        }
     }
 
     @Override
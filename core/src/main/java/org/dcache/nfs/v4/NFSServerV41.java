@@ -24,17 +24,28 @@ import org.dcache.nfs.ExportTable;
 import org.dcache.nfs.ExportFile;
 import org.dcache.nfs.v4.xdr.*;
 import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.qos.QosManager;
+import org.dcache.nfs.util.BufferPool;
+import org.dcache.nfs.util.VirtualThreads;
+import org.dcache.oncrpc4j.rpc.OncRpcException;
 import org.dcache.oncrpc4j.rpc.RpcCall;
+import org.dcache.oncrpc4j.xdr.XdrEncodingStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
+import org.dcache.nfs.vfs.AsyncVirtualFileSystem;
 import org.dcache.nfs.vfs.PseudoFs;
+import org.dcache.nfs.vfs.PseudoFsTreeCache;
 import org.dcache.nfs.vfs.VirtualFileSystem;
 import org.dcache.nfs.status.MinorVersMismatchException;
 import org.dcache.nfs.status.NotOnlyOpException;
@@ -52,12 +63,28 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
 
     private final VirtualFileSystem _fs;
     private final ExportTable _exportTable;
+
+    /**
+     * Pseudo file system trees shared by all requests.
+     */
+    private final PseudoFsTreeCache _pseudoFsCache = new PseudoFsTreeCache();
     private final OperationExecutor _operationExecutor;
     private final NFSv41DeviceManager _deviceManager;
     private final NFSv4StateHandler _statHandler;
     private final LockManager _nlm;
     private final nfs_impl_id4 _implementationId;
 
+    /**
+     * Pool of buffers used for READ replies, or null if buffers are not pooled.
+     */
+    private final BufferPool _bufferPool;
+
+    /**
+     * Executor to run compound requests on, or null if requests are processed on
+     * the RPC worker thread.
+     */
+    private final ExecutorService _dispatchExecutor;
+
     /**
      * Verifier to indicate client that server is rebooted. Current currentTimeMillis
      * is good enough, unless server reboots within a millisecond.
@@ -68,9 +95,12 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
         _deviceManager = builder.deviceManager;
         _fs = builder.vfs;
         _exportTable = builder.exportTable;
-        _operationExecutor = builder.operationExecutor;
+        _operationExecutor = builder.qos == null ? builder.operationExecutor
+                : new QosOperationExecutor(builder.operationExecutor, builder.qos);
         _nlm = builder.nlm == null ? new SimpleLm() : builder.nlm;
         _statHandler = builder.stateHandler == null ? new NFSv4StateHandler() : builder.stateHandler;
+        _bufferPool = builder.bufferPool;
+        _dispatchExecutor = builder.useVirtualThreads ? VirtualThreads.newVirtualThreadPerTaskExecutor() : null;
 
         _implementationId = new nfs_impl_id4();
         _implementationId.nii_date = new nfstime4(builder.implementationDate.toEpochMilli());
@@ -90,6 +120,8 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
         _operationExecutor = operationExecutor;
         _nlm = new SimpleLm();
         _statHandler = new NFSv4StateHandler();
+        _bufferPool = null;
+        _dispatchExecutor = null;
 
         _implementationId = new nfs_impl_id4();
         _implementationId.nii_date = new nfstime4(NFSv4Defaults.NFS4_IMPLEMENTATION_DATE);
@@ -102,43 +134,210 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
         _log.debug("NFS PING client: {}", call$.getTransport().getRemoteSocketAddress());
     }
 
+    @Override
+    public void dispatchOncRpcCall(RpcCall call) throws OncRpcException, IOException {
+
+        boolean isAsync = AsyncVirtualFileSystem.isAsync(_fs);
+        if ((_bufferPool == null && _dispatchExecutor == null && !isAsync)
+                || call.getProcedure() != nfs4_prot.NFSPROC4_COMPOUND_4) {
+            super.dispatchOncRpcCall(call);
+            return;
+        }
+
+        /*
+         * The reply is encoded by RpcCall#reply, thus buffers, referenced by
+         * the reply can be returned into the pool as soon as reply is sent.
+         */
+        COMPOUND4args args$ = new COMPOUND4args();
+        call.retrieveCall(args$);
+
+        if (isAsync) {
+            BufferPool.Lease lease = _bufferPool == null ? null : _bufferPool.lease();
+            processCompoundAsync(call, args$, lease).whenComplete((result$, t) -> {
+                try {
+                    if (t != null) {
+                        _log.error("Failed to process compound request:", t);
+                        return;
+                    }
+                    call.reply(result$);
+                } catch (Exception e) {
+                    _log.error("Failed to send reply: {}", e.getMessage());
+                } finally {
+                    if (lease != null) {
+                        lease.close();
+                    }
+                }
+            });
+            return;
+        }
+
+        if (_dispatchExecutor != null) {
+            // arguments are decoded by the RPC worker thread, which owns the request buffer
+            _dispatchExecutor.execute(() -> {
+                try (BufferPool.Lease lease = _bufferPool == null ? null : _bufferPool.lease()) {
+                    COMPOUND4res result$ = processCompound(call, args$, lease);
+                    call.reply(result$);
+                } catch (Exception e) {
+                    _log.error("Failed to send reply: {}", e.getMessage());
+                }
+            });
+            return;
+        }
+
+        try (BufferPool.Lease lease = _bufferPool.lease()) {
+            COMPOUND4res result$ = processCompound(call, args$, lease);
+            call.reply(result$);
+        }
+    }
+
     @Override
     public COMPOUND4res NFSPROC4_COMPOUND_4(RpcCall call$, COMPOUND4args arg1) {
+        return processCompound(call$, arg1, null);
+    }
+
+    private COMPOUND4res processCompound(RpcCall call$, COMPOUND4args arg1, BufferPool.Lease bufferLease) {
+
+        CompoundRequest request = new CompoundRequest(call$, arg1);
+        try {
+            request.begin(bufferLease);
+            for (int position = 0; position < arg1.argarray.length; position++) {
+                if (!request.beforeOperation(position)) {
+                    break;
+                }
 
-        COMPOUND4res res = new COMPOUND4res();
+                nfs_resop4 opResult = _operationExecutor.execute(request.context, arg1.argarray[position]);
+                if (!request.afterOperation(opResult)) {
+                    break;
+                }
+            }
+            request.end();
+        } catch (Exception e) {
+            request.fail(e);
+        } finally {
+            MDC.remove(NfsMdc.TAG);
+            MDC.remove(NfsMdc.CLIENT);
+            MDC.remove(NfsMdc.SESSION);
+        }
+
+        return request.res;
+    }
+
+    /**
+     * Process compound request as a chain of operations, where each operation is
+     * started when the previous one completes. No thread is blocked while an
+     * operation waits for an {@link AsyncVirtualFileSystem}.
+     */
+    private CompletableFuture<COMPOUND4res> processCompoundAsync(RpcCall call$, COMPOUND4args arg1, BufferPool.Lease bufferLease) {
+
+        CompoundRequest request = new CompoundRequest(call$, arg1);
+        CompletableFuture<Void> done;
+        try {
+            request.begin(bufferLease);
+            done = executeFrom(request, 0);
+        } catch (Exception e) {
+            done = CompletableFuture.failedFuture(e);
+        } finally {
+            MDC.remove(NfsMdc.TAG);
+            MDC.remove(NfsMdc.CLIENT);
+            MDC.remove(NfsMdc.SESSION);
+        }
 
+        return done.handle((v, t) -> {
+            try {
+                if (t != null) {
+                    request.fail(t);
+                } else {
+                    request.end();
+                }
+            } catch (Exception e) {
+                request.fail(e);
+            }
+            return request.res;
+        });
+    }
+
+    /**
+     * Execute operations of the compound starting at the given position. Operations
+     * which complete immediately are executed in a loop, the remaining ones are
+     * continued when the pending operation completes.
+     */
+    private CompletableFuture<Void> executeFrom(CompoundRequest request, int position) {
+        nfs_argop4[] ops = request.args.argarray;
         try {
+            for (int i = position; i < ops.length; i++) {
+                if (!request.beforeOperation(i)) {
+                    break;
+                }
+
+                CompletableFuture<nfs_resop4> opFuture = _operationExecutor.executeAsync(request.context, ops[i]);
+                if (!opFuture.isDone() || opFuture.isCompletedExceptionally()) {
+                    int next = i + 1;
+                    return opFuture.thenCompose(opResult -> request.afterOperation(opResult)
+                            ? executeFrom(request, next)
+                            : CompletableFuture.completedFuture(null));
+                }
+
+                if (!request.afterOperation(opFuture.join())) {
+                    break;
+                }
+            }
+        } catch (ChimeraNFSException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * The state of a single compound request.
+     */
+    private class CompoundRequest {
+
+        private final RpcCall call;
+        private final COMPOUND4args args;
+        private COMPOUND4res res = new COMPOUND4res();
+        private CompoundContext context;
+        private boolean retransmit;
+
+        CompoundRequest(RpcCall call, COMPOUND4args args) {
+            this.call = call;
+            this.args = args;
+        }
+
+        /**
+         * Validate the request and build the compound context.
+         */
+        void begin(BufferPool.Lease bufferLease) throws ChimeraNFSException {
 
             /*
              * here we have to checkfor utf8, but it's too much overhead to keep
              * spec happy.
              */
-            res.tag = arg1.tag;
-            String tag = arg1.tag.toString();
+            res.tag = args.tag;
+            String tag = args.tag.toString();
             MDC.put(NfsMdc.TAG, tag);
-            MDC.put(NfsMdc.CLIENT, call$.getTransport().getRemoteSocketAddress().toString());
+            MDC.put(NfsMdc.CLIENT, call.getTransport().getRemoteSocketAddress().toString());
 
             _log.debug("NFS COMPOUND client: {}, tag: [{}]",
-                    call$.getTransport().getRemoteSocketAddress(),
+                    call.getTransport().getRemoteSocketAddress(),
                     tag);
 
-            int minorversion = arg1.minorversion.value;
+            int minorversion = args.minorversion.value;
             if (minorversion > 2) {
-                throw new MinorVersMismatchException(String.format("Unsupported minor version [%d]", arg1.minorversion.value));
+                throw new MinorVersMismatchException(String.format("Unsupported minor version [%d]", args.minorversion.value));
             }
 
-            if (arg1.argarray.length >= NFSv4Defaults.NFS4_MAX_OPS && minorversion == 0) {
+            if (args.argarray.length >= NFSv4Defaults.NFS4_MAX_OPS && minorversion == 0) {
                 /*
 		   in 4.1 maxops handled per session
                  */
-                throw new ResourceException(String.format("Too many ops [%d]", arg1.argarray.length));
+                throw new ResourceException(String.format("Too many ops [%d]", args.argarray.length));
             }
-            res.resarray = new ArrayList<>(arg1.argarray.length);
+            res.resarray = new ArrayList<>(args.argarray.length);
 
-            VirtualFileSystem fs = new PseudoFs(_fs, call$, _exportTable);
+            VirtualFileSystem fs = new PseudoFs(_fs, call, _exportTable, _pseudoFsCache);
 
             CompoundContextBuilder builder = new CompoundContextBuilder()
-                    .withMinorversion(arg1.minorversion.value)
+                    .withMinorversion(args.minorversion.value)
                     .withFs(fs)
                     .withDeviceManager(_deviceManager)
                     .withStateHandler(_statHandler)
@@ -146,7 +345,8 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
                     .withExportTable(_exportTable)
                     .withRebootVerifier(_rebootVerifier)
                     .withImplementationId(_implementationId)
-                    .withCall(call$);
+                    .withBufferLease(bufferLease)
+                    .withCall(call);
 
             if (_deviceManager != null) {
                 builder.withPnfsRoleMDS();
@@ -158,73 +358,98 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
                 builder.withoutPnfs();
             }
 
-            CompoundContext context = builder.build();
+            context = builder.build();
+        }
 
-            boolean retransmit = false;
-            for (int position = 0; position < arg1.argarray.length; position++) {
+        /**
+         * Check whether the operation at the given position should be executed.
+         *
+         * @return false, if the reply of a retransmitted request is taken from the cache.
+         */
+        boolean beforeOperation(int position) throws ChimeraNFSException {
+
+            int minorversion = args.minorversion.value;
+            if (minorversion != 0) {
+                nfs_argop4 op = args.argarray[position];
+                checkOpPosition(op.argop, position, args.argarray.length);
+                if (position == 1) {
+                    /*
+                         * at this point we already have to have a session
+                     */
+                    if (args.argarray.length > context.getSession().getMaxOps()) {
+                        throw new TooManyOpsException(String.format("Too many ops [%d]", args.argarray.length));
+                    }
 
-                nfs_argop4 op = arg1.argarray[position];
+                    CachedReply cache = context.getCache();
+                    if (cache != null) {
 
-                if (minorversion != 0) {
-                    checkOpPosition(op.argop, position, arg1.argarray.length);
-                    if (position == 1) {
-                        /*
-                             * at this point we already have to have a session
-                         */
-                        if (arg1.argarray.length > context.getSession().getMaxOps()) {
-                            throw new TooManyOpsException(String.format("Too many ops [%d]", arg1.argarray.length));
+                        if (cache == CachedReply.NOT_CACHED) {
+                            /*
+                             * we got a duplicated request, but there
+                             * is nothing in the cache, though must be
+                             * as we are the second op in the compound.
+                             */
+                            throw new RetryUncacheRepException();
                         }
 
-                        List<nfs_resop4> cache = context.getCache();
-                        if (cache != null) {
-
-                            if (cache.isEmpty()) {
-                                /*
-                                 * we got a duplicated request, but there
-                                 * is nothing in the cache, though must be
-                                 * as we are the second op in the compound.
-                                 */
-                                throw new RetryUncacheRepException();
-                            }
-
-                            res.resarray.addAll(cache.subList(position, cache.size()));
-                            res.status = statusOfLastOperation(cache);
-                            retransmit = true;
-                            break;
-                        }
+                        res = new ReplayedCOMPOUND4res(res, res.resarray, cache);
+                        res.status = cache.getStatus();
+                        retransmit = true;
+                        return false;
                     }
                 }
-
-                nfs_resop4 opResult = _operationExecutor.execute(context, op);
-
-                res.resarray.add(opResult);
-                res.status = opResult.getStatus();
-                if (res.status != nfsstat.NFS_OK) {
-                    break;
-                }
             }
+            return true;
+        }
+
+        /**
+         * Record the result of an operation.
+         *
+         * @return false, if the operation failed and the remaining operations must be skipped.
+         */
+        boolean afterOperation(nfs_resop4 opResult) {
+            res.resarray.add(opResult);
+            res.status = opResult.getStatus();
+            return res.status == nfsstat.NFS_OK;
+        }
 
+        /**
+         * Cache the reply, if requested by the client.
+         */
+        void end() throws IOException {
             if (!retransmit && context.cacheThis()) {
-                context.getSessionSlot().update(res.resarray);
+                // send the results following SEQUENCE as they were encoded into the cache
+                CachedReply cachedReply = context.getSessionSlot().update(res.resarray);
+                res = new ReplayedCOMPOUND4res(res, res.resarray.subList(0, 1), cachedReply);
             }
 
             _log.debug("OP: [{}] status: {}", res.tag, res.status);
+        }
 
-        } catch (ChimeraNFSException e) {
-            _log.info("NFS operation failed: {}", e.getMessage());
-            res.resarray = Collections.emptyList();
-            res.status = e.getStatus();
-        } catch (Exception e) {
-            _log.error("Unhandled exception:", e);
+        void fail(Throwable t) {
+            if (t instanceof CompletionException && t.getCause() != null) {
+                t = t.getCause();
+            }
+
+            if (t instanceof ChimeraNFSException) {
+                _log.info("NFS operation failed: {}", t.getMessage());
+                res.status = ((ChimeraNFSException) t).getStatus();
+            } else {
+                _log.error("Unhandled exception:", t);
+                res.status = nfsstat.NFSERR_SERVERFAULT;
+            }
             res.resarray = Collections.emptyList();
-            res.status = nfsstat.NFSERR_SERVERFAULT;
-        } finally {
-            MDC.remove(NfsMdc.TAG);
-            MDC.remove(NfsMdc.CLIENT);
-            MDC.remove(NfsMdc.SESSION);
         }
+    }
 
-        return res;
+    /**
+     * Stop dispatching requests to virtual threads. Requests, which are already
+     * in progress, are completed.
+     */
+    public void shutdown() {
+        if (_dispatchExecutor != null) {
+            _dispatchExecutor.shutdown();
+        }
     }
 
     /**
@@ -289,8 +514,39 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
         }
     }
 
-    private static int statusOfLastOperation(List<nfs_resop4> ops) {
-        return ops.get(ops.size() -1).getStatus();
+    /**
+     * A reply with cached results. The results of the operations following
+     * SEQUENCE are sent as they were encoded into the reply cache, either on
+     * retransmit or when the reply is cached by the original request.
+     */
+    private static class ReplayedCOMPOUND4res extends COMPOUND4res {
+
+        private final List<nfs_resop4> _encoded;
+        private final CachedReply _cachedReply;
+
+        /**
+         * @param res the reply to send.
+         * @param encoded the results to encode in front of the cached ones.
+         * @param cachedReply the cached results.
+         */
+        ReplayedCOMPOUND4res(COMPOUND4res res, List<nfs_resop4> encoded, CachedReply cachedReply) {
+            _encoded = encoded;
+            _cachedReply = cachedReply;
+            tag = res.tag;
+            resarray = res.resarray;
+            status = res.status;
+        }
+
+        @Override
+        public void xdrEncode(XdrEncodingStream xdr) throws OncRpcException, IOException {
+            xdr.xdrEncodeInt(status);
+            tag.xdrEncode(xdr);
+            xdr.xdrEncodeInt(_encoded.size() + _cachedReply.getOperationCount());
+            for (nfs_resop4 op : _encoded) {
+                op.xdrEncode(xdr);
+            }
+            _cachedReply.writeTo(xdr);
+        }
     }
 
     public static class Builder {
@@ -304,6 +560,9 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
         private String implementationName = NFSv4Defaults.NFS4_IMPLEMENTATION_ID;
         private String implementationDomain = NFSv4Defaults.NFS4_IMPLEMENTATION_DOMAIN;
         private Instant implementationDate = NFSv4Defaults.NFS4_IMPLEMENTATION_DATE;
+        private BufferPool bufferPool;
+        private boolean useVirtualThreads;
+        private QosManager qos;
 
         public Builder withDeviceManager(NFSv41DeviceManager deviceManager) {
             this.deviceManager = deviceManager;
@@ -356,6 +615,51 @@ public class NFSServerV41 extends nfs4_prot_NFS4_PROGRAM_ServerStub {
             return this;
         }
 
+        /**
+         * Use pooled direct buffers for READ replies. The buffers are returned
+         * into the pool as soon as reply is sent.
+         *
+         * @param bufferPool the pool to borrow buffers from.
+         * @return this builder.
+         */
+        public Builder withBufferPool(BufferPool bufferPool) {
+            this.bufferPool = bufferPool;
+            return this;
+        }
+
+        /**
+         * Process each compound request on its own virtual thread instead of the RPC
+         * worker thread. Thus, the number of requests waiting for a blocking
+         * {@link VirtualFileSystem} is not limited by the size of the worker pool.
+         * Requires Java 21 or newer. The threads are not accepting new requests after
+         * {@link NFSServerV41#shutdown()}.
+         *
+         * @return this builder.
+         * @throws UnsupportedOperationException if virtual threads are not supported by the runtime.
+         * @since 0.27
+         */
+        public Builder withVirtualThreads() {
+            if (!VirtualThreads.isSupported()) {
+                throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+            }
+            this.useVirtualThreads = true;
+            return this;
+        }
+
+        /**
+         * Enforce operation rate and bandwidth limits of export entries. Operations
+         * over the limit fail with {@code NFS4ERR_DELAY}.
+         *
+         * @param qos the manager, which tracks per-client limits.
+         * @return this builder.
+         * @see QosOperationExecutor
+         * @since 0.27
+         */
+        public Builder withQos(QosManager qos) {
+            this.qos = qos;
+            return this;
+        }
+
         public NFSServerV41 build() {
             return new NFSServerV41(this);
         }
@@ -21,20 +21,45 @@ package org.dcache.nfs.v4;
 
 import com.google.common.io.BaseEncoding;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.v4.xdr.sessionid4;
-import org.dcache.nfs.v4.xdr.nfs_resop4;
 import org.dcache.nfs.status.BadSlotException;
 
+/**
+ * An NFSv4.1 session. The fore channel slot table is sized to the number of
+ * slots negotiated on CREATE_SESSION, but the client is asked, by the means of
+ * {@code sr_target_highest_slotid}, to use only as many slots as needed. The target
+ * grows when the client uses all offered slots and shrinks when the client uses
+ * only a few of them or when the server-wide {@link ReplyCacheBudget} is under
+ * pressure. Cached replies of slots the client doesn't use are discarded.
+ */
 public class NFSv41Session {
 
+    /**
+     * Minimal number of slots offered to a client.
+     */
+    private static final int MIN_TARGET_SLOTS = 4;
+
+    /**
+     * Upper bound of the encoded size of a cached reply.
+     */
+    private static final int MAX_CACHED_REPLY_SIZE = 64 * 1024;
+
     private final sessionid4 _session;
     /**
-     * Session reply slots.
+     * Session reply slots. Created on first use.
      */
-    private final SessionSlot[] _slots;
+    private final AtomicReferenceArray<SessionSlot> _slots;
+    private final ReplyCacheBudget _budget;
+    private final int _maxCachedReplySize;
+
+    /**
+     * The highest slot id the client is asked to use.
+     */
+    private volatile int _targetHighestSlot;
+
     private final NFS4Client _client;
     private final int _maxOps;
     private final int _maxCbOps;
@@ -52,8 +77,27 @@ public class NFSv41Session {
      * @param maxCbOps The maximum number of compound operations per callback requests.
      */
     public NFSv41Session(NFS4Client client, sessionid4 sessionid,  int maxRequests, int maxCbRequests, int maxOps, int maxCbOps) {
+        this(client, sessionid, maxRequests, maxCbRequests, maxOps, maxCbOps, 0, client.getReplyCacheBudget());
+    }
+
+    /**
+     * Create new session for the given client.
+     * @param client The client that owns this session.
+     * @param sessionid The session id uniquely identifying session on the server.
+     * @param maxRequests The maximum number of concurrent requests.
+     * @param maxCbRequests The maximum number of concurrent callback requests.
+     * @param maxOps The maximum number of compound operations per requests.
+     * @param maxCbOps The maximum number of compound operations per callback requests.
+     * @param maxResponseSizeCached The maximum size of a cached reply, as negotiated by CREATE_SESSION.
+     * @param budget The server-wide budget cached replies are charged against.
+     */
+    public NFSv41Session(NFS4Client client, sessionid4 sessionid, int maxRequests, int maxCbRequests, int maxOps, int maxCbOps,
+            int maxResponseSizeCached, ReplyCacheBudget budget) {
         _client = client;
-        _slots = new SessionSlot[maxRequests];
+        _slots = new AtomicReferenceArray<>(maxRequests);
+        _budget = budget;
+        _maxCachedReplySize = maxResponseSizeCached <= 0 ? MAX_CACHED_REPLY_SIZE : Math.min(maxResponseSizeCached, MAX_CACHED_REPLY_SIZE);
+        _targetHighestSlot = Math.min(maxRequests, NFSv4Defaults.NFS4_INITIAL_SESSION_SLOTS) - 1;
         _session = sessionid;
         _maxOps = maxOps;
         _maxCbOps = maxCbOps;
@@ -74,7 +118,56 @@ public class NFSv41Session {
      * @return max slot id.
      */
     public int getHighestSlot() {
-        return _slots.length - 1;
+        return _slots.length() - 1;
+    }
+
+    /**
+     * Get the highest slot id the client should use.
+     * @return target highest slot id.
+     */
+    public int getTargetHighestSlot() {
+        return _targetHighestSlot;
+    }
+
+    /**
+     * Adjust the number of slots offered to the client and discard cached replies of
+     * the slots, which are not used by the client any more. Called on every SEQUENCE.
+     *
+     * @param clientHighestSlot the highest slot id the client has a request outstanding,
+     *        as reported by {@code sa_highest_slotid}.
+     * @return the new target highest slot id.
+     */
+    public int updateTargetHighestSlot(int clientHighestSlot) {
+
+        int highestSlot = getHighestSlot();
+        int minTarget = Math.min(MIN_TARGET_SLOTS, highestSlot + 1) - 1;
+        int target = _targetHighestSlot;
+        int newTarget;
+
+        if (_budget.isUnderPressure()) {
+            newTarget = Math.max(minTarget, target / 2);
+        } else if (clientHighestSlot >= target) {
+            // all offered slots are in use
+            newTarget = Math.min(highestSlot, target * 2 + 1);
+        } else if (clientHighestSlot < target / 4) {
+            newTarget = Math.max(minTarget, target - 1);
+        } else {
+            newTarget = target;
+        }
+
+        if (newTarget != target) {
+            // lost updates are harmless, as the target is adjusted on every request.
+            _targetHighestSlot = newTarget;
+        }
+
+        // the client will not retransmit requests on slots above its highest slot.
+        for (int i = clientHighestSlot + 1; i <= highestSlot; i++) {
+            SessionSlot slot = _slots.get(i);
+            if (slot != null) {
+                slot.releaseReply();
+            }
+        }
+        return newTarget;
     }
 
     public int getCbHighestSlot() {
@@ -87,7 +180,7 @@ public class NFSv41Session {
      */
     public int getHighestUsedSlot() {
         int id;
-        for(id = getHighestSlot(); id >= 0 && _slots[id] == null; id--) {
+        for(id = getHighestSlot(); id >= 0 && _slots.get(id) == null; id--) {
            /*
             * NOP. We only move pointer
             */
@@ -95,7 +188,7 @@ public class NFSv41Session {
         return id;
     }
 
-    public List<nfs_resop4> checkCacheSlot(int slot, int sequence)
+    public CachedReply checkCacheSlot(int slot, int sequence)
             throws ChimeraNFSException {
         return getSessionSlot(slot).acquire(sequence);
     }
@@ -112,11 +205,26 @@ public class NFSv41Session {
             throw new BadSlotException("slot id overflow");
         }
 
-        if (_slots[slot] == null) {
-            _slots[slot] = new SessionSlot();
+        SessionSlot sessionSlot = _slots.get(slot);
+        if (sessionSlot == null) {
+            sessionSlot = new SessionSlot(_budget, _maxCachedReplySize);
+            if (!_slots.compareAndSet(slot, null, sessionSlot)) {
+                sessionSlot = _slots.get(slot);
+            }
         }
+        return sessionSlot;
+    }
 
-        return _slots[slot];
+    /**
+     * Discard all cached replies, e.g. when session is destroyed.
+     */
+    void releaseCachedReplies() {
+        for (int i = 0; i < _slots.length(); i++) {
+            SessionSlot slot = _slots.get(i);
+            if (slot != null) {
+                slot.releaseReply();
+            }
+        }
     }
 
     /**
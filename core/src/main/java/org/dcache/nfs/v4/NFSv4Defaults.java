@@ -68,6 +68,11 @@ public interface NFSv4Defaults {
     /**
      * Maximal number of session slots
      */
-    public final static int NFS4_MAX_SESSION_SLOTS = 16;
+    public final static int NFS4_MAX_SESSION_SLOTS = 128;
+
+    /**
+     * Number of session slots a client is asked to use after session creation.
+     */
+    public final static int NFS4_INITIAL_SESSION_SLOTS = 16;
 
 }
@@ -60,6 +60,11 @@ public class NFSv4StateHandler {
 
     private static final Logger _log = LoggerFactory.getLogger(NFSv4StateHandler.class);
 
+    /**
+     * Maximal time between two runs of expired clients cleanup.
+     */
+    private static final Duration MAX_CLEANUP_PERIOD = Duration.ofSeconds(1);
+
     /**
      * initial value of new state's sequence number.
      */
@@ -88,14 +93,24 @@ public class NFSv4StateHandler {
      */
     private final Duration _leaseTime;
 
-    private boolean _running;
+    private volatile boolean _running;
 
     /**
      * a system wide unique id of this state handler.
      */
     private final int _instanceId;
 
-    private final FileTracker _openFileTracker = new FileTracker();
+    private final FileTracker _openFileTracker;
+
+    /**
+     * Memory budget of session reply caches.
+     */
+    private final ReplyCacheBudget _replyCacheBudget = new ReplyCacheBudget(Runtime.getRuntime().maxMemory() / 16);
+
+    /**
+     * The JMX interface to the reply cache.
+     */
+    private final ReplyCacheMXBeanImpl _replyCacheMXBean;
 
     private final ClientRecoveryStore clientStore;
 
@@ -134,10 +149,12 @@ public class NFSv4StateHandler {
         _leaseTime = leaseTime;
         _clientsByServerId = clientsByServerId;
         _clock = clock;
+        _openFileTracker = new FileTracker(leaseTime, clock);
 
         _running = true;
         _instanceId = instanceId;
         this.clientStore = clientStore;
+        _replyCacheMXBean = new ReplyCacheMXBeanImpl(_replyCacheBudget, "nfsv4-" + instanceId);
 
         _cleanerScheduler = Executors.newSingleThreadScheduledExecutor(
                 new ThreadFactoryBuilder()
@@ -146,9 +163,13 @@ public class NFSv4StateHandler {
                         .build()
         );
 
-        // periodic dead client scan
-        _cleanerScheduler.scheduleAtFixedRate(() -> _clientsByServerId.cleanUp(),
-                _leaseTime.toSeconds() * 4, _leaseTime.toSeconds() * 4, TimeUnit.SECONDS);
+        // periodic dead client scan. As client cache tracks expiry in a timing wheel,
+        // each run only visits clients, which might have expired since the previous one.
+        // Thus, frequent runs expire clients shortly after lease time without a need to
+        // walk over all clients.
+        long cleanupPeriod = Math.min(_leaseTime.toMillis(), MAX_CLEANUP_PERIOD.toMillis());
+        _cleanerScheduler.scheduleWithFixedDelay(() -> _clientsByServerId.cleanUp(),
+                cleanupPeriod, cleanupPeriod, TimeUnit.MILLISECONDS);
 
         // one time action to close recovery window.
         _cleanerScheduler.schedule(() -> clientStore.reclaimComplete(),
@@ -335,6 +356,14 @@ public class NFSv4StateHandler {
         return _openFileTracker;
     }
 
+    /**
+     * Get memory budget shared by reply caches of all sessions.
+     * @return reply cache budget.
+     */
+    public ReplyCacheBudget getReplyCacheBudget() {
+        return _replyCacheBudget;
+    }
+
     /**
      * Clock used to time related operations.
      * @return
@@ -371,7 +400,7 @@ public class NFSv4StateHandler {
      * Indicate that given client complete state reclaims.
      * @param owner client
      */
-    public synchronized void reclaimComplete(byte[] owner) {
+    public void reclaimComplete(byte[] owner) {
         clientStore.reclaimClient(owner);
     }
 
@@ -379,7 +408,7 @@ public class NFSv4StateHandler {
      * Indicate that given client wants to reclaim states held before server reboot.
      * @param owner client
      */
-    public synchronized void wantReclaim(byte[] owner) throws ChimeraNFSException {
+    public void wantReclaim(byte[] owner) throws ChimeraNFSException {
         clientStore.wantReclaim(owner);
     }
 
@@ -403,6 +432,8 @@ public class NFSv4StateHandler {
             _running = false;
             drainClients();
             _cleanerScheduler.shutdown();
+            _openFileTracker.shutdown();
+            _replyCacheMXBean.unregister();
             clientStore.close();
         } finally {
             _writeLock.unlock();
@@ -413,7 +444,7 @@ public class NFSv4StateHandler {
      * Returns {@code true} iff this state handler is running.
      * @return true, it state handler is running.
      */
-    public synchronized boolean isRunning() {
+    public boolean isRunning() {
         return _running;
     }
 
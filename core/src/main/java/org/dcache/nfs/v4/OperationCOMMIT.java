@@ -20,6 +20,7 @@
 package org.dcache.nfs.v4;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.v4.xdr.COMMIT4res;
@@ -27,6 +28,7 @@ import org.dcache.nfs.v4.xdr.COMMIT4resok;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
 import org.dcache.nfs.v4.xdr.nfs_opnum4;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.vfs.AsyncVirtualFileSystem;
 import org.dcache.nfs.vfs.Inode;
 
 public class OperationCOMMIT extends AbstractNFSv4Operation {
@@ -38,14 +40,32 @@ public class OperationCOMMIT extends AbstractNFSv4Operation {
     @Override
     public void process(CompoundContext context, nfs_resop4 result) throws ChimeraNFSException, IOException {
 
-        final COMMIT4res res =  result.opcommit;
         Inode inode = context.currentInode();
 
         _args.opcommit.offset.checkOverflow(_args.opcommit.count.value, "offset + length overflow");
         context.getFs().commit(inode, _args.opcommit.offset.value, _args.opcommit.count.value);
 
+        setResult(context, result.opcommit);
+    }
+
+    @Override
+    public CompletableFuture<Void> processAsync(CompoundContext context, nfs_resop4 result) throws ChimeraNFSException, IOException {
+
+        if (!(context.getFs() instanceof AsyncVirtualFileSystem)) {
+            return super.processAsync(context, result);
+        }
+
+        Inode inode = context.currentInode();
+
+        _args.opcommit.offset.checkOverflow(_args.opcommit.count.value, "offset + length overflow");
+        return ((AsyncVirtualFileSystem) context.getFs())
+                .commitAsync(inode, _args.opcommit.offset.value, _args.opcommit.count.value)
+                .thenRun(() -> setResult(context, result.opcommit));
+    }
+
+    private static void setResult(CompoundContext context, COMMIT4res res) {
         res.resok4 = new COMMIT4resok();
         res.resok4.writeverf = context.getRebootVerifier();
-        result.opcommit.status = nfsstat.NFS_OK;
+        res.status = nfsstat.NFS_OK;
     }
 }
@@ -107,7 +107,8 @@ public class OperationCREATE_SESSION extends AbstractNFSv4Operation {
                 Math.min(NFSv4Defaults.NFS4_MAX_SESSION_SLOTS, _args.opcreate_session.csa_fore_chan_attrs.ca_maxrequests.value),
                 Math.min(NFSv4Defaults.NFS4_MAX_SESSION_SLOTS, _args.opcreate_session.csa_back_chan_attrs.ca_maxrequests.value),
                 Math.min(NFSv4Defaults.NFS4_MAX_OPS, _args.opcreate_session.csa_fore_chan_attrs.ca_maxoperations.value),
-                Math.min(NFSv4Defaults.NFS4_MAX_OPS, _args.opcreate_session.csa_back_chan_attrs.ca_maxoperations.value));
+                Math.min(NFSv4Defaults.NFS4_MAX_OPS, _args.opcreate_session.csa_back_chan_attrs.ca_maxoperations.value),
+                _args.opcreate_session.csa_fore_chan_attrs.ca_maxresponsesize_cached.value);
         _log.debug("adding new session [{}]", session);
 
         /*
@@ -19,10 +19,13 @@
  */
 package org.dcache.nfs.v4;
 
+import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
 import org.dcache.nfs.v4.xdr.nfs_opnum4;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.v4.xdr.stateid4;
+import org.dcache.nfs.vfs.Inode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,7 +38,24 @@ public class OperationDELEGRETURN extends AbstractNFSv4Operation {
     }
 
     @Override
-    public void process(CompoundContext context, nfs_resop4 result) {
-        result.opdelegreturn.status = nfsstat.NFSERR_NOTSUPP;
+    public void process(CompoundContext context, nfs_resop4 result) throws ChimeraNFSException {
+
+        Inode inode = context.currentInode();
+        stateid4 stateid = Stateids.getCurrentStateidIfNeeded(context, _args.opdelegreturn.deleg_stateid);
+
+        NFS4Client client;
+        if (context.getMinorversion() > 0) {
+            client = context.getSession().getClient();
+        } else {
+            client = context.getStateHandler().getClientIdByStateId(stateid);
+            client.updateLeaseTime();
+        }
+
+        NFS4State state = client.state(stateid);
+        Stateids.checkStateId(state.stateid(), stateid);
+
+        _log.debug("returning delegation {}", stateid);
+        context.getStateHandler().getFileTracker().returnDelegation(client, inode, stateid);
+        result.opdelegreturn.status = nfsstat.NFS_OK;
     }
 }
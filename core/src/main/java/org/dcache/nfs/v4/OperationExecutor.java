@@ -20,6 +20,7 @@
 package org.dcache.nfs.v4;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
 import org.dcache.oncrpc4j.rpc.OncRpcException;
@@ -42,4 +43,24 @@ public interface OperationExecutor {
     nfs_resop4 execute(CompoundContext context, nfs_argop4 args)
             throws IOException, OncRpcException;
 
+    /**
+     * Execute NFS operation for given context and operation arguments without
+     * blocking on file system I/O. The returned future completes exceptionally if
+     * request execution failed.
+     * <p>
+     * The default implementation executes operation synchronously.
+     *
+     * @param context the context of NFS compound request.
+     * @param args the NFS operation argument.
+     * @return a {@link CompletableFuture} with the result of NFS operation.
+     * @since 0.27
+     */
+    default CompletableFuture<nfs_resop4> executeAsync(CompoundContext context, nfs_argop4 args) {
+        try {
+            return CompletableFuture.completedFuture(execute(context, args));
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
 }
@@ -46,7 +46,9 @@ public class OperationFREE_STATEID extends AbstractNFSv4Operation {
         final FREE_STATEID4res res = result.opfree_stateid;
         NFS4Client client = context.getSession().getClient();
         stateid4 stateid = Stateids.getCurrentStateidIfNeeded(context, _args.opfree_stateid.fsa_stateid);
-        client.releaseState(stateid);
+        if (!client.freeRevokedDelegation(stateid)) {
+            client.releaseState(stateid);
+        }
         res.fsr_status = nfsstat.NFS_OK;
     }
 }
@@ -23,79 +23,24 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
-import org.dcache.nfs.v4.xdr.fattr4_numlinks;
-import org.dcache.nfs.v4.xdr.fattr4_aclsupport;
 import org.dcache.nfs.v4.xdr.nfs_ftype4;
-import org.dcache.nfs.v4.xdr.attrlist4;
-import org.dcache.nfs.v4.xdr.fattr4_case_insensitive;
-import org.dcache.nfs.v4.xdr.nfs_fh4;
-import org.dcache.nfs.v4.xdr.fattr4_rawdev;
-import org.dcache.nfs.v4.xdr.fattr4_maxname;
-import org.dcache.nfs.v4.xdr.fattr4_owner;
-import org.dcache.nfs.v4.xdr.fattr4_space_used;
-import org.dcache.nfs.v4.xdr.fattr4_maxlink;
-import org.dcache.nfs.v4.xdr.fattr4_unique_handles;
-import org.dcache.nfs.v4.xdr.fattr4_xattr_support;
-import org.dcache.nfs.v4.xdr.fattr4_lease_time;
-import org.dcache.nfs.v4.xdr.uint64_t;
-import org.dcache.nfs.v4.xdr.fattr4_fh_expire_type;
 import org.dcache.nfs.v4.xdr.nfs_opnum4;
 import org.dcache.nfs.v4.xdr.nfsace4;
-import org.dcache.nfs.v4.xdr.fattr4_named_attr;
-import org.dcache.nfs.v4.xdr.specdata4;
 import org.dcache.nfs.v4.xdr.bitmap4;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
-import org.dcache.nfs.v4.xdr.fattr4_homogeneous;
-import org.dcache.nfs.v4.xdr.fattr4_maxread;
 import org.dcache.nfs.v4.xdr.fattr4_fs_layout_types;
-import org.dcache.nfs.v4.xdr.fattr4_maxwrite;
-import org.dcache.nfs.v4.xdr.fattr4_time_create;
-import org.dcache.nfs.v4.xdr.fattr4_files_avail;
-import org.dcache.nfs.v4.xdr.fattr4_mounted_on_fileid;
-import org.dcache.nfs.v4.xdr.fattr4_space_total;
-import org.dcache.nfs.v4.xdr.fattr4_fileid;
-import org.dcache.nfs.v4.xdr.fattr4_change;
-import org.dcache.nfs.v4.xdr.fattr4_symlink_support;
 import org.dcache.nfs.v4.xdr.nfs4_prot;
-import org.dcache.nfs.v4.xdr.fattr4_case_preserving;
-import org.dcache.nfs.v4.xdr.fattr4_size;
-import org.dcache.nfs.v4.xdr.fattr4_files_total;
-import org.dcache.nfs.v4.xdr.fattr4_filehandle;
 import org.dcache.nfs.v4.xdr.fattr4;
-import org.dcache.nfs.v4.xdr.fattr4_link_support;
-import org.dcache.nfs.v4.xdr.fattr4_time_modify;
-import org.dcache.nfs.v4.xdr.fattr4_no_trunc;
-import org.dcache.nfs.v4.xdr.fattr4_rdattr_error;
-import org.dcache.nfs.v4.xdr.fattr4_files_free;
-import org.dcache.nfs.v4.xdr.fattr4_time_metadata;
-import org.dcache.nfs.v4.xdr.fattr4_mode;
-import org.dcache.nfs.v4.xdr.fattr4_maxfilesize;
 import org.dcache.nfs.v4.xdr.fattr4_acl;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.status.AccessException;
-import org.dcache.nfs.v4.xdr.fattr4_fsid;
-import org.dcache.nfs.v4.xdr.fattr4_time_access;
-import org.dcache.nfs.v4.xdr.fattr4_supported_attrs;
-import org.dcache.nfs.v4.xdr.utf8str_mixed;
-import org.dcache.nfs.v4.xdr.fattr4_space_free;
-import org.dcache.nfs.v4.xdr.fattr4_cansettime;
-import org.dcache.nfs.v4.xdr.fattr4_type;
-import org.dcache.nfs.v4.xdr.fsid4;
 import org.dcache.nfs.v4.xdr.layouttype4;
 import org.dcache.nfs.v4.xdr.GETATTR4resok;
 import org.dcache.nfs.v4.xdr.GETATTR4res;
 
-import org.dcache.nfs.vfs.Stat.StatAttribute;
 import org.dcache.oncrpc4j.xdr.XdrAble;
-import org.dcache.oncrpc4j.xdr.Xdr;
-import org.dcache.nfs.status.InvalException;
-import org.dcache.nfs.v4.xdr.fattr4_space_avail;
-import org.dcache.nfs.v4.xdr.fattr4_time_delta;
-import org.dcache.nfs.v4.xdr.nfstime4;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
-import org.dcache.nfs.vfs.FsStat;
 import org.dcache.nfs.vfs.Inode;
 import org.dcache.nfs.vfs.VirtualFileSystem;
 import org.dcache.nfs.vfs.Stat;
@@ -103,9 +48,6 @@ import org.dcache.oncrpc4j.rpc.OncRpcException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_0;
-import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_1;
-import static org.dcache.nfs.v4.NFSv4FileAttributes.SUPPORTED_ATTRS_V4_1_NO_PNFS;
 
 public class OperationGETATTR extends AbstractNFSv4Operation {
 
@@ -131,37 +73,7 @@ public class OperationGETATTR extends AbstractNFSv4Operation {
 
     static fattr4 getAttributes(bitmap4 bitmap, VirtualFileSystem fs, Inode inode, Stat stat, CompoundContext context)
             throws IOException, OncRpcException {
-
-        /*
-         * bitmap we send back. can't be uninitialized.
-         */
-        bitmap4 processedAttributes = new bitmap4(new int[0]);
-
-        byte[] retBytes;
-        try (Xdr xdr = new Xdr(1024)) {
-            xdr.beginEncoding();
-
-            for (int i : bitmap) {
-                Optional<XdrAble> optionalAttr = (Optional<XdrAble>) fattr2xdr(i, fs, inode, stat, context);
-                if (optionalAttr.isPresent()) {
-                    XdrAble attr = optionalAttr.get();
-                    _log.debug("   getAttributes : {} ({}) OK.", i, attrMask2String(i));
-                    attr.xdrEncode(xdr);
-                    processedAttributes.set(i);
-                } else {
-                    _log.debug("   getAttributes : {} ({}) NOT SUPPORTED.", i, attrMask2String(i));
-                }
-            }
-
-            xdr.endEncoding();
-            retBytes = xdr.getBytes();
-        }
-
-        fattr4 attributes = new fattr4();
-        attributes.attrmask = processedAttributes;
-        attributes.attr_vals = new attrlist4(retBytes);
-
-        return attributes;
+        return Fattr4Encoder.encode(bitmap, fs, inode, stat, context);
     }
 
     static fattr4  getAttributes(bitmap4 bitmap, VirtualFileSystem fs, Inode inode, CompoundContext context)
@@ -169,17 +81,14 @@ public class OperationGETATTR extends AbstractNFSv4Operation {
         return getAttributes(bitmap, fs, inode, context.getFs().getattr(inode), context);
     }
 
-    private static FsStat getFsStat(FsStat fsStat, VirtualFileSystem fs) throws IOException {
-        if (fsStat != null) {
-            return fsStat;
-        }
-        return fs.getFsStat();
-    }
-
     /**
      * get inodes requested attribute and converted into RPC xdr format
      * operates with READ and R/W attributes
      *
+     * Attributes which can be encoded from {@link Stat} and constant values are
+     * encoded by {@link Fattr4Encoder}, thus both GETATTR and this method share a
+     * single implementation.
+     *
      * @param fattr
      * @param inode
      * @return XdrAble of object attribute,
@@ -190,176 +99,11 @@ public class OperationGETATTR extends AbstractNFSv4Operation {
     // read/read-write
     static Optional<? extends XdrAble> fattr2xdr(int fattr, VirtualFileSystem fs, Inode inode, Stat stat, CompoundContext context) throws IOException {
 
-        FsStat fsStat = null;
-
         switch (fattr) {
 
-            case nfs4_prot.FATTR4_SUPPORTED_ATTRS:
-                int[] bitmap;
-                if (context.getMinorversion() == 0) {
-                    bitmap = SUPPORTED_ATTRS_V4_0;
-                } else {
-                    bitmap = context.getDeviceManager().isPresent() ? SUPPORTED_ATTRS_V4_1 : SUPPORTED_ATTRS_V4_1_NO_PNFS;
-                }
-                return Optional.of(new fattr4_supported_attrs(bitmap));
-            case nfs4_prot.FATTR4_TYPE:
-                fattr4_type type = new fattr4_type(unixType2NFS(stat.getMode()));
-                return Optional.of(type);
-            case nfs4_prot.FATTR4_FH_EXPIRE_TYPE:
-                fattr4_fh_expire_type fh_expire_type = new fattr4_fh_expire_type(nfs4_prot.FH4_PERSISTENT);
-                return Optional.of(fh_expire_type);
-            case nfs4_prot.FATTR4_CHANGE:
-                fattr4_change change = new fattr4_change(stat.getGeneration());
-                return Optional.of(change);
-            case nfs4_prot.FATTR4_SIZE:
-                fattr4_size size = new fattr4_size(stat.getSize());
-                return Optional.of(size);
-            case nfs4_prot.FATTR4_LINK_SUPPORT:
-                fattr4_link_support link_support = new fattr4_link_support(true);
-                return Optional.of(link_support);
-            case nfs4_prot.FATTR4_SYMLINK_SUPPORT:
-                fattr4_symlink_support symlink_support = new fattr4_symlink_support(true);
-                return Optional.of(symlink_support);
-            case nfs4_prot.FATTR4_NAMED_ATTR:
-                fattr4_named_attr named_attr = new fattr4_named_attr(false);
-                return Optional.of(named_attr);
-            case nfs4_prot.FATTR4_FSID:
-                fsid4 fsid = new fsid4();
-                fsid.major = new uint64_t(17);
-                fsid.minor = new uint64_t(17);
-                return Optional.of(new fattr4_fsid(fsid));
-            case nfs4_prot.FATTR4_UNIQUE_HANDLES:
-                return Optional.of(new fattr4_unique_handles(true));
-            case nfs4_prot.FATTR4_LEASE_TIME:
-                return Optional.of(new fattr4_lease_time((int)context.getStateHandler().getLeaseTime().toSeconds()));
-            case nfs4_prot.FATTR4_RDATTR_ERROR:
-                // this attribute provided by the readdir operation
-                return Optional.empty();
-            case nfs4_prot.FATTR4_FILEHANDLE:
-                nfs_fh4 fh = new nfs_fh4();
-                fh.value = inode.toNfsHandle();
-                return Optional.of(new fattr4_filehandle(fh));
             case nfs4_prot.FATTR4_ACL:
                 nfsace4[] aces = context.getFs().getAcl(inode);
                 return Optional.of(new fattr4_acl(aces));
-            case nfs4_prot.FATTR4_ACLSUPPORT:
-                fattr4_aclsupport aclSupport = new fattr4_aclsupport(
-			nfs4_prot.ACL4_SUPPORT_ALLOW_ACL| nfs4_prot.ACL4_SUPPORT_DENY_ACL);
-                return Optional.of(aclSupport);
-            case nfs4_prot.FATTR4_ARCHIVE:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_CANSETTIME:
-                return Optional.of(new fattr4_cansettime(true));
-            case nfs4_prot.FATTR4_CASE_INSENSITIVE:
-                return Optional.of(new fattr4_case_insensitive(fs.getCaseInsensitive()));
-            case nfs4_prot.FATTR4_CASE_PRESERVING:
-                return Optional.of(new fattr4_case_preserving(fs.getCasePreserving()));
-            case nfs4_prot.FATTR4_CHOWN_RESTRICTED:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_FILEID:
-                return Optional.of(new fattr4_fileid(stat.getIno()));
-            case nfs4_prot.FATTR4_FILES_AVAIL:
-                fsStat = getFsStat(fsStat, fs);
-                fattr4_files_avail files_avail = new fattr4_files_avail(fsStat.getTotalFiles() - fsStat.getUsedFiles());
-                return Optional.of(files_avail);
-            case nfs4_prot.FATTR4_FILES_FREE:
-                fsStat = getFsStat(fsStat, fs);
-                fattr4_files_free files_free = new fattr4_files_free(fsStat.getTotalFiles() - fsStat.getUsedFiles());
-                return Optional.of(files_free);
-            case nfs4_prot.FATTR4_FILES_TOTAL:
-                fsStat = getFsStat(fsStat, fs);
-                return Optional.of(new fattr4_files_total(fsStat.getTotalFiles()));
-            case nfs4_prot.FATTR4_FS_LOCATIONS:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_HIDDEN:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_HOMOGENEOUS:
-                return Optional.of(new fattr4_homogeneous(true));
-            case nfs4_prot.FATTR4_MAXFILESIZE:
-                return Optional.of(new fattr4_maxfilesize(NFSv4Defaults.NFS4_MAXFILESIZE));
-            case nfs4_prot.FATTR4_MAXLINK:
-                return Optional.of(new fattr4_maxlink(NFSv4Defaults.NFS4_MAXLINK));
-            case nfs4_prot.FATTR4_MAXNAME:
-                return Optional.of(new fattr4_maxname(NFSv4Defaults.NFS4_MAXFILENAME));
-            case nfs4_prot.FATTR4_MAXREAD:
-                return Optional.of(new fattr4_maxread(NFSv4Defaults.NFS4_MAXIOBUFFERSIZE));
-            case nfs4_prot.FATTR4_MAXWRITE:
-                fattr4_maxwrite maxwrite = new fattr4_maxwrite(NFSv4Defaults.NFS4_MAXIOBUFFERSIZE);
-                return Optional.of(maxwrite);
-            case nfs4_prot.FATTR4_MIMETYPE:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_MODE:
-                return Optional.of(new fattr4_mode(stat.getMode() & 07777));
-            case nfs4_prot.FATTR4_NO_TRUNC:
-                return Optional.of(new fattr4_no_trunc(true));
-            case nfs4_prot.FATTR4_NUMLINKS:
-                return Optional.of(new fattr4_numlinks(stat.getNlink()));
-            case nfs4_prot.FATTR4_OWNER:
-                String owner_s = context.getFs().getIdMapper().uidToPrincipal(stat.getUid());
-                utf8str_mixed user = new utf8str_mixed(owner_s);
-                return Optional.of(new fattr4_owner(user));
-            case nfs4_prot.FATTR4_OWNER_GROUP:
-                String group_s = context.getFs().getIdMapper().gidToPrincipal(stat.getGid());
-                utf8str_mixed group = new utf8str_mixed(group_s);
-                return Optional.of(new fattr4_owner(group));
-            case nfs4_prot.FATTR4_QUOTA_AVAIL_HARD:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_QUOTA_AVAIL_SOFT:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_QUOTA_USED:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_RAWDEV:
-                specdata4 dev = new specdata4();
-                dev.specdata1 = 0;
-                dev.specdata2 = 0;
-                return Optional.of(new fattr4_rawdev(dev));
-            case nfs4_prot.FATTR4_SPACE_AVAIL:
-                fsStat = getFsStat(fsStat, fs);
-                fattr4_space_avail spaceAvail = new fattr4_space_avail(fsStat.getTotalSpace() - fsStat.getUsedSpace());
-                return Optional.of(spaceAvail);
-            case nfs4_prot.FATTR4_SPACE_FREE:
-                fsStat = getFsStat(fsStat, fs);
-                fattr4_space_free space_free = new fattr4_space_free(fsStat.getTotalSpace() - fsStat.getUsedSpace());
-                return Optional.of(space_free);
-            case nfs4_prot.FATTR4_SPACE_TOTAL:
-                fsStat = getFsStat(fsStat, fs);
-                return Optional.of(new fattr4_space_total(fsStat.getTotalSpace()));
-            case nfs4_prot.FATTR4_SPACE_USED:
-                return Optional.of(new fattr4_space_used(stat.getSize()));
-            case nfs4_prot.FATTR4_SYSTEM:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_TIME_ACCESS:
-                fattr4_time_access atime = new fattr4_time_access(stat.getATime());
-                return Optional.of(atime);
-            case nfs4_prot.FATTR4_TIME_BACKUP:
-                return Optional.empty();
-            case nfs4_prot.FATTR4_TIME_CREATE:
-                long btimeMillis = stat.isDefined(StatAttribute.BTIME) ? stat.getBTime() : stat.getCTime();
-                fattr4_time_create btime = new fattr4_time_create(btimeMillis);
-                return Optional.of(btime);
-            case nfs4_prot.FATTR4_TIME_DELTA:
-                // one (1) second is a common value for time delta across nfs4 servers
-                return Optional.of(new fattr4_time_delta( new nfstime4(TimeUnit.SECONDS.toMillis(1))));
-            case nfs4_prot.FATTR4_TIME_METADATA:
-                fattr4_time_metadata mdtime = new fattr4_time_metadata(stat.getCTime());
-                return Optional.of(mdtime);
-            case nfs4_prot.FATTR4_TIME_MODIFY:
-                fattr4_time_modify mtime = new fattr4_time_modify(stat.getMTime());
-                return Optional.of(mtime);
-            case nfs4_prot.FATTR4_MOUNTED_ON_FILEID:
-
-                /*
-                 * TODO!!!:
-                 */
-
-                long mofi = stat.getIno();
-
-                if (mofi == 0x00b0a23a /* it's a root*/) {
-                    mofi = 0x12345678;
-                }
-
-                fattr4_mounted_on_fileid mounted_on_fileid = new fattr4_mounted_on_fileid(mofi);
-                return Optional.of(mounted_on_fileid);
 
             /**
              * this is NFSv4.1 (pNFS) specific code, which is still in the
@@ -406,17 +150,12 @@ public class OperationGETATTR extends AbstractNFSv4Operation {
                         .toArray();
                 }
                 return Optional.of(fs_layout_type);
-            case nfs4_prot.FATTR4_SUPPATTR_EXCLCREAT:
-                return Optional.of(new fattr4_supported_attrs(NFSv4FileAttributes.EXCLCREAT_ATTR));
-            case nfs4_prot.FATTR4_XATTR_SUPPORT:
-                // REVISIT: we should query file system for corresponding capability
-                return Optional.of(new fattr4_xattr_support(true));
-            case nfs4_prot.FATTR4_TIME_MODIFY_SET:
-            case nfs4_prot.FATTR4_TIME_ACCESS_SET:
-                throw new InvalException("getattr of write-only attributes");
             default:
-                _log.debug("GETATTR for #{}", fattr);
-                return Optional.empty();
+                Optional<? extends XdrAble> attr = Fattr4Encoder.encodeAttribute(fattr, fs, inode, stat, context);
+                if (!attr.isPresent()) {
+                    _log.debug("GETATTR for #{}", fattr);
+                }
+                return attr;
         }
     }
 
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.util.LatencyHistogram;
+import org.dcache.nfs.v4.xdr.nfs_opnum4;
+
+/**
+ * An {@link OperationMetricsSink} which keeps per-operation number of requests,
+ * number of errors by {@link nfsstat} and a latency histogram in memory. The metrics
+ * are published over JMX.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   OperationMetrics metrics = new OperationMetrics("nfs@2049");
+ *   NFSServerV41 nfs4 = new NFSServerV41.Builder()
+ *           .withOperationExecutor(new MDSOperationExecutor(metrics))
+ *           ...
+ *           .build();
+ * </pre>
+ *
+ * @since 0.27
+ */
+public class OperationMetrics implements OperationMetricsSink {
+
+    /**
+     * Operations with numbers above this one are accounted as {@code OP_ILLEGAL}.
+     */
+    private static final int MAX_OPNUM = nfs_opnum4.OP_REMOVEXATTR;
+    private static final int ILLEGAL_INDEX = MAX_OPNUM + 1;
+
+    /**
+     * Per-operation metrics. Allocated on first use, as only a fraction of
+     * operations is typically used by clients.
+     */
+    private final AtomicReferenceArray<OperationStats> _stats =
+            new AtomicReferenceArray<>(ILLEGAL_INDEX + 1);
+
+    private final String _name;
+    private final OperationMetricsMXBean _mxBean;
+
+    public OperationMetrics(String name) {
+        _name = name;
+        _mxBean = new OperationMetricsMXBeanImpl(this);
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    @Override
+    public void record(int opnum, int status, long elapsedNanos) {
+        OperationStats stats = statsOf(opnum);
+        stats.latency.record(elapsedNanos);
+        if (status != nfsstat.NFS_OK) {
+            stats.errors.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Get number of executions of a given operation.
+     */
+    public long getCount(int opnum) {
+        OperationStats stats = _stats.get(indexOf(opnum));
+        return stats == null ? 0 : stats.latency.getCount();
+    }
+
+    /**
+     * Get number of executions of a given operation, which have ended with a
+     * given error.
+     */
+    public long getErrorCount(int opnum, int status) {
+        OperationStats stats = _stats.get(indexOf(opnum));
+        if (stats == null) {
+            return 0;
+        }
+        LongAdder errors = stats.errors.get(status);
+        return errors == null ? 0 : errors.sum();
+    }
+
+    /**
+     * Get latency histogram of a given operation.
+     */
+    public LatencyHistogram getLatency(int opnum) {
+        return statsOf(opnum).latency;
+    }
+
+    /**
+     * Get number of executions by operation name.
+     */
+    public Map<String, Long> getCounts() {
+        return collect(h -> h.getCount());
+    }
+
+    /**
+     * Get number of errors keyed by operation and error name, e.g. {@code LOOKUP:NFS4ERR_NOENT}.
+     */
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> errors = new LinkedHashMap<>();
+        for (int i = 0; i < _stats.length(); i++) {
+            OperationStats stats = _stats.get(i);
+            if (stats != null) {
+                String op = opName(i);
+                stats.errors.forEach((status, count) ->
+                        errors.put(op + ":" + nfsstat.toString(status), count.sum()));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Get the latency in nanoseconds at a given percentile by operation name.
+     */
+    public Map<String, Long> getLatencies(double percentile) {
+        return collect(h -> h.getValueAtPercentile(percentile));
+    }
+
+    /**
+     * Get the highest latency in nanoseconds by operation name.
+     */
+    public Map<String, Long> getMaxLatencies() {
+        return collect(LatencyHistogram::getMax);
+    }
+
+    /**
+     * Get the mean latency in nanoseconds by operation name.
+     */
+    public Map<String, Long> getMeanLatencies() {
+        return collect(h -> Math.round(h.getMean()));
+    }
+
+    /**
+     * Discard all collected metrics.
+     */
+    public void reset() {
+        for (int i = 0; i < _stats.length(); i++) {
+            _stats.set(i, null);
+        }
+    }
+
+    private Map<String, Long> collect(ToLongFunction<LatencyHistogram> f) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (int i = 0; i < _stats.length(); i++) {
+            OperationStats stats = _stats.get(i);
+            if (stats != null) {
+                values.put(opName(i), f.applyAsLong(stats.latency));
+            }
+        }
+        return values;
+    }
+
+    private OperationStats statsOf(int opnum) {
+        int index = indexOf(opnum);
+        OperationStats stats = _stats.get(index);
+        if (stats == null) {
+            OperationStats newStats = new OperationStats();
+            stats = _stats.compareAndExchange(index, null, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    private static int indexOf(int opnum) {
+        return opnum >= 0 && opnum <= MAX_OPNUM ? opnum : ILLEGAL_INDEX;
+    }
+
+    private static String opName(int index) {
+        return nfs_opnum4.toString(index == ILLEGAL_INDEX ? nfs_opnum4.OP_ILLEGAL : index);
+    }
+
+    private static class OperationStats {
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.util.Map;
+
+/**
+ * Interface OperationMetricsMXBean. All latencies are in nanoseconds.
+ *
+ * @since 0.27
+ */
+public interface OperationMetricsMXBean {
+
+    /**
+     * Number of executions by operation name.
+     */
+    Map<String, Long> getCount();
+
+    /**
+     * Number of errors by operation and error name, e.g. {@code LOOKUP:NFS4ERR_NOENT}.
+     */
+    Map<String, Long> getErrors();
+
+    Map<String, Long> getMeanLatency();
+    Map<String, Long> getMedianLatency();
+    Map<String, Long> get99thPercentileLatency();
+    Map<String, Long> get999thPercentileLatency();
+    Map<String, Long> getMaxLatency();
+
+    /**
+     * Latency of a given operation at a given percentile.
+     *
+     * @param op operation name, e.g. {@code GETATTR}.
+     * @param percentile percentile in range [0, 100].
+     */
+    long latencyAtPercentile(String op, double percentile);
+
+    /**
+     * Discard all collected metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class OperationMetricsMXBeanImpl
+ *
+ */
+public class OperationMetricsMXBeanImpl implements OperationMetricsMXBean {
+
+    private static final Logger _log = LoggerFactory.getLogger(OperationMetricsMXBeanImpl.class);
+
+    private final OperationMetrics _metrics;
+
+    public OperationMetricsMXBeanImpl(OperationMetrics metrics) {
+        _metrics = metrics;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            String name = String.format("%s:type=OperationMetrics,name=%s",
+                    _metrics.getClass().getPackage().getName(), ObjectName.quote(_metrics.getName()));
+            ObjectName mxBeanName = new ObjectName(name);
+            if (!server.isRegistered(mxBeanName)) {
+                server.registerMBean(this, mxBeanName);
+            }
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException
+                | MBeanRegistrationException | NotCompliantMBeanException ex) {
+            _log.warn("Failed to register JMX bean: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCount() {
+        return _metrics.getCounts();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        return _metrics.getErrorCounts();
+    }
+
+    @Override
+    public Map<String, Long> getMeanLatency() {
+        return _metrics.getMeanLatencies();
+    }
+
+    @Override
+    public Map<String, Long> getMedianLatency() {
+        return _metrics.getLatencies(50.0);
+    }
+
+    @Override
+    public Map<String, Long> get99thPercentileLatency() {
+        return _metrics.getLatencies(99.0);
+    }
+
+    @Override
+    public Map<String, Long> get999thPercentileLatency() {
+        return _metrics.getLatencies(99.9);
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatency() {
+        return _metrics.getMaxLatencies();
+    }
+
+    @Override
+    public long latencyAtPercentile(String op, double percentile) {
+        Long latency = _metrics.getLatencies(percentile).get(op.toUpperCase());
+        return latency == null ? 0 : latency;
+    }
+
+    @Override
+    public void reset() {
+        _metrics.reset();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+/**
+ * A sink for per-operation metrics of {@link AbstractOperationExecutor}. Sinks are
+ * called on the request processing thread for each executed operation, thus
+ * implementations must be thread safe and should not block.
+ *
+ * @since 0.27
+ */
+@FunctionalInterface
+public interface OperationMetricsSink {
+
+    /**
+     * A sink that discards all metrics. Executors with this sink don't
+     * measure execution time.
+     */
+    OperationMetricsSink NOP = (opnum, status, elapsedNanos) -> {};
+
+    /**
+     * Record an execution of nfs operation.
+     *
+     * @param opnum the operation number as defined by {@link org.dcache.nfs.v4.xdr.nfs_opnum4}.
+     * @param status the operation's result status as defined by {@link org.dcache.nfs.nfsstat}.
+     * @param elapsedNanos operation execution time in nanoseconds.
+     */
+    void record(int opnum, int status, long elapsedNanos);
+}
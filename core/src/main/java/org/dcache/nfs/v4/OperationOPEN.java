@@ -33,6 +33,8 @@ import org.dcache.nfs.v4.xdr.uint32_t;
 import org.dcache.nfs.v4.xdr.opentype4;
 import org.dcache.nfs.v4.xdr.open_claim_type4;
 import org.dcache.nfs.v4.xdr.open_delegation4;
+import org.dcache.nfs.v4.xdr.open_none_delegation4;
+import org.dcache.nfs.v4.xdr.open_read_delegation4;
 import org.dcache.nfs.v4.xdr.createmode4;
 import org.dcache.nfs.v4.xdr.nfs_opnum4;
 import org.dcache.nfs.v4.xdr.OPEN4resok;
@@ -47,10 +49,15 @@ import org.dcache.nfs.status.IsDirException;
 import org.dcache.nfs.status.NotDirException;
 import org.dcache.nfs.status.SymlinkException;
 import org.dcache.nfs.status.WrongTypeException;
+import org.dcache.nfs.v4.xdr.acemask4;
+import org.dcache.nfs.v4.xdr.aceflag4;
+import org.dcache.nfs.v4.xdr.acetype4;
 import org.dcache.nfs.v4.xdr.fattr4_size;
 import org.dcache.nfs.v4.xdr.mode4;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.v4.xdr.nfsace4;
 import org.dcache.nfs.v4.xdr.stateid4;
+import org.dcache.nfs.v4.xdr.utf8str_mixed;
 import org.dcache.nfs.vfs.Inode;
 import org.dcache.nfs.vfs.Stat;
 import org.dcache.oncrpc4j.rpc.OncRpcException;
@@ -89,6 +96,9 @@ public class OperationOPEN extends AbstractNFSv4Operation {
         res.resok4.cinfo = new change_info4();
         res.resok4.cinfo.atomic = true;
 
+        // the delegation, under which the client has opened the file locally
+        stateid4 delegationStateid = null;
+
         switch (_args.opopen.claim.claim) {
 
             case open_claim_type4.CLAIM_NULL:
@@ -189,6 +199,8 @@ public class OperationOPEN extends AbstractNFSv4Operation {
 
                         Optional<fattr4_size> createSize = attributeMap.get(nfs4_prot.FATTR4_SIZE);
                         if (createSize.isPresent() && createSize.get().value == 0) {
+                            context.getStateHandler().getFileTracker()
+                                    .recallDelegations(client, inode);
                             Stat stat4size = new Stat();
                             stat4size.setSize(0);
                             context.getFs().setattr(inode, stat4size);
@@ -235,8 +247,29 @@ public class OperationOPEN extends AbstractNFSv4Operation {
                 checkCanAccess(context, inode, _args.opopen.share_access);
                 break;
             case open_claim_type4.CLAIM_DELEGATE_CUR:
-            case open_claim_type4.CLAIM_DELEGATE_PREV:
+                /*
+                 * Client converts an open done locally under a delegation, which
+                 * is about to be returned, e.g. on recall.
+                 */
+                name = NameFilter.convertName(_args.opopen.claim.delegate_cur_info.file.value);
+                _log.debug("delegated open for : {}", name);
+
+                res.resok4.cinfo.before = new changeid4(0);
+                res.resok4.cinfo.after = new changeid4(0);
+
+                inode = context.getFs().lookup(context.currentInode(), name);
+                delegationStateid = _args.opopen.claim.delegate_cur_info.delegate_stateid;
+                context.currentInode(inode);
+                break;
             case open_claim_type4.CLAIM_DELEG_CUR_FH:
+                _log.debug("delegated open by Inode for : {}", context.currentInode());
+
+                res.resok4.cinfo.before = new changeid4(0);
+                res.resok4.cinfo.after = new changeid4(0);
+
+                delegationStateid = _args.opopen.claim.oc_delegate_stateid;
+                break;
+            case open_claim_type4.CLAIM_DELEGATE_PREV:
             case open_claim_type4.CLAIM_DELEG_PREV_FH:
                 _log.warn("Unimplemented open claim: {}", _args.opopen.claim.claim);
                 throw new InvalException("Unimplemented open claim: {}" + _args.opopen.claim.claim);
@@ -264,15 +297,36 @@ public class OperationOPEN extends AbstractNFSv4Operation {
          * THis is a perfectly a valid situation as at the end file is created and only
          * one writer is allowed.
          */
-        stateid4 stateid = context
-                .getStateHandler()
-                .getFileTracker()
-                .addOpen(client, owner, context.currentInode(),
-                _args.opopen.share_access.value,
-                _args.opopen.share_deny.value);
-
-        context.currentStateid(stateid);
-        res.resok4.stateid = stateid;
+        FileTracker fileTracker = context.getStateHandler().getFileTracker();
+        FileTracker.OpenRecord openRecord = delegationStateid == null
+                ? fileTracker.openFile(client, owner, context.currentInode(),
+                        _args.opopen.share_access.value,
+                        _args.opopen.share_deny.value)
+                : fileTracker.openDelegatedFile(client, owner, context.currentInode(), delegationStateid,
+                        _args.opopen.share_access.value,
+                        _args.opopen.share_deny.value);
+
+        if (openRecord.hasDelegation()) {
+            res.resok4.delegation.delegation_type = open_delegation_type4.OPEN_DELEGATE_READ;
+            res.resok4.delegation.read = new open_read_delegation4();
+            res.resok4.delegation.read.stateid = openRecord.delegationStateId();
+            res.resok4.delegation.read.recall = false;
+            // an empty ACE, the client must use ACCESS to check permissions.
+            res.resok4.delegation.read.permissions = new nfsace4();
+            res.resok4.delegation.read.permissions.type = new acetype4(nfs4_prot.ACE4_ACCESS_ALLOWED_ACE_TYPE);
+            res.resok4.delegation.read.permissions.flag = new aceflag4(0);
+            res.resok4.delegation.read.permissions.access_mask = new acemask4(0);
+            res.resok4.delegation.read.permissions.who = new utf8str_mixed("");
+        } else if (context.getMinorversion() > 0
+                && (_args.opopen.share_access.value & nfs4_prot.OPEN4_SHARE_ACCESS_WANT_DELEG_MASK) != 0) {
+            // client have expressed a preference, tell why no delegation is granted
+            res.resok4.delegation.delegation_type = open_delegation_type4.OPEN_DELEGATE_NONE_EXT;
+            res.resok4.delegation.od_whynone = new open_none_delegation4();
+            res.resok4.delegation.od_whynone.ond_why = openRecord.whyNoDelegation();
+        }
+
+        context.currentStateid(openRecord.openStateId());
+        res.resok4.stateid = openRecord.openStateId();
         res.status = nfsstat.NFS_OK;
 
     }
@@ -26,7 +26,7 @@ import org.dcache.nfs.v4.xdr.nfs_argop4;
 import org.dcache.nfs.v4.xdr.nfs_opnum4;
 import org.dcache.nfs.v4.xdr.PUTFH4res;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
-import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.FileHandleCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +34,12 @@ public class OperationPUTFH extends AbstractNFSv4Operation {
 
     private static final Logger _log = LoggerFactory.getLogger(OperationPUTFH.class);
 
+    /**
+     * Decoded file handles. As decoding doesn't depend on server state, the cache
+     * is shared by all server instances.
+     */
+    private static final FileHandleCache FH_CACHE = new FileHandleCache(8192);
+
     public OperationPUTFH(nfs_argop4 args) {
         super(args, nfs_opnum4.OP_PUTFH);
     }
@@ -43,7 +49,7 @@ public class OperationPUTFH extends AbstractNFSv4Operation {
         final PUTFH4res res = result.opputfh;
 
         try {
-            context.currentInode(new Inode(_args.opputfh.object.value));
+            context.currentInode(FH_CACHE.get(_args.opputfh.object.value));
             context.currentStateid(Stateids.ZeroStateId());
             _log.debug("NFS Request  PUTFH4 current: {}", context.currentInode());
             res.status = nfsstat.NFS_OK;
@@ -21,6 +21,8 @@ package org.dcache.nfs.v4;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
 import org.dcache.nfs.v4.xdr.nfs_opnum4;
@@ -30,6 +32,7 @@ import org.dcache.nfs.status.InvalException;
 import org.dcache.nfs.status.IsDirException;
 import org.dcache.nfs.status.NfsIoException;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.vfs.AsyncVirtualFileSystem;
 import org.dcache.nfs.vfs.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +47,43 @@ public class OperationREAD extends AbstractNFSv4Operation {
 
     @Override
     public void process(CompoundContext context, nfs_resop4 result) throws IOException {
-        final READ4res res = result.opread;
+
+        Stat inodeStat = checkFile(context);
+
+        long offset = _args.opread.offset.value;
+        int count = _args.opread.count.value;
+
+        ByteBuffer buf = context.allocateReplyBuffer(count);
+
+        int bytesReaded = context.getFs().read(context.currentInode(), buf, offset);
+        setResult(result.opread, buf, offset, bytesReaded, inodeStat);
+    }
+
+    @Override
+    public CompletableFuture<Void> processAsync(CompoundContext context, nfs_resop4 result) throws IOException {
+
+        if (!(context.getFs() instanceof AsyncVirtualFileSystem)) {
+            return super.processAsync(context, result);
+        }
+
+        Stat inodeStat = checkFile(context);
+
+        long offset = _args.opread.offset.value;
+        int count = _args.opread.count.value;
+
+        ByteBuffer buf = context.allocateReplyBuffer(count);
+
+        return ((AsyncVirtualFileSystem) context.getFs()).readAsync(context.currentInode(), buf, offset)
+                .thenAccept(bytesReaded -> {
+                    try {
+                        setResult(result.opread, buf, offset, bytesReaded, inodeStat);
+                    } catch (NfsIoException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private Stat checkFile(CompoundContext context) throws IOException {
 
         Stat inodeStat = context.getFs().getattr(context.currentInode());
 
@@ -66,14 +105,12 @@ public class OperationREAD extends AbstractNFSv4Operation {
              */
             context.getStateHandler().updateClientLeaseTime(_args.opread.stateid);
         }
+        return inodeStat;
+    }
 
+    private static void setResult(READ4res res, ByteBuffer buf, long offset, int bytesReaded, Stat inodeStat)
+            throws NfsIoException {
 
-        long offset = _args.opread.offset.value;
-        int count = _args.opread.count.value;
-
-        ByteBuffer buf = ByteBuffer.allocate(count);
-
-        int bytesReaded = context.getFs().read(context.currentInode(), buf, offset);
         if (bytesReaded < 0) {
             throw new NfsIoException("IO not allowed");
         }
@@ -21,6 +21,7 @@ package org.dcache.nfs.v4;
 
 import com.google.common.primitives.Ints;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.v4.xdr.entry4;
@@ -106,86 +107,91 @@ public class OperationREADDIR extends AbstractNFSv4Operation {
         }
 
         directoryStream = context.getFs().list(dir, verifier.value, startValue);
-        Iterator<DirectoryEntry> dirList = directoryStream.iterator();
-        if (_args.opreaddir.maxcount.value < READDIR4RESOK_SIZE) {
-            throw new TooSmallException("maxcount too small");
-        }
+        try (directoryStream) {
+            Iterator<DirectoryEntry> dirList = directoryStream.iterator();
+            if (_args.opreaddir.maxcount.value < READDIR4RESOK_SIZE) {
+                throw new TooSmallException("maxcount too small");
+            }
 
-        res.status = nfsstat.NFS_OK;
-        res.resok4 = new READDIR4resok();
-        res.resok4.reply = new dirlist4();
-        res.resok4.reply.eof = true;
-        res.resok4.cookieverf = new verifier4(directoryStream.getVerifier());
+            res.status = nfsstat.NFS_OK;
+            res.resok4 = new READDIR4resok();
+            res.resok4.reply = new dirlist4();
+            res.resok4.reply.eof = true;
+            res.resok4.cookieverf = new verifier4(directoryStream.getVerifier());
 
-        int currcount = READDIR4RESOK_SIZE;
-        int dircount = 0;
-        entry4 lastEntry = null;
+            int currcount = READDIR4RESOK_SIZE;
+            int dircount = 0;
+            entry4 lastEntry = null;
 
-        int fcount = 0;
-        while (dirList.hasNext()) {
+            int fcount = 0;
+            while (dirList.hasNext()) {
 
-            DirectoryEntry le = dirList.next();
-            String name = le.getName();
+                DirectoryEntry le = dirList.next();
+                String name = le.getName();
 
-            // skip . and .. while nfsv4 do not care about them
-            if (name.equals(".")) {
-                continue;
-            }
-            if (name.equals("..")) {
-                continue;
-            }
+                // skip . and .. while nfsv4 do not care about them
+                if (name.equals(".")) {
+                    continue;
+                }
+                if (name.equals("..")) {
+                    continue;
+                }
 
-            Inode ei = le.getInode();
-
-            entry4 currentEntry = new entry4();
-            currentEntry.name = new component4(name);
-            // shift all cookies by OFFSET, as 1 and 2 are reserved
-            currentEntry.cookie = new nfs_cookie4(le.getCookie() + COOKIE_OFFSET);
-
-            try {
-                currentEntry.attrs = OperationGETATTR.getAttributes(_args.opreaddir.attr_request, context.getFs(), ei, le.getStat(), context);
-            } catch (ChimeraNFSException e) {
-                /*
-                 * If the client is not interested in error per file, fail the complete request.
-                 * @see: rfc7530#section-16.24.4
-                 */
-                if (!_args.opreaddir.attr_request.isSet(nfs4_prot.FATTR4_RDATTR_ERROR)) {
-                    throw e;
+                Inode ei = le.getInode();
+
+                entry4 currentEntry = new entry4();
+                currentEntry.name = new component4(name);
+                // shift all cookies by OFFSET, as 1 and 2 are reserved
+                currentEntry.cookie = new nfs_cookie4(le.getCookie() + COOKIE_OFFSET);
+
+                try {
+                    currentEntry.attrs = OperationGETATTR.getAttributes(_args.opreaddir.attr_request, context.getFs(), ei, le.getStat(), context);
+                } catch (ChimeraNFSException e) {
+                    /*
+                     * If the client is not interested in error per file, fail the complete request.
+                     * @see: rfc7530#section-16.24.4
+                     */
+                    if (!_args.opreaddir.attr_request.isSet(nfs4_prot.FATTR4_RDATTR_ERROR)) {
+                        throw e;
+                    }
+                    currentEntry.attrs = generateReaddirErrorAttribute(e.getStatus());
                 }
-                currentEntry.attrs = generateReaddirErrorAttribute(e.getStatus());
-            }
 
-            // check if writing this entry exceeds the count limit
-            int newSize = ENTRY4_SIZE + name.length() + currentEntry.name.value.length + currentEntry.attrs.attr_vals.value.length;
-            int newDirSize = name.length() + 4; // name + sizeof(long)
-            if ((currcount + newSize > _args.opreaddir.maxcount.value) || (dircount + newDirSize > _args.opreaddir.dircount.value)) {
+                // check if writing this entry exceeds the count limit
+                int newSize = ENTRY4_SIZE + name.length() + currentEntry.name.value.length + currentEntry.attrs.attr_vals.value.length;
+                int newDirSize = name.length() + 4; // name + sizeof(long)
+                if ((currcount + newSize > _args.opreaddir.maxcount.value) || (dircount + newDirSize > _args.opreaddir.dircount.value)) {
+                    if (lastEntry == null) {
+                        //corner case - means we didnt have enough space to
+                        //write even a single entry.
+                        throw new TooSmallException("can't send even a single entry");
+                    }
+                    res.resok4.reply.eof = false;
+                    break;
+                }
+                fcount++;
+                dircount += newDirSize;
+                currcount += newSize;
+
                 if (lastEntry == null) {
-                    //corner case - means we didnt have enough space to
-                    //write even a single entry.
-                    throw new TooSmallException("can't send even a single entry");
+                    res.resok4.reply.entries = currentEntry;
+                } else {
+                    lastEntry.nextentry = currentEntry;
                 }
-                res.resok4.reply.eof = false;
-                break;
+                lastEntry = currentEntry;
             }
-            fcount++;
-            dircount += newDirSize;
-            currcount += newSize;
-
-            if (lastEntry == null) {
-                res.resok4.reply.entries = currentEntry;
-            } else {
-                lastEntry.nextentry = currentEntry;
-            }
-            lastEntry = currentEntry;
-        }
 
-        _log.debug("Sending {} entries ({} bytes from {}, dircount = {}) cookie = {} EOF={}",
-                fcount,
-                currcount,
-                _args.opreaddir.maxcount.value,
-                _args.opreaddir.dircount.value,
-                startValue,
-                res.resok4.reply.eof);
+            _log.debug("Sending {} entries ({} bytes from {}, dircount = {}) cookie = {} EOF={}",
+                    fcount,
+                    currcount,
+                    _args.opreaddir.maxcount.value,
+                    _args.opreaddir.dircount.value,
+                    startValue,
+                    res.resok4.reply.eof);
+        } catch (UncheckedIOException e) {
+            // error while listing directory lazily
+            throw e.getCause();
+        }
     }
 
     private fattr4 generateReaddirErrorAttribute(int status) {
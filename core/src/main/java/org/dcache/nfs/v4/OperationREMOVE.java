@@ -63,6 +63,12 @@ public class OperationREMOVE extends AbstractNFSv4Operation {
 
         _log.debug("REMOVE: {} : {}", parentInode, name);
 
+        FileTracker fileTracker = context.getStateHandler().getFileTracker();
+        if (fileTracker.hasDelegations()) {
+            NFS4Client client = context.getMinorversion() > 0 ? context.getSession().getClient() : null;
+            fileTracker.recallDelegations(client, context.getFs().lookup(parentInode, name));
+        }
+
         res.resok4.cinfo.before = new changeid4(stat.getGeneration());
         context.getFs().remove(parentInode, name);
 
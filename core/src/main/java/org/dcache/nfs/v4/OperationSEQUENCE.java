@@ -24,6 +24,7 @@ import org.dcache.nfs.v4.xdr.sessionid4;
 import org.dcache.nfs.v4.xdr.uint32_t;
 import org.dcache.nfs.v4.xdr.slotid4;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
 import org.dcache.nfs.v4.xdr.nfs_opnum4;
 import org.dcache.nfs.v4.xdr.SEQUENCE4res;
 import org.dcache.nfs.v4.xdr.SEQUENCE4resok;
@@ -67,12 +68,18 @@ public class OperationSEQUENCE extends AbstractNFSv4Operation {
 
         res.sr_resok4.sr_highest_slotid = new slotid4(session.getHighestSlot());
         res.sr_resok4.sr_slotid = new slotid4(_args.opsequence.sa_slotid.value);
-        res.sr_resok4.sr_target_highest_slotid = new slotid4(session.getHighestSlot());
+        // sa_highest_slotid can't be less than the slot in use
+        int clientHighestSlot = Math.max(_args.opsequence.sa_highest_slotid.value, _args.opsequence.sa_slotid.value);
+        res.sr_resok4.sr_target_highest_slotid = new slotid4(session.updateTargetHighestSlot(clientHighestSlot));
         res.sr_resok4.sr_sessionid = new sessionid4(_args.opsequence.sa_sessionid.value);
 
         //res.sr_resok4.sr_sequenceid = new sequenceid4( new uint32_t( session.nextSequenceID()) );
         res.sr_resok4.sr_sequenceid = _args.opsequence.sa_sequenceid;
-        res.sr_resok4.sr_status_flags = new uint32_t(0);
+        int statusFlags = 0;
+        if (client.hasRevokedDelegations()) {
+            statusFlags |= nfs4_prot.SEQ4_STATUS_RECALLABLE_STATE_REVOKED;
+        }
+        res.sr_resok4.sr_status_flags = new uint32_t(statusFlags);
 
         res.sr_status = nfsstat.NFS_OK;
     }
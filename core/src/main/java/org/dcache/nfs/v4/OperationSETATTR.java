@@ -72,6 +72,10 @@ public class OperationSETATTR extends AbstractNFSv4Operation {
 
         Inode inode = context.currentInode();
 
+        // attribute changes invalidate attributes cached by delegation holders
+        NFS4Client caller = context.getMinorversion() > 0 ? context.getSession().getClient() : null;
+        context.getStateHandler().getFileTracker().recallDelegations(caller, inode);
+
         if (_args.opsetattr.obj_attributes.attrmask.isSet(nfs4_prot.FATTR4_SIZE) && !Stateids.isStateLess(_args.opsetattr.stateid)) {
 
             // TODO: check for DENY_WRITE for any existing opens. However, posix does not support deny masks.
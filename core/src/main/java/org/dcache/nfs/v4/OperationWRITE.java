@@ -20,6 +20,8 @@
 package org.dcache.nfs.v4;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.v4.xdr.stable_how4;
 import org.dcache.nfs.v4.xdr.nfs_argop4;
@@ -33,6 +35,7 @@ import org.dcache.nfs.status.InvalException;
 import org.dcache.nfs.status.IsDirException;
 import org.dcache.nfs.status.NfsIoException;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.vfs.AsyncVirtualFileSystem;
 import org.dcache.nfs.vfs.Stat;
 import org.dcache.nfs.vfs.VirtualFileSystem;
 import org.slf4j.Logger;
@@ -49,7 +52,37 @@ public class OperationWRITE extends AbstractNFSv4Operation {
     @Override
     public void process(CompoundContext context, nfs_resop4 result) throws ChimeraNFSException, IOException {
 
-        final WRITE4res res = result.opwrite;
+        checkFile(context);
+
+        long offset = _args.opwrite.offset.value;
+        VirtualFileSystem.WriteResult writeResult = context.getFs().write(context.currentInode(),
+                _args.opwrite.data, offset, VirtualFileSystem.StabilityLevel.fromStableHow(_args.opwrite.stable));
+
+        setResult(context, result.opwrite, writeResult);
+    }
+
+    @Override
+    public CompletableFuture<Void> processAsync(CompoundContext context, nfs_resop4 result) throws ChimeraNFSException, IOException {
+
+        if (!(context.getFs() instanceof AsyncVirtualFileSystem)) {
+            return super.processAsync(context, result);
+        }
+
+        checkFile(context);
+
+        long offset = _args.opwrite.offset.value;
+        return ((AsyncVirtualFileSystem) context.getFs()).writeAsync(context.currentInode(),
+                _args.opwrite.data, offset, VirtualFileSystem.StabilityLevel.fromStableHow(_args.opwrite.stable))
+                .thenAccept(writeResult -> {
+                    try {
+                        setResult(context, result.opwrite, writeResult);
+                    } catch (NfsIoException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private void checkFile(CompoundContext context) throws ChimeraNFSException, IOException {
 
         _args.opwrite.offset.checkOverflow(_args.opwrite.data.remaining(), "offset + length overflow");
 
@@ -74,9 +107,18 @@ public class OperationWRITE extends AbstractNFSv4Operation {
             context.getStateHandler().updateClientLeaseTime(_args.opwrite.stateid);
         }
 
-        long offset = _args.opwrite.offset.value;
-        VirtualFileSystem.WriteResult writeResult = context.getFs().write(context.currentInode(),
-                _args.opwrite.data, offset, VirtualFileSystem.StabilityLevel.fromStableHow(_args.opwrite.stable));
+        if (Stateids.isStateLess(_args.opwrite.stateid)) {
+            /*
+             * Writes with a regular stateid require an open for writing, which
+             * already has recalled conflicting delegations.
+             */
+            NFS4Client client = context.getMinorversion() > 0 ? context.getSession().getClient() : null;
+            context.getStateHandler().getFileTracker().recallDelegations(client, context.currentInode());
+        }
+    }
+
+    private static void setResult(CompoundContext context, WRITE4res res, VirtualFileSystem.WriteResult writeResult)
+            throws NfsIoException {
 
         if (writeResult.getBytesWritten() < 0) {
             throw new NfsIoException("IO not allowed");
@@ -87,6 +129,5 @@ public class OperationWRITE extends AbstractNFSv4Operation {
         res.resok4.count = new count4(writeResult.getBytesWritten());
         res.resok4.committed = writeResult.getStabilityLevel().toStableHow();
         res.resok4.writeverf = context.getRebootVerifier();
-
     }
 }
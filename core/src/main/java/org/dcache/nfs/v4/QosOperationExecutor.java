@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import org.dcache.nfs.ChimeraNFSException;
+import org.dcache.nfs.FsExport;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.qos.QosManager;
+import org.dcache.nfs.v4.xdr.nfs_argop4;
+import org.dcache.nfs.v4.xdr.nfs_opnum4;
+import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.oncrpc4j.rpc.OncRpcException;
+
+/**
+ * An {@link OperationExecutor} which enforces limits of the export entry, which the
+ * current file handle belongs to. A compound is admitted once, at the first operation
+ * on an exported file. If the client is over the limit, this operation fails with
+ * {@code NFS4ERR_DELAY}. As the operations before only manipulate file handles or the
+ * session, or access the pseudo file system, no non-idempotent operation is executed
+ * by a delayed compound. Data read or written by the following operations of an
+ * admitted compound is accounted without delaying them.
+ * <p>
+ * Operations, which release state, like CLOSE or DELEGRETURN, are never delayed, as
+ * they free resources on the server.
+ *
+ * @see QosManager
+ * @since 0.27
+ */
+public class QosOperationExecutor implements OperationExecutor {
+
+    private final OperationExecutor _inner;
+    private final QosManager _qos;
+
+    public QosOperationExecutor(OperationExecutor inner, QosManager qos) {
+        _inner = inner;
+        _qos = qos;
+    }
+
+    @Override
+    public nfs_resop4 execute(CompoundContext context, nfs_argop4 args) throws IOException, OncRpcException {
+        if (!isAdmitted(context, args)) {
+            return delayed(args);
+        }
+        return _inner.execute(context, args);
+    }
+
+    @Override
+    public CompletableFuture<nfs_resop4> executeAsync(CompoundContext context, nfs_argop4 args) {
+        try {
+            if (!isAdmitted(context, args)) {
+                return CompletableFuture.completedFuture(delayed(args));
+            }
+        } catch (ChimeraNFSException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return _inner.executeAsync(context, args);
+    }
+
+    private boolean isAdmitted(CompoundContext context, nfs_argop4 args) throws ChimeraNFSException {
+
+        long bytes;
+        switch (args.argop) {
+            case nfs_opnum4.OP_PUTFH:
+            case nfs_opnum4.OP_PUTROOTFH:
+            case nfs_opnum4.OP_PUTPUBFH:
+            case nfs_opnum4.OP_GETFH:
+            case nfs_opnum4.OP_SAVEFH:
+            case nfs_opnum4.OP_RESTOREFH:
+            case nfs_opnum4.OP_SEQUENCE:
+                return true;
+            case nfs_opnum4.OP_CLOSE:
+            case nfs_opnum4.OP_LOCKU:
+            case nfs_opnum4.OP_DELEGRETURN:
+            case nfs_opnum4.OP_LAYOUTRETURN:
+            case nfs_opnum4.OP_DESTROY_SESSION:
+                // the following operations must not be delayed after state is released
+                context.setQosAdmitted();
+                return true;
+            case nfs_opnum4.OP_READ:
+                bytes = Integer.toUnsignedLong(args.opread.count.value);
+                break;
+            case nfs_opnum4.OP_WRITE:
+                bytes = args.opwrite.data.remaining();
+                break;
+            default:
+                bytes = 0;
+        }
+
+        if (!context.hasCurrentInode()) {
+            return true;
+        }
+
+        Inode inode = context.currentInode();
+        if (inode.isPseudoInode()) {
+            return true;
+        }
+
+        InetAddress client = context.getRemoteSocketAddress().getAddress();
+        FsExport export = context.getExportTable().getExport(inode.exportIndex(), client);
+        if (export == null) {
+            return true;
+        }
+
+        if (context.isQosAdmitted()) {
+            _qos.charge(export, client, bytes);
+            return true;
+        }
+
+        if (!_qos.tryAcquire(export, client, bytes)) {
+            return false;
+        }
+        context.setQosAdmitted();
+        return true;
+    }
+
+    private static nfs_resop4 delayed(nfs_argop4 args) {
+        nfs_resop4 opResult = nfs_resop4.resopFor(args.argop);
+        opResult.setStatus(nfsstat.NFSERR_DELAY);
+        return opResult;
+    }
+}
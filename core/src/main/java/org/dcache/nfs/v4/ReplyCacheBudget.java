@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide memory budget of session reply caches. Each cached reply is charged
+ * with its encoded size against the budget. When the budget is exhausted, the least
+ * recently cached replies of all sessions are evicted. A client retransmitting a
+ * request with an evicted reply gets {@code NFS4ERR_RETRY_UNCACHED_REP}.
+ * <p>
+ * Sessions use the budget to decide whether they may offer more slots to a client
+ * or should ask the client to use less.
+ *
+ * @since 0.27
+ */
+public class ReplyCacheBudget {
+
+    private final long _maxBytes;
+
+    /*
+     * Cached replies in insertion order, the eldest first.
+     */
+    private CachedReply _head;
+    private CachedReply _tail;
+    private volatile long _usedBytes;
+    private int _entries;
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _evictedBytes = new LongAdder();
+    private final LongAdder _oversized = new LongAdder();
+
+    /**
+     * Create a new budget.
+     *
+     * @param maxBytes the memory, in bytes, which can be used by cached replies.
+     */
+    public ReplyCacheBudget(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("budget must be positive: " + maxBytes);
+        }
+        _maxBytes = maxBytes;
+    }
+
+    /**
+     * Charge the reply against the budget. The eldest replies are evicted from their
+     * slots until the budget is not exceeded.
+     *
+     * @param reply the reply to add.
+     * @return true, if reply is cached.
+     */
+    synchronized boolean add(CachedReply reply) {
+        if (reply.removed || reply.linked) {
+            // discarded by the slot in the meantime
+            return false;
+        }
+
+        if (reply.size() > _maxBytes) {
+            _oversized.increment();
+            reply.removed = true;
+            return false;
+        }
+
+        while (_usedBytes + reply.size() > _maxBytes) {
+            CachedReply eldest = _head;
+            unlink(eldest);
+            eldest.slot.evicted(eldest);
+            _evictions.increment();
+            _evictedBytes.add(eldest.size());
+        }
+
+        reply.linked = true;
+        reply.prev = _tail;
+        if (_tail == null) {
+            _head = reply;
+        } else {
+            _tail.next = reply;
+        }
+        _tail = reply;
+        _usedBytes += reply.size();
+        _entries++;
+        return true;
+    }
+
+    /**
+     * Return bytes charged by the reply back to the budget.
+     *
+     * @param reply the reply to remove.
+     */
+    synchronized void remove(CachedReply reply) {
+        if (reply.linked) {
+            unlink(reply);
+        }
+        reply.removed = true;
+    }
+
+    private void unlink(CachedReply reply) {
+        if (reply.prev == null) {
+            _head = reply.next;
+        } else {
+            reply.prev.next = reply.next;
+        }
+        if (reply.next == null) {
+            _tail = reply.prev;
+        } else {
+            reply.next.prev = reply.prev;
+        }
+        reply.prev = null;
+        reply.next = null;
+        reply.linked = false;
+        reply.removed = true;
+        _usedBytes -= reply.size();
+        _entries--;
+    }
+
+    /**
+     * Record a retransmitted request answered from the cache.
+     */
+    void replayed() {
+        _hits.increment();
+    }
+
+    /**
+     * Record a retransmitted request without cached reply.
+     */
+    void missed() {
+        _misses.increment();
+    }
+
+    /**
+     * Record a reply, which is too big to be cached.
+     */
+    void oversized() {
+        _oversized.increment();
+    }
+
+    /**
+     * Get number of bytes charged against the budget.
+     */
+    public long getUsed() {
+        return _usedBytes;
+    }
+
+    /**
+     * Get the budget size in bytes.
+     */
+    public long getMax() {
+        return _maxBytes;
+    }
+
+    /**
+     * Get number of cached replies.
+     */
+    public synchronized int getEntries() {
+        return _entries;
+    }
+
+    /**
+     * Get number of retransmitted requests answered from the cache.
+     */
+    public long getHits() {
+        return _hits.sum();
+    }
+
+    /**
+     * Get number of retransmitted requests without cached reply.
+     */
+    public long getMisses() {
+        return _misses.sum();
+    }
+
+    /**
+     * Get number of replies evicted to stay within the budget.
+     */
+    public long getEvictions() {
+        return _evictions.sum();
+    }
+
+    /**
+     * Get number of bytes of evicted replies.
+     */
+    public long getEvictedBytes() {
+        return _evictedBytes.sum();
+    }
+
+    /**
+     * Get number of replies not cached as they were too big.
+     */
+    public long getOversized() {
+        return _oversized.sum();
+    }
+
+    /**
+     * Returns true if more than three quarters of the budget are used. Sessions must
+     * not grow their slot tables when the budget is under pressure.
+     */
+    public boolean isUnderPressure() {
+        return getUsed() > _maxBytes - _maxBytes / 4;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+/**
+ * Interface ReplyCacheMXBean
+ *
+ * @since 0.27
+ */
+public interface ReplyCacheMXBean {
+
+    /**
+     * Number of cached replies.
+     */
+    int getEntries();
+
+    /**
+     * Number of bytes used by cached replies.
+     */
+    long getUsedBytes();
+
+    long getMaxBytes();
+
+    /**
+     * Number of retransmitted requests answered from the cache.
+     */
+    long getHits();
+
+    /**
+     * Number of retransmitted requests without cached reply.
+     */
+    long getMisses();
+
+    /**
+     * Number of replies evicted to stay within the memory budget.
+     */
+    long getEvictions();
+
+    long getEvictedBytes();
+
+    /**
+     * Number of replies not cached as they were too big.
+     */
+    long getOversized();
+}
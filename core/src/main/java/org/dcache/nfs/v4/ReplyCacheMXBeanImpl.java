@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class ReplyCacheMXBeanImpl
+ *
+ */
+public class ReplyCacheMXBeanImpl implements ReplyCacheMXBean {
+
+    private static final Logger _log = LoggerFactory.getLogger(ReplyCacheMXBeanImpl.class);
+
+    private final ReplyCacheBudget _budget;
+    private ObjectName _mxBeanName;
+
+    public ReplyCacheMXBeanImpl(ReplyCacheBudget budget, String name) {
+        _budget = budget;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName mxBeanName = new ObjectName(String.format("%s:type=ReplyCache,name=%s",
+                    _budget.getClass().getPackage().getName(), ObjectName.quote(name)));
+            if (!server.isRegistered(mxBeanName)) {
+                server.registerMBean(this, mxBeanName);
+                _mxBeanName = mxBeanName;
+            }
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException
+                | MBeanRegistrationException | NotCompliantMBeanException ex) {
+            _log.warn("Failed to register JMX bean: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Remove this bean from the platform MBean server, if it was registered by
+     * this instance.
+     */
+    public void unregister() {
+        if (_mxBeanName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(_mxBeanName);
+        } catch (InstanceNotFoundException | MBeanRegistrationException ex) {
+            _log.warn("Failed to unregister JMX bean: {}", ex.getMessage());
+        }
+        _mxBeanName = null;
+    }
+
+    @Override
+    public int getEntries() {
+        return _budget.getEntries();
+    }
+
+    @Override
+    public long getUsedBytes() {
+        return _budget.getUsed();
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return _budget.getMax();
+    }
+
+    @Override
+    public long getHits() {
+        return _budget.getHits();
+    }
+
+    @Override
+    public long getMisses() {
+        return _budget.getMisses();
+    }
+
+    @Override
+    public long getEvictions() {
+        return _budget.getEvictions();
+    }
+
+    @Override
+    public long getEvictedBytes() {
+        return _budget.getEvictedBytes();
+    }
+
+    @Override
+    public long getOversized() {
+        return _budget.getOversized();
+    }
+}
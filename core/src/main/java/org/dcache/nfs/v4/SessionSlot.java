@@ -19,24 +19,45 @@
  */
 package org.dcache.nfs.v4;
 
-import java.util.Collections;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import org.dcache.nfs.v4.xdr.nfs_resop4;
 import org.dcache.nfs.status.SeqMisorderedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * A session slot with the cached reply of the last request. Each cached reply
+ * is charged against a {@link ReplyCacheBudget} and may be evicted by it.
  */
 public class SessionSlot {
 
     private static final Logger _log = LoggerFactory.getLogger(SessionSlot.class);
 
+    private final ReplyCacheBudget _budget;
+
+    /**
+     * The maximal size of an encoded reply, which is cached.
+     */
+    private final int _maxReplySize;
+
     private int _sequence;
-    private List<nfs_resop4> _reply;
+    private final AtomicReference<CachedReply> _reply = new AtomicReference<>();
 
     public SessionSlot() {
+        this(new ReplyCacheBudget(Long.MAX_VALUE), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a new slot.
+     *
+     * @param budget the budget to charge cached replies against.
+     * @param maxReplySize the maximal size of a cached reply in bytes.
+     */
+    public SessionSlot(ReplyCacheBudget budget, int maxReplySize) {
+       _budget = budget;
+       _maxReplySize = maxReplySize;
        _sequence = 0;
     }
 
@@ -47,7 +68,7 @@ public class SessionSlot {
      * <ul>
      *   <li> If the provided sequence id and the previous sequence id are the
      *         same then the request is a retry.  The previous reply is returned
-     *         or an empty List if no reply was recorded.
+     *         or {@link CachedReply#NOT_CACHED} if no reply was recorded.
      *   <li> If the provided sequence id is one greater than the previous sequence
      *         id then this is a new request and null is returned.
      *   <li> For all other provided sequence id values a {@link SeqMisorderedException}
@@ -55,20 +76,22 @@ public class SessionSlot {
      * </ul>
      *
      * @param sequence  the sequence number of the request for the reply cache entry
-     * @return the list of cached replies, possibly empty or {@code null}
-     * cached reply does not exist.
+     * @return the cached reply, {@link CachedReply#NOT_CACHED} or {@code null}.
      * @throws SeqMisorderedException if {@code sequnce} is out of order.
      */
-    List<nfs_resop4> acquire(int sequence) throws SeqMisorderedException {
+    synchronized CachedReply acquire(int sequence) throws SeqMisorderedException {
 
         if( sequence == _sequence ) {
 
             _log.info("retransmit detected");
-            if( _reply != null ) {
-                return _reply;
+            CachedReply reply = _reply.get();
+            if( reply != null ) {
+                _budget.replayed();
+                return reply;
             }
 
-            return Collections.emptyList();
+            _budget.missed();
+            return CachedReply.NOT_CACHED;
         }
 
         int validValue = _sequence + 1;
@@ -78,11 +101,57 @@ public class SessionSlot {
         }
 
         _sequence = sequence;
-        _reply = null;
+        releaseReply();
         return null;
     }
 
-    void update(List<nfs_resop4> reply) {
-        _reply = reply;
+    /**
+     * Cache the reply of the current request. The results are encoded and kept only
+     * if they fit into the slot's reply size limit.
+     *
+     * @param reply the results of all executed operations, starting with SEQUENCE.
+     * @return the encoded results, even if they are not kept in the cache.
+     * @throws IOException if results can't be encoded.
+     */
+    CachedReply update(List<nfs_resop4> reply) throws IOException {
+        CachedReply cachedReply = CachedReply.encode(this, reply);
+        if (cachedReply.size() > _maxReplySize) {
+            _budget.oversized();
+            releaseReply();
+            return cachedReply;
+        }
+
+        CachedReply old = _reply.getAndSet(cachedReply);
+        if (old != null) {
+            _budget.remove(old);
+        }
+        if (!_budget.add(cachedReply)) {
+            _reply.compareAndSet(cachedReply, null);
+        }
+        return cachedReply;
+    }
+
+    /**
+     * Discard cached reply. A retransmitted request will get NFS4ERR_RETRY_UNCACHED_REP.
+     */
+    void releaseReply() {
+        CachedReply old = _reply.getAndSet(null);
+        if (old != null) {
+            _budget.remove(old);
+        }
+    }
+
+    /**
+     * Called by the budget, when the reply is evicted.
+     */
+    void evicted(CachedReply reply) {
+        _reply.compareAndSet(reply, null);
+    }
+
+    /**
+     * Returns true if slot has a cached reply.
+     */
+    boolean hasCachedReply() {
+        return _reply.get() != null;
     }
 }
@@ -81,7 +81,7 @@ public class DSOperationREAD extends AbstractNFSv4Operation {
         long offset = _args.opread.offset.value;
         int count = _args.opread.count.value;
 
-        ByteBuffer bb = ByteBuffer.allocateDirect(count);
+        ByteBuffer bb = context.allocateReplyBuffer(count);
         FileChannel in = _fsCache.get(inode);
 
         int bytesReaded = in.read(bb, offset);
@@ -52,6 +52,23 @@ public abstract class AbstractLockManager implements LockManager {
      */
     abstract protected Collection<NlmLock> getActiveLocks(byte[] objId);
 
+    /**
+     * Get collection of currently active locks on the object, which range overlaps
+     * with the range of the given {@code lock}. The default implementation filters
+     * {@link #getActiveLocks(byte[])}. Subclasses, which index locks by range, should
+     * override this method.
+     *
+     * @param objId object id.
+     * @param lock lock which range to check.
+     * @return collection of overlapping active locks.
+     * @since 0.27
+     */
+    protected Collection<NlmLock> getOverlappingLocks(byte[] objId, NlmLock lock) {
+        return getActiveLocks(objId).stream()
+                .filter(l -> l.isOverlappingRange(lock))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Add {@code lock} to an object.
      * @param objId object id.
@@ -87,13 +104,13 @@ public abstract class AbstractLockManager implements LockManager {
         Lock dlmLock = getObjectLock(objId);
         dlmLock.lock();
         try {
-            Collection<NlmLock> currentLocks = getActiveLocks(objId);
+            Collection<NlmLock> currentLocks = getOverlappingLocks(objId, lock);
             Optional<NlmLock> conflictingLock = currentLocks.stream().filter((NlmLock l) -> l.isConflicting(lock)).findAny();
             if (conflictingLock.isPresent()) {
                 throw new LockDeniedException("object locked", conflictingLock.get());
             }
             // no conflicting locks. try to merge existing locks
-            List<NlmLock> toMerge = currentLocks.stream().filter((NlmLock l) -> l.isOverlappingRange(lock)).filter((NlmLock l) -> l.isSameOwner(lock)).filter((NlmLock l) -> l.getLockType() == lock.getLockType()).collect(Collectors.toList());
+            List<NlmLock> toMerge = currentLocks.stream().filter((NlmLock l) -> l.isSameOwner(lock)).filter((NlmLock l) -> l.getLockType() == lock.getLockType()).collect(Collectors.toList());
             if (toMerge.isEmpty()) {
                 add(objId, lock);
             } else {
@@ -118,14 +135,14 @@ public abstract class AbstractLockManager implements LockManager {
         Lock dlmLock = getObjectLock(objId);
         dlmLock.lock();
         try {
-            Collection<NlmLock> currentLocks = getActiveLocks(objId);
             // check for exact match first
             if (remove(objId, lock)) {
                 return;
             }
+            Collection<NlmLock> currentLocks = getOverlappingLocks(objId, lock);
             List<NlmLock> toRemove = new ArrayList<>();
             List<NlmLock> toAdd = new ArrayList<>();
-            currentLocks.stream().filter((NlmLock l) -> l.isSameOwner(lock)).filter((NlmLock l) -> l.isOverlappingRange(lock)).forEach((NlmLock l) -> {
+            currentLocks.stream().filter((NlmLock l) -> l.isSameOwner(lock)).forEach((NlmLock l) -> {
                 toRemove.add(l);
                 long l1 = lock.getOffset() - l.getOffset();
                 if (l1 > 0) {
@@ -155,8 +172,8 @@ public abstract class AbstractLockManager implements LockManager {
         Lock dlmLock = getObjectLock(objId);
         dlmLock.lock();
         try {
-            Collection<NlmLock> currentLocks = getActiveLocks(objId);
-            Optional<NlmLock> conflictingLock = currentLocks.stream().filter((NlmLock l) -> l.isOverlappingRange(lock) && !l.isSameOwner(lock)).findAny();
+            Collection<NlmLock> currentLocks = getOverlappingLocks(objId, lock);
+            Optional<NlmLock> conflictingLock = currentLocks.stream().filter((NlmLock l) -> !l.isSameOwner(lock)).findAny();
             if (conflictingLock.isPresent()) {
                 throw new LockDeniedException("object locked", conflictingLock.get());
             }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4.nlm;
+
+import com.google.common.util.concurrent.Striped;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import org.dcache.nfs.util.Opaque;
+
+/**
+ * Non-distributed implementation of {@link LockManager}, which keeps locks of each
+ * object in an interval tree. Conflict detection, merge and split of locks take
+ * O(log n) for n locks held on an object. This implementation is intended for
+ * workloads with many byte range locks per file, like MPI-IO or databases.
+ *
+ * @since 0.27
+ */
+public class IntervalTreeLm extends AbstractLockManager {
+
+    /*
+     * Use {@link Striped} here to split synchronized block on file locks into
+     * multiple partitions to increase concurrency, while guaranteeing atomicity
+     * on a single file.
+     */
+    private final Striped<Lock> objLock;
+
+    /**
+     * Locks of each object. Guarded by the object's lock.
+     */
+    private final ConcurrentHashMap<Opaque, LockIntervalTree> locks = new ConcurrentHashMap<>();
+
+    public IntervalTreeLm() {
+        this(Runtime.getRuntime().availableProcessors()*4);
+    }
+
+    public IntervalTreeLm(int concurrency) {
+        objLock = Striped.lock(concurrency);
+    }
+
+    @Override
+    protected Lock getObjectLock(byte[] objId) {
+        return objLock.get(new Opaque(objId));
+    }
+
+    @Override
+    protected Collection<NlmLock> getActiveLocks(byte[] objId) {
+        LockIntervalTree tree = locks.get(new Opaque(objId));
+        return tree == null ? Collections.emptyList() : tree.getAll();
+    }
+
+    @Override
+    protected Collection<NlmLock> getOverlappingLocks(byte[] objId, NlmLock lock) {
+        LockIntervalTree tree = locks.get(new Opaque(objId));
+        return tree == null ? Collections.emptyList() : tree.getOverlapping(lock);
+    }
+
+    @Override
+    protected void add(byte[] objId, NlmLock lock) {
+        locks.computeIfAbsent(new Opaque(objId), k -> new LockIntervalTree()).add(lock);
+    }
+
+    @Override
+    protected boolean remove(byte[] objId, NlmLock lock) {
+        Opaque key = new Opaque(objId);
+        LockIntervalTree tree = locks.get(key);
+        boolean isRemoved = false;
+        if (tree != null) {
+            isRemoved = tree.remove(lock);
+            if (tree.isEmpty()) {
+                locks.remove(key);
+            }
+        }
+        return isRemoved;
+    }
+
+    @Override
+    protected void addAll(byte[] objId, Collection<NlmLock> locks) {
+        if (locks.isEmpty()) {
+            return;
+        }
+        LockIntervalTree tree = this.locks.computeIfAbsent(new Opaque(objId), k -> new LockIntervalTree());
+        locks.forEach(tree::add);
+    }
+
+    @Override
+    protected void removeAll(byte[] objId, Collection<NlmLock> locks) {
+        Opaque key = new Opaque(objId);
+        LockIntervalTree tree = this.locks.get(key);
+        if (tree != null) {
+            locks.forEach(tree::remove);
+            if (tree.isEmpty()) {
+                this.locks.remove(key);
+            }
+        }
+    }
+}
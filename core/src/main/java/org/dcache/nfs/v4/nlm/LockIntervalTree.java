@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4.nlm;
+
+import com.google.common.math.LongMath;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An interval tree of byte range locks of a single object. The tree is an AVL tree
+ * ordered by lock offset, where each node keeps the highest locked byte of its subtree.
+ * Thus, locks overlapping with a given range are found in O(log n + k) and insert and
+ * remove take O(log n).
+ * <p>
+ * This class is not thread safe.
+ */
+class LockIntervalTree {
+
+    private static final class Node {
+
+        private final NlmLock lock;
+
+        /**
+         * First and last locked byte.
+         */
+        private final long first;
+        private final long last;
+
+        /**
+         * Insertion sequence to order locks with the same offset.
+         */
+        private final long seq;
+
+        private Node left;
+        private Node right;
+        private int height;
+
+        /**
+         * The highest last locked byte in the subtree.
+         */
+        private long maxLast;
+
+        Node(NlmLock lock, long seq) {
+            this.lock = lock;
+            this.first = lock.getOffset();
+            this.last = lastByte(lock);
+            this.seq = seq;
+            this.height = 1;
+            this.maxLast = last;
+        }
+    }
+
+    private Node root;
+    private int size;
+    private long nextSeq;
+
+    /**
+     * Returns the last byte covered by the lock. Locks up to the end of file as well as
+     * ranges which overflow are treated as unbounded. As zero length locks overlap with
+     * locks at the same offset, they are treated as a single byte.
+     */
+    static long lastByte(NlmLock lock) {
+        long length = lock.getLength();
+        if (length < 0) {
+            // NFS4_UINT64_MAX or unsigned value bigger than Long.MAX_VALUE
+            return Long.MAX_VALUE;
+        }
+        return LongMath.saturatedAdd(lock.getOffset(), Math.max(length, 1) - 1);
+    }
+
+    /**
+     * Add lock to the tree.
+     *
+     * @param lock the lock to add.
+     */
+    void add(NlmLock lock) {
+        root = insert(root, new Node(lock, nextSeq++));
+        size++;
+    }
+
+    /**
+     * Remove a lock, which is equal to the given one.
+     *
+     * @param lock the lock to remove.
+     * @return true, if lock was removed.
+     */
+    boolean remove(NlmLock lock) {
+        Node node = find(root, lock);
+        if (node == null) {
+            return false;
+        }
+        root = delete(root, node.first, node.seq);
+        size--;
+        return true;
+    }
+
+    /**
+     * Get all locks, which range overlaps with the given lock.
+     *
+     * @param lock the lock to check.
+     * @return overlapping locks.
+     */
+    List<NlmLock> getOverlapping(NlmLock lock) {
+        List<NlmLock> locks = new ArrayList<>();
+        collect(root, lock.getOffset(), lastByte(lock), lock, locks);
+        return locks;
+    }
+
+    /**
+     * Get all locks ordered by offset.
+     *
+     * @return all locks in the tree.
+     */
+    List<NlmLock> getAll() {
+        List<NlmLock> locks = new ArrayList<>(size);
+        collectAll(root, locks);
+        return locks;
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static void collect(Node node, long first, long last, NlmLock lock, List<NlmLock> locks) {
+        if (node == null || node.maxLast < first) {
+            return;
+        }
+
+        collect(node.left, first, last, lock, locks);
+        if (node.first <= last) {
+            // the tree selects candidates, the lock defines the precise semantic.
+            if (node.last >= first && node.lock.isOverlappingRange(lock)) {
+                locks.add(node.lock);
+            }
+            collect(node.right, first, last, lock, locks);
+        }
+    }
+
+    private static void collectAll(Node node, List<NlmLock> locks) {
+        if (node != null) {
+            collectAll(node.left, locks);
+            locks.add(node.lock);
+            collectAll(node.right, locks);
+        }
+    }
+
+    private static Node find(Node node, NlmLock lock) {
+        if (node == null) {
+            return null;
+        }
+
+        long offset = lock.getOffset();
+        if (offset < node.first) {
+            return find(node.left, lock);
+        }
+        if (offset > node.first) {
+            return find(node.right, lock);
+        }
+        if (node.lock.equals(lock)) {
+            return node;
+        }
+        // locks with the same offset can be on both sides
+        Node found = find(node.left, lock);
+        return found != null ? found : find(node.right, lock);
+    }
+
+    private static int compare(Node node, long first, long seq) {
+        int c = Long.compare(first, node.first);
+        return c != 0 ? c : Long.compare(seq, node.seq);
+    }
+
+    private static Node insert(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (compare(node, newNode.first, newNode.seq) < 0) {
+            node.left = insert(node.left, newNode);
+        } else {
+            node.right = insert(node.right, newNode);
+        }
+        return balance(node);
+    }
+
+    private static Node delete(Node node, long first, long seq) {
+        if (node == null) {
+            return null;
+        }
+
+        int c = compare(node, first, seq);
+        if (c < 0) {
+            node.left = delete(node.left, first, seq);
+        } else if (c > 0) {
+            node.right = delete(node.right, first, seq);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private static Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxLast = node.last;
+        if (node.left != null) {
+            maxLast = Math.max(maxLast, node.left.maxLast);
+        }
+        if (node.right != null) {
+            maxLast = Math.max(maxLast, node.right.maxLast);
+        }
+        node.maxLast = maxLast;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+}
@@ -62,4 +62,84 @@ public interface AclCheckable {
      * @throws IOException
      */
     Access checkAcl(Subject subject, Inode inode, int accessMask) throws ChimeraNFSException, IOException;
+
+    /**
+     * Evaluate each bit of the {@code accessMask} for a given {@code subject} and
+     * {@code inode}. Implementations should override this method to evaluate the
+     * ACL in a single pass. The default implementation checks each bit with
+     * {@link #checkAcl(Subject, Inode, int)}.
+     *
+     * @param subject who performs the access
+     * @param inode access to which is performed
+     * @param accessMask bits to evaluate
+     * @return bits of {@code accessMask} allowed and denied by matching ACEs.
+     * @throws IOException
+     * @since 0.27
+     */
+    default AccessVector checkAclVector(Subject subject, Inode inode, int accessMask) throws ChimeraNFSException, IOException {
+        int allowed = 0;
+        int denied = 0;
+        for (int bits = accessMask; bits != 0; bits &= bits - 1) {
+            int bit = Integer.lowestOneBit(bits);
+            switch (checkAcl(subject, inode, bit)) {
+                case ALLOW:
+                    allowed |= bit;
+                    break;
+                case DENY:
+                    denied |= bit;
+                    break;
+                default:
+                    // no matching ACE
+            }
+        }
+        return new AccessVector(allowed, denied);
+    }
+
+    /**
+     * Result of ACL evaluation for individual bits of an access mask.
+     *
+     * @since 0.27
+     */
+    final class AccessVector {
+
+        private final int allowed;
+        private final int denied;
+
+        public AccessVector(int allowed, int denied) {
+            this.allowed = allowed;
+            this.denied = denied;
+        }
+
+        /**
+         * Get bits allowed by a matching ACE.
+         */
+        public int getAllowed() {
+            return allowed;
+        }
+
+        /**
+         * Get bits denied by a matching ACE.
+         */
+        public int getDenied() {
+            return denied;
+        }
+
+        /**
+         * Get access for a given mask like {@link AclCheckable#checkAcl} does:
+         * <tt>DENY</tt>, if any of requested bits is denied, <tt>ALLOW</tt> if all
+         * requested bits are allowed and <tt>UNDEFINED</tt> otherwise.
+         *
+         * @param accessMask mask to evaluate.
+         * @return access for the given mask.
+         */
+        public Access access(int accessMask) {
+            if ((denied & accessMask) != 0) {
+                return Access.DENY;
+            }
+            if ((allowed & accessMask) == accessMask) {
+                return Access.ALLOW;
+            }
+            return Access.UNDEFINED;
+        }
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.vfs;
+
+import com.google.common.annotations.Beta;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link VirtualFileSystem} with non-blocking data access. The NFSv4.1 server
+ * executes compound requests on such file systems as a chain of continuations, thus
+ * the worker threads are not blocked while I/O requests are in progress. This is
+ * beneficial for file systems with high access latency, like object stores or HSM
+ * systems.
+ * <p>
+ * If an operation fails, the returned {@link CompletableFuture} completes
+ * exceptionally with corresponding error, typically a
+ * {@link org.dcache.nfs.ChimeraNFSException}.
+ *
+ * @since 0.27
+ */
+@Beta
+public interface AsyncVirtualFileSystem extends VirtualFileSystem {
+
+    /**
+     * Read data from file with a given inode into {@code data}.
+     *
+     * @param inode inode of the file to read from.
+     * @param data buffer for writing.
+     * @param offset file's position to read from.
+     * @return a {@link CompletableFuture} with number of bytes read from the file,
+     * possibly zero. -1 if EOF is reached.
+     * @see #read(Inode, ByteBuffer, long)
+     */
+    CompletableFuture<Integer> readAsync(Inode inode, ByteBuffer data, long offset);
+
+    /**
+     * Write provided {@code data} into inode with a given stability level.
+     *
+     * @param inode inode of the file to write.
+     * @param data data to be written.
+     * @param offset the file position to begin writing at.
+     * @param stabilityLevel data stability level.
+     * @return a {@link CompletableFuture} with the write result.
+     * @see #write(Inode, ByteBuffer, long, StabilityLevel)
+     */
+    CompletableFuture<WriteResult> writeAsync(Inode inode, ByteBuffer data, long offset, StabilityLevel stabilityLevel);
+
+    /**
+     * Flush data in {@code dirty} state to the stable storage.
+     *
+     * @param inode inode of the file to commit.
+     * @param offset the file position to start commit at.
+     * @param count number of bytes to commit.
+     * @return a {@link CompletableFuture} representing pending completion of the commit.
+     * @see #commit(Inode, long, int)
+     */
+    CompletableFuture<Void> commitAsync(Inode inode, long offset, int count);
+
+    /**
+     * Returns {@code true} if data access of this file system does not block the
+     * calling thread. Decorators, which implement this interface to forward the
+     * asynchronous methods, return whether the decorated file system is asynchronous.
+     *
+     * @return true, if read, write and commit requests complete asynchronously.
+     */
+    default boolean isAsync() {
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the given file system is an asynchronous one.
+     *
+     * @param fs the file system to check.
+     * @return true, if {@code fs} completes data access requests asynchronously.
+     * @see #isAsync()
+     */
+    static boolean isAsync(VirtualFileSystem fs) {
+        return fs instanceof AsyncVirtualFileSystem && ((AsyncVirtualFileSystem) fs).isAsync();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.vfs;
+
+/**
+ * An optional interface of a {@link VirtualFileSystem}, which can tell about files
+ * modified behind the back of the NFS server, e.g. by other nodes of a cluster or
+ * by local processes. Caching decorators, like {@link VfsCache}, register a listener
+ * to discard cached information of such files.
+ *
+ * @since 0.27
+ */
+public interface ChangeNotifier {
+
+    /**
+     * A listener, which is notified about modified files.
+     */
+    @FunctionalInterface
+    interface Listener {
+
+        /**
+         * Called when attributes, content or, for directories, entries of the file
+         * with the given inode have been modified.
+         *
+         * @param inode inode of the modified file.
+         */
+        void changed(Inode inode);
+    }
+
+    /**
+     * Register a listener to be notified about modified files.
+     *
+     * @param listener the listener to notify.
+     */
+    void addChangeListener(Listener listener);
+}
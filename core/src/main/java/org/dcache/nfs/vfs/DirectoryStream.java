@@ -20,36 +20,98 @@
 package org.dcache.nfs.vfs;
 
 import com.google.common.collect.ForwardingNavigableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NavigableSet;
-import java.util.TreeSet;
 import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
 import org.dcache.nfs.v4.xdr.nfs4_prot;
 
 /**
- *
+ * Entries of a directory ordered by cookie.
+ * <p>
+ * A directory stream is either backed by a collection of entries or by a function,
+ * which lazily lists the directory starting after a given cookie. The later allows
+ * to serve huge directories with memory proportional to the size of the reply
+ * instead of the size of the directory. Consumers must close the stream to release
+ * resources held by the entries' source, like open directory handles.
  */
-public class DirectoryStream implements Iterable<DirectoryEntry>{
+public class DirectoryStream implements Iterable<DirectoryEntry>, Closeable {
 
     // v4 and v3 have the same verifier size
     public final static byte[] ZERO_VERIFIER = new byte[nfs4_prot.NFS4_VERIFIER_SIZE];
 
     private final byte[] verifier;
+
+    /**
+     * Entries ordered by cookie. Collections of entries are stored as a sorted array,
+     * thus {@link #tail(long)} is a binary search, which returns a view without copying.
+     */
     private final NavigableSet<DirectoryEntry> entries;
 
+    /**
+     * Lister of entries with cookies greater than the given one, or null if the
+     * stream is backed by a collection.
+     */
+    private final LongFunction<Stream<DirectoryEntry>> lister;
+
+    /**
+     * The lowest cookie of the lazily listed entries, exclusive.
+     */
+    private final long fromCookie;
+
+    /**
+     * Streams opened by iterators of this directory stream. Shared with tails and
+     * transformations of this stream, thus closing any of them releases all.
+     */
+    private final List<Stream<DirectoryEntry>> openStreams;
+
     public DirectoryStream(Collection<DirectoryEntry> entries) {
-        this(ZERO_VERIFIER, new TreeSet<>(entries));
+        this(ZERO_VERIFIER, entries);
     }
 
     public DirectoryStream(byte[] verifier, Collection<DirectoryEntry> entries) {
-        this(verifier, new TreeSet<>(entries));
+        this(verifier, ImmutableSortedSet.copyOf(entries));
     }
 
     public DirectoryStream(byte[] verifier, NavigableSet<DirectoryEntry> entries) {
         this.verifier = verifier;
-        this.entries = Collections.unmodifiableNavigableSet(entries);
+        this.entries = entries instanceof ImmutableSortedSet ? entries : Collections.unmodifiableNavigableSet(entries);
+        this.lister = null;
+        this.fromCookie = 0L;
+        this.openStreams = Collections.emptyList();
+    }
+
+    /**
+     * Create a directory stream, which lists entries on demand. The {@code lister}
+     * is called for each iteration with the cookie of the last entry seen by the
+     * client and must return a lazy stream of entries with greater cookies in cookie
+     * order. Errors, which occur while listing, are thrown as
+     * {@link java.io.UncheckedIOException}.
+     *
+     * @param verifier directory verifier.
+     * @param lister lister of entries after a given cookie.
+     * @since 0.27
+     */
+    public DirectoryStream(byte[] verifier, LongFunction<Stream<DirectoryEntry>> lister) {
+        this(verifier, lister, 0L, new ArrayList<>(1));
+    }
+
+    private DirectoryStream(byte[] verifier, LongFunction<Stream<DirectoryEntry>> lister, long fromCookie,
+            List<Stream<DirectoryEntry>> openStreams) {
+        this.verifier = verifier;
+        this.entries = null;
+        this.lister = lister;
+        this.fromCookie = fromCookie;
+        this.openStreams = openStreams;
     }
 
     public byte[] getVerifier() {
@@ -58,7 +120,24 @@ public class DirectoryStream implements Iterable<DirectoryEntry>{
 
     @Override
     public Iterator<DirectoryEntry> iterator() {
-        return entries.iterator();
+        if (lister == null) {
+            return entries.iterator();
+        }
+
+        Stream<DirectoryEntry> stream = lister.apply(fromCookie);
+        openStreams.add(stream);
+        return stream.filter(e -> e.getCookie() > fromCookie).iterator();
+    }
+
+    /**
+     * Release resources held by iterators of this stream.
+     */
+    @Override
+    public void close() {
+        if (!openStreams.isEmpty()) {
+            openStreams.forEach(Stream::close);
+            openStreams.clear();
+        }
     }
 
     /**
@@ -70,10 +149,35 @@ public class DirectoryStream implements Iterable<DirectoryEntry>{
      * greater than specified {@code fromCookie}.
      */
     public DirectoryStream tail(long fromCookie) {
+        if (lister != null) {
+            return new DirectoryStream(verifier, lister, Math.max(this.fromCookie, fromCookie), openStreams);
+        }
         final DirectoryEntry cookieEntry = new DirectoryEntry("", null, null, fromCookie);
         return new DirectoryStream(verifier, entries.tailSet(cookieEntry, false));
     }
 
+    /**
+     * Returns an immutable copy of this stream backed by an array sorted by cookie,
+     * which can be shared by subsequent requests. This stream is returned, if it is
+     * already backed by such array.
+     *
+     * @return snapshot of this stream.
+     * @throws IOException if entries can't be listed.
+     */
+    DirectoryStream snapshot() throws IOException {
+        if (entries instanceof ImmutableSortedSet) {
+            return this;
+        }
+        if (lister != null) {
+            try (this) {
+                return new DirectoryStream(verifier, ImmutableSortedSet.copyOf(iterator()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return new DirectoryStream(verifier, ImmutableSortedSet.copyOf(entries));
+    }
+
     /**
      * Returns a {@link DirectoryStream} that applies {@code function} to
      * each entry in this stream.
@@ -82,6 +186,9 @@ public class DirectoryStream implements Iterable<DirectoryEntry>{
      * @return the new stream with transformed elements.
      */
     public DirectoryStream transform(Function<? super DirectoryEntry, DirectoryEntry> function) {
+        if (lister != null) {
+            return new DirectoryStream(verifier, c -> lister.apply(c).map(function), fromCookie, openStreams);
+        }
         return new DirectoryStream(this.verifier, new TransformingNavigableSet(function, entries));
     }
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.vfs;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+
+/**
+ * A bounded cache of decoded {@link Inode}s keyed by the on-wire file handle bytes.
+ * Clients send the same handles over and over, e.g. PUTFH+GETATTR for each entry of
+ * a directory listing, thus decoding of the handle can be skipped for most requests.
+ * <p>
+ * The cache is direct-mapped: each handle can be stored only in a single slot, which
+ * is selected by the handle's hash code. Colliding handles replace each other. Thus
+ * a lookup of a cached handle requires neither locking nor allocation.
+ * <p>
+ * This class is thread safe. As {@link Inode} is immutable, racy updates of a slot
+ * only may cause an additional decode.
+ *
+ * @since 0.27
+ */
+public class FileHandleCache {
+
+    private static final class Entry {
+
+        private final byte[] handle;
+        private final int hash;
+        private final Inode inode;
+
+        Entry(byte[] handle, int hash, Inode inode) {
+            this.handle = handle;
+            this.hash = hash;
+            this.inode = inode;
+        }
+    }
+
+    private final Entry[] _slots;
+    private final int _mask;
+
+    /**
+     * Create a new cache.
+     *
+     * @param capacity number of slots. Rounded up to the next power of two.
+     */
+    public FileHandleCache(int capacity) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "invalid capacity: %s", capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        _slots = new Entry[size];
+        _mask = size - 1;
+    }
+
+    /**
+     * Get {@link Inode} for a given file handle. The handle is decoded on cache miss.
+     *
+     * @param handle the on-wire file handle. The array must not be modified after
+     *               this call.
+     * @return inode for the file handle.
+     * @throws IllegalArgumentException if the handle can't be decoded.
+     */
+    public Inode get(byte[] handle) {
+        int hash = Arrays.hashCode(handle);
+        int slot = (hash ^ (hash >>> 16)) & _mask;
+
+        Entry entry = _slots[slot];
+        if (entry != null && entry.hash == hash && Arrays.equals(entry.handle, handle)) {
+            return entry.inode;
+        }
+
+        Inode inode = new Inode(handle);
+        _slots[slot] = new Entry(handle, hash, inode);
+        return inode;
+    }
+
+    /**
+     * Remove all cached entries.
+     */
+    public void clear() {
+        Arrays.fill(_slots, null);
+    }
+
+    /**
+     * Get number of slots.
+     */
+    public int capacity() {
+        return _slots.length;
+    }
+}
@@ -25,12 +25,21 @@ public class Inode {
 
     private final FileHandle fh;
 
+    /**
+     * Encoded file handle. Used by {@link #equals} and {@link #hashCode} to avoid
+     * encoding on each call, as inodes are commonly used as map keys.
+     */
+    private final byte[] bytes;
+    private final int hashCode;
+
     public Inode(byte[] bytes) {
         this(new FileHandle(bytes));
     }
 
     public Inode(FileHandle h) {
         fh = h;
+        bytes = h.bytes();
+        hashCode = Arrays.hashCode(bytes);
     }
 
     public static Inode forFile(byte[] bytes) {
@@ -42,12 +51,12 @@ public class Inode {
     }
 
     public byte[] toNfsHandle() {
-        return fh.bytes();
+        return bytes.clone();
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(fh.bytes());
+        return hashCode;
     }
 
     @Override
@@ -59,7 +68,7 @@ public class Inode {
             return false;
         }
         final Inode other = (Inode) obj;
-        return Arrays.equals(fh.bytes(), other.fh.bytes());
+        return hashCode == other.hashCode && Arrays.equals(bytes, other.bytes);
     }
 
     public boolean isPseudoInode() {
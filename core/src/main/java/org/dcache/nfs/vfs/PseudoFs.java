@@ -21,13 +21,18 @@ package org.dcache.nfs.vfs;
 
 import com.google.common.base.Splitter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import javax.security.auth.Subject;
 
@@ -60,8 +65,11 @@ import static org.dcache.nfs.util.UnixSubjects.*;
  * on top of an other file system based on export rules.
  *
  * In addition, PseudoFS takes the responsibility of permission and access checking.
+ *
+ * The asynchronous I/O methods are forwarded to the decorated file system if it is an
+ * {@link AsyncVirtualFileSystem}, or are executed synchronously otherwise.
  */
-public class PseudoFs extends ForwardingFileSystem {
+public class PseudoFs extends ForwardingFileSystem implements AsyncVirtualFileSystem {
 
     private final static Logger _log = LoggerFactory.getLogger(PseudoFs.class);
 
@@ -73,6 +81,14 @@ public class PseudoFs extends ForwardingFileSystem {
     private final VirtualFileSystem _inner;
     private final ExportTable _exportTable;
     private final RpcAuth _auth;
+    private final PseudoFsTreeCache _treeCache;
+
+    /**
+     * Access control information of inodes accessed by this request. As a PseudoFs
+     * instance serves a single request, the export and effective subject are resolved
+     * only once per inode.
+     */
+    private final Map<Inode, InodeAccess> _inodeAccess = new HashMap<>();
 
     private final static int ACCESS4_MASK =
             ACCESS4_DELETE | ACCESS4_EXECUTE | ACCESS4_EXTEND
@@ -80,7 +96,21 @@ public class PseudoFs extends ForwardingFileSystem {
             | ACCESS4_XAREAD | ACCESS4_XAWRITE | ACCESS4_XALIST;
 
     public PseudoFs(VirtualFileSystem inner, RpcCall call, ExportTable exportTable) {
+        this(inner, call, exportTable, null);
+    }
+
+    /**
+     * Create pseudo file system for the given request.
+     *
+     * @param inner the file system to decorate.
+     * @param call the request.
+     * @param exportTable the export table.
+     * @param treeCache cache of pseudo file system trees shared between requests, or null,
+     * if the tree should be built for every request.
+     */
+    public PseudoFs(VirtualFileSystem inner, RpcCall call, ExportTable exportTable, PseudoFsTreeCache treeCache) {
         _inner = inner;
+        _treeCache = treeCache;
         _subject = call.getCredential().getSubject();
         _auth = call.getCredential();
         _inetAddress = call.getTransport().getRemoteSocketAddress();
@@ -101,6 +131,29 @@ public class PseudoFs extends ForwardingFileSystem {
         return false;
     }
 
+    /**
+     * Get ACE bits required to grant given ACCESS4 bits.
+     */
+    private static int toAceMask(int mode) {
+        int mask = 0;
+        if ((mode & (ACCESS4_READ | ACCESS4_XAREAD | ACCESS4_XALIST)) != 0) {
+            mask |= ACE4_READ_DATA;
+        }
+        if ((mode & (ACCESS4_LOOKUP | ACCESS4_EXECUTE)) != 0) {
+            mask |= ACE4_EXECUTE;
+        }
+        if ((mode & (ACCESS4_MODIFY | ACCESS4_XAWRITE)) != 0) {
+            mask |= ACE4_WRITE_DATA;
+        }
+        if ((mode & ACCESS4_EXTEND) != 0) {
+            mask |= ACE4_APPEND_DATA;
+        }
+        if ((mode & ACCESS4_DELETE) != 0) {
+            mask |= ACE4_DELETE_CHILD;
+        }
+        return mask;
+    }
+
     @Override
     public int access(Subject subject, Inode inode, int mode) throws IOException {
         int accessmask = 0;
@@ -110,6 +163,18 @@ public class PseudoFs extends ForwardingFileSystem {
         }
 
         Stat stat = _inner.getattr(inode);
+        if (!inode.isPseudoInode()) {
+            // evaluate ACL for all requested bits at once
+            try {
+                InodeAccess inodeAccess = getInodeAccess(inode, false);
+                if (inodeAccess != null) {
+                    inodeAccess.evaluateAcl(toAceMask(mode));
+                }
+            } catch (IOException e) {
+                // access is denied by checks of individual bits
+            }
+        }
+
         if ((mode & ACCESS4_READ) != 0) {
             if (canAccess(inode, stat, ACE4_READ_DATA)) {
                 accessmask |= ACCESS4_READ;
@@ -294,6 +359,19 @@ public class PseudoFs extends ForwardingFileSystem {
         return _inner.read(inode, data, offset);
     }
 
+    @Override
+    public CompletableFuture<Integer> readAsync(Inode inode, ByteBuffer data, long offset) {
+        try {
+            checkAccess(inode, ACE4_READ_DATA);
+            if (_inner instanceof AsyncVirtualFileSystem) {
+                return ((AsyncVirtualFileSystem) _inner).readAsync(inode, data, offset);
+            }
+            return CompletableFuture.completedFuture(_inner.read(inode, data, offset));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     @Override
     public String readlink(Inode inode) throws IOException {
         checkAccess(inode, ACE4_READ_DATA);
@@ -337,6 +415,37 @@ public class PseudoFs extends ForwardingFileSystem {
         return _inner.write(inode, data, offset, stabilityLevel);
     }
 
+    @Override
+    public CompletableFuture<WriteResult> writeAsync(Inode inode, ByteBuffer data, long offset, StabilityLevel stabilityLevel) {
+        try {
+            checkAccess(inode, ACE4_WRITE_DATA);
+            if (_inner instanceof AsyncVirtualFileSystem) {
+                return ((AsyncVirtualFileSystem) _inner).writeAsync(inode, data, offset, stabilityLevel);
+            }
+            return CompletableFuture.completedFuture(_inner.write(inode, data, offset, stabilityLevel));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public boolean isAsync() {
+        return AsyncVirtualFileSystem.isAsync(_inner);
+    }
+
+    @Override
+    public CompletableFuture<Void> commitAsync(Inode inode, long offset, int count) {
+        if (_inner instanceof AsyncVirtualFileSystem) {
+            return ((AsyncVirtualFileSystem) _inner).commitAsync(inode, offset, count);
+        }
+        try {
+            _inner.commit(inode, offset, count);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     @Override
     public Stat getattr(Inode inode) throws IOException {
         checkAccess(inode, ACE4_READ_ATTRIBUTES);
@@ -370,6 +479,8 @@ public class PseudoFs extends ForwardingFileSystem {
 
         checkAccess(inode, mask);
         _inner.setattr(inode, stat);
+        // mode change may update ACL
+        _inodeAccess.remove(inode);
     }
 
     @Override
@@ -382,6 +493,7 @@ public class PseudoFs extends ForwardingFileSystem {
     public void setAcl(Inode inode, nfsace4[] acl) throws IOException {
         checkAccess(inode, ACE4_WRITE_ACL);
         _inner.setAcl(inode, acl);
+        _inodeAccess.remove(inode);
     }
 
     @Override
@@ -432,22 +544,11 @@ public class PseudoFs extends ForwardingFileSystem {
         }
 
         if (!inode.isPseudoInode()) {
-            int exportIdx = getExportIndex(inode);
-            FsExport export = _exportTable.getExport(exportIdx, _inetAddress.getAddress());
-            if (exportIdx != 0 && export == null) {
-                if (shouldLog) {
-                    _log.warn("Access denied: (no export) to inode {} for client {}", inode, _inetAddress);
-                }
+            InodeAccess inodeAccess = getInodeAccess(inode, shouldLog);
+            if (inodeAccess == null) {
                 throw new AccessException("permission deny");
             }
-
-            if (export.isPrivilegedClientPortRequired() && _inetAddress.getPort() > PRIVILEGED_PORT) {
-                if (shouldLog) {
-                    _log.warn("Access denied: unprivileged client {}", _inetAddress);
-                }
-                throw new AccessException("unprivileged client");
-            }
-            checkSecurityFlavor(_auth, export.getSec());
+            FsExport export = inodeAccess.export;
 
             if ( (export.ioMode() == FsExport.IO.RO) && Acls.wantModify(requestedMask)) {
                 if (shouldLog) {
@@ -462,12 +563,10 @@ public class PseudoFs extends ForwardingFileSystem {
                 return effectiveSubject;
             }
 
-            if (isNobodySubject(_subject) || export.hasAllSquash() || (!export.isTrusted() && isRootSubject(_subject))) {
-                effectiveSubject = toSubject(export.getAnonUid(), export.getAnonGid());
-            }
+            effectiveSubject = inodeAccess.effectiveSubject;
 
             if (export.checkAcls()) {
-                aclMatched = _inner.getAclCheckable().checkAcl(_subject, inode, requestedMask);
+                aclMatched = inodeAccess.checkAcl(requestedMask);
                 if (aclMatched == Access.DENY) {
                     if(shouldLog) {
                         _log.warn("Access deny: {} {} {}", _inetAddress, acemask4.toString(requestedMask), new SubjectHolder(_subject));
@@ -496,6 +595,91 @@ public class PseudoFs extends ForwardingFileSystem {
         return effectiveSubject;
     }
 
+    /**
+     * Get access control information of a non-pseudo inode. The export and the
+     * effective subject are resolved on first access to the inode by this request.
+     *
+     * @param inode the inode to check.
+     * @param shouldLog whether to log denied access.
+     * @return access control information or null, if client has no export for the inode.
+     * @throws ChimeraNFSException if client's port or security flavor is not accepted by
+     * the export.
+     */
+    private InodeAccess getInodeAccess(Inode inode, boolean shouldLog) throws ChimeraNFSException {
+        InodeAccess inodeAccess = _inodeAccess.get(inode);
+        if (inodeAccess != null) {
+            return inodeAccess;
+        }
+
+        int exportIdx = getExportIndex(inode);
+        FsExport export = _exportTable.getExport(exportIdx, _inetAddress.getAddress());
+        if (exportIdx != 0 && export == null) {
+            if (shouldLog) {
+                _log.warn("Access denied: (no export) to inode {} for client {}", inode, _inetAddress);
+            }
+            return null;
+        }
+
+        if (export.isPrivilegedClientPortRequired() && _inetAddress.getPort() > PRIVILEGED_PORT) {
+            if (shouldLog) {
+                _log.warn("Access denied: unprivileged client {}", _inetAddress);
+            }
+            throw new AccessException("unprivileged client");
+        }
+        checkSecurityFlavor(_auth, export.getSec());
+
+        Subject effectiveSubject = _subject;
+        if (isNobodySubject(_subject) || export.hasAllSquash() || (!export.isTrusted() && isRootSubject(_subject))) {
+            effectiveSubject = toSubject(export.getAnonUid(), export.getAnonGid());
+        }
+
+        inodeAccess = new InodeAccess(inode, export, effectiveSubject);
+        _inodeAccess.put(inode, inodeAccess);
+        return inodeAccess;
+    }
+
+    /**
+     * Export, effective subject and evaluated ACL bits of an inode.
+     */
+    private class InodeAccess {
+
+        private final Inode inode;
+        private final FsExport export;
+        private final Subject effectiveSubject;
+
+        /**
+         * ACE bits evaluated so far, and those of them allowed or denied by the ACL.
+         */
+        private int evaluated;
+        private int allowed;
+        private int denied;
+
+        InodeAccess(Inode inode, FsExport export, Subject effectiveSubject) {
+            this.inode = inode;
+            this.export = export;
+            this.effectiveSubject = effectiveSubject;
+        }
+
+        /**
+         * Evaluate ACL for bits of {@code mask}, which are not evaluated yet, in a
+         * single pass.
+         */
+        void evaluateAcl(int mask) throws IOException {
+            int missing = mask & ~evaluated;
+            if (missing != 0 && export.checkAcls()) {
+                AclCheckable.AccessVector vector = _inner.getAclCheckable().checkAclVector(_subject, inode, missing);
+                allowed |= vector.getAllowed();
+                denied |= vector.getDenied();
+                evaluated |= missing;
+            }
+        }
+
+        Access checkAcl(int mask) throws IOException {
+            evaluateAcl(mask);
+            return new AclCheckable.AccessVector(allowed, denied).access(mask);
+        }
+    }
+
     /*
      * unix permission bits offset as defined in POSIX
      * for st_mode filed of the stat  structure.
@@ -524,22 +708,18 @@ public class PseudoFs extends ForwardingFileSystem {
     }
 
     private Inode lookupInPseudoDirectory(Inode parent, String name) throws IOException {
-        Set<PseudoFsNode> nodes = prepareExportTree();
-
-        for (PseudoFsNode node : nodes) {
-            if (node.id().equals(parent)) {
-                PseudoFsNode n = node.getChild(name);
-                if (n != null) {
-                    return n.isMountPoint() ? pseudoIdToReal(n.id(), getIndexId(n)) : n.id();
-                }
+        PseudoFsNode node = prepareExportTree().get(parent);
+        if (node != null) {
+            PseudoFsNode n = node.getChild(name);
+            if (n != null) {
+                return n.isMountPoint() ? pseudoIdToReal(n.id(), getIndexId(n)) : n.id();
             }
         }
         throw new NoEntException();
     }
 
     private boolean isPseudoDirectory(Inode dir) throws IOException {
-        return prepareExportTree().stream()
-                .anyMatch(n -> n.id().equals(dir));
+        return prepareExportTree().get(dir) != null;
     }
 
     public static Inode pseudoIdToReal(Inode inode, int index) {
@@ -588,26 +768,28 @@ public class PseudoFs extends ForwardingFileSystem {
     }
 
     private Collection<DirectoryEntry> listPseudoDirectory(Inode parent) throws ChimeraNFSException, IOException {
-        Set<PseudoFsNode> nodes = prepareExportTree();
-        for (PseudoFsNode node : nodes) {
-            if (node.id().equals(parent)) {
-                if (node.isMountPoint()) {
-                    return newArrayList(_inner.list(parent, null, 0L).transform(new ConvertToRealInode(node)));
-                } else {
-                    long cookie = 3; // artificial cookie. Values 0, 1 and 2 are reserved.
-                    List<DirectoryEntry> pseudoLs = new ArrayList<>();
-                    for (String s : node.getChildren()) {
-                        PseudoFsNode subNode = node.getChild(s);
-                        Inode inode = subNode.id();
-                        Stat stat = _inner.getattr(inode);
-                        DirectoryEntry e = new DirectoryEntry(s,
-                                subNode.isMountPoint()
-                                ? pseudoIdToReal(inode, getIndexId(subNode)) : inode, stat, cookie);
-                        pseudoLs.add(e);
-                        cookie++;
-                    }
-                    return pseudoLs;
+        PseudoFsNode node = prepareExportTree().get(parent);
+        if (node != null) {
+            if (node.isMountPoint()) {
+                try (DirectoryStream ds = _inner.list(parent, null, 0L)) {
+                    return newArrayList(ds.transform(new ConvertToRealInode(node)));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
                 }
+            } else {
+                long cookie = 3; // artificial cookie. Values 0, 1 and 2 are reserved.
+                List<DirectoryEntry> pseudoLs = new ArrayList<>();
+                for (String s : node.getChildren()) {
+                    PseudoFsNode subNode = node.getChild(s);
+                    Inode inode = subNode.id();
+                    Stat stat = _inner.getattr(inode);
+                    DirectoryEntry e = new DirectoryEntry(s,
+                            subNode.isMountPoint()
+                            ? pseudoIdToReal(inode, getIndexId(subNode)) : inode, stat, cookie);
+                    pseudoLs.add(e);
+                    cookie++;
+                }
+                return pseudoLs;
             }
         }
         throw new NoEntException();
@@ -653,14 +835,19 @@ public class PseudoFs extends ForwardingFileSystem {
         return new Inode(fh);
     }
 
-    private void pathToPseudoFs(final PseudoFsNode root, Set<PseudoFsNode> all, FsExport e) {
+    /**
+     * Add nodes of exported path to the tree.
+     *
+     * @return false if exported path can't be resolved.
+     */
+    private boolean pathToPseudoFs(final PseudoFsNode root, Set<PseudoFsNode> all, FsExport e) {
 
         PseudoFsNode parent = root;
         String path = e.getPath();
 
         if (e.getPath().equals("/")) {
             root.addExport(e);
-            return;
+            return true;
         }
 
         Splitter splitter = Splitter.on('/').omitEmptyStrings();
@@ -676,30 +863,57 @@ public class PseudoFs extends ForwardingFileSystem {
                 }
                 parent = node;
             } catch (IOException ef) {
-                return;
+                return false;
             }
         }
 
         all.addAll(pathNodes);
         parent.setId(pseudoIdToReal(parent.id(), e.getIndex()));
         parent.addExport(e);
+        return true;
     }
 
-    private Set<PseudoFsNode> prepareExportTree() throws ChimeraNFSException, IOException {
+    private PseudoFsTreeCache.ExportTree prepareExportTree() throws ChimeraNFSException, IOException {
 
-        Set<PseudoFsNode> nodes = new HashSet<>();
-        Inode rootInode = realToPseudo(_inner.getRootInode());
-        PseudoFsNode root = new PseudoFsNode(rootInode);
+        PseudoFsTreeCache.ExportTree tree = null;
+        long generation = _exportTable.generation();
+        if (_treeCache != null) {
+            tree = _treeCache.get(_inetAddress.getAddress(), generation);
+        }
 
-        _exportTable.exports(_inetAddress.getAddress()).forEach(e -> pathToPseudoFs(root, nodes, e));
+        if (tree == null) {
+            tree = buildExportTree(generation);
+            if (_treeCache != null) {
+                _treeCache.put(_inetAddress.getAddress(), tree);
+            }
+        }
 
-        if (nodes.isEmpty()) {
+        if (tree.isEmpty()) {
             _log.warn("No exports found for: {}", _inetAddress);
             throw new AccessException();
         }
+        return tree;
+    }
+
+    private PseudoFsTreeCache.ExportTree buildExportTree(long generation) throws IOException {
 
-        nodes.add(root);
-        return nodes;
+        Set<PseudoFsNode> nodes = new HashSet<>();
+        Inode rootInode = realToPseudo(_inner.getRootInode());
+        PseudoFsNode root = new PseudoFsNode(rootInode);
+
+        boolean complete = true;
+        Iterator<FsExport> exports = _exportTable.exports(_inetAddress.getAddress()).iterator();
+        while (exports.hasNext()) {
+            complete &= pathToPseudoFs(root, nodes, exports.next());
+        }
+
+        // mount points change their ids, thus index nodes when the tree is built
+        Map<Inode, PseudoFsNode> index = new HashMap<>();
+        if (!nodes.isEmpty()) {
+            nodes.forEach(n -> index.putIfAbsent(n.id(), n));
+            index.putIfAbsent(root.id(), root);
+        }
+        return new PseudoFsTreeCache.ExportTree(generation, index, complete);
     }
 
     private static void checkSecurityFlavor(RpcAuth auth, FsExport.Sec minFlavor) throws ChimeraNFSException {
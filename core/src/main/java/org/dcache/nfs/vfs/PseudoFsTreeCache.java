@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.vfs;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Map;
+
+import org.dcache.nfs.ExportTable;
+
+/**
+ * A cache of per-client pseudo file system trees. The tree of a client depends only on
+ * the client's address, the export table and the underlying file system, thus it can be
+ * shared between {@link PseudoFs} instances, which are created for every request.
+ * <p>
+ * Cached trees are bound to the {@link ExportTable#generation() generation} of the export
+ * table they have been built from and discarded as soon as the export table is updated.
+ * Export tables which don't track their generation are never cached.
+ * <p>
+ * The number of cached trees is bounded and trees of clients, which have been idle for
+ * a while, are discarded, thus a large or changing client population doesn't grow the
+ * cache without a limit.
+ * <p>
+ * An instance of this class must be used only with a single export table and file system.
+ */
+public class PseudoFsTreeCache {
+
+    /**
+     * An immutable, fully built pseudo file system tree.
+     */
+    static class ExportTree {
+
+        private final long _generation;
+        private final Map<Inode, PseudoFsNode> _nodes;
+        private final boolean _complete;
+
+        /**
+         * @param generation generation of the export table the tree was built from.
+         * @param nodes all directory nodes of the tree indexed by inode.
+         * @param complete true if all exported paths have been resolved.
+         */
+        ExportTree(long generation, Map<Inode, PseudoFsNode> nodes, boolean complete) {
+            _generation = generation;
+            _nodes = nodes;
+            _complete = complete;
+        }
+
+        /**
+         * Get pseudo file system node associated with the given inode.
+         * @param inode the inode of the node.
+         * @return the pseudo file system node or null, if inode is not part of the tree.
+         */
+        PseudoFsNode get(Inode inode) {
+            return _nodes.get(inode);
+        }
+
+        /**
+         * Returns true if no exported path has been found for the client.
+         */
+        boolean isEmpty() {
+            return _nodes.isEmpty();
+        }
+    }
+
+    /**
+     * Default maximal number of cached trees.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /**
+     * Default time after which the tree of an idle client is discarded.
+     */
+    public static final Duration DEFAULT_IDLE_TIME = Duration.ofMinutes(10);
+
+    private final Cache<InetAddress, ExportTree> _trees;
+
+    /**
+     * Generation of the export table of the currently cached trees.
+     */
+    private volatile long _generation = ExportTable.NO_GENERATION;
+
+    public PseudoFsTreeCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIME, Ticker.systemTicker());
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize maximal number of cached trees.
+     * @param idleTime time after which the tree of an idle client is discarded.
+     * @param ticker time source.
+     */
+    public PseudoFsTreeCache(int maxSize, Duration idleTime, Ticker ticker) {
+        _trees = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idleTime)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Get cached tree of the given client.
+     *
+     * @param client the client's address.
+     * @param generation the current generation of the export table.
+     * @return cached tree or null, if there is no tree for the given generation.
+     */
+    ExportTree get(InetAddress client, long generation) {
+        if (generation == ExportTable.NO_GENERATION) {
+            return null;
+        }
+
+        if (generation != _generation) {
+            // a caller with an outdated generation does not discard newer trees
+            advance(generation);
+            return null;
+        }
+
+        ExportTree tree = _trees.getIfPresent(client);
+        return tree == null || tree._generation != generation ? null : tree;
+    }
+
+    /**
+     * Cache the tree of the given client. Trees which are built from an unversioned export
+     * table or with unresolved exported paths are not cached, as they would not be updated
+     * when the export table or file system changes.
+     *
+     * @param client the client's address.
+     * @param tree the client's pseudo file system tree.
+     */
+    void put(InetAddress client, ExportTree tree) {
+        if (tree._complete && tree._generation != ExportTable.NO_GENERATION
+                && tree._generation == _generation) {
+            _trees.put(client, tree);
+        }
+    }
+
+    /**
+     * Discard all cached trees.
+     */
+    public void invalidate() {
+        _trees.invalidateAll();
+    }
+
+    /**
+     * Discard all cached trees, if the given generation is newer than the generation
+     * of the cached trees. The generation never goes back, thus trees built from an
+     * outdated export table are never cached.
+     */
+    private synchronized void advance(long generation) {
+        if (generation > _generation) {
+            _generation = generation;
+            _trees.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the number of cached trees.
+     */
+    public int size() {
+        return (int) _trees.size();
+    }
+}
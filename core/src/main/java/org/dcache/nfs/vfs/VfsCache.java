@@ -27,27 +27,74 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 import javax.security.auth.Subject;
+import org.dcache.nfs.status.NoEntException;
 import org.dcache.nfs.util.GuavaCacheMXBeanImpl;
 import org.dcache.nfs.util.Opaque;
 
 import static java.util.Objects.requireNonNull;
 
 /**
- * Caching decorator.
+ * Caching decorator. Asynchronous data access is forwarded to the decorated file
+ * system, if it is an {@link AsyncVirtualFileSystem}.
  */
-public class VfsCache extends ForwardingFileSystem {
+public class VfsCache extends ForwardingFileSystem implements AsyncVirtualFileSystem {
 
-    private final LoadingCache<CacheKey, Inode> _lookupCache;
+    /**
+     * Estimated heap footprint of a cached {@link Stat} and the cache entry without
+     * the file id.
+     */
+    private static final int STAT_ENTRY_SIZE = 256;
+
+    private final LoadingCache<CacheKey, Versioned<Inode>> _lookupCache;
+
+    /**
+     * Names, which are known not to exist. An entry is valid as long as the parent
+     * directory is neither modified through this cache nor its change attribute
+     * changes. Null, if negative lookup caching is disabled.
+     */
+    private final Cache<CacheKey, NegativeEntry> _negativeLookupCache;
+
+    /**
+     * Versions of directories, which are increased when a name is created in the
+     * directory through this cache.
+     */
+    private final Versions _directoryVersions = new Versions();
+
+    /**
+     * Versions of file attributes, which are increased when cached attributes are
+     * discarded. Attributes fetched while the version changes are not kept.
+     */
+    private final Versions _statVersions = new Versions();
+
+    /**
+     * Versions of directories, which are increased on change notification. Cached
+     * names and listings of an older version are discarded on access.
+     */
+    private final Versions _changeVersions = new Versions();
     private final Cache<Opaque, Stat> _statCache;
+
+    /**
+     * Whether cached attributes are discarded on each write. This is the case for the
+     * byte-bounded attribute cache, which keeps entries for a long time.
+     */
+    private final boolean _invalidateStatOnWrite;
     private final LoadingCache<Inode, Inode> _parentCache;
     private final Supplier<FsStat> _fsStatSupplier;
 
-    private final Cache<InodeCacheEntry, DirectoryStream> _readdirCache;
+    /**
+     * Directory listings keyed by directory inode and cookie verifier. Listings are
+     * stored as snapshots sorted by cookie, thus READDIR continuations resume with a
+     * binary search on the cookie instead of listing the directory again.
+     */
+    private final Cache<InodeCacheEntry, Versioned<DirectoryStream>> _readdirCache;
 
     private final VirtualFileSystem _inner;
 
@@ -60,12 +107,35 @@ public class VfsCache extends ForwardingFileSystem {
                 .recordStats()
 		.build(new LoockupLoader());
 
-	_statCache = CacheBuilder.newBuilder()
-		.maximumSize(cacheConfig.getMaxEntries())
-		.expireAfterWrite(cacheConfig.getLifeTime(), cacheConfig.getTimeUnit())
-		.softValues()
-                .recordStats()
-		.build();
+        if (cacheConfig.getNegativeMaxEntries() > 0) {
+            _negativeLookupCache = CacheBuilder.newBuilder()
+                    .maximumSize(cacheConfig.getNegativeMaxEntries())
+                    .expireAfterWrite(cacheConfig.getLifeTime(), cacheConfig.getTimeUnit())
+                    .recordStats()
+                    .build();
+            new GuavaCacheMXBeanImpl("vfs-negative-lookup", _negativeLookupCache);
+        } else {
+            _negativeLookupCache = null;
+        }
+
+        _invalidateStatOnWrite = cacheConfig.getStatMaxBytes() > 0;
+        if (_invalidateStatOnWrite) {
+            CacheBuilder<Opaque, Stat> statCacheBuilder = CacheBuilder.newBuilder()
+                    .maximumWeight(cacheConfig.getStatMaxBytes())
+                    .weigher((Opaque k, Stat v) -> STAT_ENTRY_SIZE + k.getOpaque().length)
+                    .recordStats();
+            if (cacheConfig.getStatLifeTime() > 0) {
+                statCacheBuilder.expireAfterWrite(cacheConfig.getStatLifeTime(), cacheConfig.getStatLifeTimeUnit());
+            }
+            _statCache = statCacheBuilder.build();
+        } else {
+	    _statCache = CacheBuilder.newBuilder()
+		    .maximumSize(cacheConfig.getMaxEntries())
+		    .expireAfterWrite(cacheConfig.getLifeTime(), cacheConfig.getTimeUnit())
+		    .softValues()
+                    .recordStats()
+		    .build();
+        }
 
         _parentCache = CacheBuilder.newBuilder()
                 .maximumSize(cacheConfig.getMaxEntries())
@@ -89,6 +159,10 @@ public class VfsCache extends ForwardingFileSystem {
         new GuavaCacheMXBeanImpl("vfs-parent", _parentCache);
         new GuavaCacheMXBeanImpl("vfs-lookup", _lookupCache);
         new GuavaCacheMXBeanImpl("vfs-readdir", _readdirCache);
+
+        if (inner instanceof ChangeNotifier) {
+            ((ChangeNotifier) inner).addChangeListener(this::invalidate);
+        }
     }
 
     @Override
@@ -100,11 +174,86 @@ public class VfsCache extends ForwardingFileSystem {
     public void commit(Inode inode, long offset, int count) throws IOException {
         invalidateStatCache(inode);
         _inner.commit(inode, offset, count);
+        if (_invalidateStatOnWrite) {
+            // attributes might have been fetched while commit was in progress
+            invalidateStatCache(inode);
+        }
+    }
+
+    @Override
+    public boolean isAsync() {
+        return AsyncVirtualFileSystem.isAsync(_inner);
+    }
+
+    @Override
+    public CompletableFuture<Integer> readAsync(Inode inode, ByteBuffer data, long offset) {
+        if (_inner instanceof AsyncVirtualFileSystem) {
+            return ((AsyncVirtualFileSystem) _inner).readAsync(inode, data, offset);
+        }
+        try {
+            return CompletableFuture.completedFuture(_inner.read(inode, data, offset));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<WriteResult> writeAsync(Inode inode, ByteBuffer data, long offset, StabilityLevel stabilityLevel) {
+        if (!(_inner instanceof AsyncVirtualFileSystem)) {
+            try {
+                return CompletableFuture.completedFuture(write(inode, data, offset, stabilityLevel));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        return ((AsyncVirtualFileSystem) _inner).writeAsync(inode, data, offset, stabilityLevel)
+                .whenComplete((r, t) -> {
+                    if (_invalidateStatOnWrite) {
+                        invalidateStatCache(inode);
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> commitAsync(Inode inode, long offset, int count) {
+        if (!(_inner instanceof AsyncVirtualFileSystem)) {
+            try {
+                commit(inode, offset, count);
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        invalidateStatCache(inode);
+        return ((AsyncVirtualFileSystem) _inner).commitAsync(inode, offset, count)
+                .whenComplete((r, t) -> invalidateStatCache(inode));
+    }
+
+    @Deprecated
+    @Override
+    public WriteResult write(Inode inode, byte[] data, long offset, int count, StabilityLevel stabilityLevel) throws IOException {
+        WriteResult result = _inner.write(inode, data, offset, count, stabilityLevel);
+        if (_invalidateStatOnWrite) {
+            invalidateStatCache(inode);
+        }
+        return result;
+    }
+
+    @Override
+    public WriteResult write(Inode inode, ByteBuffer data, long offset, StabilityLevel stabilityLevel) throws IOException {
+        WriteResult result = _inner.write(inode, data, offset, stabilityLevel);
+        if (_invalidateStatOnWrite) {
+            invalidateStatCache(inode);
+        }
+        return result;
     }
 
     @Override
     public Inode symlink(Inode parent, String path, String link, Subject subject, int mode) throws IOException {
         Inode inode = _inner.symlink(parent, path, link, subject, mode);
+        invalidateNegativeLookupCache(parent, path);
 	invalidateStatCache(parent);
 	return inode;
     }
@@ -130,6 +279,7 @@ public class VfsCache extends ForwardingFileSystem {
 	if (isChanged) {
 	    invalidateLookupCache(src, oldName);
 	    invalidateLookupCache(dest, newName);
+            invalidateNegativeLookupCache(dest, newName);
 	    invalidateStatCache(src);
 	    invalidateStatCache(dest);
 	}
@@ -139,6 +289,7 @@ public class VfsCache extends ForwardingFileSystem {
     @Override
     public Inode mkdir(Inode parent, String path, Subject subject, int mode) throws IOException {
         Inode inode = _inner.mkdir(parent, path, subject, mode);
+        invalidateNegativeLookupCache(parent, path);
         updateLookupCache(parent, path, inode);
 	invalidateStatCache(parent);
         return inode;
@@ -147,6 +298,7 @@ public class VfsCache extends ForwardingFileSystem {
     @Override
     public Inode link(Inode parent, Inode link, String path, Subject subject) throws IOException {
         Inode inode = _inner.link(parent, link, path, subject);
+        invalidateNegativeLookupCache(parent, path);
         updateLookupCache(parent, path, inode);
 	invalidateStatCache(parent);
 	invalidateStatCache(inode);
@@ -166,6 +318,7 @@ public class VfsCache extends ForwardingFileSystem {
     @Override
     public Inode create(Inode parent, Stat.Type type, String path, Subject subject, int mode) throws IOException {
         Inode inode = _inner.create(parent, type, path, subject, mode);
+        invalidateNegativeLookupCache(parent, path);
         updateLookupCache(parent, path, inode);
 	invalidateStatCache(parent);
         updateParentCache(inode, parent);
@@ -207,8 +360,23 @@ public class VfsCache extends ForwardingFileSystem {
 	_lookupCache.invalidate(new CacheKey(parent, path));
     }
 
+    /**
+     * Discards cached knowledge that the given path does not exist in the parent
+     * directory.
+     *
+     * @param parent inode
+     * @param path to invalidate
+     */
+    public void invalidateNegativeLookupCache(Inode parent, String path) {
+        if (_negativeLookupCache != null) {
+            // discard lookups of the directory, which are still in progress
+            _directoryVersions.increment(parent);
+            _negativeLookupCache.invalidate(new CacheKey(parent, path));
+        }
+    }
+
     private void updateLookupCache(Inode parent, String path, Inode inode) {
-	_lookupCache.put(new CacheKey(parent, path), inode);
+	_lookupCache.put(new CacheKey(parent, path), new Versioned<>(inode, _changeVersions.get(parent)));
     }
 
     /**
@@ -217,24 +385,75 @@ public class VfsCache extends ForwardingFileSystem {
      * @param inode The inode for which cached state value should be invalidated.
      */
     public void invalidateStatCache(final Inode inode) {
-	_statCache.invalidate(new Opaque(inode.getFileId()));
+        Opaque key = new Opaque(inode.getFileId());
+        // increased first, thus a concurrent load either sees the change or is discarded below
+        _statVersions.increment(key);
+	_statCache.invalidate(key);
+    }
+
+    /**
+     * Discards all cached information about a file modified by other means than
+     * this cache. For a directory, the cached names and listings are discarded as well.
+     */
+    private void invalidate(Inode inode) {
+        invalidateStatCache(inode);
+        _directoryVersions.increment(inode);
+        _changeVersions.increment(inode);
     }
 
     private void updateParentCache(Inode inode, Inode parent) {
         _parentCache.put(inode, parent);
     }
 
-    private class LoockupLoader extends CacheLoader<CacheKey, Inode> {
+    private class LoockupLoader extends CacheLoader<CacheKey, Versioned<Inode>> {
 
         @Override
-        public Inode load(CacheKey k) throws Exception {
-            return _inner.lookup(k.getParent(), k.getName());
+        public Versioned<Inode> load(CacheKey k) throws Exception {
+            long changeVersion = _changeVersions.get(k.getParent());
+            return new Versioned<>(lookup(k), changeVersion);
+        }
+
+        private Inode lookup(CacheKey k) throws IOException {
+            if (_negativeLookupCache == null) {
+                return _inner.lookup(k.getParent(), k.getName());
+            }
+
+            // get version and change attribute before lookup to never associate them with a stale result
+            long version = _directoryVersions.get(k.getParent());
+            long generation = _inner.getattr(k.getParent()).getGeneration();
+            try {
+                return _inner.lookup(k.getParent(), k.getName());
+            } catch (NoEntException e) {
+                if (version == _directoryVersions.get(k.getParent())) {
+                    _negativeLookupCache.put(k, new NegativeEntry(version, generation));
+                }
+                throw e;
+            }
         }
     }
 
     private Inode lookupFromCacheOrLoad(final Inode parent, final String path) throws IOException {
+        CacheKey key = new CacheKey(parent, path);
+        if (_negativeLookupCache != null) {
+            NegativeEntry negativeEntry = _negativeLookupCache.getIfPresent(key);
+            if (negativeEntry != null) {
+                if (negativeEntry.version == _directoryVersions.get(parent)
+                        && negativeEntry.generation == _inner.getattr(parent).getGeneration()) {
+                    throw new NoEntException(path);
+                }
+                // the directory has been modified since
+                _negativeLookupCache.asMap().remove(key, negativeEntry);
+            }
+        }
+
 	try {
-	    return _lookupCache.get(new CacheKey(parent, path));
+	    Versioned<Inode> entry = _lookupCache.get(key);
+	    if (entry.version != _changeVersions.get(parent)) {
+	        // the directory has been changed by other means since
+	        _lookupCache.asMap().remove(key, entry);
+	        entry = _lookupCache.get(key);
+	    }
+	    return entry.value;
 	} catch (ExecutionException e) {
 	    Throwable t = e.getCause();
 	    Throwables.throwIfInstanceOf(t, IOException.class);
@@ -244,7 +463,14 @@ public class VfsCache extends ForwardingFileSystem {
 
     private Stat statFromCacheOrLoad(final Inode inode) throws IOException {
 	try {
-	    return _statCache.get(new Opaque(inode.getFileId()), () -> _inner.getattr(inode));
+	    Opaque key = new Opaque(inode.getFileId());
+	    long version = _statVersions.get(key);
+	    Stat stat = _statCache.get(key, () -> _inner.getattr(inode));
+	    if (version != _statVersions.get(key)) {
+	        // attributes might have been fetched before a concurrent modification
+	        _statCache.invalidate(key);
+	    }
+	    return stat;
 	} catch (ExecutionException e) {
 	    Throwable t = e.getCause();
 	    Throwables.throwIfInstanceOf(t, IOException.class);
@@ -311,6 +537,60 @@ public class VfsCache extends ForwardingFileSystem {
         }
     }
 
+    /**
+     * A name, which is known not to exist, with the version and the change attribute
+     * of the parent directory at the time of lookup.
+     */
+    private static class NegativeEntry {
+
+        private final long version;
+        private final long generation;
+
+        NegativeEntry(long version, long generation) {
+            this.version = version;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A cached value with the version of its key at the time of loading.
+     */
+    private static class Versioned<T> {
+
+        private final T value;
+        private final long version;
+
+        Versioned(T value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Modification counters striped by key. Loaded values are stamped with the
+     * counter of their key and are discarded when the counter changes. Keys sharing
+     * a stripe only cause extra misses.
+     */
+    private static class Versions {
+
+        private static final int STRIPES = 1024;
+
+        private final AtomicLongArray _versions = new AtomicLongArray(STRIPES);
+
+        long get(Object key) {
+            return _versions.get(stripe(key));
+        }
+
+        void increment(Object key) {
+            _versions.incrementAndGet(stripe(key));
+        }
+
+        private static int stripe(Object key) {
+            int h = key.hashCode();
+            return (h ^ (h >>> 16)) & (STRIPES - 1);
+        }
+    }
+
     private static class InodeCacheEntry {
 
         private final Inode _inode;
@@ -371,15 +651,17 @@ public class VfsCache extends ForwardingFileSystem {
             cacheKey = new InodeCacheEntry(inode, verifier);
         }
 
-        DirectoryStream directoryStream = _readdirCache.getIfPresent(cacheKey);
-        if (directoryStream == null) {
+        long version = _changeVersions.get(inode);
+        Versioned<DirectoryStream> entry = _readdirCache.getIfPresent(cacheKey);
+        if (entry == null || entry.version != version) {
             // ask always for list from the beginning
-            directoryStream = delegate().list(inode, DirectoryStream.ZERO_VERIFIER, 0L);
+            DirectoryStream directoryStream = delegate().list(inode, DirectoryStream.ZERO_VERIFIER, 0L).snapshot();
             cacheKey = new InodeCacheEntry(inode, directoryStream.getVerifier());
-            _readdirCache.put(cacheKey, directoryStream);
+            entry = new Versioned<>(directoryStream, version);
+            _readdirCache.put(cacheKey, entry);
         }
 
-        return directoryStream.tail(cookie);
+        return entry.value.tail(cookie);
     }
 
     @Override
@@ -36,6 +36,12 @@ public class VfsCacheConfig {
     private TimeUnit readdirLifeTimeUnit = TimeUnit.SECONDS;
     private int readdirMaxEntries;
 
+    private int negativeMaxEntries;
+
+    private long statMaxBytes;
+    private long statLifeTime;
+    private TimeUnit statLifeTimeUnit = TimeUnit.SECONDS;
+
     /**
      * Get maximal number of entries in the cache.
      * @return maximal number of entries
@@ -102,6 +108,46 @@ public class VfsCacheConfig {
         return readdirMaxEntries;
     }
 
+    /**
+     * Get maximal number of names, which are known not to exist. The entries share
+     * the validity time of the lookup cache and are validated against the change
+     * attribute of the parent directory, which is fetched from the file system on
+     * each hit. Zero disables negative lookup caching.
+     * @return maximal number of negative lookup entries.
+     */
+    public int getNegativeMaxEntries() {
+        return negativeMaxEntries;
+    }
+
+    /**
+     * Get the memory budget of the file attribute cache in bytes. If set, file
+     * attributes are cached with strong references up to this budget and are discarded
+     * on each modification through the cache, including writes. Modifications by other
+     * means are only seen after expiry or, if the file system is a {@link ChangeNotifier},
+     * after its notification. Zero caches file attributes like lookup results.
+     * @return memory budget of attribute cache in bytes.
+     */
+    public long getStatMaxBytes() {
+        return statMaxBytes;
+    }
+
+    /**
+     * Get attribute cache validity time, if attribute cache has a memory budget.
+     * Zero keeps attributes until they are evicted or invalidated.
+     * @return validity time.
+     */
+    public long getStatLifeTime() {
+        return statLifeTime;
+    }
+
+    /**
+     * Get unit in which attribute cache validity time is expressed.
+     * @return time unit.
+     */
+    public TimeUnit getStatLifeTimeUnit() {
+        return statLifeTimeUnit;
+    }
+
     /**
      * Set maximal number of entries in the cache.
      * @param maxEntries
@@ -165,4 +211,36 @@ public class VfsCacheConfig {
     public void setReaddirMaxEntries(int maxEntries) {
         readdirMaxEntries = maxEntries;
     }
+
+    /**
+     * Set maximal number of names, which are known not to exist, to cache.
+     * @param maxEntries
+     */
+    public void setNegativeMaxEntries(int maxEntries) {
+        negativeMaxEntries = maxEntries;
+    }
+
+    /**
+     * Set the memory budget of the file attribute cache in bytes.
+     * @param maxBytes
+     */
+    public void setStatMaxBytes(long maxBytes) {
+        statMaxBytes = maxBytes;
+    }
+
+    /**
+     * Set attribute cache validity time.
+     * @param lifeTime
+     */
+    public void setStatLifeTime(long lifeTime) {
+        statLifeTime = lifeTime;
+    }
+
+    /**
+     * Set unit in which attribute cache validity time is expressed.
+     * @param timeUnit
+     */
+    public void setStatLifeTimeUnit(TimeUnit timeUnit) {
+        statLifeTimeUnit = timeUnit;
+    }
 }
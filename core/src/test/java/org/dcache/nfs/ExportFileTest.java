@@ -12,6 +12,7 @@ import static org.mockito.BDDMockito.*;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 
 /**
  */
@@ -123,6 +124,16 @@ public class ExportFileTest {
         assertExportExists("/added_export", ef);
     }
 
+    @Test
+    public void testRescanChangesGeneration() throws IOException {
+
+        ExportFile ef = new ExportFile(export, exportDir);
+        long generation = ef.generation();
+
+        ef.rescan();
+        assertNotEquals("generation not updated on rescan", generation, ef.generation());
+    }
+
     private void assertExportExists(String path, ExportFile exportFile) {
         assertTrue("export " + path + " doesn't exists", exportFile.exports()
                 .anyMatch(e -> e.getPath().equals(path)));
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExportIndexTest {
+
+    @Test
+    public void testMostSpecificNetworkFirst() throws UnknownHostException {
+
+        ExportIndex index = new ExportIndex(List.of(
+                export("/data", "192.168.0.0/16"),
+                export("/data", "192.168.1.0/24"),
+                export("/data", "192.168.1.17"),
+                export("/other", "192.168.0.0/16")
+        ));
+
+        InetAddress client = InetAddress.getByName("192.168.1.17");
+        assertEquals("192.168.1.17", index.getExport(FsExport.getExportIndex("/data"), client).client());
+        assertEquals(List.of("192.168.1.17", "192.168.1.0/24", "192.168.0.0/16", "192.168.0.0/16"),
+                index.exports(client).map(FsExport::client).collect(Collectors.toList()));
+
+        client = InetAddress.getByName("192.168.2.17");
+        assertEquals("192.168.0.0/16", index.getExport(FsExport.getExportIndex("/data"), client).client());
+    }
+
+    @Test
+    public void testNoMatch() throws UnknownHostException {
+
+        ExportIndex index = new ExportIndex(List.of(
+                export("/data", "192.168.1.0/24"),
+                export("/data", "fe80::21c:c0ff:fea0:caf4/64")
+        ));
+
+        InetAddress client = InetAddress.getByName("192.169.1.1");
+        assertNull(index.getExport(FsExport.getExportIndex("/data"), client));
+        assertEquals(0, index.exports(client).count());
+    }
+
+    @Test
+    public void testIpv6Network() throws UnknownHostException {
+
+        ExportIndex index = new ExportIndex(List.of(
+                export("/data", "192.168.1.0/24"),
+                export("/data", "fe80::21c:c0ff:fea0:caf4/64")
+        ));
+
+        InetAddress client = InetAddress.getByName("fe80::1");
+        assertEquals("fe80::21c:c0ff:fea0:caf4/64", index.getExport(FsExport.getExportIndex("/data"), client).client());
+    }
+
+    @Test
+    public void testAnyClient() throws UnknownHostException {
+
+        ExportIndex index = new ExportIndex(List.of(
+                export("/data", "*"),
+                export("/data", "10.0.0.0/8")
+        ));
+
+        InetAddress client = InetAddress.getByName("10.1.1.1");
+        assertEquals("10.0.0.0/8", index.getExport(FsExport.getExportIndex("/data"), client).client());
+
+        client = InetAddress.getByName("172.16.1.1");
+        assertEquals(".*", index.getExport(FsExport.getExportIndex("/data"), client).client());
+    }
+
+    @Test
+    public void testHostName() throws UnknownHostException {
+
+        ExportIndex index = new ExportIndex(List.of(
+                export("/data", "localhost")
+        ));
+
+        InetAddress client = InetAddress.getByName("localhost");
+        assertNotNull(index.getExport(FsExport.getExportIndex("/data"), client));
+    }
+
+    @Test
+    public void testSameAsMatchers() throws UnknownHostException {
+
+        Random random = new Random(4711);
+        List<FsExport> exports = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String path = "/export" + random.nextInt(20);
+            switch (random.nextInt(5)) {
+                case 0:
+                    exports.add(export(path, "10." + random.nextInt(4) + "." + random.nextInt(4) + "." + random.nextInt(4)));
+                    break;
+                case 1:
+                    exports.add(export(path, "10." + random.nextInt(4) + ".0.0/" + (8 + random.nextInt(17))));
+                    break;
+                case 2:
+                    exports.add(export(path, "fe80::" + Integer.toHexString(random.nextInt(4)) + "/" + (10 + random.nextInt(119))));
+                    break;
+                case 3:
+                    exports.add(export(path, "host" + random.nextInt(4) + "*.example.org"));
+                    break;
+                default:
+                    exports.add(export(path, "*"));
+            }
+        }
+
+        ExportIndex index = new ExportIndex(exports);
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] address;
+            if (random.nextBoolean()) {
+                address = new byte[]{10, (byte) random.nextInt(4), (byte) random.nextInt(4), (byte) random.nextInt(4)};
+            } else {
+                address = new byte[16];
+                address[0] = (byte) 0xfe;
+                address[1] = (byte) 0x80;
+                address[15] = (byte) random.nextInt(4);
+            }
+            // results are memoized by address, thus host name must be the same for the same address
+            InetAddress client = InetAddress.getByAddress("host" + address[address.length - 1] + ".example.org", address);
+
+            List<FsExport> expected = exports.stream()
+                    .filter(e -> e.isAllowed(client))
+                    .sorted(Comparator.comparing(FsExport::client, HostEntryComparator::compare))
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, index.exports(client).collect(Collectors.toList()));
+
+            int exportIndex = FsExport.getExportIndex("/export" + random.nextInt(20));
+            FsExport expectedExport = expected.stream()
+                    .filter(e -> e.getIndex() == exportIndex)
+                    .findFirst()
+                    .orElse(null);
+            assertSame(expectedExport, index.getExport(exportIndex, client));
+        }
+    }
+
+    private static FsExport export(String path, String client) throws UnknownHostException {
+        return new FsExport.FsExportBuilder()
+                .forClient(client)
+                .build(path);
+    }
+}
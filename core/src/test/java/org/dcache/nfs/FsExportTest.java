@@ -295,4 +295,20 @@ public class FsExportTest {
         assertFalse("Incorrect default secure option", export.isPrivilegedClientPortRequired());
     }
 
+    @Test
+    public void testQosOptions() throws Exception {
+        FsExport export = _exportFile.getExport("/qos", InetAddress.getByName("192.168.18.1"));
+
+        assertEquals("Incorrect iops option", 1000, export.getIops());
+        assertEquals("Incorrect bw option", 10 * 1024 * 1024, export.getBandwidth());
+    }
+
+    @Test
+    public void testDefaultQosOptions() throws Exception {
+        FsExport export = _exportFile.getExport("/qos", InetAddress.getByName("192.168.17.1"));
+
+        assertEquals("Incorrect iops option", 100, export.getIops());
+        assertEquals("Bandwidth should be unlimited", 0, export.getBandwidth());
+    }
+
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.qos;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.dcache.nfs.FsExport;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QosManagerTest {
+
+    private TokenBucketTest.ManualTicker _ticker;
+    private QosManager _qos;
+    private InetAddress _client1;
+    private InetAddress _client2;
+
+    @Before
+    public void setUp() throws UnknownHostException {
+        _ticker = new TokenBucketTest.ManualTicker();
+        _qos = new QosManager("qos-test", Duration.ZERO, _ticker);
+        _client1 = InetAddress.getByName("192.168.17.1");
+        _client2 = InetAddress.getByName("192.168.17.2");
+    }
+
+    @Test
+    public void testUnlimited() throws UnknownHostException {
+        FsExport export = new FsExport.FsExportBuilder().build("/data");
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(_qos.tryAcquire(export, _client1, 1024 * 1024));
+        }
+        assertEquals("unlimited export should not allocate buckets", 0, _qos.getClients());
+    }
+
+    @Test
+    public void testIopsPerClient() throws UnknownHostException {
+        FsExport export = new FsExport.FsExportBuilder().withIops(1).build("/data");
+
+        assertTrue(_qos.tryAcquire(export, _client1, 0));
+        assertFalse("request over the rate admitted", _qos.tryAcquire(export, _client1, 0));
+        assertTrue("clients share the limit", _qos.tryAcquire(export, _client2, 0));
+
+        _ticker.advance(1, TimeUnit.SECONDS);
+        assertTrue(_qos.tryAcquire(export, _client1, 0));
+
+        assertEquals(3, _qos.getAdmitted());
+        assertEquals(1, _qos.getThrottledByIops());
+        assertEquals(2, _qos.getClients());
+    }
+
+    @Test
+    public void testBandwidth() throws UnknownHostException {
+        FsExport export = new FsExport.FsExportBuilder().withBandwidth(1024).build("/data");
+
+        assertTrue(_qos.tryAcquire(export, _client1, 1024));
+        assertFalse(_qos.tryAcquire(export, _client1, 1024));
+        assertTrue("request without data limited by bandwidth", _qos.tryAcquire(export, _client1, 0));
+        assertEquals(1, _qos.getThrottledByBandwidth());
+    }
+
+    @Test
+    public void testNoIopsConsumedWhenThrottledByBandwidth() throws UnknownHostException {
+        FsExport export = new FsExport.FsExportBuilder().withIops(1).withBandwidth(1024).build("/data");
+
+        _qos.charge(export, _client1, 1024);
+        assertFalse(_qos.tryAcquire(export, _client1, 1024));
+        assertTrue("rejected request consumed iops", _qos.tryAcquire(export, _client1, 0));
+        assertEquals(1, _qos.getThrottledByBandwidth());
+        assertEquals(0, _qos.getThrottledByIops());
+    }
+
+    @Test
+    public void testChargeDelaysFollowingRequests() throws UnknownHostException {
+        FsExport export = new FsExport.FsExportBuilder().withBandwidth(1024).build("/data");
+
+        assertTrue(_qos.tryAcquire(export, _client1, 1024));
+        _qos.charge(export, _client1, 1024);
+        _ticker.advance(1, TimeUnit.SECONDS);
+        assertFalse(_qos.tryAcquire(export, _client1, 1));
+        _ticker.advance(1, TimeUnit.SECONDS);
+        assertTrue(_qos.tryAcquire(export, _client1, 1));
+    }
+
+    @Test
+    public void testChangedLimitTakesEffect() throws UnknownHostException {
+        FsExport slow = new FsExport.FsExportBuilder().withIops(1).build("/data");
+        FsExport fast = new FsExport.FsExportBuilder().withIops(1000).build("/data");
+
+        assertTrue(_qos.tryAcquire(slow, _client1, 0));
+        assertFalse(_qos.tryAcquire(slow, _client1, 0));
+        assertTrue("new limit not applied", _qos.tryAcquire(fast, _client1, 0));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.qos;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    private ManualTicker _ticker;
+
+    @Before
+    public void setUp() {
+        _ticker = new ManualTicker();
+    }
+
+    @Test
+    public void testAdmitBurst() {
+        TokenBucket bucket = new TokenBucket(10, Duration.ofSeconds(1), _ticker);
+
+        // rate * burst + the request at the limit
+        for (int i = 0; i < 11; i++) {
+            assertTrue("request within burst rejected", bucket.tryAcquire(1));
+        }
+        assertFalse("request over burst admitted", bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void testRefill() {
+        TokenBucket bucket = new TokenBucket(10, Duration.ZERO, _ticker);
+
+        assertTrue(bucket.tryAcquire(1));
+        assertFalse(bucket.tryAcquire(1));
+
+        _ticker.advance(100, TimeUnit.MILLISECONDS);
+        assertTrue("bucket not refilled", bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void testBigRequestDelaysFollowing() {
+        TokenBucket bucket = new TokenBucket(1024, Duration.ZERO, _ticker);
+
+        assertTrue("request bigger than the rate rejected", bucket.tryAcquire(4096));
+        _ticker.advance(3, TimeUnit.SECONDS);
+        assertFalse("request admitted before debt is paid", bucket.tryAcquire(1));
+        _ticker.advance(1, TimeUnit.SECONDS);
+        assertTrue(bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void testIdleBucketDoesNotAccumulate() {
+        TokenBucket bucket = new TokenBucket(10, Duration.ZERO, _ticker);
+
+        _ticker.advance(1, TimeUnit.HOURS);
+        assertTrue(bucket.tryAcquire(1));
+        assertFalse("idle time accumulated above the burst", bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void testAcquireOverLimit() {
+        TokenBucket bucket = new TokenBucket(1024, Duration.ZERO, _ticker);
+
+        assertTrue(bucket.tryAcquire(1024));
+        bucket.acquire(1024);
+        _ticker.advance(1, TimeUnit.SECONDS);
+        assertFalse("request admitted before debt is paid", bucket.tryAcquire(1));
+        _ticker.advance(1, TimeUnit.SECONDS);
+        assertTrue(bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void testRefund() {
+        TokenBucket bucket = new TokenBucket(10, Duration.ZERO, _ticker);
+
+        assertTrue(bucket.tryAcquire(1));
+        bucket.refund(1);
+        assertTrue("refunded units not available", bucket.tryAcquire(1));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    static class ManualTicker extends Ticker {
+
+        private long _nanos;
+
+        @Override
+        public long read() {
+            return _nanos;
+        }
+
+        void advance(long time, TimeUnit unit) {
+            _nanos += unit.toNanos(time);
+        }
+    }
+}
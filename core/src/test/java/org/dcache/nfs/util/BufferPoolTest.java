@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.util;
+
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    private BufferPool _pool;
+
+    @Before
+    public void setUp() {
+        _pool = new BufferPool("test pool", 1024 * 1024, 1024 * 1024);
+    }
+
+    @Test
+    public void testAcquireSetsLimit() {
+        ByteBuffer b = _pool.acquire(5000);
+        assertTrue(b.isDirect());
+        assertEquals(0, b.position());
+        assertEquals(5000, b.limit());
+        assertEquals(8192, b.capacity());
+    }
+
+    @Test
+    public void testReuse() {
+        ByteBuffer b = _pool.acquire(4096);
+        _pool.release(b);
+        assertSame(b, _pool.acquire(100));
+        assertEquals(1, _pool.getHits());
+        assertEquals(1, _pool.getMisses());
+    }
+
+    @Test
+    public void testOversizedNotPooled() {
+        ByteBuffer b = _pool.acquire(2 * 1024 * 1024);
+        assertFalse(b.isDirect());
+        _pool.release(b);
+        assertEquals(0, _pool.getIdleBuffers());
+    }
+
+    @Test
+    public void testForeignBufferIgnored() {
+        _pool.release(ByteBuffer.allocateDirect(5000));
+        _pool.release(ByteBuffer.allocate(4096));
+        assertEquals(0, _pool.getIdleBuffers());
+        assertEquals(0, _pool.getReturns());
+    }
+
+    @Test
+    public void testRetainedLimit() {
+        ByteBuffer b1 = _pool.acquire(1024 * 1024);
+        ByteBuffer b2 = _pool.acquire(1024 * 1024);
+        _pool.release(b1);
+        _pool.release(b2);
+        assertEquals(1, _pool.getIdleBuffers());
+        assertEquals(1, _pool.getDrops());
+    }
+
+    @Test
+    public void testRetainedLimitAcrossSizeClasses() {
+        ByteBuffer b1 = _pool.acquire(512 * 1024);
+        ByteBuffer b2 = _pool.acquire(256 * 1024);
+        ByteBuffer b3 = _pool.acquire(512 * 1024);
+        _pool.release(b1);
+        _pool.release(b2);
+        _pool.release(b3);
+        assertEquals(2, _pool.getIdleBuffers());
+        assertEquals(768 * 1024, _pool.getIdleBytes());
+        assertEquals(1, _pool.getDrops());
+    }
+
+    @Test
+    public void testLeaseReturnsOnClose() {
+        try (BufferPool.Lease lease = _pool.lease()) {
+            lease.allocate(100);
+            lease.allocate(10000);
+        }
+        assertEquals(2, _pool.getIdleBuffers());
+    }
+
+    @Test
+    public void testDetachedLease() {
+        try (BufferPool.Lease lease = _pool.lease()) {
+            lease.allocate(100);
+            lease.detach();
+        }
+        assertEquals(0, _pool.getIdleBuffers());
+    }
+}
@@ -21,6 +21,8 @@ package org.dcache.nfs.util;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
@@ -127,4 +129,69 @@ public class CacheTest {
         assertTrue("Not all entries are removed", _cache.entries().isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCleanUpNotifiesExpired() {
+        List<String> expired = new ArrayList<>();
+        Cache<String, String> cache = new Cache<>("test cache", 10, Duration.ofSeconds(5),
+                Duration.ofSeconds(5),
+                new NopCacheEventListener<>() {
+                    @Override
+                    public void notifyExpired(Cache<String, String> cache, String v) {
+                        expired.add(v);
+                    }
+                }, _clock);
+
+        cache.put("key1", "value1");
+        cache.put("key2", "value2", Duration.ofSeconds(10), Duration.ofSeconds(10));
+        _clock.advance(6, TimeUnit.SECONDS);
+        cache.cleanUp();
+
+        assertEquals(List.of("value1"), expired);
+        assertNull(cache.get("key1"));
+        assertNotNull(cache.get("key2"));
+    }
+
+    @Test
+    public void testCleanUpKeepsAccessed() {
+        _cache.put("key1", "value1", Duration.ofSeconds(60), Duration.ofSeconds(5));
+        _clock.advance(4, TimeUnit.SECONDS);
+        assertNotNull(_cache.get("key1"));
+        _clock.advance(4, TimeUnit.SECONDS);
+        _cache.cleanUp();
+        assertEquals("accessed entry removed", 1, _cache.size());
+        assertNotNull("Expected Entry expired", _cache.get("key1"));
+    }
+
+    @Test
+    public void testCleanUpAfterLongIdle() {
+        _cache.put("key1", "value1");
+        _clock.advance(1, TimeUnit.DAYS);
+        _cache.cleanUp();
+        assertEquals("unexpected number of elements", 0, _cache.size());
+    }
+
+    @Test
+    public void testPutReplaceKeepsLimit() {
+        for (int i = 0; i < 20; i++) {
+            _cache.put("key1", "value" + i);
+        }
+        assertEquals("unexpected number of elements", 1, _cache.size());
+        assertEquals("value19", _cache.get("key1"));
+    }
+
+    @Test(expected = java.util.MissingResourceException.class)
+    public void testPutOverLimit() {
+        for (int i = 0; i < 11; i++) {
+            _cache.put("key" + i, "value" + i);
+        }
+    }
+
+    @Test
+    public void testPutAfterRemoveWithinLimit() {
+        for (int i = 0; i < 100; i++) {
+            _cache.put("key" + i, "value" + i);
+            _cache.remove("key" + i);
+        }
+        assertEquals("unexpected number of elements", 0, _cache.size());
+    }
+}
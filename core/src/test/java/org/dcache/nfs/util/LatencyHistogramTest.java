@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.util;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+    }
+
+    @Test
+    public void testSmallValuesArePrecise() {
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(10, histogram.getMax());
+        assertEquals(5.5, histogram.getMean(), 0.0);
+        assertEquals(5, histogram.getValueAtPercentile(50.0));
+        assertEquals(10, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void testRelativeError() {
+        for (long v = 1; v < LatencyHistogram.MAX_TRACKABLE_VALUE; v = v * 3 + 1) {
+            long upper = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(v));
+            assertTrue("value " + v + " above bucket bound " + upper, v <= upper);
+            assertTrue("value " + v + " too far from bucket bound " + upper, upper - v <= v / 8);
+        }
+    }
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            long lower = LatencyHistogram.bucketUpperBound(i - 1) + 1;
+            assertEquals(i, LatencyHistogram.bucketIndex(lower));
+            assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.bucketUpperBound(i)));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (int i = 0; i < 990; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+
+        long p50 = histogram.getValueAtPercentile(50.0);
+        long p999 = histogram.getValueAtPercentile(99.9);
+        assertTrue(p50 >= TimeUnit.MICROSECONDS.toNanos(100) && p50 < TimeUnit.MICROSECONDS.toNanos(113));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), p999);
+    }
+
+    @Test
+    public void testHugeAndNegativeValues() {
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void testReset() {
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        histogram.getValueAtPercentile(100.1);
+    }
+}
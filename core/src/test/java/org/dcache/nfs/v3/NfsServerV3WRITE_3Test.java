@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v3;
+
+import java.nio.ByteBuffer;
+
+import org.dcache.nfs.ExportFile;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.status.DelayException;
+import org.dcache.nfs.v4.FileTracker;
+import org.dcache.nfs.v3.xdr.WRITE3args;
+import org.dcache.nfs.v3.xdr.WRITE3res;
+import org.dcache.nfs.vfs.FileHandle;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.Stat;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.testutils.NfsV3Ops;
+import org.dcache.testutils.RpcCallBuilder;
+import org.dcache.oncrpc4j.rpc.RpcCall;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+public class NfsServerV3WRITE_3Test {
+
+    private FileHandle fileHandle;
+    private Inode fileInode;
+    private VirtualFileSystem vfs;
+    private NfsServerV3 nfsServer;
+
+    @Before
+    public void setup() throws Exception {
+        fileHandle = new FileHandle(0, 1, 0, new byte[] { 0, 0, 0, 2 });
+        fileInode = new Inode(fileHandle);
+        Stat fileStat = new Stat();
+        //noinspection OctalInteger
+        fileStat.setMode(Stat.S_IFREG | 0644);
+        fileStat.setMTime(System.currentTimeMillis());
+        fileStat.setATime(System.currentTimeMillis());
+        fileStat.setCTime(System.currentTimeMillis());
+        fileStat.setGeneration(1);
+        fileStat.setNlink(1);
+        fileStat.setUid(1);
+        fileStat.setGid(2);
+        fileStat.setDev(1);
+        fileStat.setIno(2);
+        fileStat.setSize(0);
+        vfs = mock(VirtualFileSystem.class);
+        when(vfs.getattr(eq(fileInode))).thenReturn(fileStat);
+        ExportFile exportFile = new ExportFile(this.getClass().getResource("simpleExports").toURI());
+        nfsServer = new NfsServerV3(exportFile, vfs);
+    }
+
+    @Test
+    public void testWritePassesRequestBuffer() throws Exception {
+
+        ByteBuffer data = ByteBuffer.allocateDirect(4096);
+        when(vfs.write(eq(fileInode), any(ByteBuffer.class), anyLong(), any()))
+                .thenReturn(new VirtualFileSystem.WriteResult(VirtualFileSystem.StabilityLevel.UNSTABLE, 4096));
+
+        RpcCall call = new RpcCallBuilder().from("1.2.3.4", "someHost.acme.com", 42).nfs3().noAuth().build();
+        WRITE3args args = NfsV3Ops.write(fileHandle, 0, 4096, data);
+        WRITE3res result = nfsServer.NFSPROC3_WRITE_3(call, args);
+
+        assertEquals(nfsstat.NFS_OK, result.status);
+        assertEquals(4096, result.resok.count.value.value);
+        ArgumentCaptor<ByteBuffer> captor = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(vfs).write(eq(fileInode), captor.capture(), eq(0L), any());
+        assertSame(data, captor.getValue());
+        verify(vfs, never()).write(any(), any(byte[].class), anyLong(), anyInt(), any());
+    }
+
+    @Test
+    public void testWriteNoMoreThanCount() throws Exception {
+
+        ByteBuffer data = ByteBuffer.allocate(4096);
+        when(vfs.write(eq(fileInode), any(ByteBuffer.class), anyLong(), any()))
+                .thenReturn(new VirtualFileSystem.WriteResult(VirtualFileSystem.StabilityLevel.UNSTABLE, 100));
+
+        RpcCall call = new RpcCallBuilder().from("1.2.3.4", "someHost.acme.com", 42).nfs3().noAuth().build();
+        WRITE3args args = NfsV3Ops.write(fileHandle, 0, 100, data);
+        nfsServer.NFSPROC3_WRITE_3(call, args);
+
+        assertEquals(100, data.remaining());
+    }
+
+    @Test
+    public void testWriteDelayedWhileDelegationRecalled() throws Exception {
+
+        FileTracker fileTracker = mock(FileTracker.class);
+        when(fileTracker.hasDelegations()).thenReturn(true);
+        doThrow(new DelayException()).when(fileTracker).recallDelegations(isNull(), eq(fileInode));
+        ExportFile exportFile = new ExportFile(this.getClass().getResource("simpleExports").toURI());
+        nfsServer = new NfsServerV3(exportFile, vfs, null, null, fileTracker);
+
+        RpcCall call = new RpcCallBuilder().from("1.2.3.4", "someHost.acme.com", 42).nfs3().noAuth().build();
+        WRITE3args args = NfsV3Ops.write(fileHandle, 0, 4096, ByteBuffer.allocate(4096));
+        WRITE3res result = nfsServer.NFSPROC3_WRITE_3(call, args);
+
+        assertEquals(nfsstat.NFSERR_JUKEBOX, result.status);
+        verify(vfs, never()).write(any(), any(ByteBuffer.class), anyLong(), any());
+    }
+}
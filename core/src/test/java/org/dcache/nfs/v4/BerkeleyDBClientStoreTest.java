@@ -3,6 +3,12 @@ package org.dcache.nfs.v4;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.Before;
@@ -91,6 +97,62 @@ public class BerkeleyDBClientStoreTest {
         clientRecoveryStore.wantReclaim("client1".getBytes(UTF_8));
     }
 
+    @Test
+    public void shouldEndGraceAfterLastReclaim() throws Exception {
+        givenServer();
+        clientRecoveryStore.addClient("client1".getBytes(UTF_8));
+        clientRecoveryStore.addClient("client2".getBytes(UTF_8));
+        reboot();
+
+        clientRecoveryStore.reclaimClient("client1".getBytes(UTF_8));
+        assertTrue(clientRecoveryStore.waitingForReclaim());
+        clientRecoveryStore.removeClient("client2".getBytes(UTF_8));
+        clientRecoveryStore.reclaimClient("client1".getBytes(UTF_8));
+        assertFalse(clientRecoveryStore.waitingForReclaim());
+    }
+
+    @Test
+    public void shouldStoreConcurrentUpdatesWithGroupCommit() throws Exception {
+        clientRecoveryStore = new BerkeleyDBClientStore(storeDirectory.toFile(), new Properties(), true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> updates = new ArrayList<>();
+            for (int i = 0; i < 256; i++) {
+                byte[] client = ("client" + i).getBytes(UTF_8);
+                updates.add(executor.submit(() -> clientRecoveryStore.addClient(client)));
+            }
+            for (Future<?> update : updates) {
+                update.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        reboot();
+        for (int i = 0; i < 256; i++) {
+            clientRecoveryStore.wantReclaim(("client" + i).getBytes(UTF_8));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUpdatesAfterCloseWithGroupCommit() {
+        clientRecoveryStore = new BerkeleyDBClientStore(storeDirectory.toFile(), new Properties(), true);
+        clientRecoveryStore.addClient("client1".getBytes(UTF_8));
+        clientRecoveryStore.close();
+        clientRecoveryStore.addClient("client2".getBytes(UTF_8));
+    }
+
+    @Test
+    public void shouldKeepEnvironmentValidOnCloseWithGroupCommit() throws Exception {
+        clientRecoveryStore = new BerkeleyDBClientStore(storeDirectory.toFile(), new Properties(), true);
+        clientRecoveryStore.addClient("client1".getBytes(UTF_8));
+        clientRecoveryStore.close();
+
+        reboot();
+        clientRecoveryStore.wantReclaim("client1".getBytes(UTF_8));
+    }
+
     private void givenServer() {
         clientRecoveryStore = new BerkeleyDBClientStore(storeDirectory.toFile());
     }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Random;
+import org.dcache.nfs.status.InvalException;
+import org.dcache.nfs.v4.xdr.bitmap4;
+import org.dcache.nfs.v4.xdr.fattr4;
+import org.dcache.nfs.v4.xdr.fattr4_filehandle;
+import org.dcache.nfs.v4.xdr.fattr4_fsid;
+import org.dcache.nfs.v4.xdr.fattr4_mode;
+import org.dcache.nfs.v4.xdr.fattr4_owner;
+import org.dcache.nfs.v4.xdr.fattr4_rawdev;
+import org.dcache.nfs.v4.xdr.fattr4_size;
+import org.dcache.nfs.v4.xdr.fattr4_supported_attrs;
+import org.dcache.nfs.v4.xdr.fattr4_time_delta;
+import org.dcache.nfs.v4.xdr.fattr4_time_modify;
+import org.dcache.nfs.v4.xdr.fattr4_type;
+import org.dcache.nfs.v4.xdr.fsid4;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.v4.xdr.nfs_fh4;
+import org.dcache.nfs.v4.xdr.nfs_ftype4;
+import org.dcache.nfs.v4.xdr.nfsace4;
+import org.dcache.nfs.v4.xdr.nfstime4;
+import org.dcache.nfs.v4.xdr.specdata4;
+import org.dcache.nfs.v4.xdr.uint64_t;
+import org.dcache.nfs.v4.xdr.utf8str_mixed;
+import org.dcache.nfs.vfs.FsStat;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.Stat;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.oncrpc4j.xdr.Xdr;
+import org.dcache.oncrpc4j.xdr.XdrAble;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.dcache.nfs.v4.NfsTestUtils.generateRpcCall;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class Fattr4EncoderTest {
+
+    /**
+     * Attributes requested by Linux client on GETATTR after LOOKUP.
+     */
+    private static final bitmap4 LINUX_GETATTR = bitmap4.of(
+            nfs4_prot.FATTR4_TYPE, nfs4_prot.FATTR4_CHANGE, nfs4_prot.FATTR4_SIZE,
+            nfs4_prot.FATTR4_FSID, nfs4_prot.FATTR4_FILEID, nfs4_prot.FATTR4_MODE,
+            nfs4_prot.FATTR4_NUMLINKS, nfs4_prot.FATTR4_OWNER, nfs4_prot.FATTR4_OWNER_GROUP,
+            nfs4_prot.FATTR4_RAWDEV, nfs4_prot.FATTR4_SPACE_USED, nfs4_prot.FATTR4_TIME_ACCESS,
+            nfs4_prot.FATTR4_TIME_METADATA, nfs4_prot.FATTR4_TIME_MODIFY,
+            nfs4_prot.FATTR4_MOUNTED_ON_FILEID);
+
+    private VirtualFileSystem vfs;
+    private Inode inode;
+    private Stat stat;
+    private CompoundContext context;
+
+    @Before
+    public void setUp() throws IOException {
+
+        inode = Inode.forFile(new byte[]{1, 2, 3, 4, 5});
+
+        stat = new Stat();
+        stat.setMode(Stat.S_IFREG | 0644);
+        stat.setMTime(1_600_000_000_123L);
+        stat.setATime(1_600_000_001_456L);
+        stat.setCTime(1_600_000_002_789L);
+        stat.setGeneration(17);
+        stat.setNlink(1);
+        stat.setUid(1000);
+        stat.setGid(100);
+        stat.setDev(1);
+        stat.setIno(4711);
+        stat.setSize(123456789L);
+
+        vfs = mock(VirtualFileSystem.class);
+        when(vfs.getattr(any())).thenReturn(stat);
+        when(vfs.getFsStat()).thenReturn(new FsStat(1L << 40, 1_000_000, 1L << 30, 1000));
+        when(vfs.getIdMapper()).thenReturn(new SimpleIdMap());
+        when(vfs.getAcl(any())).thenReturn(new nfsace4[0]);
+        when(vfs.getCaseInsensitive()).thenReturn(false);
+        when(vfs.getCasePreserving()).thenReturn(true);
+
+        context = new CompoundContextBuilder()
+                .withFs(vfs)
+                .withMinorversion(1)
+                .withStateHandler(new NFSv4StateHandler())
+                .withCall(generateRpcCall())
+                .build();
+    }
+
+    @Test
+    public void testLinuxGetattrSameAsGeneric() throws IOException {
+        assertSameEncoding(LINUX_GETATTR);
+    }
+
+    @Test
+    public void testRandomBitmapsSameAsGeneric() throws IOException {
+        Random random = new Random(4711);
+        for (int i = 0; i < 1000; i++) {
+            bitmap4 bitmap = new bitmap4(new int[0]);
+            int n = 1 + random.nextInt(20);
+            for (int j = 0; j < n; j++) {
+                int attr = random.nextInt(nfs4_prot.FATTR4_XATTR_SUPPORT + 2);
+                if (attr != nfs4_prot.FATTR4_TIME_ACCESS_SET && attr != nfs4_prot.FATTR4_TIME_MODIFY_SET) {
+                    bitmap.set(attr);
+                }
+            }
+            assertSameEncoding(bitmap);
+        }
+    }
+
+    @Test
+    public void testNoSupportedAttributes() throws IOException {
+        fattr4 attrs = Fattr4Encoder.encode(bitmap4.of(nfs4_prot.FATTR4_ARCHIVE), vfs, inode, stat, context);
+        assertTrue(attrs.attrmask.isEmpty());
+        assertEquals(0, attrs.attr_vals.value.length);
+    }
+
+    @Test
+    public void testSameEncoderForEqualBitmaps() {
+        assertSame(Fattr4Encoder.forBitmap(LINUX_GETATTR),
+                Fattr4Encoder.forBitmap(new bitmap4(LINUX_GETATTR.value.clone())));
+    }
+
+    @Test
+    public void testResultNotShared() throws IOException {
+        fattr4 attrs1 = Fattr4Encoder.encode(LINUX_GETATTR, vfs, inode, stat, context);
+        attrs1.attrmask.set(nfs4_prot.FATTR4_ACL);
+        fattr4 attrs2 = Fattr4Encoder.encode(LINUX_GETATTR, vfs, inode, stat, context);
+        assertFalse(attrs2.attrmask.isSet(nfs4_prot.FATTR4_ACL));
+    }
+
+    @Test(expected = InvalException.class)
+    public void testWriteOnlyAttribute() throws IOException {
+        Fattr4Encoder.encode(bitmap4.of(nfs4_prot.FATTR4_SIZE, nfs4_prot.FATTR4_TIME_MODIFY_SET), vfs, inode, stat, context);
+    }
+
+    @Test
+    public void testEncodingOfXdrTypes() throws IOException {
+
+        fsid4 fsid = new fsid4();
+        fsid.major = new uint64_t(17);
+        fsid.minor = new uint64_t(17);
+        specdata4 dev = new specdata4();
+        nfs_fh4 fh = new nfs_fh4();
+        fh.value = inode.toNfsHandle();
+
+        assertEncodedAs(nfs4_prot.FATTR4_TYPE, new fattr4_type(nfs_ftype4.NF4REG));
+        assertEncodedAs(nfs4_prot.FATTR4_SIZE, new fattr4_size(123456789L));
+        assertEncodedAs(nfs4_prot.FATTR4_MODE, new fattr4_mode(0644));
+        assertEncodedAs(nfs4_prot.FATTR4_FSID, new fattr4_fsid(fsid));
+        assertEncodedAs(nfs4_prot.FATTR4_RAWDEV, new fattr4_rawdev(dev));
+        assertEncodedAs(nfs4_prot.FATTR4_FILEHANDLE, new fattr4_filehandle(fh));
+        assertEncodedAs(nfs4_prot.FATTR4_OWNER, new fattr4_owner(new utf8str_mixed("1000")));
+        assertEncodedAs(nfs4_prot.FATTR4_TIME_MODIFY, new fattr4_time_modify(1_600_000_000_123L));
+        assertEncodedAs(nfs4_prot.FATTR4_TIME_DELTA, new fattr4_time_delta(new nfstime4(1000)));
+        assertEncodedAs(nfs4_prot.FATTR4_SUPPORTED_ATTRS,
+                new fattr4_supported_attrs(NFSv4FileAttributes.SUPPORTED_ATTRS_V4_1_NO_PNFS));
+    }
+
+    @Test
+    public void testFattr2xdrSameEncoding() throws IOException {
+        for (int attr : LINUX_GETATTR) {
+            fattr4 attrs = Fattr4Encoder.encode(bitmap4.of(attr), vfs, inode, stat, context);
+            assertArrayEquals(attrs.attr_vals.value,
+                    toBytes(OperationGETATTR.fattr2xdr(attr, vfs, inode, stat, context).get()));
+        }
+    }
+
+    private void assertEncodedAs(int attr, XdrAble expected) throws IOException {
+        fattr4 attrs = Fattr4Encoder.encode(bitmap4.of(attr), vfs, inode, stat, context);
+        assertArrayEquals("encoding of " + attr, toBytes(expected), attrs.attr_vals.value);
+    }
+
+    private static byte[] toBytes(XdrAble xdrAble) throws IOException {
+        try (Xdr xdr = new Xdr(256)) {
+            xdr.beginEncoding();
+            xdrAble.xdrEncode(xdr);
+            xdr.endEncoding();
+            return xdr.getBytes();
+        }
+    }
+
+    /**
+     * Assert that encoding of all attributes at once is the same as encoding of
+     * attributes one by one.
+     */
+    private void assertSameEncoding(bitmap4 bitmap) throws IOException {
+        bitmap4 expectedMask = new bitmap4(new int[0]);
+        byte[] expectedValues;
+        try (Xdr xdr = new Xdr(1024)) {
+            xdr.beginEncoding();
+            for (int attr : bitmap) {
+                Optional<? extends XdrAble> value = OperationGETATTR.fattr2xdr(attr, vfs, inode, stat, context);
+                if (value.isPresent()) {
+                    value.get().xdrEncode(xdr);
+                    expectedMask.set(attr);
+                }
+            }
+            xdr.endEncoding();
+            expectedValues = xdr.getBytes();
+        }
+
+        fattr4 actual = Fattr4Encoder.encode(bitmap, vfs, inode, stat, context);
+        assertArrayEquals("mask of " + bitmap, expectedMask.value, actual.attrmask.value);
+        assertArrayEquals("encoding of " + bitmap, expectedValues, actual.attr_vals.value);
+    }
+}
@@ -20,9 +20,14 @@
 package org.dcache.nfs.v4;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import org.dcache.nfs.status.BadStateidException;
+import org.dcache.nfs.status.DelayException;
+import org.dcache.nfs.status.DelegRevokedException;
 import org.dcache.nfs.status.InvalException;
 import org.dcache.nfs.status.ShareDeniedException;
+import org.dcache.nfs.util.ManualClock;
+import org.dcache.nfs.v4.xdr.why_no_delegation4;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -31,23 +36,32 @@ import org.dcache.nfs.vfs.Inode;
 import org.dcache.nfs.v4.xdr.stateid4;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.dcache.nfs.v4.NfsTestUtils.createClient;
 import static org.dcache.nfs.v4.NfsTestUtils.generateFileHandle;
 
 import static org.dcache.nfs.v4.xdr.nfs4_prot.OPEN4_SHARE_ACCESS_READ;
 import static org.dcache.nfs.v4.xdr.nfs4_prot.OPEN4_SHARE_ACCESS_WRITE;
 import static org.dcache.nfs.v4.xdr.nfs4_prot.OPEN4_SHARE_ACCESS_BOTH;
+import static org.dcache.nfs.v4.xdr.nfs4_prot.OPEN4_SHARE_ACCESS_WANT_NO_DELEG;
 import org.dcache.nfs.v4.xdr.seqid4;
 
 public class FileTrackerTest {
 
     private FileTracker tracker;
     private NFSv4StateHandler sh;
+    private ManualClock clock;
 
     @Before
     public void setUp() {
         sh = new NFSv4StateHandler();
-        tracker = new FileTracker();
+        clock = new ManualClock();
+        tracker = new FileTracker(Duration.ofSeconds(10), clock);
     }
 
     @Test
@@ -197,4 +211,275 @@ public class FileTrackerTest {
         tracker.getShareAccess(client1, inode, client1.createState(stateOwner1).stateid());
     }
 
+    @Test
+    public void shouldGrantReadDelegation() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        assertTrue(openRecord.hasDelegation());
+        assertNotEquals(openRecord.openStateId(), openRecord.delegationStateId());
+        assertEquals(OPEN4_SHARE_ACCESS_READ, tracker.getShareAccess(client1, inode, openRecord.delegationStateId()));
+    }
+
+    @Test
+    public void shouldNotGrantDelegationWithoutCallback() throws Exception {
+
+        NFS4Client client1 = createClient(sh);
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        assertFalse(openRecord.hasDelegation());
+    }
+
+    @Test
+    public void shouldNotGrantDelegationIfNotWanted() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode,
+                OPEN4_SHARE_ACCESS_READ | OPEN4_SHARE_ACCESS_WANT_NO_DELEG, 0);
+        assertFalse(openRecord.hasDelegation());
+        assertEquals(why_no_delegation4.WND4_NOT_WANTED, openRecord.whyNoDelegation());
+    }
+
+    @Test
+    public void shouldNotGrantDelegationIfOpenForWrite() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        NFS4Client client2 = createClientWithCallback();
+        StateOwner stateOwner2 = client2.getOrCreateOwner("client2".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        tracker.openFile(client2, stateOwner2, inode, OPEN4_SHARE_ACCESS_WRITE, 0);
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        assertFalse(openRecord.hasDelegation());
+        assertEquals(why_no_delegation4.WND4_CONTENTION, openRecord.whyNoDelegation());
+    }
+
+    @Test
+    public void shouldRecallDelegationOnConflictingOpen() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        NFS4Client client2 = createClientWithCallback();
+        StateOwner stateOwner2 = client2.getOrCreateOwner("client2".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        try {
+            tracker.openFile(client2, stateOwner2, inode, OPEN4_SHARE_ACCESS_WRITE, 0);
+            fail("conflicting open must be delayed");
+        } catch (DelayException e) {
+            // expected
+        }
+        verify(client1.getCB(), timeout(1000)).cbDelegationRecall(any(), eq(openRecord.delegationStateId()), anyBoolean());
+
+        tracker.returnDelegation(client1, inode, openRecord.delegationStateId());
+        tracker.openFile(client2, stateOwner2, inode, OPEN4_SHARE_ACCESS_WRITE, 0);
+    }
+
+    @Test
+    public void shouldRecallDelegationOnModification() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        NFS4Client client2 = createClientWithCallback();
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+
+        // the holder itself don't need to be recalled
+        tracker.recallDelegations(client1, inode);
+        try {
+            tracker.recallDelegations(client2, inode);
+            fail("conflicting modification must be delayed");
+        } catch (DelayException e) {
+            // expected
+        }
+        verify(client1.getCB(), timeout(1000)).cbDelegationRecall(any(), eq(openRecord.delegationStateId()), anyBoolean());
+    }
+
+    @Test
+    public void shouldRevokeDelegationAfterRecallTimeout() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        NFS4Client client2 = createClientWithCallback();
+        StateOwner stateOwner2 = client2.getOrCreateOwner("client2".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        try {
+            tracker.openFile(client2, stateOwner2, inode, OPEN4_SHARE_ACCESS_WRITE, 0);
+            fail("conflicting open must be delayed");
+        } catch (DelayException e) {
+            // expected
+        }
+
+        clock.advance(Duration.ofSeconds(11));
+        tracker.openFile(client2, stateOwner2, inode, OPEN4_SHARE_ACCESS_WRITE, 0);
+        assertFalse(tracker.hasDelegations());
+    }
+
+    @Test
+    public void shouldReportRevokedDelegationUntilFreed() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        NFS4Client client2 = createClientWithCallback();
+        StateOwner stateOwner2 = client2.getOrCreateOwner("client2".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        try {
+            tracker.openFile(client2, stateOwner2, inode, OPEN4_SHARE_ACCESS_WRITE, 0);
+            fail("conflicting open must be delayed");
+        } catch (DelayException e) {
+            // expected
+        }
+
+        clock.advance(Duration.ofSeconds(11));
+        tracker.openFile(client2, stateOwner2, inode, OPEN4_SHARE_ACCESS_WRITE, 0);
+        assertTrue("Revoked delegation not reported", client1.hasRevokedDelegations());
+        try {
+            client1.state(openRecord.delegationStateId());
+            fail("Use of revoked delegation must fail");
+        } catch (DelegRevokedException e) {
+            // expected
+        }
+
+        assertTrue(client1.freeRevokedDelegation(openRecord.delegationStateId()));
+        assertFalse(client1.hasRevokedDelegations());
+    }
+
+    @Test(expected = BadStateidException.class)
+    public void shouldFailToReturnUnknownDelegation() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        tracker.returnDelegation(client1, inode, openRecord.openStateId());
+    }
+
+    @Test
+    public void shouldOpenFileUnderDelegation() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+        StateOwner stateOwner2 = client1.getOrCreateOwner("client2".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        FileTracker.OpenRecord delegatedOpen = tracker.openDelegatedFile(client1, stateOwner2, inode,
+                openRecord.delegationStateId(), OPEN4_SHARE_ACCESS_READ, 0);
+
+        assertFalse(delegatedOpen.hasDelegation());
+        assertNotEquals(openRecord.openStateId(), delegatedOpen.openStateId());
+        assertEquals(OPEN4_SHARE_ACCESS_READ, tracker.getShareAccess(client1, inode, delegatedOpen.openStateId()));
+    }
+
+    @Test
+    public void shouldOpenFileUnderRecalledDelegation() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        try {
+            tracker.recallDelegations(null, inode);
+            fail("modification must be delayed");
+        } catch (DelayException e) {
+            // expected
+        }
+
+        FileTracker.OpenRecord delegatedOpen = tracker.openDelegatedFile(client1, stateOwner1, inode,
+                openRecord.delegationStateId(), OPEN4_SHARE_ACCESS_READ, 0);
+        assertEquals(openRecord.openStateId(), delegatedOpen.openStateId());
+    }
+
+    @Test(expected = BadStateidException.class)
+    public void shouldFailToOpenWithoutDelegation() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode,
+                OPEN4_SHARE_ACCESS_READ | OPEN4_SHARE_ACCESS_WANT_NO_DELEG, 0);
+        tracker.openDelegatedFile(client1, stateOwner1, inode, openRecord.openStateId(), OPEN4_SHARE_ACCESS_READ, 0);
+    }
+
+    @Test(expected = BadStateidException.class)
+    public void shouldFailToOpenUnderOtherClientDelegation() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        NFS4Client client2 = createClientWithCallback();
+        StateOwner stateOwner2 = client2.getOrCreateOwner("client2".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        tracker.openDelegatedFile(client2, stateOwner2, inode, openRecord.delegationStateId(), OPEN4_SHARE_ACCESS_READ, 0);
+    }
+
+    @Test(expected = InvalException.class)
+    public void shouldFailToOpenForWriteUnderReadDelegation() throws Exception {
+
+        NFS4Client client1 = createClientWithCallback();
+        StateOwner stateOwner1 = client1.getOrCreateOwner("client1".getBytes(StandardCharsets.UTF_8), new seqid4(0));
+
+        nfs_fh4 fh = generateFileHandle();
+        Inode inode = Inode.forFile(fh.value);
+
+        FileTracker.OpenRecord openRecord = tracker.openFile(client1, stateOwner1, inode, OPEN4_SHARE_ACCESS_READ, 0);
+        tracker.openDelegatedFile(client1, stateOwner1, inode, openRecord.delegationStateId(), OPEN4_SHARE_ACCESS_BOTH, 0);
+    }
+
+    private NFS4Client createClientWithCallback() throws Exception {
+        NFS4Client client = createClient(sh);
+        client.setCB(mock(ClientCB.class));
+        return client;
+    }
 }
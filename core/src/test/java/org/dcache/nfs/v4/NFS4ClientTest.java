@@ -27,6 +27,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.dcache.nfs.ChimeraNFSException;
 import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.status.ExpiredException;
 import org.dcache.nfs.status.SeqMisorderedException;
 import org.dcache.nfs.util.ManualClock;
 import org.dcache.nfs.util.NopCacheEventListener;
@@ -201,5 +202,22 @@ public class NFS4ClientTest {
         clock.advance(stateHandler.getLeaseTime().plus(1, ChronoUnit.SECONDS));
         assertFalse("Client can be valid with expired lease", nfsClient.isLeaseValid());
     }
+
+    @Test
+    public void testClientValidityAfterLeaseRenewed() throws ChimeraNFSException {
+
+        clock.advance(stateHandler.getLeaseTime().minus(1, ChronoUnit.SECONDS));
+        nfsClient.updateLeaseTime();
+
+        clock.advance(stateHandler.getLeaseTime().minus(1, ChronoUnit.SECONDS));
+        assertTrue("Client should be valid after lease renewal.", nfsClient.isLeaseValid());
+    }
+
+    @Test(expected = ExpiredException.class)
+    public void testUpdateLeaseAfterLeaseExpired() throws ChimeraNFSException {
+
+        clock.advance(stateHandler.getLeaseTime().plus(1, ChronoUnit.SECONDS));
+        nfsClient.updateLeaseTime();
+    }
 }
 
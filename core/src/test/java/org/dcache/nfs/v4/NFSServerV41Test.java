@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+import org.dcache.nfs.ExportTable;
+import org.dcache.nfs.FsExport;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.util.VirtualThreads;
+import org.dcache.nfs.v4.xdr.COMPOUND4args;
+import org.dcache.nfs.v4.xdr.COMPOUND4res;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.v4.xdr.nfs_fh4;
+import org.dcache.nfs.v4.xdr.nfs_opnum4;
+import org.dcache.nfs.vfs.AsyncVirtualFileSystem;
+import org.dcache.nfs.vfs.Inode;
+import org.dcache.nfs.vfs.Stat;
+import org.dcache.nfs.vfs.VfsCache;
+import org.dcache.nfs.vfs.VfsCacheConfig;
+import org.dcache.nfs.vfs.VirtualFileSystem;
+import org.dcache.oncrpc4j.rpc.RpcCall;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.*;
+import static org.dcache.nfs.v4.NfsTestUtils.createClient;
+import static org.dcache.nfs.v4.NfsTestUtils.generateRpcCall;
+
+public class NFSServerV41Test {
+
+    private final Inode inode = Inode.forFile(new byte[]{1, 2, 3, 4});
+    private final nfs_fh4 fh = new nfs_fh4(inode.toNfsHandle());
+
+    private NFSv4StateHandler stateHandler;
+    private NFSv41Session session;
+    private AsyncVirtualFileSystem asyncVfs;
+    private ExportTable exportTable;
+
+    @Before
+    public void setUp() throws Exception {
+        stateHandler = new NFSv4StateHandler();
+        session = createClient(stateHandler).createSession(1, 10, 1, 8, 8);
+
+        Stat fileStat = new Stat();
+        fileStat.setMode(Stat.S_IFREG | 0644);
+        fileStat.setSize(0);
+
+        asyncVfs = mock(AsyncVirtualFileSystem.class);
+        when(asyncVfs.isAsync()).thenReturn(true);
+        when(asyncVfs.getattr(any())).thenReturn(fileStat);
+
+        FsExport export = new FsExport.FsExportBuilder().rw().withAllRoot().build("/");
+        exportTable = mock(ExportTable.class);
+        when(exportTable.getExport(anyInt(), any())).thenReturn(export);
+        when(exportTable.exports(any())).thenAnswer(i -> Stream.of(export));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stateHandler.shutdown();
+    }
+
+    @Test
+    public void testAsyncWriteThroughVfsCache() throws Exception {
+
+        CompletableFuture<VirtualFileSystem.WriteResult> writeFuture = new CompletableFuture<>();
+        when(asyncVfs.writeAsync(any(), any(), anyLong(), any())).thenReturn(writeFuture);
+
+        NFSServerV41 nfsServer = new NFSServerV41.Builder()
+                .withVfs(new VfsCache(asyncVfs, new VfsCacheConfig()))
+                .withOperationExecutor(new MDSOperationExecutor())
+                .withExportTable(exportTable)
+                .withStateHandler(stateHandler)
+                .build();
+
+        COMPOUND4args args = new CompoundBuilder()
+                .withSequence(false, session.id(), 0, 0, 0)
+                .withPutfh(fh)
+                .withWrite(0, ByteBuffer.allocate(512), Stateids.ZeroStateId())
+                .withTag("write")
+                .build();
+
+        RpcCall call = compoundCall(args);
+        nfsServer.dispatchOncRpcCall(call);
+
+        verify(call, never()).reply(any());
+
+        writeFuture.complete(new VirtualFileSystem.WriteResult(VirtualFileSystem.StabilityLevel.UNSTABLE, 512));
+
+        ArgumentCaptor<COMPOUND4res> reply = ArgumentCaptor.forClass(COMPOUND4res.class);
+        verify(call).reply(reply.capture());
+        assertEquals(nfsstat.NFS_OK, reply.getValue().status);
+        assertEquals(3, reply.getValue().resarray.size());
+        assertEquals(nfs_opnum4.OP_WRITE, reply.getValue().resarray.get(2).resop);
+        assertEquals(512, reply.getValue().resarray.get(2).opwrite.resok4.count.value);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testNoDispatchAfterShutdown() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+
+        NFSServerV41 nfsServer = new NFSServerV41.Builder()
+                .withVfs(mock(VirtualFileSystem.class))
+                .withOperationExecutor(new MDSOperationExecutor())
+                .withExportTable(exportTable)
+                .withStateHandler(stateHandler)
+                .withVirtualThreads()
+                .build();
+
+        nfsServer.shutdown();
+        nfsServer.dispatchOncRpcCall(compoundCall(new CompoundBuilder()
+                .withSequence(false, session.id(), 0, 0, 0)
+                .withTag("shutdown")
+                .build()));
+    }
+
+    private static RpcCall compoundCall(COMPOUND4args args) throws Exception {
+        RpcCall call = generateRpcCall();
+        when(call.getProcedure()).thenReturn(nfs4_prot.NFSPROC4_COMPOUND_4);
+        doAnswer(i -> {
+            COMPOUND4args a = i.getArgument(0);
+            a.tag = args.tag;
+            a.minorversion = args.minorversion;
+            a.argarray = args.argarray;
+            return null;
+        }).when(call).retrieveCall(any());
+        return call;
+    }
+}
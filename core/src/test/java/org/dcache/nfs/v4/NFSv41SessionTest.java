@@ -19,9 +19,19 @@
  */
 package org.dcache.nfs.v4;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import org.dcache.nfs.ChimeraNFSException;
+import org.dcache.nfs.nfsstat;
 import org.dcache.nfs.status.BadSlotException;
+import org.dcache.nfs.v4.xdr.READ4res;
+import org.dcache.nfs.v4.xdr.READ4resok;
+import org.dcache.nfs.v4.xdr.nfs_opnum4;
+import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.v4.xdr.sessionid4;
+import org.dcache.oncrpc4j.xdr.Xdr;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -68,4 +78,198 @@ public class NFSv41SessionTest {
         _client.removeSession(_session.id());
         assertFalse(_client.hasSessions());
     }
+
+    @Test
+    public void testSameSlotOnConcurrentAccess() throws ChimeraNFSException {
+        assertSame(_session.getSessionSlot(1), _session.getSessionSlot(1));
+    }
+
+    @Test
+    public void testTargetGrowsWhenAllSlotsUsed() {
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                0, new ReplyCacheBudget(1024 * 1024));
+
+        assertEquals(NFSv4Defaults.NFS4_INITIAL_SESSION_SLOTS - 1, session.getTargetHighestSlot());
+        int target = session.updateTargetHighestSlot(session.getTargetHighestSlot());
+        assertTrue("target not increased", target > NFSv4Defaults.NFS4_INITIAL_SESSION_SLOTS - 1);
+
+        for (int i = 0; i < 10; i++) {
+            target = session.updateTargetHighestSlot(target);
+        }
+        assertEquals("target must not exceed highest slot", session.getHighestSlot(), target);
+    }
+
+    @Test
+    public void testTargetShrinksWhenIdle() {
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                0, new ReplyCacheBudget(1024 * 1024));
+
+        int target = session.getTargetHighestSlot();
+        for (int i = 0; i < 100; i++) {
+            target = session.updateTargetHighestSlot(0);
+        }
+        assertTrue("target not decreased", target < NFSv4Defaults.NFS4_INITIAL_SESSION_SLOTS - 1);
+        assertTrue("target below minimum", target >= 0);
+    }
+
+    @Test
+    public void testTargetShrinksUnderMemoryPressure() throws ChimeraNFSException, IOException {
+        ReplyCacheBudget budget = new ReplyCacheBudget(4096);
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                1024, budget);
+
+        int target = session.getTargetHighestSlot();
+        for (int i = 0; i < 4; i++) {
+            SessionSlot slot = session.getSessionSlot(i);
+            slot.acquire(1);
+            slot.update(reply(1008));
+        }
+        assertTrue(budget.isUnderPressure());
+        assertTrue("target not decreased", session.updateTargetHighestSlot(target) < target);
+    }
+
+    @Test
+    public void testCachedReplyCharged() throws ChimeraNFSException, IOException {
+        ReplyCacheBudget budget = new ReplyCacheBudget(1024 * 1024);
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                1024, budget);
+
+        SessionSlot slot = session.getSessionSlot(0);
+        slot.acquire(1);
+        slot.update(reply(1008));
+        assertEquals(1024, budget.getUsed());
+
+        // next request on the same slot replaces cached reply
+        slot.acquire(2);
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void testReleaseReplyOfUnusedSlots() throws ChimeraNFSException, IOException {
+        ReplyCacheBudget budget = new ReplyCacheBudget(1024 * 1024);
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                1024, budget);
+
+        for (int i = 0; i < 4; i++) {
+            SessionSlot slot = session.getSessionSlot(i);
+            slot.acquire(1);
+            slot.update(reply(1008));
+        }
+
+        session.updateTargetHighestSlot(1);
+        assertTrue(session.getSessionSlot(1).hasCachedReply());
+        assertFalse(session.getSessionSlot(2).hasCachedReply());
+        assertEquals(2 * 1024, budget.getUsed());
+
+        session.releaseCachedReplies();
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void testRetransmitGetsCachedReply() throws ChimeraNFSException, IOException {
+        ReplyCacheBudget budget = new ReplyCacheBudget(1024 * 1024);
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                0, budget);
+
+        SessionSlot slot = session.getSessionSlot(0);
+        assertNull(slot.acquire(1));
+        slot.update(reply(1008));
+
+        CachedReply cachedReply = slot.acquire(1);
+        assertEquals(1, cachedReply.getOperationCount());
+        assertEquals(nfsstat.NFS_OK, cachedReply.getStatus());
+        assertEquals(1, budget.getHits());
+
+        byte[] bytes;
+        try (Xdr xdr = new Xdr(1024)) {
+            xdr.beginEncoding();
+            cachedReply.writeTo(xdr);
+            xdr.endEncoding();
+            bytes = xdr.getBytes();
+        }
+        assertEquals(cachedReply.size(), bytes.length);
+
+        try (Xdr xdr = new Xdr(bytes)) {
+            xdr.beginDecoding();
+            nfs_resop4 op = new nfs_resop4(xdr);
+            assertEquals(nfs_opnum4.OP_READ, op.resop);
+            assertEquals(1008, op.opread.resok4.data.remaining());
+        }
+    }
+
+    @Test
+    public void testRetransmitWithoutCachedReply() throws ChimeraNFSException {
+        ReplyCacheBudget budget = new ReplyCacheBudget(1024 * 1024);
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                0, budget);
+
+        SessionSlot slot = session.getSessionSlot(0);
+        slot.acquire(1);
+        assertSame(CachedReply.NOT_CACHED, slot.acquire(1));
+        assertEquals(1, budget.getMisses());
+    }
+
+    @Test
+    public void testEldestReplyEvicted() throws ChimeraNFSException, IOException {
+        ReplyCacheBudget budget = new ReplyCacheBudget(2048);
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                0, budget);
+
+        for (int i = 0; i < 3; i++) {
+            SessionSlot slot = session.getSessionSlot(i);
+            slot.acquire(1);
+            slot.update(reply(1008));
+        }
+
+        assertFalse(session.getSessionSlot(0).hasCachedReply());
+        assertTrue(session.getSessionSlot(1).hasCachedReply());
+        assertTrue(session.getSessionSlot(2).hasCachedReply());
+        assertEquals(2048, budget.getUsed());
+        assertEquals(2, budget.getEntries());
+        assertEquals(1, budget.getEvictions());
+        assertEquals(1024, budget.getEvictedBytes());
+    }
+
+    @Test
+    public void testOversizedReplyNotCached() throws ChimeraNFSException, IOException {
+        ReplyCacheBudget budget = new ReplyCacheBudget(1024 * 1024);
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8,
+                512, budget);
+
+        SessionSlot slot = session.getSessionSlot(0);
+        slot.acquire(1);
+        CachedReply encoded = slot.update(reply(1008));
+
+        assertEquals(1024, encoded.size());
+        assertFalse(slot.hasCachedReply());
+        assertEquals(0, budget.getUsed());
+        assertEquals(1, budget.getOversized());
+    }
+
+    @Test
+    public void testSessionsShareServerBudget() throws ChimeraNFSException, IOException {
+        NFSv41Session session = new NFSv41Session(_client, new sessionid4(new byte[16]), 64, 1, 8, 8);
+        long used = _client.getReplyCacheBudget().getUsed();
+
+        SessionSlot slot = session.getSessionSlot(0);
+        slot.acquire(1);
+        slot.update(reply(1008));
+        assertEquals(used + 1024, _client.getReplyCacheBudget().getUsed());
+    }
+
+    /**
+     * Build results of SEQUENCE and READ. The encoded READ result takes {@code dataSize} + 16 bytes.
+     */
+    private static List<nfs_resop4> reply(int dataSize) {
+        nfs_resop4 sequence = new nfs_resop4();
+        sequence.resop = nfs_opnum4.OP_SEQUENCE;
+
+        nfs_resop4 read = new nfs_resop4();
+        read.resop = nfs_opnum4.OP_READ;
+        read.opread = new READ4res();
+        read.opread.status = nfsstat.NFS_OK;
+        read.opread.resok4 = new READ4resok();
+        read.opread.resok4.data = ByteBuffer.allocate(dataSize);
+        return List.of(sequence, read);
+    }
 }
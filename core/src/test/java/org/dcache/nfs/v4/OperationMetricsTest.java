@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import java.io.IOException;
+import java.util.Map;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.status.NoEntException;
+import org.dcache.nfs.v4.xdr.nfs_argop4;
+import org.dcache.nfs.v4.xdr.nfs_opnum4;
+import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OperationMetricsTest {
+
+    private OperationMetrics metrics;
+    private AbstractOperationExecutor executor;
+
+    @Before
+    public void setUp() {
+        metrics = new OperationMetrics("test");
+        executor = new AbstractOperationExecutor(metrics) {
+            @Override
+            protected AbstractNFSv4Operation getOperation(nfs_argop4 op) {
+                return new AbstractNFSv4Operation(op, op.argop) {
+                    @Override
+                    public void process(CompoundContext context, nfs_resop4 result) throws IOException {
+                        if (_args.argop == nfs_opnum4.OP_LOOKUP) {
+                            throw new NoEntException();
+                        }
+                        result.setStatus(nfsstat.NFS_OK);
+                    }
+                };
+            }
+        };
+    }
+
+    @Test
+    public void testCountPerOperation() throws IOException {
+        execute(nfs_opnum4.OP_GETATTR);
+        execute(nfs_opnum4.OP_GETATTR);
+        execute(nfs_opnum4.OP_PUTFH);
+
+        assertEquals(2, metrics.getCount(nfs_opnum4.OP_GETATTR));
+        assertEquals(1, metrics.getCount(nfs_opnum4.OP_PUTFH));
+        assertEquals(0, metrics.getCount(nfs_opnum4.OP_READ));
+        assertEquals(Map.of("GETATTR", 2L, "PUTFH", 1L), metrics.getCounts());
+    }
+
+    @Test
+    public void testErrorsByStatus() throws IOException {
+        execute(nfs_opnum4.OP_LOOKUP);
+        execute(nfs_opnum4.OP_GETATTR);
+
+        assertEquals(1, metrics.getErrorCount(nfs_opnum4.OP_LOOKUP, nfsstat.NFSERR_NOENT));
+        assertEquals(0, metrics.getErrorCount(nfs_opnum4.OP_GETATTR, nfsstat.NFSERR_NOENT));
+        assertEquals(Map.of("LOOKUP:NFS4ERR_NOENT", 1L), metrics.getErrorCounts());
+    }
+
+    @Test
+    public void testUnknownOperationAsIllegal() {
+        metrics.record(4711, nfsstat.NFSERR_OP_ILLEGAL, 1000);
+        metrics.record(nfs_opnum4.OP_ILLEGAL, nfsstat.NFSERR_OP_ILLEGAL, 1000);
+
+        assertEquals(2, metrics.getCount(nfs_opnum4.OP_ILLEGAL));
+        assertEquals(Map.of("ILLEGAL", 2L), metrics.getCounts());
+    }
+
+    @Test
+    public void testLatency() {
+        metrics.record(nfs_opnum4.OP_GETATTR, nfsstat.NFS_OK, 1000);
+        metrics.record(nfs_opnum4.OP_GETATTR, nfsstat.NFS_OK, 3000);
+
+        assertEquals(3000L, (long) metrics.getMaxLatencies().get("GETATTR"));
+        assertEquals(2000L, (long) metrics.getMeanLatencies().get("GETATTR"));
+        assertEquals(3000L, (long) metrics.getLatencies(100.0).get("GETATTR"));
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        execute(nfs_opnum4.OP_LOOKUP);
+        metrics.reset();
+
+        assertEquals(0, metrics.getCount(nfs_opnum4.OP_LOOKUP));
+        assertTrue(metrics.getErrorCounts().isEmpty());
+    }
+
+    private void execute(int opnum) throws IOException {
+        nfs_argop4 arg = new nfs_argop4();
+        arg.argop = opnum;
+        executor.execute(null, arg);
+    }
+}
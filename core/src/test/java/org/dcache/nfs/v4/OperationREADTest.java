@@ -2,9 +2,16 @@ package org.dcache.nfs.v4;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 import org.dcache.nfs.ChimeraNFSException;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.status.NfsIoException;
 import org.dcache.nfs.v4.xdr.COMPOUND4args;
+import org.dcache.nfs.v4.xdr.nfs_argop4;
 import org.dcache.nfs.v4.xdr.nfs_fh4;
+import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.vfs.AsyncVirtualFileSystem;
 import org.dcache.nfs.vfs.Inode;
 import org.junit.Test;
 import org.junit.Before;
@@ -13,6 +20,7 @@ import org.dcache.nfs.v4.xdr.stateid4;
 import org.dcache.nfs.vfs.Stat;
 import org.dcache.nfs.vfs.VirtualFileSystem;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static org.dcache.nfs.v4.NfsTestUtils.*;
 import static org.dcache.nfs.v4.NfsTestUtils.generateRpcCall;
@@ -94,4 +102,52 @@ public class OperationREADTest {
         execute(context, readArgs);
         verify(stateHandler, never()).updateClientLeaseTime(stateid);
     }
+
+    @Test
+    public void testAsyncRead() throws Exception {
+
+        AsyncVirtualFileSystem asyncVfs = mock(AsyncVirtualFileSystem.class);
+        CompletableFuture<Integer> readFuture = new CompletableFuture<>();
+
+        when(asyncVfs.getattr(any())).thenReturn(fileStat);
+        when(asyncVfs.readAsync(any(), any(), anyLong())).thenReturn(readFuture);
+
+        CompletableFuture<nfs_resop4> result = executeAsyncRead(asyncVfs);
+        assertFalse("operation completed before I/O", result.isDone());
+
+        readFuture.complete(512);
+        assertEquals(nfsstat.NFS_OK, result.get().getStatus());
+        assertTrue(result.get().opread.resok4.eof);
+        verify(asyncVfs, never()).read(any(), any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void testAsyncReadError() throws Exception {
+
+        AsyncVirtualFileSystem asyncVfs = mock(AsyncVirtualFileSystem.class);
+
+        when(asyncVfs.getattr(any())).thenReturn(fileStat);
+        when(asyncVfs.readAsync(any(), any(), anyLong()))
+                .thenReturn(CompletableFuture.failedFuture(new NfsIoException()));
+
+        CompletableFuture<nfs_resop4> result = executeAsyncRead(asyncVfs);
+        assertEquals(nfsstat.NFSERR_IO, result.get().getStatus());
+    }
+
+    private CompletableFuture<nfs_resop4> executeAsyncRead(AsyncVirtualFileSystem asyncVfs) throws IOException {
+
+        nfs_argop4 readArgs = new CompoundBuilder()
+                .withRead(512, 0, mock(stateid4.class))
+                .build().argarray[0];
+
+        CompoundContext context = new CompoundContextBuilder()
+                .withStateHandler(mock(NFSv4StateHandler.class))
+                .withFs(asyncVfs)
+                .withMinorversion(1)
+                .withCall(generateRpcCall())
+                .build();
+        context.currentInode(inode);
+
+        return new MDSOperationExecutor().executeAsync(context, readArgs);
+    }
 }
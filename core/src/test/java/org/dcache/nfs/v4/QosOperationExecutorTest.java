@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import com.google.common.base.Ticker;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import org.dcache.nfs.ExportTable;
+import org.dcache.nfs.FsExport;
+import org.dcache.nfs.nfsstat;
+import org.dcache.nfs.qos.QosManager;
+import org.dcache.nfs.v4.xdr.COMPOUND4args;
+import org.dcache.nfs.v4.xdr.nfs_argop4;
+import org.dcache.nfs.v4.xdr.nfs_resop4;
+import org.dcache.nfs.v4.xdr.stateid4;
+import org.dcache.nfs.vfs.Inode;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.dcache.nfs.v4.NfsTestUtils.generateRpcCall;
+
+public class QosOperationExecutorTest {
+
+    private final Inode inode = Inode.forFile(new byte[]{1, 2, 3, 4});
+
+    private OperationExecutor inner;
+    private QosOperationExecutor executor;
+    private ExportTable exportTable;
+
+    @Before
+    public void setUp() throws Exception {
+        inner = mock(OperationExecutor.class);
+        when(inner.execute(any(), any())).thenAnswer(i -> {
+            nfs_argop4 op = i.getArgument(1);
+            nfs_resop4 result = nfs_resop4.resopFor(op.argop);
+            result.setStatus(nfsstat.NFS_OK);
+            return result;
+        });
+
+        // no burst and the time is frozen, thus buckets are not refilled
+        executor = new QosOperationExecutor(inner, new QosManager("qos-executor-test", Duration.ZERO,
+                mock(Ticker.class)));
+
+        FsExport export = new FsExport.FsExportBuilder().withIops(1).withBandwidth(1024).build("/data");
+        exportTable = mock(ExportTable.class);
+        when(exportTable.getExport(anyInt(), any(InetAddress.class))).thenReturn(export);
+    }
+
+    @Test
+    public void testCompoundAdmittedOnce() throws Exception {
+
+        COMPOUND4args args = new CompoundBuilder()
+                .withWrite(0, ByteBuffer.allocate(1024), mock(stateid4.class))
+                .withWrite(1024, ByteBuffer.allocate(1024), mock(stateid4.class))
+                .build();
+
+        CompoundContext context = newContext();
+        for (nfs_argop4 op : args.argarray) {
+            assertEquals("operation of admitted compound delayed",
+                    nfsstat.NFS_OK, executor.execute(context, op).getStatus());
+        }
+
+        // the next compound is delayed by iops and transferred data
+        assertEquals(nfsstat.NFSERR_DELAY, executor.execute(newContext(), args.argarray[0]).getStatus());
+    }
+
+    @Test
+    public void testCloseNotDelayed() throws Exception {
+
+        COMPOUND4args args = new CompoundBuilder()
+                .withWrite(0, ByteBuffer.allocate(1024), mock(stateid4.class))
+                .withClose(mock(stateid4.class), 1)
+                .build();
+
+        executor.execute(newContext(), args.argarray[0]);
+
+        CompoundContext context = newContext();
+        assertEquals(nfsstat.NFS_OK, executor.execute(context, args.argarray[1]).getStatus());
+        assertEquals("operation after CLOSE delayed",
+                nfsstat.NFS_OK, executor.execute(context, args.argarray[0]).getStatus());
+    }
+
+    private CompoundContext newContext() throws Exception {
+        CompoundContext context = new CompoundContextBuilder()
+                .withExportTable(exportTable)
+                .withCall(generateRpcCall())
+                .build();
+        context.currentInode(inode);
+        return context;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4.nlm;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * Runs {@link SimpleLmTest} against {@link IntervalTreeLm}.
+ */
+public class IntervalTreeLmTest extends SimpleLmTest {
+
+    @Override
+    protected LockManager createLockManager() {
+        return new IntervalTreeLm();
+    }
+
+    @Test
+    public void testManyRangesPerFile() throws LockException {
+        LockManager lm = createLockManager();
+        byte[] file = "file".getBytes(StandardCharsets.UTF_8);
+
+        // every other byte by two owners
+        for (int i = 0; i < 10000; i++) {
+            NlmLock lock = new LockBuilder()
+                    .withOwner(i % 2 == 0 ? "owner1" : "owner2")
+                    .from(2 * i)
+                    .length(1)
+                    .forWrite()
+                    .build();
+            lm.lock(file, lock);
+        }
+
+        // split the locks of the first owner
+        for (int i = 0; i < 10000; i += 2) {
+            NlmLock lock = new LockBuilder()
+                    .withOwner("owner1")
+                    .from(2 * i)
+                    .length(1)
+                    .forWrite()
+                    .build();
+            lm.unlock(file, lock);
+        }
+
+        NlmLock lock = new LockBuilder()
+                .withOwner("owner3")
+                .from(0)
+                .length(1)
+                .forWrite()
+                .build();
+        lm.lock(file, lock);
+    }
+
+    @Test(expected = LockDeniedException.class)
+    public void testConflictWithManyRangesPerFile() throws LockException {
+        LockManager lm = createLockManager();
+        byte[] file = "file".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 10000; i++) {
+            NlmLock lock = new LockBuilder()
+                    .withOwner("owner" + i)
+                    .from(2 * i)
+                    .length(1)
+                    .forWrite()
+                    .build();
+            lm.lock(file, lock);
+        }
+
+        NlmLock lock = new LockBuilder()
+                .withOwner("owner1")
+                .from(9999)
+                .length(2)
+                .forWrite()
+                .build();
+        lm.lock(file, lock);
+    }
+}
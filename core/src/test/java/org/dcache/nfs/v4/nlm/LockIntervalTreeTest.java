@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4.nlm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.dcache.nfs.v4.StateOwner;
+import org.dcache.nfs.v4.xdr.clientid4;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.v4.xdr.nfs_lock_type4;
+import org.dcache.nfs.v4.xdr.state_owner4;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LockIntervalTreeTest {
+
+    private StateOwner lo1;
+    private LockIntervalTree tree;
+
+    @Before
+    public void setUp() {
+        state_owner4 so1 = new state_owner4();
+        so1.owner = "lock_owner1".getBytes(StandardCharsets.UTF_8);
+        so1.clientid = new clientid4(1L);
+
+        lo1 = new StateOwner(so1, 1);
+        tree = new LockIntervalTree();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.getOverlapping(new NlmLock(lo1, nfs_lock_type4.READ_LT, 0, 1)).isEmpty());
+    }
+
+    @Test
+    public void testAddRemove() {
+        NlmLock lock = new NlmLock(lo1, nfs_lock_type4.READ_LT, 0, 1);
+        tree.add(lock);
+        assertFalse(tree.isEmpty());
+        assertTrue(tree.remove(lock));
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.remove(lock));
+    }
+
+    @Test
+    public void testToTheEnd() {
+        NlmLock lock = new NlmLock(lo1, nfs_lock_type4.READ_LT, 100, nfs4_prot.NFS4_UINT64_MAX);
+        tree.add(lock);
+
+        assertEquals(List.of(lock), tree.getOverlapping(new NlmLock(lo1, nfs_lock_type4.READ_LT, Long.MAX_VALUE - 1, 1)));
+        assertEquals(List.of(lock), tree.getOverlapping(new NlmLock(lo1, nfs_lock_type4.READ_LT, 0, nfs4_prot.NFS4_UINT64_MAX)));
+        assertTrue(tree.getOverlapping(new NlmLock(lo1, nfs_lock_type4.READ_LT, 0, 100)).isEmpty());
+    }
+
+    @Test
+    public void testSameAsLinearScan() {
+
+        Random random = new Random(4711);
+        List<NlmLock> locks = new ArrayList<>();
+
+        for (int i = 0; i < 20000; i++) {
+            if (!locks.isEmpty() && random.nextInt(3) == 0) {
+                NlmLock lock = locks.remove(random.nextInt(locks.size()));
+                assertTrue(tree.remove(lock));
+            } else {
+                NlmLock lock = randomLock(random);
+                locks.add(lock);
+                tree.add(lock);
+            }
+
+            assertEquals(locks.size(), tree.size());
+            if (i % 10 == 0) {
+                NlmLock query = randomLock(random);
+                assertEquals(
+                        locks.stream().filter(l -> l.isOverlappingRange(query)).collect(Collectors.toSet()),
+                        new HashSet<>(tree.getOverlapping(query)));
+            }
+        }
+    }
+
+    private NlmLock randomLock(Random random) {
+        long length = random.nextInt(20) == 0 ? nfs4_prot.NFS4_UINT64_MAX : random.nextInt(64);
+        return new NlmLock(lo1, nfs_lock_type4.READ_LT, random.nextInt(4096), length);
+    }
+}
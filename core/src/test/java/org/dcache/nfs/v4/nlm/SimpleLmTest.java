@@ -20,11 +20,15 @@ public class SimpleLmTest {
 
     @Before
     public void setUp() throws Exception {
-        nlm = new SimpleLm();
+        nlm = createLockManager();
         file1 = "file1".getBytes(StandardCharsets.UTF_8);
         file2 = "file2".getBytes(StandardCharsets.UTF_8);
     }
 
+    protected LockManager createLockManager() {
+        return new SimpleLm();
+    }
+
     @Test
     public void testAllowFreshLock() throws LockException {
         NlmLock lock = new LockBuilder()
@@ -1,8 +1,15 @@
 package org.dcache.nfs.vfs;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Streams;
 import com.google.common.primitives.Ints;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.dcache.nfs.v4.xdr.verifier4;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -50,6 +57,62 @@ public class DirectoryStreamTest {
         assertArrayEquals(stream.getVerifier(), tail.getVerifier());
     }
 
+    @Test
+    public void testTailBetweenCookies() {
+        List<DirectoryEntry> sparse = new ArrayList<>();
+        for (DirectoryEntry e : stream) {
+            sparse.add(new DirectoryEntry(e.getName(), e.getInode(), e.getStat(), e.getCookie() * 10));
+        }
+        Collections.reverse(sparse);
+
+        DirectoryStream tail = new DirectoryStream(stream.getVerifier(), sparse).tail(35);
+        assertEquals(40, tail.iterator().next().getCookie());
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        DirectoryStream snapshot = stream.snapshot();
+        assertSame(snapshot, snapshot.snapshot());
+        assertEquals(4, snapshot.tail(3).iterator().next().getCookie());
+        assertArrayEquals(stream.getVerifier(), snapshot.getVerifier());
+    }
+
+    @Test
+    public void testLazyTail() {
+        List<Long> listedFrom = new ArrayList<>();
+        DirectoryStream lazy = new DirectoryStream(stream.getVerifier(), c -> {
+            listedFrom.add(c);
+            return Streams.stream(stream.tail(c));
+        });
+
+        DirectoryStream tail = lazy.tail(3);
+        assertTrue(listedFrom.isEmpty());
+        assertEquals(4, tail.iterator().next().getCookie());
+        assertEquals(List.of(3L), listedFrom);
+    }
+
+    @Test
+    public void testLazyTransformAndTailClose() {
+        AtomicBoolean closed = new AtomicBoolean();
+        DirectoryStream lazy = new DirectoryStream(stream.getVerifier(),
+                c -> Streams.stream(stream.tail(c)).onClose(() -> closed.set(true)));
+
+        DirectoryStream transformed = lazy.transform(d -> new DirectoryEntry(d.getName().toUpperCase(), d.getInode(), d.getStat(), d.getCookie()));
+        DirectoryEntry next = transformed.tail(3).iterator().next();
+        assertEquals("FILE-4", next.getName());
+
+        lazy.close();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testLazySnapshot() throws IOException {
+        DirectoryStream lazy = new DirectoryStream(stream.getVerifier(), c -> Streams.stream(stream.tail(c)));
+        DirectoryStream snapshot = lazy.tail(3).snapshot();
+        assertEquals(6, Iterables.size(snapshot));
+        assertEquals(4, snapshot.iterator().next().getCookie());
+    }
+
     @Test
     public void testTransform() {
         DirectoryStream transformed = stream.transform(d -> new DirectoryEntry(d.getName().toUpperCase(), d.getInode(), d.getStat(), d.getCookie()));
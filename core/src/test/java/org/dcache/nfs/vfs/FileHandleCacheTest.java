@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.vfs;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FileHandleCacheTest {
+
+    private FileHandleCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new FileHandleCache(16);
+    }
+
+    @Test
+    public void testCapacityRoundedUp() {
+        assertEquals(16, cache.capacity());
+        assertEquals(32, new FileHandleCache(17).capacity());
+        assertEquals(1, new FileHandleCache(1).capacity());
+    }
+
+    @Test
+    public void testHitReturnsSameInode() {
+        byte[] handle = handle(1, "file1");
+        Inode inode = cache.get(handle);
+        assertSame(inode, cache.get(handle.clone()));
+    }
+
+    @Test
+    public void testDecodedAsInode() {
+        byte[] handle = handle(7, "file1");
+        Inode inode = cache.get(handle);
+        assertEquals(new Inode(handle), inode);
+        assertEquals(7, inode.exportIndex());
+        assertArrayEquals(handle, inode.toNfsHandle());
+    }
+
+    @Test
+    public void testDifferentHandles() {
+        for (int i = 0; i < 100; i++) {
+            byte[] handle = handle(i, "file" + i);
+            assertEquals(new Inode(handle), cache.get(handle));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        byte[] handle = handle(1, "file1");
+        Inode inode = cache.get(handle);
+        cache.clear();
+        assertNotSame(inode, cache.get(handle));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadHandle() {
+        cache.get(new byte[]{1, 2, 3});
+    }
+
+    private static byte[] handle(int exportIndex, String id) {
+        return new FileHandle.FileHandleBuilder()
+                .setExportIdx(exportIndex)
+                .build(id.getBytes(StandardCharsets.UTF_8))
+                .bytes();
+    }
+}
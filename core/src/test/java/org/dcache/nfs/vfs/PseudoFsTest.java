@@ -20,13 +20,20 @@
 package org.dcache.nfs.vfs;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import javax.security.auth.Subject;
 
+import com.google.common.base.Ticker;
 import com.google.common.primitives.Longs;
 import org.dcache.nfs.ExportFile;
+import org.dcache.nfs.ExportTable;
 import org.dcache.nfs.FsExport;
 import org.dcache.nfs.status.AccessException;
 import org.dcache.nfs.status.NoEntException;
@@ -47,6 +54,7 @@ import static org.hamcrest.collection.IsEmptyIterable.emptyIterable;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.dcache.nfs.util.UnixSubjects.*;
+import static org.dcache.nfs.v4.xdr.nfs4_prot.*;
 
 import org.junit.Before;
 
@@ -745,4 +753,184 @@ public class PseudoFsTest {
         pseudoFs = new PseudoFs(vfs, mockedRpc, mockedExportFile);
         pseudoFs.getattr(fsRoot);
     }
+
+    @Test
+    public void testExportTreeCached() throws IOException {
+
+        given(mockedTransport.getRemoteSocketAddress()).willReturn(localAddress);
+        given(mockedAuth.getSubject()).willReturn(ROOT);
+        given(mockedRpc.getTransport()).willReturn(mockedTransport);
+        given(mockedRpc.getCredential()).willReturn(mockedAuth);
+
+        Inode dir = vfs.mkdir(fsRoot, "foo", ROOT, 0755);
+        vfs.mkdir(dir, "bar", ROOT, 0755);
+        FsExport export = new FsExport.FsExportBuilder()
+                .rw()
+                .trusted()
+                .withoutAcl()
+                .withAllRoot()
+                .withSec(FsExport.Sec.NONE)
+                .build("/foo/bar");
+
+        given(mockedExportFile.getExport(fsRoot.exportIndex(), localAddress.getAddress())).willReturn(export);
+        given(mockedExportFile.exports(localAddress.getAddress())).willAnswer(x -> Stream.of(export));
+        given(mockedExportFile.generation()).willReturn(1L);
+
+        VirtualFileSystem spiedVfs = spy(vfs);
+        PseudoFsTreeCache cache = new PseudoFsTreeCache();
+
+        for (int i = 0; i < 3; i++) {
+            pseudoFs = new PseudoFs(spiedVfs, mockedRpc, mockedExportFile, cache);
+            Inode pseudoRoot = pseudoFs.getRootInode();
+            Inode foo = pseudoFs.lookup(pseudoRoot, "foo");
+            pseudoFs.lookup(foo, "bar");
+        }
+
+        assertEquals("Unexpected number of cached trees", 1, cache.size());
+        verify(spiedVfs, times(1)).lookup(any(), eq("foo"));
+        verify(spiedVfs, times(1)).lookup(any(), eq("bar"));
+    }
+
+    @Test
+    public void testExportTreeRebuiltOnNewGeneration() throws IOException {
+
+        given(mockedTransport.getRemoteSocketAddress()).willReturn(localAddress);
+        given(mockedAuth.getSubject()).willReturn(ROOT);
+        given(mockedRpc.getTransport()).willReturn(mockedTransport);
+        given(mockedRpc.getCredential()).willReturn(mockedAuth);
+
+        vfs.mkdir(fsRoot, "foo", ROOT, 0755);
+        vfs.mkdir(fsRoot, "bar", ROOT, 0755);
+        FsExport fooExport = new FsExport.FsExportBuilder()
+                .withSec(FsExport.Sec.NONE)
+                .build("/foo");
+        FsExport barExport = new FsExport.FsExportBuilder()
+                .withSec(FsExport.Sec.NONE)
+                .build("/bar");
+
+        given(mockedExportFile.exports(localAddress.getAddress())).willAnswer(x -> Stream.of(fooExport));
+        given(mockedExportFile.generation()).willReturn(1L);
+
+        PseudoFsTreeCache cache = new PseudoFsTreeCache();
+        pseudoFs = new PseudoFs(vfs, mockedRpc, mockedExportFile, cache);
+        pseudoFs.lookup(pseudoFs.getRootInode(), "foo");
+
+        given(mockedExportFile.exports(localAddress.getAddress())).willAnswer(x -> Stream.of(barExport));
+        given(mockedExportFile.generation()).willReturn(2L);
+
+        pseudoFs = new PseudoFs(vfs, mockedRpc, mockedExportFile, cache);
+        pseudoFs.lookup(pseudoFs.getRootInode(), "bar");
+        try {
+            pseudoFs.lookup(pseudoFs.getRootInode(), "foo");
+            fail("Lookup of no longer exported path must fail");
+        } catch (NoEntException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExportTreeNotCachedWithoutGeneration() throws IOException {
+
+        given(mockedTransport.getRemoteSocketAddress()).willReturn(localAddress);
+        given(mockedAuth.getSubject()).willReturn(ROOT);
+        given(mockedRpc.getTransport()).willReturn(mockedTransport);
+        given(mockedRpc.getCredential()).willReturn(mockedAuth);
+
+        vfs.mkdir(fsRoot, "foo", ROOT, 0755);
+        FsExport export = new FsExport.FsExportBuilder()
+                .withSec(FsExport.Sec.NONE)
+                .build("/foo");
+
+        given(mockedExportFile.exports(localAddress.getAddress())).willAnswer(x -> Stream.of(export));
+        given(mockedExportFile.generation()).willReturn(ExportTable.NO_GENERATION);
+
+        PseudoFsTreeCache cache = new PseudoFsTreeCache();
+        pseudoFs = new PseudoFs(vfs, mockedRpc, mockedExportFile, cache);
+        pseudoFs.lookup(pseudoFs.getRootInode(), "foo");
+
+        assertEquals("Unversioned export table must not be cached", 0, cache.size());
+    }
+
+    @Test
+    public void testIdleExportTreeDiscarded() throws IOException {
+
+        AtomicLong now = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return now.get();
+            }
+        };
+
+        PseudoFsTreeCache cache = new PseudoFsTreeCache(16, Duration.ofMinutes(1), ticker);
+        cache.get(InetAddress.getLoopbackAddress(), 1L);
+        cache.put(InetAddress.getLoopbackAddress(), new PseudoFsTreeCache.ExportTree(1L, Map.of(), true));
+        assertEquals(1, cache.size());
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertNull("Idle tree must be discarded", cache.get(InetAddress.getLoopbackAddress(), 1L));
+    }
+
+    @Test
+    public void testOutdatedGenerationKeepsExportTrees() throws IOException {
+
+        InetAddress client = InetAddress.getLoopbackAddress();
+        PseudoFsTreeCache cache = new PseudoFsTreeCache();
+        cache.get(client, 2L);
+        PseudoFsTreeCache.ExportTree tree = new PseudoFsTreeCache.ExportTree(2L, Map.of(), true);
+        cache.put(client, tree);
+
+        assertNull(cache.get(client, 1L));
+        cache.put(client, new PseudoFsTreeCache.ExportTree(1L, Map.of(), true));
+
+        assertSame("Tree of current generation discarded", tree, cache.get(client, 2L));
+    }
+
+    @Test
+    public void testNumberOfExportTreesBounded() throws IOException {
+
+        PseudoFsTreeCache cache = new PseudoFsTreeCache(2, Duration.ofMinutes(1), Ticker.systemTicker());
+        cache.get(InetAddress.getLoopbackAddress(), 1L);
+        for (int i = 0; i < 8; i++) {
+            InetAddress client = InetAddress.getByAddress(new byte[]{10, 0, 0, (byte) i});
+            cache.put(client, new PseudoFsTreeCache.ExportTree(1L, Map.of(), true));
+        }
+        assertTrue("Too many cached trees", cache.size() <= 2);
+    }
+
+    @Test
+    public void testAccessEvaluatesAclOnce() throws IOException {
+
+        given(mockedTransport.getRemoteSocketAddress()).willReturn(localAddress);
+        given(mockedAuth.getSubject()).willReturn(toSubject(1, 1));
+        given(mockedAuth.type()).willReturn(RpcAuthType.UNIX);
+        given(mockedRpc.getTransport()).willReturn(mockedTransport);
+        given(mockedRpc.getCredential()).willReturn(mockedAuth);
+
+        AclCheckable aclCheckable = mock(AclCheckable.class);
+        given(aclCheckable.checkAclVector(any(), any(), anyInt()))
+                .willAnswer(i -> new AclCheckable.AccessVector(i.getArgument(2), 0));
+
+        vfs = spy(vfs);
+        given(vfs.getAclCheckable()).willReturn(aclCheckable);
+
+        FsExport export = new FsExport.FsExportBuilder()
+                .rw()
+                .withAcl()
+                .withSec(FsExport.Sec.SYS)
+                .build("/");
+
+        given(mockedExportFile.getExport(fsRoot.exportIndex(), localAddress.getAddress())).willReturn(export);
+        given(mockedExportFile.exports(localAddress.getAddress())).willReturn(Stream.of(export));
+
+        pseudoFs = new PseudoFs(vfs, mockedRpc, mockedExportFile);
+        int allBits = ACCESS4_READ | ACCESS4_LOOKUP | ACCESS4_MODIFY | ACCESS4_EXTEND | ACCESS4_DELETE
+                | ACCESS4_EXECUTE | ACCESS4_XAREAD | ACCESS4_XAWRITE | ACCESS4_XALIST;
+        int access = pseudoFs.access(toSubject(1, 1), fsRoot, allBits);
+
+        assertEquals(allBits, access);
+        verify(aclCheckable, times(1)).checkAclVector(any(), any(), anyInt());
+        verify(aclCheckable, never()).checkAcl(any(), any(), anyInt());
+        verify(mockedExportFile, times(1)).getExport(fsRoot.exportIndex(), localAddress.getAddress());
+    }
 }
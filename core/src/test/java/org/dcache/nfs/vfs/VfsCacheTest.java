@@ -1,13 +1,21 @@
 package org.dcache.nfs.vfs;
 
+import org.dcache.nfs.status.NoEntException;
+import org.dcache.nfs.status.NfsIoException;
 import org.dcache.nfs.v4.xdr.nfs4_prot;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.security.auth.Subject;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
 public class VfsCacheTest {
@@ -27,6 +35,7 @@ public class VfsCacheTest {
         VfsCacheConfig cacheConfig = new VfsCacheConfig();
         cacheConfig.setMaxEntries(5);
         cacheConfig.setReaddirMaxEntries(5);
+        cacheConfig.setNegativeMaxEntries(5);
         cacheConfig.setLifeTime(1);
         cacheConfig.setReaddirLifeTime(1);
         cacheConfig.setFsStatLifeTime(1);
@@ -140,6 +149,10 @@ public class VfsCacheTest {
     public void shouldInvalidateCacheOnRemove() throws IOException {
 
         createFile(root, "foo");
+        // a lookup miss fetches the change attribute of the directory
+        vfsCache.lookup(root, "foo");
+        clearInvocations(vfs);
+
         vfsCache.getattr(root);
         vfsCache.remove(root, "foo");
         vfsCache.getattr(root);
@@ -234,6 +247,16 @@ public class VfsCacheTest {
         verify(vfs, times(1)).list(root, DirectoryStream.ZERO_VERIFIER, 0L);
     }
 
+    @Test(expected = NfsIoException.class)
+    public void shouldThrowListingErrorsAsIOException() throws IOException {
+
+        doReturn(new DirectoryStream(DirectoryStream.ZERO_VERIFIER, c -> {
+            throw new UncheckedIOException(new NfsIoException("listing failed"));
+        })).when(vfs).list(root, DirectoryStream.ZERO_VERIFIER, 0L);
+
+        vfsCache.list(root, DirectoryStream.ZERO_VERIFIER, 0L);
+    }
+
     @Test
     public void shouldReadThroughReaddirCacheOnUnknownVerifier() throws IOException {
 
@@ -243,6 +266,225 @@ public class VfsCacheTest {
         verify(vfs, times(2)).list(root, DirectoryStream.ZERO_VERIFIER, 0L);
     }
 
+    @Test
+    public void shouldUseNegativeLookupCache() throws IOException {
+
+        lookupMissing(root, "foo");
+        lookupMissing(root, "foo");
+
+        verify(vfs, times(1)).lookup(root, "foo");
+    }
+
+    @Test
+    public void shouldInvalidateNegativeLookupCacheOnCreate() throws IOException {
+
+        lookupMissing(root, "foo");
+        Inode inode = vfsCache.create(root, Stat.Type.REGULAR, "foo", subject, 0640);
+
+        assertEquals(inode, vfsCache.lookup(root, "foo"));
+    }
+
+    @Test
+    public void shouldInvalidateNegativeLookupCacheOnMkdir() throws IOException {
+
+        lookupMissing(root, "foo");
+        Inode inode = vfsCache.mkdir(root, "foo", subject, 0750);
+
+        assertEquals(inode, vfsCache.lookup(root, "foo"));
+    }
+
+    @Test
+    public void shouldInvalidateNegativeLookupCacheOnMove() throws IOException {
+
+        Inode src = createDir(root, "dirOne");
+        Inode dst = createDir(root, "dirTwo");
+        Inode file = createFile(src, "foo");
+
+        lookupMissing(dst, "bar");
+        vfsCache.move(src, "foo", dst, "bar");
+
+        assertEquals(file, vfsCache.lookup(dst, "bar"));
+    }
+
+    @Test
+    public void shouldInvalidateNegativeLookupCacheOnRequest() throws IOException {
+
+        // change attribute of the directory is not updated
+        doReturn(vfs.getattr(root)).when(vfs).getattr(root);
+        lookupMissing(root, "foo");
+
+        // created by other client
+        Inode inode = createFile(root, "foo");
+        lookupMissing(root, "foo");
+        vfsCache.invalidateNegativeLookupCache(root, "foo");
+
+        assertEquals(inode, vfsCache.lookup(root, "foo"));
+        verify(vfs, times(2)).lookup(root, "foo");
+    }
+
+    @Test
+    public void shouldInvalidateNegativeLookupCacheOnDirectoryChange() throws IOException {
+
+        Stat stat = vfs.getattr(root);
+        doReturn(stat).when(vfs).getattr(root);
+        lookupMissing(root, "foo");
+
+        // created by other client
+        Inode inode = createFile(root, "foo");
+        Stat changed = vfs.getattr(root);
+        changed.setGeneration(stat.getGeneration() + 1);
+        doReturn(changed).when(vfs).getattr(root);
+
+        assertEquals(inode, vfsCache.lookup(root, "foo"));
+        verify(vfs, times(2)).lookup(root, "foo");
+    }
+
+    @Test
+    public void shouldNotCacheNegativeLookupRacingWithCreate() throws IOException {
+
+        Stat stat = vfs.getattr(root);
+        doReturn(stat).when(vfs).getattr(root);
+
+        // name is created through the cache, while lookup is in progress
+        Inode[] created = new Inode[1];
+        doAnswer(i -> {
+            created[0] = vfsCache.create(root, Stat.Type.REGULAR, "foo", subject, 0640);
+            throw new NoEntException();
+        }).doCallRealMethod().when(vfs).lookup(root, "foo");
+
+        lookupMissing(root, "foo");
+        assertEquals(created[0], vfsCache.lookup(root, "foo"));
+    }
+
+    @Test
+    public void shouldUpdateStatCacheOnWrite() throws IOException {
+
+        VfsCache writeThroughCache = new VfsCache(vfs, writeThroughConfig());
+        Inode file = createFile(root, "foo");
+
+        writeThroughCache.getattr(file);
+        writeThroughCache.write(file, ByteBuffer.allocate(17), 0, VirtualFileSystem.StabilityLevel.UNSTABLE);
+        // attributes are fetched on next access, not by write
+        verify(vfs, times(1)).getattr(file);
+
+        Stat stat = writeThroughCache.getattr(file);
+
+        assertEquals(17, stat.getSize());
+        verify(vfs, times(2)).getattr(file);
+    }
+
+    @Test
+    public void shouldUpdateStatCacheOnSetattr() throws IOException {
+
+        VfsCache writeThroughCache = new VfsCache(vfs, writeThroughConfig());
+        Inode file = createFile(root, "foo");
+
+        Stat s = new Stat();
+        s.setMode(0600);
+
+        writeThroughCache.getattr(file);
+        writeThroughCache.setattr(file, s);
+        verify(vfs, times(1)).getattr(file);
+
+        Stat stat = writeThroughCache.getattr(file);
+
+        assertEquals(0600, stat.getMode() & 0777);
+        verify(vfs, times(2)).getattr(file);
+    }
+
+    @Test
+    public void shouldDiscardStatLoadedDuringInvalidation() throws IOException {
+
+        VfsCache writeThroughCache = new VfsCache(vfs, writeThroughConfig());
+        Inode file = createFile(root, "foo");
+
+        // file is modified while attributes are fetched
+        doAnswer(i -> {
+            Stat stat = (Stat) i.callRealMethod();
+            writeThroughCache.invalidateStatCache(file);
+            return stat;
+        }).doCallRealMethod().when(vfs).getattr(file);
+
+        writeThroughCache.getattr(file);
+        writeThroughCache.getattr(file);
+
+        verify(vfs, times(2)).getattr(file);
+    }
+
+    @Test
+    public void shouldInvalidateStatCacheOnChangeNotification() throws IOException {
+
+        VirtualFileSystem notifyingVfs = mock(VirtualFileSystem.class, withSettings().extraInterfaces(ChangeNotifier.class));
+        when(notifyingVfs.getattr(root)).thenReturn(new Stat());
+
+        VfsCache writeThroughCache = new VfsCache(notifyingVfs, writeThroughConfig());
+
+        ArgumentCaptor<ChangeNotifier.Listener> listener = ArgumentCaptor.forClass(ChangeNotifier.Listener.class);
+        verify((ChangeNotifier) notifyingVfs).addChangeListener(listener.capture());
+
+        writeThroughCache.getattr(root);
+        listener.getValue().changed(root);
+        writeThroughCache.getattr(root);
+
+        verify(notifyingVfs, times(2)).getattr(root);
+    }
+
+    @Test
+    public void shouldInvalidateDirectoryOnChangeNotification() throws IOException {
+
+        VirtualFileSystem notifyingVfs = mock(DummyVFS.class, withSettings()
+                .spiedInstance(new DummyVFS())
+                .defaultAnswer(CALLS_REAL_METHODS)
+                .extraInterfaces(ChangeNotifier.class));
+
+        VfsCacheConfig cacheConfig = writeThroughConfig();
+        cacheConfig.setReaddirMaxEntries(5);
+        cacheConfig.setReaddirLifeTime(1);
+        cacheConfig.setNegativeMaxEntries(5);
+        VfsCache cache = new VfsCache(notifyingVfs, cacheConfig);
+
+        ArgumentCaptor<ChangeNotifier.Listener> listener = ArgumentCaptor.forClass(ChangeNotifier.Listener.class);
+        verify((ChangeNotifier) notifyingVfs).addChangeListener(listener.capture());
+
+        Inode file = notifyingVfs.create(root, Stat.Type.REGULAR, "foo", subject, 0640);
+        cache.lookup(root, "foo");
+        cache.list(root, DirectoryStream.ZERO_VERIFIER, 0L).close();
+
+        // renamed by other means
+        notifyingVfs.move(root, "foo", root, "bar");
+        listener.getValue().changed(root);
+
+        assertEquals(file, cache.lookup(root, "bar"));
+        cache.list(root, DirectoryStream.ZERO_VERIFIER, 0L).close();
+
+        verify(notifyingVfs, times(2)).list(root, DirectoryStream.ZERO_VERIFIER, 0L);
+        try {
+            cache.lookup(root, "foo");
+            throw new AssertionError("lookup of renamed entry must fail");
+        } catch (NoEntException e) {
+            // expected
+        }
+    }
+
+    private static VfsCacheConfig writeThroughConfig() {
+        VfsCacheConfig cacheConfig = new VfsCacheConfig();
+        cacheConfig.setMaxEntries(5);
+        cacheConfig.setLifeTime(1);
+        cacheConfig.setStatMaxBytes(64 * 1024);
+        cacheConfig.setStatLifeTime(1);
+        cacheConfig.setStatLifeTimeUnit(TimeUnit.HOURS);
+        return cacheConfig;
+    }
+
+    private void lookupMissing(Inode parent, String name) throws IOException {
+        try {
+            vfsCache.lookup(parent, name);
+            throw new AssertionError("lookup of missing entry must fail");
+        } catch (NoEntException e) {
+            // expected
+        }
+    }
+
     private Inode createFile(Inode parent, String name) throws IOException {
         return vfs.create(parent, Stat.Type.REGULAR, name, subject, 0640);
     }
@@ -2,15 +2,20 @@ package org.dcache.testutils;
 
 import org.dcache.nfs.v3.xdr.READDIR3args;
 import org.dcache.nfs.v3.xdr.READDIRPLUS3args;
+import org.dcache.nfs.v3.xdr.WRITE3args;
 import org.dcache.nfs.v3.xdr.cookie3;
 import org.dcache.nfs.v3.xdr.cookieverf3;
 import org.dcache.nfs.v3.xdr.count3;
 import org.dcache.nfs.v3.xdr.nfs3_prot;
 import org.dcache.nfs.v3.xdr.nfs_fh3;
+import org.dcache.nfs.v3.xdr.offset3;
+import org.dcache.nfs.v3.xdr.stable_how;
 import org.dcache.nfs.v3.xdr.uint32;
 import org.dcache.nfs.v3.xdr.uint64;
 import org.dcache.nfs.vfs.FileHandle;
 
+import java.nio.ByteBuffer;
+
 public class NfsV3Ops {
     public static READDIR3args readDir(FileHandle requestedDirHandle) {
         return readDir(requestedDirHandle, 0, new byte[nfs3_prot.NFS3_COOKIEVERFSIZE], Integer.MAX_VALUE);
@@ -56,4 +61,15 @@ public class NfsV3Ops {
         args.dircount = new count3(new uint32(maxDirectoryListingBytes));
         return args;
     }
+
+    public static WRITE3args write(FileHandle fileHandle, long offset, int count, ByteBuffer data) {
+        WRITE3args args = new WRITE3args();
+        args.file = new nfs_fh3();
+        args.file.data = fileHandle.bytes();
+        args.offset = new offset3(new uint64(offset));
+        args.count = new count3(new uint32(count));
+        args.stable = stable_how.UNSTABLE;
+        args.data = data;
+        return args;
+    }
 }
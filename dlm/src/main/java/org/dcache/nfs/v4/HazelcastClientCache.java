@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.dcache.nfs.util.Cache;
+import org.dcache.nfs.util.CacheElement;
+import org.dcache.nfs.util.NopCacheEventListener;
+import org.dcache.nfs.v4.xdr.clientid4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ClientCache} for several NFS servers, for instance, behind a load balancer,
+ * which share client records in Hazelcast's distributed {@link IMap}.
+ * <p>
+ * The {@link NFS4Client} objects hold sessions, state and the callback channel of
+ * the server, which has created them. Thus, they are kept in a local near-cache and
+ * lookups by client id, like on every SEQUENCE, never leave the owning server. The
+ * distributed map records the client id currently assigned to each client owner.
+ * As {@link NFSv4StateHandler} embeds its instance id into client ids, each server
+ * knows which one owns a client. When a client shows up on another server, e.g. after
+ * failover, the previous owner disposes the stale client and releases its state
+ * without waiting for the lease to expire.
+ * <p>
+ * The shared records are refreshed on {@link #cleanUp()} and expire, if the owning
+ * server disappears. The instance ids must be unique within the cluster.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   HazelcastInstance hz = ...;
+ *   int instanceId = ...;
+ *   ClientRecoveryStore clientStore = new HazelcastClientRecoveryStore(hz, "nfs-client-records", instanceId);
+ *   ClientCache clients = new HazelcastClientCache(hz, "nfs-clients", leaseTime, clientStore);
+ *   NFSv4StateHandler stateHandler = new NFSv4StateHandler(leaseTime, instanceId, clientStore, clients);
+ * </pre>
+ *
+ * @since 0.27
+ */
+public class HazelcastClientCache implements ClientCache, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HazelcastClientCache.class);
+
+    /**
+     * Clients owned by this server.
+     */
+    private final Cache<clientid4, NFS4Client> localClients;
+
+    /**
+     * Client id of each client owner in the cluster.
+     */
+    private final IMap<String, Long> owners;
+
+    /**
+     * Time to live of shared records.
+     */
+    private final long recordTtl;
+
+    /**
+     * Minimal time between refreshes of shared records. As {@link NFSv4StateHandler}
+     * calls {@link #cleanUp()} more often, not each call refreshes the records.
+     */
+    private final long refreshPeriod;
+
+    /**
+     * The point in time, when shared records have to be refreshed next time.
+     */
+    private volatile long nextRefresh;
+
+    private final UUID listenerId;
+
+    /**
+     * Create a new {@code HazelcastClientCache} with a given {@code name}.
+     * The other instances with the same name will share the same client records.
+     *
+     * @param hz reference to Haselcast instance.
+     * @param name name of the distributed map with client records.
+     * @param leaseTime time duration of a lease.
+     * @param clientStore the recovery store, from which expired clients are removed.
+     */
+    public HazelcastClientCache(HazelcastInstance hz, String name, Duration leaseTime,
+            ClientRecoveryStore clientStore) {
+        localClients = new Cache<>("NFSv41 clients", 5000, Duration.ofSeconds(Long.MAX_VALUE),
+                leaseTime.multipliedBy(2),
+                new ExpiredClientCollector(clientStore));
+        owners = hz.getMap(name);
+        recordTtl = leaseTime.multipliedBy(8).toMillis();
+        refreshPeriod = leaseTime.multipliedBy(2).toMillis();
+        nextRefresh = System.currentTimeMillis() + refreshPeriod;
+        listenerId = owners.addEntryListener(new ClientMovedListener(), true);
+    }
+
+    @Override
+    public void put(clientid4 clientid, NFS4Client client) {
+        localClients.put(clientid, client);
+        owners.set(toKey(client.getOwnerId()), clientid.value, recordTtl, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public NFS4Client get(clientid4 clientid) {
+        return localClients.get(clientid);
+    }
+
+    @Override
+    public NFS4Client remove(clientid4 clientid) {
+        NFS4Client client = localClients.remove(clientid);
+        if (client != null) {
+            removeRecord(client);
+        }
+        return client;
+    }
+
+    /**
+     * Check and remove expired entries and refresh shared records of the remaining
+     * clients.
+     */
+    @Override
+    public void cleanUp() {
+        localClients.cleanUp();
+
+        long now = System.currentTimeMillis();
+        if (now < nextRefresh) {
+            return;
+        }
+        nextRefresh = now + refreshPeriod;
+        localClients.entries().stream()
+                .map(CacheElement::peekObject)
+                .forEach(c -> owners.setTtl(toKey(c.getOwnerId()), recordTtl, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @return Return clients owned by this server and update last access time for elements retrieved.
+     */
+    @Override
+    public Stream<NFS4Client> stream() {
+        return localClients.entries().stream()
+                .map(CacheElement::getObject);
+    }
+
+    /**
+     * @return Return clients owned by this server. The last access time of the element will not be updated.
+     */
+    @Override
+    public Stream<NFS4Client> peek() {
+        return localClients.entries().stream()
+                .map(CacheElement::peekObject);
+    }
+
+    /**
+     * Stop tracking clients taken over by other servers.
+     */
+    @Override
+    public void close() {
+        owners.removeEntryListener(listenerId);
+    }
+
+    /**
+     * Remove shared record, unless it was updated by another server.
+     */
+    private void removeRecord(NFS4Client client) {
+        owners.remove(toKey(client.getOwnerId()), client.getId().value);
+    }
+
+    private static String toKey(byte[] owner) {
+        return Base64
+                .getEncoder()
+                .withoutPadding()
+                .encodeToString(owner);
+    }
+
+    private static int instanceOf(long clientid) {
+        return (int) (clientid >> 16) & 0xFFFF;
+    }
+
+    private final class ExpiredClientCollector extends NopCacheEventListener<clientid4, NFS4Client> {
+
+        private final ClientRecoveryStore clientStore;
+
+        private ExpiredClientCollector(ClientRecoveryStore clientStore) {
+            this.clientStore = clientStore;
+        }
+
+        @Override
+        public void notifyExpired(Cache<clientid4, NFS4Client> cache, NFS4Client client) {
+            LOGGER.info("Removing expired client: {}", client);
+            client.tryDispose();
+            clientStore.removeClient(client.getOwnerId());
+            removeRecord(client);
+        }
+    }
+
+    /**
+     * Disposes local client, when the client owner got a client id from another server.
+     */
+    private final class ClientMovedListener implements EntryUpdatedListener<String, Long> {
+
+        @Override
+        public void entryUpdated(EntryEvent<String, Long> event) {
+            Long oldClientid = event.getOldValue();
+            Long newClientid = event.getValue();
+            if (oldClientid == null || newClientid == null
+                    || instanceOf(oldClientid) == instanceOf(newClientid)) {
+                return;
+            }
+
+            NFS4Client client = localClients.remove(new clientid4(oldClientid));
+            if (client != null) {
+                LOGGER.info("Client {} moved to instance {}", client, instanceOf(newClientid));
+                client.tryDispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.dcache.nfs.status.NoGraceException;
+import org.dcache.nfs.status.ReclaimBadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of {@link ClientRecoveryStore} which uses Hazelcast's
+ * distributed {@link IMap} to store client records. Thus, several NFS servers,
+ * for instance, behind a load balancer, share a single store without a shared
+ * file system.
+ * <p>
+ * Each record is tagged with the instance id of {@link NFSv4StateHandler}, which
+ * has added it, and the cluster member it runs on. On start, the records of the
+ * own instance id are the clients, which may reclaim their state. Thus, a server
+ * restarted with the same instance id, on any host, recovers the clients of the
+ * previous incarnation. The records of instances, which members have left the
+ * cluster, are taken over as well. Thus, the clients of a failed server can reclaim
+ * their state on a server, which is started to replace it. Servers, which are
+ * already running, have no grace period and do not accept reclaims. The instance ids
+ * must be unique within the cluster, and the Hazelcast instance must be a cluster
+ * member, not a client.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   HazelcastInstance hz = ...;
+ *   int instanceId = ...;
+ *   ClientRecoveryStore clientStore = new HazelcastClientRecoveryStore(hz, "nfs-client-records", instanceId);
+ *   NFSv4StateHandler stateHandler = new NFSv4StateHandler(leaseTime, instanceId, clientStore);
+ * </pre>
+ *
+ * @since 0.27
+ */
+public class HazelcastClientRecoveryStore implements ClientRecoveryStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HazelcastClientRecoveryStore.class);
+
+    /**
+     * Client records of all instances.
+     */
+    private final IMap<String, ClientRecord> clients;
+
+    private final int instanceId;
+
+    private final HazelcastInstance hz;
+
+    /**
+     * The cluster member this instance runs on.
+     */
+    private final UUID member;
+
+    private final Instant bootTime = Instant.now();
+
+    /**
+     * Clients of this instance known before restart, which have not reclaimed
+     * their state yet, or null, if grace period is over.
+     */
+    private volatile Set<String> recoveryRecords;
+
+    /**
+     * Create a new {@code HazelcastClientRecoveryStore} with a given {@code name}.
+     * The other instances with the same name will share the same back-end store.
+     *
+     * @param hz reference to Haselcast instance.
+     * @param name name of the distributed map with client records.
+     * @param instanceId the instance id of the state handler using this store.
+     */
+    public HazelcastClientRecoveryStore(HazelcastInstance hz, String name, int instanceId) {
+        this.hz = hz;
+        this.clients = hz.getMap(name);
+        this.instanceId = instanceId;
+        this.member = hz.getLocalEndpoint().getUuid();
+
+        Set<UUID> members = liveMembers();
+        Set<String> records = ConcurrentHashMap.newKeySet();
+        clients.forEach((client, record) -> {
+            if (isRecoverable(record, members)) {
+                records.add(client);
+            }
+        });
+        LOGGER.debug("Recovery: {} client records of instance {}", records.size(), instanceId);
+        recoveryRecords = records;
+    }
+
+    @Override
+    public void addClient(byte[] client) {
+        clients.set(toKey(client), new ClientRecord(instanceId, member, Instant.now().toEpochMilli()));
+    }
+
+    /**
+     * Remove client record from recovery store. A record, which is added by another
+     * instance, e.g. if client has moved to another server, is not removed.
+     *
+     * @param client client's unique identifier.
+     */
+    @Override
+    public void removeClient(byte[] client) {
+        String key = toKey(client);
+        ClientRecord record = clients.get(key);
+        if (record != null && record.instanceId == instanceId) {
+            clients.remove(key, record);
+        }
+
+        Set<String> records = recoveryRecords;
+        if (records != null) {
+            records.remove(key);
+        }
+    }
+
+    @Override
+    public void reclaimClient(byte[] client) {
+        Set<String> records = recoveryRecords;
+        if (records == null) {
+            return;
+        }
+
+        records.remove(toKey(client));
+        if (records.isEmpty()) {
+            LOGGER.debug("No more client to recover - ending grace period.");
+            reclaimComplete();
+        }
+    }
+
+    @Override
+    public void wantReclaim(byte[] client) throws NoGraceException, ReclaimBadException {
+        Set<String> records = recoveryRecords;
+        if (records == null) {
+            throw new NoGraceException("Grace period expired");
+        }
+
+        if (!records.contains(toKey(client))) {
+            LOGGER.debug("No record for client [{}]", toKey(client));
+            throw new ReclaimBadException("No pre-reboot record found");
+        }
+    }
+
+    @Override
+    public boolean waitingForReclaim() {
+        Set<String> records = recoveryRecords;
+        return records != null && !records.isEmpty();
+    }
+
+    /**
+     * Indicate the end of grace period. The records of clients, which did not
+     * showed up during grace period, are removed.
+     */
+    @Override
+    public void reclaimComplete() {
+        Set<String> records = recoveryRecords;
+        if (records == null) {
+            return;
+        }
+        recoveryRecords = null;
+
+        long boot = bootTime.toEpochMilli();
+        Set<UUID> members = liveMembers();
+        records.forEach(client -> {
+            ClientRecord record = clients.get(client);
+            // the record may be taken over by the client's new server in the meantime
+            if (record != null && isRecoverable(record, members) && record.creationTime < boot) {
+                LOGGER.debug("Removing stale record of client [{}]", client);
+                clients.remove(client, record);
+            }
+        });
+    }
+
+    /**
+     * The Hazelcast instance is owned by the caller, thus, nothing to close.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Returns true, if the client of the given record may reclaim its state on this
+     * instance: the record was added by a previous incarnation of this instance, or
+     * by an instance, which member has left the cluster.
+     */
+    private boolean isRecoverable(ClientRecord record, Set<UUID> members) {
+        return record.instanceId == instanceId || !members.contains(record.member);
+    }
+
+    private Set<UUID> liveMembers() {
+        return hz.getCluster().getMembers().stream()
+                .map(Member::getUuid)
+                .collect(Collectors.toSet());
+    }
+
+    static String toKey(byte[] client) {
+        return Base64
+                .getEncoder()
+                .withoutPadding()
+                .encodeToString(client);
+    }
+
+    /**
+     * Client record stored in the distributed map.
+     */
+    static final class ClientRecord implements Serializable {
+
+        private static final long serialVersionUID = 5178034176934652870L;
+
+        private final int instanceId;
+        private final UUID member;
+        private final long creationTime;
+
+        ClientRecord(int instanceId, UUID member, long creationTime) {
+            this.instanceId = instanceId;
+            this.member = member;
+            this.creationTime = creationTime;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4.nlm;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An implementation of {@link LockManager} which uses Hazelcast's distributed
+ * {@link IMap} to store locks. Unlike {@link DistributedLockManager}, the conflict
+ * check as well as merge and split of locks are executed as an {@link EntryProcessor}
+ * on the member, which owns the object's partition. Thus, each lock, unlock or test
+ * operation requires a single remote call and no cluster-wide lock.
+ * <p>
+ * The entry processors are sent to the cluster members with java serialization, thus
+ * nfs4j classes must be available on all members of the cluster.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   HazelcastInstance hz = ...;
+ *   LockManager lm1 = new EntryProcessorLockManager(hz, "distributed-byte-range-lock");
+ *   LockManager lm2 = new EntryProcessorLockManager(hz, "distributed-byte-range-lock");
+ * </pre>
+ *
+ * The {@code lm1} and {@code lm2} will share the same set of locks as long as they
+ * connected to the same Hazelcast cluster.
+ *
+ * @since 0.27
+ */
+public class EntryProcessorLockManager implements LockManager {
+
+    private final IMap<String, NlmLock[]> locks;
+
+    /**
+     * Create a new {@code EntryProcessorLockManager} with a given {@code name}.
+     * The other instances with the same name will share the same back-end store and,
+     * as a result, will see the same set of locks.
+     *
+     * @param hz reference to Haselcast instance.
+     * @param name name of the lock manager.
+     */
+    public EntryProcessorLockManager(HazelcastInstance hz, String name) {
+        locks = hz.getMap(name);
+    }
+
+    @Override
+    public void lock(byte[] objId, NlmLock lock) throws LockException {
+        execute(objId, new UpdateLocks(UpdateLocks.LOCK, lock));
+    }
+
+    @Override
+    public void unlock(byte[] objId, NlmLock lock) throws LockException {
+        execute(objId, new UpdateLocks(UpdateLocks.UNLOCK, lock));
+    }
+
+    @Override
+    public void test(byte[] objId, NlmLock lock) throws LockException {
+        execute(objId, new TestLock(lock));
+    }
+
+    @Override
+    public void unlockIfExists(byte[] objId, NlmLock lock) {
+        locks.executeOnKey(objIdToKey(objId), new UpdateLocks(UpdateLocks.UNLOCK_IF_EXISTS, lock));
+    }
+
+    private void execute(byte[] objId, EntryProcessor<String, NlmLock[], LockException> processor)
+            throws LockException {
+        LockException e = locks.executeOnKey(objIdToKey(objId), processor);
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private static String objIdToKey(byte[] objId) {
+        return Base64
+                .getEncoder()
+                .withoutPadding()
+                .encodeToString(objId);
+    }
+
+    /**
+     * {@link AbstractLockManager} over locks of a single map entry. As entry processors
+     * on the same key are never executed concurrently, no locking is required.
+     */
+    private static class EntryLocks extends AbstractLockManager {
+
+        private final Lock lock = new ReentrantLock();
+        private final List<NlmLock> locks;
+        private boolean modified;
+
+        EntryLocks(NlmLock[] locks) {
+            this.locks = locks == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(locks));
+        }
+
+        @Override
+        protected Lock getObjectLock(byte[] objId) {
+            return lock;
+        }
+
+        @Override
+        protected Collection<NlmLock> getActiveLocks(byte[] objId) {
+            return locks;
+        }
+
+        @Override
+        protected void add(byte[] objId, NlmLock lock) {
+            modified = true;
+            locks.add(lock);
+        }
+
+        @Override
+        protected boolean remove(byte[] objId, NlmLock lock) {
+            boolean isRemoved = locks.remove(lock);
+            modified |= isRemoved;
+            return isRemoved;
+        }
+
+        @Override
+        protected void addAll(byte[] objId, Collection<NlmLock> locks) {
+            modified |= this.locks.addAll(locks);
+        }
+
+        @Override
+        protected void removeAll(byte[] objId, Collection<NlmLock> locks) {
+            modified |= this.locks.removeAll(locks);
+        }
+
+        /**
+         * Store modified locks in the entry.
+         */
+        void update(Map.Entry<String, NlmLock[]> entry) {
+            if (modified) {
+                // null value removes the entry
+                entry.setValue(locks.isEmpty() ? null : locks.toArray(NlmLock[]::new));
+            }
+        }
+    }
+
+    /**
+     * Entry processor to lock or unlock a byte range.
+     */
+    private static class UpdateLocks implements EntryProcessor<String, NlmLock[], LockException> {
+
+        private static final long serialVersionUID = 4839261075148305126L;
+
+        static final int LOCK = 0;
+        static final int UNLOCK = 1;
+        static final int UNLOCK_IF_EXISTS = 2;
+
+        private final int op;
+        private final NlmLock lock;
+
+        UpdateLocks(int op, NlmLock lock) {
+            this.op = op;
+            this.lock = lock;
+        }
+
+        @Override
+        public LockException process(Map.Entry<String, NlmLock[]> entry) {
+            EntryLocks entryLocks = new EntryLocks(entry.getValue());
+            try {
+                switch (op) {
+                    case LOCK:
+                        entryLocks.lock(null, lock);
+                        break;
+                    case UNLOCK:
+                        entryLocks.unlock(null, lock);
+                        break;
+                    case UNLOCK_IF_EXISTS:
+                        entryLocks.unlockIfExists(null, lock);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unsupported operation: " + op);
+                }
+            } catch (LockException e) {
+                return e;
+            }
+            entryLocks.update(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Entry processor to test for conflicting locks.
+     */
+    private static class TestLock implements EntryProcessor<String, NlmLock[], LockException>, ReadOnly {
+
+        private static final long serialVersionUID = -2350473213874920935L;
+
+        private final NlmLock lock;
+
+        TestLock(NlmLock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public LockException process(Map.Entry<String, NlmLock[]> entry) {
+            try {
+                new EntryLocks(entry.getValue()).test(null, lock);
+            } catch (LockException e) {
+                return e;
+            }
+            return null;
+        }
+
+        @Override
+        public EntryProcessor<String, NlmLock[], LockException> getBackupProcessor() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.dcache.nfs.status.StaleClientidException;
+import org.dcache.nfs.v4.xdr.nfs4_prot;
+import org.dcache.nfs.v4.xdr.verifier4;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class HazelcastClientCacheTest {
+
+    private static final Duration LEASE_TIME = Duration.ofSeconds(90);
+
+    private HazelcastInstance hz;
+    private HazelcastClientCache cache1;
+    private HazelcastClientCache cache2;
+    private NFSv4StateHandler stateHandler1;
+    private NFSv4StateHandler stateHandler2;
+    private InetSocketAddress address;
+
+    @Before
+    public void setUp() throws Exception {
+        hz = Hazelcast.newHazelcastInstance();
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 123);
+
+        ClientRecoveryStore store1 = new HazelcastClientRecoveryStore(hz, "client-records", 1);
+        cache1 = new HazelcastClientCache(hz, "clients", LEASE_TIME, store1);
+        stateHandler1 = new NFSv4StateHandler(LEASE_TIME, 1, store1, cache1);
+
+        ClientRecoveryStore store2 = new HazelcastClientRecoveryStore(hz, "client-records", 2);
+        cache2 = new HazelcastClientCache(hz, "clients", LEASE_TIME, store2);
+        stateHandler2 = new NFSv4StateHandler(LEASE_TIME, 2, store2, cache2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stateHandler1.shutdown();
+        stateHandler2.shutdown();
+        cache1.close();
+        cache2.close();
+        hz.shutdown();
+    }
+
+    @Test
+    public void testClientsAreLocal() throws Exception {
+        NFS4Client client = createClient(stateHandler1, "client1");
+
+        assertNotNull(stateHandler1.getClient(client.getId()));
+        assertNull("client object shared between servers", cache2.get(client.getId()));
+    }
+
+    @Test
+    public void testMovedClientDisposed() throws Exception {
+        NFS4Client client = createClient(stateHandler1, "client1");
+        createClient(stateHandler2, "client1");
+
+        // entry listeners are notified asynchronously
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                stateHandler1.getClient(client.getId());
+                Thread.sleep(10);
+            } catch (StaleClientidException e) {
+                return;
+            }
+        }
+        fail("moved client not removed from previous server");
+    }
+
+    private NFS4Client createClient(NFSv4StateHandler stateHandler, String owner) {
+        return stateHandler.createClient(address, address, 1, owner.getBytes(StandardCharsets.UTF_8),
+                new verifier4(new byte[nfs4_prot.NFS4_VERIFIER_SIZE]), null, false);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.dcache.nfs.status.NoGraceException;
+import org.dcache.nfs.status.ReclaimBadException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HazelcastClientRecoveryStoreTest {
+
+    private HazelcastInstance hz;
+    private byte[] owner;
+
+    @Before
+    public void setUp() {
+        hz = Hazelcast.newHazelcastInstance();
+        owner = "client1".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        hz.shutdown();
+    }
+
+    @Test
+    public void testReclaimAfterRestart() throws Exception {
+        new HazelcastClientRecoveryStore(hz, "clients", 1).addClient(owner);
+
+        ClientRecoveryStore store = new HazelcastClientRecoveryStore(hz, "clients", 1);
+        assertTrue("restarted instance should wait for reclaim", store.waitingForReclaim());
+        store.wantReclaim(owner);
+        store.reclaimClient(owner);
+        assertFalse("grace period not over after last reclaim", store.waitingForReclaim());
+    }
+
+    @Test(expected = ReclaimBadException.class)
+    public void testNoReclaimOfOtherInstanceClients() throws Exception {
+        new HazelcastClientRecoveryStore(hz, "clients", 1).addClient(owner);
+
+        ClientRecoveryStore store = new HazelcastClientRecoveryStore(hz, "clients", 2);
+        assertFalse(store.waitingForReclaim());
+        store.wantReclaim(owner);
+    }
+
+    @Test
+    public void testReclaimOfFailedInstanceClients() throws Exception {
+        // added by instance 1, which has left the cluster
+        hz.getMap("clients").set(HazelcastClientRecoveryStore.toKey(owner),
+                new HazelcastClientRecoveryStore.ClientRecord(1, UUID.randomUUID(), System.currentTimeMillis()));
+
+        ClientRecoveryStore store = new HazelcastClientRecoveryStore(hz, "clients", 2);
+        assertTrue("records of failed instance not taken over", store.waitingForReclaim());
+        store.wantReclaim(owner);
+    }
+
+    @Test(expected = NoGraceException.class)
+    public void testNoReclaimAfterGrace() throws Exception {
+        new HazelcastClientRecoveryStore(hz, "clients", 1).addClient(owner);
+
+        ClientRecoveryStore store = new HazelcastClientRecoveryStore(hz, "clients", 1);
+        store.reclaimComplete();
+        store.wantReclaim(owner);
+    }
+
+    @Test
+    public void testRemoveKeepsRecordOfOtherInstance() throws Exception {
+        ClientRecoveryStore store1 = new HazelcastClientRecoveryStore(hz, "clients", 1);
+        ClientRecoveryStore store2 = new HazelcastClientRecoveryStore(hz, "clients", 2);
+
+        store1.addClient(owner);
+        // client moved to instance 2, while the record on instance 1 expires
+        store2.addClient(owner);
+        store1.removeClient(owner);
+
+        ClientRecoveryStore restarted = new HazelcastClientRecoveryStore(hz, "clients", 2);
+        assertTrue("record of the current owner removed", restarted.waitingForReclaim());
+        restarted.wantReclaim(owner);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2026 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.nfs.v4.nlm;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EntryProcessorLockManagerTest {
+
+    private HazelcastInstance hzServer;
+    private HazelcastInstance hzClient;
+    private LockManager lm1;
+    private LockManager lm2;
+    private byte[] file1;
+
+    @Before
+    public void setUp() throws Exception {
+
+        file1 = "file1".getBytes(StandardCharsets.UTF_8);
+
+        hzServer = Hazelcast.newHazelcastInstance();
+
+        ClientConfig config = new ClientConfig();
+        config.getNetworkConfig().setAddresses(Arrays.asList(
+                "127.0.0.1:" + hzServer.getCluster().getLocalMember().getAddress().getPort())
+        );
+
+        config.setClusterName(hzServer.getConfig().getClusterName());
+        hzClient = HazelcastClient.newHazelcastClient(config);
+        lm1 = new EntryProcessorLockManager(hzClient, "distributed-byte-range-lock");
+        lm2 = new EntryProcessorLockManager(hzServer, "distributed-byte-range-lock");
+    }
+
+    @Test(expected = LockDeniedException.class)
+    public void testConflictingLockDifferentOwner() throws LockException {
+        NlmLock lock1 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner1")
+                .from(0)
+                .length(1)
+                .forRead()
+                .build();
+        lm1.lock(file1, lock1);
+
+        NlmLock lock2 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner2")
+                .from(0)
+                .length(1)
+                .forWrite()
+                .build();
+        lm2.lock(file1, lock2);
+    }
+
+    @Test
+    public void testConflictingLockSameOwner() throws LockException {
+        NlmLock lock1 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner1")
+                .from(0)
+                .length(1)
+                .forRead()
+                .build();
+        lm1.lock(file1, lock1);
+
+        NlmLock lock2 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner1")
+                .from(0)
+                .length(1)
+                .forWrite()
+                .build();
+        lm2.lock(file1, lock2);
+
+        try {
+            NlmLock lock3 = new SimpleLmTest.LockBuilder()
+                    .withOwner("owner2")
+                    .from(0)
+                    .length(1)
+                    .forWrite()
+                    .build();
+
+            lm1.test(file1, lock3);
+            fail("Lock on lm1 is lost");
+        } catch (LockDeniedException e) {
+            // pass
+        }
+    }
+
+    @Test
+    public void testSplitOnUnlock() throws LockException {
+        NlmLock lock1 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner1")
+                .from(0)
+                .length(10)
+                .forWrite()
+                .build();
+        lm1.lock(file1, lock1);
+
+        NlmLock lock2 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner1")
+                .from(4)
+                .length(2)
+                .forWrite()
+                .build();
+        lm2.unlock(file1, lock2);
+
+        NlmLock lock3 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner2")
+                .from(4)
+                .length(2)
+                .forWrite()
+                .build();
+        lm1.lock(file1, lock3);
+    }
+
+    @Test(expected = LockRangeUnavailabeException.class)
+    public void testUnlockNotLocked() throws LockException {
+        NlmLock lock1 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner1")
+                .from(0)
+                .length(1)
+                .forWrite()
+                .build();
+        lm1.unlock(file1, lock1);
+    }
+
+    @Test
+    public void testEntryRemovedOnLastUnlock() throws LockException {
+        NlmLock lock1 = new SimpleLmTest.LockBuilder()
+                .withOwner("owner1")
+                .from(0)
+                .length(1)
+                .forWrite()
+                .build();
+        lm1.lock(file1, lock1);
+        lm2.unlockIfExists(file1, lock1);
+
+        assertTrue(hzServer.getMap("distributed-byte-range-lock").isEmpty());
+    }
+
+    @After
+    public void tearDown() {
+        HazelcastClient.shutdownAll();
+        Hazelcast.shutdownAll();
+    }
+}